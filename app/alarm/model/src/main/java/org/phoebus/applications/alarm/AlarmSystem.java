@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018-2020 Oak Ridge National Laboratory.
+ * Copyright (c) 2018-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -103,6 +103,11 @@ public class AlarmSystem
      */
     public static final long idle_timeout_ms;
 
+    /** Time window in milliseconds for collecting state updates
+     *  before the server sends them, 0 to send right away
+     */
+    @Preference public static int state_update_window;
+
     /** Name of the sender, the 'from' field of automated email actions */
     @Preference  public static String automated_email_sender;
 
@@ -118,6 +123,15 @@ public class AlarmSystem
     /** Nag period in seconds */
     public static final long nag_period_ms;
 
+    /** Directory for alarm topic snapshots, empty to disable */
+    @Preference public static String snapshot_directory;
+
+    /** Period in milliseconds for writing alarm topic snapshots */
+    public static final long snapshot_period_ms;
+
+    /** Maximum age in milliseconds of alarm topic snapshots that are used */
+    public static final long snapshot_max_age_ms;
+
     /** Disable notify feature */
     @Preference public static boolean disable_notify_visible;
 
@@ -126,6 +140,7 @@ public class AlarmSystem
     	final PreferencesReader prefs = AnnotatedPreferences.initialize(AlarmSystem.class, "/alarm_preferences.properties");
         idle_timeout_ms = prefs.getInt("idle_timeout") * 1000L;        
         heartbeat_ms = prefs.getInt("heartbeat_secs") * 1000L;
+        snapshot_period_ms = prefs.getInt("snapshot_secs") * 1000L;
 
         double secs = 0.0;
         try
@@ -138,6 +153,17 @@ public class AlarmSystem
         }
         nag_period_ms = Math.round(Math.max(0, secs) * 1000.0);
 
+        secs = 0.0;
+        try
+        {
+            secs = SecondsParser.parseSeconds(prefs.get("snapshot_max_age"));
+        }
+        catch (Exception ex)
+        {
+            logger.log(Level.WARNING, "Invalid snapshot_max_age " + prefs.get("snapshot_max_age"), ex);
+        }
+        snapshot_max_age_ms = Math.round(Math.max(0, secs) * 1000.0);
+
         IdentificationHelper.initialize();
     }
 }
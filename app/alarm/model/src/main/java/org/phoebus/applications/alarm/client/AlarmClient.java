@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018-2020 Oak Ridge National Laboratory.
+ * Copyright (c) 2018-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -9,6 +9,7 @@ package org.phoebus.applications.alarm.client;
 
 import static org.phoebus.applications.alarm.AlarmSystem.logger;
 
+import java.io.File;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
@@ -43,6 +44,10 @@ import org.phoebus.util.time.TimestampFormats;
  *  of the complete alarm information,
  *  updating listeners with all changes.
  *
+ *  <p>When enabled via {@link AlarmSystem#snapshot_directory},
+ *  the model is first loaded from an {@link AlarmTopicSnapshot},
+ *  and the topic is then read from the offsets saved in the snapshot.
+ *
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
@@ -92,6 +97,15 @@ public class AlarmClient
     /** Timeout, not seen any messages from server? */
     private boolean has_timed_out = false;
 
+    /** Snapshot file, <code>null</code> if snapshots are disabled */
+    private final File snapshot_file;
+
+    /** Snapshot of the topic, <code>null</code> if snapshots are disabled */
+    private final AlarmTopicSnapshot snapshot;
+
+    /** Time of last snapshot write (ms) */
+    private long last_snapshot = 0;
+
     /** @param server Kafka Server host:port
      *  @param config_name Name of alarm tree root
      */
@@ -104,8 +118,13 @@ public class AlarmClient
         command_topic = config_name + AlarmSystem.COMMAND_TOPIC_SUFFIX;
 
         root = new AlarmClientNode(null, config_name);
+
+        snapshot_file = AlarmTopicSnapshot.getFile(config_name);
+        snapshot = snapshot_file == null ? null : AlarmTopicSnapshot.read(snapshot_file, config_name);
+
         final List<String> topics = List.of(config_topic);
-        consumer = KafkaHelper.connectConsumer(server, topics, topics);
+        consumer = KafkaHelper.connectConsumer(server, topics, topics,
+                                               snapshot == null ? part -> null : snapshot::getStartOffset);
         producer = KafkaHelper.connectProducer(server);
 
         thread = new Thread(this::run, "AlarmClientModel " + config_name);
@@ -197,10 +216,12 @@ public class AlarmClient
         checkServerState();
         try
         {
+            loadSnapshot();
             while (running.get())
             {
                 checkUpdates();
                 checkServerState();
+                checkSnapshot();
             }
         }
         catch (final Throwable ex)
@@ -211,6 +232,8 @@ public class AlarmClient
         }
         finally
         {
+            if (snapshot != null  &&  snapshot.isChanged())
+                writeSnapshot();
             consumer.close();
             producer.close();
         }
@@ -228,7 +251,50 @@ public class AlarmClient
         // but update to kafka-client 1.1.1 (latest in July 2018) makes no difference.
         final ConsumerRecords<String, String> records = consumer.poll(POLL_PERIOD);
         for (final ConsumerRecord<String, String> record : records)
+        {
             handleUpdate(record);
+            if (snapshot != null)
+                snapshot.update(record.partition(), record.offset(), record.key(), record.value());
+        }
+    }
+
+    /** Load model from snapshot, unless the topic no longer matches the snapshot */
+    private void loadSnapshot()
+    {
+        if (snapshot == null  ||  snapshot.size() <= 0  ||  !snapshot.checkOffsets(consumer))
+            return;
+        final long start = System.currentTimeMillis();
+        snapshot.forEach(this::handleUpdate);
+        last_snapshot = System.currentTimeMillis();
+        logger.log(Level.INFO, "Loaded " + snapshot.size() + " records for " + root.getName() +
+                               " from snapshot in " + (last_snapshot - start) + " ms");
+        // State in snapshot doesn't tell if server is currently running
+        last_state_update = 0;
+    }
+
+    /** Write snapshot if it changed and the snapshot period has passed */
+    private void checkSnapshot()
+    {
+        if (snapshot == null  ||  !snapshot.isChanged())
+            return;
+        final long now = System.currentTimeMillis();
+        if (now - last_snapshot < AlarmSystem.snapshot_period_ms)
+            return;
+        last_snapshot = now;
+        writeSnapshot();
+    }
+
+    /** Write snapshot, logging errors */
+    private void writeSnapshot()
+    {
+        try
+        {
+            snapshot.write(snapshot_file);
+        }
+        catch (final Exception ex)
+        {
+            logger.log(Level.WARNING, "Cannot write alarm snapshot " + snapshot_file, ex);
+        }
     }
 
     /** Handle one received update
@@ -236,25 +302,32 @@ public class AlarmClient
      */
     private void handleUpdate(final ConsumerRecord<String, String> record)
     {
-        final int sep = record.key().indexOf(':');
+        if (record.timestampType() != TimestampType.CREATE_TIME)
+            logger.log(Level.WARNING, "Expect updates with CreateTime, got " + record.timestampType() + ": " + record.timestamp() + " " + record.key() + " = " + record.value());
+
+        logger.log(Level.FINE, () ->
+            record.topic() + " @ " +
+            TimestampFormats.MILLI_FORMAT.format(Instant.ofEpochMilli(record.timestamp())) + " " +
+            record.key() + " = " + record.value());
+
+        handleUpdate(record.key(), record.value());
+    }
+
+    /** Handle one update, received or from snapshot
+     *  @param key Record key "type:path"
+     *  @param node_config Record value
+     */
+    private void handleUpdate(final String key, final String node_config)
+    {
+        final int sep = key.indexOf(':');
         if (sep < 0)
         {
-            logger.log(Level.WARNING, "Invalid key, expecting type:path, got " + record.key());
+            logger.log(Level.WARNING, "Invalid key, expecting type:path, got " + key);
             return;
         }
 
-        final String type = record.key().substring(0, sep+1);
-        final String path = record.key().substring(sep+1);
-        final long timestamp = record.timestamp();
-        final String node_config = record.value();
-
-        if (record.timestampType() != TimestampType.CREATE_TIME)
-            logger.log(Level.WARNING, "Expect updates with CreateTime, got " + record.timestampType() + ": " + record.timestamp() + " " + path + " = " + node_config);
-
-        logger.log(Level.FINE, () ->
-            record.topic() + " @ " +
-            TimestampFormats.MILLI_FORMAT.format(Instant.ofEpochMilli(timestamp)) + " " +
-            type + path + " = " + node_config);
+        final String type = key.substring(0, sep+1);
+        final String path = key.substring(sep+1);
 
         try
         {
@@ -277,7 +350,7 @@ public class AlarmClient
                 else
                 {   // Configuration update
                     if (JsonModelReader.isStateUpdate(json))
-                        logger.log(Level.WARNING, "Got config update with state content: " + record.key() + " " + node_config);
+                        logger.log(Level.WARNING, "Got config update with state content: " + key + " " + node_config);
                     else
                     {
                         AlarmTreeItem<?> node = findNode(path);
@@ -292,13 +365,13 @@ public class AlarmClient
             else if (type.equals(AlarmSystem.STATE_PREFIX))
             {   // State update
                 if (json == null)
-                    logger.log(Level.WARNING, "Got state update with null content: " + record.key() + " " + node_config);
+                    logger.log(Level.WARNING, "Got state update with null content: " + key + " " + node_config);
                 else if (! JsonModelReader.isStateUpdate(json))
-                    logger.log(Level.WARNING, "Got state update with config content: " + record.key() + " " + node_config);
+                    logger.log(Level.WARNING, "Got state update with config content: " + key + " " + node_config);
                 else if (deleted_paths.contains(path))
                 {
                     // It it _deleted_??
-                    logger.log(Level.FINE, () -> "Ignoring state for deleted item: " + record.key() + " " + node_config);
+                    logger.log(Level.FINE, () -> "Ignoring state for deleted item: " + key + " " + node_config);
                     return;
                 }
                 else
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.phoebus.applications.alarm.client;
+
+import static org.phoebus.applications.alarm.AlarmSystem.logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.phoebus.applications.alarm.AlarmSystem;
+
+/** Snapshot of the alarm configuration and state topic
+ *
+ *  <p>Holds the latest record for each key, i.e. config and state
+ *  of each alarm tree item, together with the offset
+ *  up to which each partition of the topic has been read.
+ *  This is what a fully compacted topic would contain.
+ *
+ *  <p>Loading the snapshot from a local file and then continuing
+ *  to read the topic from the saved offsets
+ *  results in the same alarm tree as replaying the complete topic,
+ *  without fetching all the older updates.
+ *
+ *  <p>Records are kept as the JSON text received from the topic,
+ *  so the snapshot does not depend on the configuration fields
+ *  of alarm tree items.
+ *  Loading a snapshot thus still parses each record.
+ *  In a newly started client, that's about half of the time
+ *  to load a snapshot, see <code>AlarmTopicSnapshotDemo</code>.
+ *
+ *  <p>Deleted items are removed from the snapshot.
+ *  The topic only keeps the 'tombstone' record of a deleted item
+ *  for a limited time, Kafka's <code>delete.retention.ms</code>.
+ *  A snapshot that's older than that would miss deletions
+ *  and thus still contain deleted items, so it is not used.
+ *  Likewise, a snapshot is not used when the topic no longer
+ *  holds the records following the saved offsets,
+ *  {@link #checkOffsets(Consumer)} needs to be called before using the snapshot.
+ *
+ *  <p>Not thread safe, meant to be used by the thread
+ *  that reads the topic.
+ */
+@SuppressWarnings("nls")
+public class AlarmTopicSnapshot
+{
+    /** File format identifier, "ATS2" */
+    private static final int MAGIC = 0x41545332;
+
+    private final String config_name;
+
+    /** Latest value for each key, in the order of last update */
+    private final Map<String, String> records = new LinkedHashMap<>();
+
+    /** Next offset to read for each partition */
+    private final Map<Integer, Long> offsets = new HashMap<>();
+
+    /** Changed since last write? */
+    private boolean changed = false;
+
+    /** @param config_name Name of alarm tree root, i.e. topic */
+    public AlarmTopicSnapshot(final String config_name)
+    {
+        this.config_name = config_name;
+    }
+
+    /** @param config_name Name of alarm tree root
+     *  @return Snapshot file for that configuration in the {@link AlarmSystem#snapshot_directory},
+     *          <code>null</code> if snapshots are disabled
+     */
+    public static File getFile(final String config_name)
+    {
+        if (AlarmSystem.snapshot_directory.isEmpty())
+            return null;
+        return new File(AlarmSystem.snapshot_directory, config_name + ".snapshot");
+    }
+
+    /** @param partition Partition of the record
+     *  @param offset Offset of the record
+     *  @param key Record key "type:path"
+     *  @param value Record value, <code>null</code> for deleted item
+     */
+    public void update(final int partition, final long offset, final String key, final String value)
+    {
+        // Remove, then add, to keep records in order of last update.
+        // Deleted item is simply removed
+        records.remove(key);
+        if (value != null)
+            records.put(key, value);
+        offsets.put(partition, offset + 1);
+        changed = true;
+    }
+
+    /** Remove all records and offsets,
+     *  so the topic will be read from the beginning
+     */
+    public void clear()
+    {
+        records.clear();
+        offsets.clear();
+        changed = true;
+    }
+
+    /** @return Number of records */
+    public int size()
+    {
+        return records.size();
+    }
+
+    /** @param part Partition
+     *  @return Next offset to read for that partition of the topic, <code>null</code> if not known
+     */
+    public Long getStartOffset(final TopicPartition part)
+    {
+        if (! part.topic().equals(config_name))
+            return null;
+        return offsets.get(part.partition());
+    }
+
+    /** Check if the topic still holds the records that follow the snapshot
+     *
+     *  <p>When the topic was for example re-created or compacted
+     *  beyond the saved offsets, the snapshot is cleared.
+     *  To be called before applying the snapshot to a model.
+     *
+     *  @param consumer Consumer for the topic
+     *  @return <code>true</code> if snapshot can be used,
+     *          <code>false</code> if it was cleared
+     */
+    public boolean checkOffsets(final Consumer<String, String> consumer)
+    {
+        if (offsets.isEmpty())
+            return true;
+        try
+        {
+            final List<TopicPartition> parts = offsets.keySet()
+                                                      .stream()
+                                                      .map(partition -> new TopicPartition(config_name, partition))
+                                                      .collect(Collectors.toList());
+            final Map<TopicPartition, Long> first = consumer.beginningOffsets(parts);
+            final Map<TopicPartition, Long> end = consumer.endOffsets(parts);
+            for (TopicPartition part : parts)
+            {
+                final long offset = offsets.get(part.partition());
+                final Long valid_first = first.get(part), valid_end = end.get(part);
+                if (valid_first == null  ||  valid_end == null  ||
+                    offset < valid_first  ||  offset > valid_end)
+                {
+                    logger.log(Level.WARNING, "Discarding alarm snapshot for " + config_name +
+                               ": Offset " + offset + " of " + part + " is outside of valid range " +
+                               valid_first + " to " + valid_end);
+                    clear();
+                    return false;
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            logger.log(Level.WARNING, "Discarding alarm snapshot for " + config_name + ": Cannot check offsets", ex);
+            clear();
+            return false;
+        }
+        return true;
+    }
+
+    /** @param handler Will be called with key and value of each record, in the order they were received */
+    public void forEach(final BiConsumer<String, String> handler)
+    {
+        records.forEach(handler);
+    }
+
+    /** @return <code>true</code> if snapshot changed since it was last written or read */
+    public boolean isChanged()
+    {
+        return changed;
+    }
+
+    /** Write snapshot
+     *
+     *  <p>Writes to a temporary file which then replaces
+     *  the snapshot file, so other readers never see a partial snapshot.
+     *  The file includes the time when it was written
+     *  to limit the age of snapshots that are read.
+     *
+     *  @param file Snapshot file
+     *  @throws Exception on error
+     */
+    public void write(final File file) throws Exception
+    {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try
+        {
+            try
+            (
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))
+            )
+            {
+                out.writeInt(MAGIC);
+                out.writeUTF(config_name);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(offsets.size());
+                for (Map.Entry<Integer, Long> entry : offsets.entrySet())
+                {
+                    out.writeInt(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+                out.writeInt(records.size());
+                for (Map.Entry<String, String> entry : records.entrySet())
+                {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            tmp.delete();
+        }
+        changed = false;
+    }
+
+    /** Read snapshot
+     *  @param file Snapshot file
+     *  @param config_name Name of alarm tree root
+     *  @return {@link AlarmTopicSnapshot}, empty if there is no usable snapshot file
+     *  @see AlarmSystem#snapshot_max_age_ms
+     */
+    public static AlarmTopicSnapshot read(final File file, final String config_name)
+    {
+        return read(file, config_name, Duration.ofMillis(AlarmSystem.snapshot_max_age_ms));
+    }
+
+    /** Read snapshot
+     *  @param file Snapshot file
+     *  @param config_name Name of alarm tree root
+     *  @param max_age Maximum age of the snapshot
+     *  @return {@link AlarmTopicSnapshot}, empty if there is no usable snapshot file
+     */
+    static AlarmTopicSnapshot read(final File file, final String config_name, final Duration max_age)
+    {
+        final AlarmTopicSnapshot snapshot = new AlarmTopicSnapshot(config_name);
+        if (file == null  ||  !file.canRead())
+            return snapshot;
+        try
+        (
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))
+        )
+        {
+            if (in.readInt() != MAGIC)
+                throw new Exception("Unknown file format");
+            final String name = in.readUTF();
+            if (! name.equals(config_name))
+                throw new Exception("Expected snapshot for " + config_name + ", got " + name);
+            final Duration age = Duration.ofMillis(System.currentTimeMillis() - in.readLong());
+            if (age.compareTo(max_age) > 0)
+            {
+                logger.log(Level.INFO, "Ignoring alarm snapshot " + file + " written " + age.getSeconds() + " seconds ago");
+                return snapshot;
+            }
+            int count = in.readInt();
+            for (int i=0; i<count; ++i)
+                snapshot.offsets.put(in.readInt(), in.readLong());
+            count = in.readInt();
+            for (int i=0; i<count; ++i)
+                snapshot.records.put(readString(in), readString(in));
+            logger.log(Level.INFO, "Read " + snapshot.records.size() + " records from " + file);
+        }
+        catch (Exception ex)
+        {
+            logger.log(Level.WARNING, "Cannot read alarm snapshot " + file, ex);
+            return new AlarmTopicSnapshot(config_name);
+        }
+        return snapshot;
+    }
+
+    /** @param out Stream
+     *  @param text Text to write, may be <code>null</code>
+     *  @throws Exception on error
+     */
+    private static void writeString(final DataOutputStream out, final String text) throws Exception
+    {
+        // writeUTF() is limited to 64k, JSON for a large 'guidance' might exceed that
+        if (text == null)
+            out.writeInt(-1);
+        else
+        {
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** @param in Stream
+     *  @return Text, may be <code>null</code>
+     *  @throws Exception on error
+     */
+    private static String readString(final DataInputStream in) throws Exception
+    {
+        final int length = in.readInt();
+        if (length < 0)
+            return null;
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
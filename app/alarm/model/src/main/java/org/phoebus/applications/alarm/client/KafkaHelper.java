@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2018-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.function.Function;
 
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
@@ -54,6 +55,26 @@ public class KafkaHelper
      *  @return {@link Consumer}
      */
     public static Consumer<String, String> connectConsumer(final String kafka_servers, final List<String> topics, final List<String> from_beginning)
+    {
+        return connectConsumer(kafka_servers, topics, from_beginning, part -> null);
+    }
+
+    /** Create a consumer for alarm-type topics
+     *
+     *  <p>De-serialize as strings.
+     *
+     *  @param kafka_servers Servers to read
+     *  @param topics Topics to which to subscribe
+     *  @param from_beginning Topics to read from the beginning
+     *  @param start_offsets Provides offset where to start reading a partition of 'from_beginning' topics,
+     *                       for example from an {@link AlarmTopicSnapshot}.
+     *                       Called when the partition is assigned.
+     *                       Partitions without offset, or with an offset that's no longer valid,
+     *                       are read from the beginning.
+     *  @return {@link Consumer}
+     */
+    public static Consumer<String, String> connectConsumer(final String kafka_servers, final List<String> topics, final List<String> from_beginning,
+                                                           final Function<TopicPartition, Long> start_offsets)
     {
         final Properties props = new Properties();
         props.put("bootstrap.servers", kafka_servers);
@@ -81,8 +102,17 @@ public class KafkaHelper
                 for (TopicPartition part : parts)
                     if (from_beginning.contains(part.topic()))
                     {
-                        consumer.seekToBeginning(List.of(part));
-                        logger.info("Reading from start of " + part.topic());
+                        final Long offset = start_offsets.apply(part);
+                        if (offset != null  &&  isValidOffset(consumer, part, offset))
+                        {
+                            consumer.seek(part, offset);
+                            logger.info("Reading " + part.topic() + " from offset " + offset);
+                        }
+                        else
+                        {
+                            consumer.seekToBeginning(List.of(part));
+                            logger.info("Reading from start of " + part.topic());
+                        }
                     }
                     else
                         logger.info("Reading updates for " + part.topic());
@@ -99,6 +129,21 @@ public class KafkaHelper
         return consumer;
     }
 
+    /** @param consumer Consumer
+     *  @param part Partition
+     *  @param offset Offset
+     *  @return <code>true</code> if offset is within the records currently held by the partition
+     */
+    private static boolean isValidOffset(final Consumer<String, String> consumer, final TopicPartition part, final long offset)
+    {
+        final Long first = consumer.beginningOffsets(List.of(part)).get(part);
+        final Long end = consumer.endOffsets(List.of(part)).get(part);
+        if (first != null  &&  end != null  &&  first <= offset  &&  offset <= end)
+            return true;
+        logger.warning("Cannot resume " + part + " at offset " + offset + ", valid range is " + first + " to " + end);
+        return false;
+    }
+
     /** Create producer for alarm information
      *  @param kafka_servers
      *  @return {@link Producer}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.phoebus.applications.alarm.client;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.phoebus.applications.alarm.model.AlarmTreeItem;
+import org.phoebus.applications.alarm.model.SeverityLevel;
+import org.phoebus.applications.alarm.model.TitleDetail;
+import org.phoebus.applications.alarm.model.json.JsonModelReader;
+import org.phoebus.applications.alarm.model.json.JsonModelWriter;
+
+/** Time the steps of loading a large snapshot
+ *
+ *  <p>Run in a new JVM to see the time for a client that just started.
+ */
+@SuppressWarnings("nls")
+public class AlarmTopicSnapshotDemo
+{
+    private static final int AREAS = 600, PVS = 60000;
+
+    @Test
+    public void timeLoad() throws Exception
+    {
+        final AlarmTopicSnapshot snapshot = new AlarmTopicSnapshot("Demo");
+        final AlarmClientNode root = new AlarmClientNode(null, "Demo");
+        long offset = 0;
+        for (int a=0; a<AREAS; ++a)
+        {
+            final AlarmClientNode area = new AlarmClientNode(root, "Area" + a);
+            snapshot.update(0, offset++, "config:/Demo/" + area.getName(), JsonModelWriter.toJsonString(area));
+            for (int i=0; i<PVS/AREAS; ++i)
+            {
+                final AlarmClientLeaf pv = new AlarmClientLeaf(area, "Sys" + a + ":PV" + i);
+                pv.setDescription("Description of PV " + i + " in area " + a);
+                pv.setGuidance(List.of(new TitleDetail("Call", "Call the expert if this alarm persists")));
+                pv.setDisplays(List.of(new TitleDetail("Panel", "file:/opt/displays/area" + a + ".bob")));
+                pv.setDelay(5);
+                final String path = "/Demo/" + area.getName() + "/" + pv.getName();
+                snapshot.update(0, offset++, "config:" + path, JsonModelWriter.toJsonString(pv));
+                final ClientState state = new ClientState(SeverityLevel.MINOR, "LOW", "3.14", Instant.now(), SeverityLevel.OK, "NO_ALARM");
+                snapshot.update(0, offset++, "state:" + path, new String(JsonModelWriter.toJsonBytes(state, false, false)));
+            }
+        }
+        final File file = File.createTempFile("demo", ".snapshot");
+        snapshot.write(file);
+        System.out.println(snapshot.size() + " records, file size " + file.length() + " bytes");
+
+        long start = System.nanoTime();
+        final AlarmTopicSnapshot loaded = AlarmTopicSnapshot.read(file, "Demo", Duration.ofHours(1));
+        final long read_ms = (System.nanoTime() - start) / 1000000;
+        file.delete();
+
+        start = System.nanoTime();
+        final List<Object> parsed = new ArrayList<>(loaded.size());
+        loaded.forEach((key, value) ->
+        {
+            try
+            {
+                parsed.add(JsonModelReader.parseJsonText(value));
+            }
+            catch (Exception ex)
+            {
+                throw new RuntimeException(ex);
+            }
+        });
+        final long parse_ms = (System.nanoTime() - start) / 1000000;
+
+        // Create tree items and apply config and state, like AlarmClient
+        start = System.nanoTime();
+        final Map<String, AlarmTreeItem<?>> items = new HashMap<>();
+        items.put("/Demo", new AlarmClientNode(null, "Demo"));
+        final int[] index = { 0 };
+        loaded.forEach((key, value) ->
+        {
+            final Object json = parsed.get(index[0]++);
+            final String path = key.substring(key.indexOf(':') + 1);
+            AlarmTreeItem<?> item = items.get(path);
+            if (item == null)
+            {
+                final int sep = path.lastIndexOf('/');
+                final AlarmClientNode parent = (AlarmClientNode) items.get(path.substring(0, sep));
+                final String name = path.substring(sep + 1);
+                item = JsonModelReader.isLeafConfigOrState(json)
+                     ? new AlarmClientLeaf(parent, name)
+                     : new AlarmClientNode(parent, name);
+                items.put(path, item);
+            }
+            if (key.startsWith("config:"))
+                JsonModelReader.updateAlarmItemConfig(item, json);
+            else
+                JsonModelReader.updateAlarmState(item, json);
+        });
+        final long apply_ms = (System.nanoTime() - start) / 1000000;
+
+        System.out.println("Read file: " + read_ms + " ms, parse JSON: " + parse_ms + " ms, apply to tree: " + apply_ms + " ms");
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.phoebus.applications.alarm.client;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+/** JUnit test of {@link AlarmTopicSnapshot} */
+@SuppressWarnings("nls")
+public class AlarmTopicSnapshotTest
+{
+    @Test
+    public void testSnapshot() throws Exception
+    {
+        final AlarmTopicSnapshot snapshot = new AlarmTopicSnapshot("Test");
+        snapshot.update(0, 10, "config:/Test/a", "{ \"description\": \"A\" }");
+        snapshot.update(0, 11, "config:/Test/b", "{ \"description\": \"B\" }");
+        snapshot.update(0, 12, "state:/Test/a", "{ \"severity\": \"MAJOR\" }");
+        // Newer update replaces the older one, moving to the end
+        snapshot.update(0, 13, "config:/Test/a", "{ \"description\": \"Updated\" }");
+        // Deleted item is removed
+        snapshot.update(0, 14, "config:/Test/b", null);
+        assertThat(snapshot.size(), equalTo(2));
+        assertThat(snapshot.isChanged(), equalTo(true));
+
+        final File file = File.createTempFile("alarm", ".snapshot");
+        file.deleteOnExit();
+        snapshot.write(file);
+        assertThat(snapshot.isChanged(), equalTo(false));
+
+        final AlarmTopicSnapshot copy = AlarmTopicSnapshot.read(file, "Test");
+        assertThat(copy.getStartOffset(new TopicPartition("Test", 0)), equalTo(15L));
+        assertThat(copy.getStartOffset(new TopicPartition("Test", 1)), nullValue());
+        assertThat(copy.getStartOffset(new TopicPartition("Other", 0)), nullValue());
+
+        final List<String> records = new ArrayList<>();
+        copy.forEach((key, value) -> records.add(key + " = " + value));
+        assertThat(records, equalTo(List.of("state:/Test/a = { \"severity\": \"MAJOR\" }",
+                                            "config:/Test/a = { \"description\": \"Updated\" }")));
+
+        // Snapshot for other configuration is ignored
+        assertThat(AlarmTopicSnapshot.read(file, "Other").size(), equalTo(0));
+
+        // Snapshot that's too old is ignored
+        Thread.sleep(100);
+        assertThat(AlarmTopicSnapshot.read(file, "Test", Duration.ofMinutes(10)).size(), equalTo(2));
+        assertThat(AlarmTopicSnapshot.read(file, "Test", Duration.ofMillis(50)).size(), equalTo(0));
+    }
+
+    @Test
+    public void testOffsets()
+    {
+        final TopicPartition part = new TopicPartition("Test", 0);
+        final MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updateBeginningOffsets(Map.of(part, 5L));
+        consumer.updateEndOffsets(Map.of(part, 20L));
+
+        final AlarmTopicSnapshot snapshot = new AlarmTopicSnapshot("Test");
+        // Empty snapshot is always fine
+        assertThat(snapshot.checkOffsets(consumer), equalTo(true));
+
+        snapshot.update(0, 10, "config:/Test/a", "{ \"description\": \"A\" }");
+        assertThat(snapshot.checkOffsets(consumer), equalTo(true));
+        assertThat(snapshot.size(), equalTo(1));
+
+        // Topic was compacted beyond the snapshot's offset
+        consumer.updateBeginningOffsets(Map.of(part, 12L));
+        assertThat(snapshot.checkOffsets(consumer), equalTo(false));
+        assertThat(snapshot.size(), equalTo(0));
+        assertThat(snapshot.getStartOffset(part), nullValue());
+
+        // Topic was re-created, now ending before the snapshot's offset
+        snapshot.update(0, 30, "config:/Test/a", "{ \"description\": \"A\" }");
+        assertThat(snapshot.checkOffsets(consumer), equalTo(false));
+        assertThat(snapshot.size(), equalTo(0));
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2020 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -9,11 +9,16 @@ package org.csstudio.trends.databrowser3.archive;
 
 import static org.csstudio.trends.databrowser3.Activator.logger;
 
+import java.io.File;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -23,6 +28,7 @@ import java.util.logging.Level;
 import org.csstudio.trends.databrowser3.Activator;
 import org.csstudio.trends.databrowser3.DataBrowserInstance;
 import org.csstudio.trends.databrowser3.Messages;
+import org.csstudio.trends.databrowser3.imports.ImportArchiveReaderFactory;
 import org.csstudio.trends.databrowser3.model.ArchiveDataSource;
 import org.csstudio.trends.databrowser3.model.PVItem;
 import org.csstudio.trends.databrowser3.model.RequestType;
@@ -30,8 +36,12 @@ import org.csstudio.trends.databrowser3.preferences.Preferences;
 import org.epics.vtype.VType;
 import org.phoebus.archive.reader.ArchiveReader;
 import org.phoebus.archive.reader.ArchiveReaders;
+import org.phoebus.archive.reader.PriorityMergingValueIterator;
 import org.phoebus.archive.reader.UnknownChannelException;
 import org.phoebus.archive.reader.ValueIterator;
+import org.phoebus.archive.reader.cache.CachingArchiveReader;
+import org.phoebus.archive.reader.cache.SampleCache;
+import org.phoebus.core.vtypes.VTypeHelper;
 import org.phoebus.framework.jobs.Job;
 import org.phoebus.framework.jobs.JobManager;
 import org.phoebus.framework.jobs.JobMonitor;
@@ -52,6 +62,22 @@ public class ArchiveFetchJob implements JobRunnable
     /** Poll period in millisecs */
     private static final int POLL_PERIOD_MS = 1000;
 
+    /** Number of samples that a SourceReader passes to the WorkerThread at once */
+    private static final int CHUNK_SIZE = 1000;
+
+    /** Number of chunks that a SourceReader may read ahead */
+    private static final int QUEUE_CHUNKS = 16;
+
+    /** Number of merged samples after which the WorkerThread updates the item */
+    private static final int UPDATE_SAMPLES = 50000;
+
+    /** Marker for the end of samples from a SourceReader */
+    private static final List<VType> END = new ArrayList<>(0);
+
+    /** Cache for archived samples, <code>null</code> if disabled */
+    private static SampleCache cache = null;
+    private static boolean cache_initialized = false;
+
     /** Limit the number of concurrently running jobs */
     private static final Semaphore concurrent_requests = new Semaphore(Preferences.concurrent_requests, true);
 
@@ -66,6 +92,171 @@ public class ArchiveFetchJob implements JobRunnable
 
     private Job job;
 
+    /** Reads samples from one archive data source.
+     *
+     *  <p>Runs on the thread pool, passing samples in chunks
+     *  to the WorkerThread, which in turn reads them as a ValueIterator.
+     */
+    private class SourceReader implements Runnable, ValueIterator
+    {
+        private final WorkerThread worker;
+
+        final ArchiveDataSource archive;
+
+        /** Chunks of samples read, ending in <code>END</code> */
+        private final BlockingQueue<List<VType>> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+
+        /** Archive reader that's currently queried */
+        private final AtomicReference<ArchiveReader> reader = new AtomicReference<>();
+
+        /** Set when the channel is not known to the archive */
+        volatile boolean not_found = false;
+
+        /** Set when the reader has read all samples, or failed */
+        volatile boolean done = false;
+
+        /** Set when WorkerThread no longer reads samples */
+        private volatile boolean closed = false;
+
+        /** Chunk that WorkerThread currently reads */
+        private List<VType> current = Collections.emptyList();
+        private int position = 0;
+
+        SourceReader(final WorkerThread worker, final ArchiveDataSource archive)
+        {
+            this.worker = worker;
+            this.archive = archive;
+        }
+
+        private boolean isStopped()
+        {
+            return closed  ||  worker.cancelled;
+        }
+
+        /** Request reader to cancel its operation */
+        void cancel()
+        {
+            final ArchiveReader the_reader = reader.get();
+            if (the_reader != null)
+                the_reader.cancel();
+        }
+
+        /** @param chunk Chunk to pass to WorkerThread
+         *  @return <code>false</code> if stopped
+         *  @throws InterruptedException on interruption
+         */
+        private boolean put(final List<VType> chunk) throws InterruptedException
+        {
+            while (! queue.offer(chunk, POLL_PERIOD_MS, TimeUnit.MILLISECONDS))
+                if (isStopped())
+                    return false;
+            return true;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            (
+                final ArchiveReader the_reader = createReader(archive.getUrl());
+            )
+            {
+                reader.set(the_reader);
+                try
+                (
+                    final ValueIterator value_iter = (item.getRequestType() == RequestType.RAW)
+                                        ? the_reader.getRawValues(item.getResolvedName(), start, end)
+                                        : the_reader.getOptimizedValues(item.getResolvedName(), start, end, worker.bins)
+                )
+                {
+                    List<VType> chunk = new ArrayList<>(CHUNK_SIZE);
+                    while (! isStopped()  &&  value_iter.hasNext())
+                    {
+                        chunk.add(value_iter.next());
+                        if (chunk.size() >= CHUNK_SIZE)
+                        {
+                            if (! put(chunk))
+                                break;
+                            chunk = new ArrayList<>(CHUNK_SIZE);
+                        }
+                    }
+                    if (! isStopped()  &&  chunk.size() > 0)
+                        put(chunk);
+                    // Report error that ended the samples early
+                    final Exception error = value_iter.getError();
+                    if (error != null)
+                        throw error;
+                }
+                catch (UnknownChannelException e)
+                {
+                    // Do not immediately notify about unknown channels. First search for the data in all archive
+                    // sources and only report this kind of errors at the end
+                    not_found = true;
+                }
+                finally
+                {
+                    reader.set(null);
+                }
+            }
+            catch (Exception ex)
+            {   // Tell listener unless it's the result of a 'cancel'?
+                if (! isStopped())
+                    listener.archiveFetchFailed(ArchiveFetchJob.this, archive, ex);
+                // Other data sources continue
+            }
+            finally
+            {
+                done = true;
+                try
+                {
+                    put(END);
+                }
+                catch (InterruptedException ex)
+                {
+                    // Ignore, WorkerThread stops on its own when cancelled
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (position >= current.size())
+            {
+                if (current == END)
+                    return false;
+                try
+                {
+                    List<VType> chunk = null;
+                    while (chunk == null  &&  ! isStopped())
+                        chunk = queue.poll(POLL_PERIOD_MS, TimeUnit.MILLISECONDS);
+                    current = chunk == null ? END : chunk;
+                }
+                catch (InterruptedException ex)
+                {
+                    current = END;
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public VType next()
+        {
+            if (! hasNext())
+                throw new NoSuchElementException();
+            return current.get(position++);
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+            queue.clear();
+        }
+    }
+
     /** Thread that performs the actual background work.
      *
      *  Instead of directly accessing the archive, ArchiveFetchJob launches
@@ -73,29 +264,47 @@ public class ArchiveFetchJob implements JobRunnable
      *  can then poll the progress monitor for cancellation and if
      *  necessary interrupt the WorkerThread which might be 'stuck'
      *  in a long running operation.
+     *
+     *  <p>The WorkerThread queries all archive data sources concurrently,
+     *  merges their samples by time stamp, and adds them to the item
+     *  in chunks as they arrive.
+     *  Like adding the samples of one data source after the other,
+     *  a later data source replaces the samples of earlier ones
+     *  within its time range.
+     *  The total time is thus determined by the slowest data source,
+     *  not the sum of all data sources.
      */
     class WorkerThread implements Runnable
     {
-        private volatile String message = "Queued";
         private volatile boolean cancelled = false;
 
-        /** Archive reader that's currently queried */
-        private AtomicReference<ArchiveReader> reader = new AtomicReference<>();
+        /** Number of bins for optimized requests */
+        private volatile int bins;
+
+        /** Readers for the archive data sources */
+        private volatile List<SourceReader> sources = Collections.emptyList();
 
         /** @return Message that somehow indicates progress */
         public String getMessage()
         {
-            return message;
+            final List<SourceReader> all = sources;
+            if (all.isEmpty())
+                return "Queued";
+            // Display the archives that are still being read, "N/total"
+            final List<String> pending = new ArrayList<>();
+            for (SourceReader source : all)
+                if (! source.done)
+                    pending.add(source.archive.getName());
+            return MessageFormat.format(Messages.ArchiveFetchDetailFmt,
+                                        String.join(", ", pending), pending.size(), all.size());
         }
 
         /** Request thread to cancel its operation */
         public void cancel()
         {
             cancelled = true;
-
-            final ArchiveReader the_reader = reader.get();
-            if (the_reader != null)
-                the_reader.cancel();
+            for (SourceReader source : sources)
+                source.cancel();
         }
 
         /** {@inheritDoc} */
@@ -107,7 +316,7 @@ public class ArchiveFetchJob implements JobRunnable
             long samples = 0;
 
             // Number of bins. Negative values are scaling factor for display width
-            int bins = Preferences.plot_bins;
+            bins = Preferences.plot_bins;
             if (bins < 0)
                 bins = DataBrowserInstance.display_pixel_width * (-bins);
             // Bins could be 0 when display_pixel_width has not been initialed
@@ -116,54 +325,59 @@ public class ArchiveFetchJob implements JobRunnable
                 bins = 800;
 
             final Collection<ArchiveDataSource> archives = item.getArchiveDataSources();
-            final List<ArchiveDataSource> archives_without_channel = new ArrayList<>();
-            int i = 0;
+            final List<SourceReader> readers = new ArrayList<>(archives.size());
             for (ArchiveDataSource archive : archives)
+                readers.add(new SourceReader(this, archive));
+            sources = readers;
+            if (cancelled)
+                return;
+            for (SourceReader source : readers)
+                Activator.thread_pool.submit(source);
+
+            try
+            (
+                final PriorityMergingValueIterator merged = new PriorityMergingValueIterator(readers.toArray(new ValueIterator[readers.size()]))
+            )
             {
-                if (cancelled)
-                    break;
-                final String url = archive.getUrl();
-                // Display "N/total", using '1' for the first sub-archive.
-                message = MessageFormat.format(Messages.ArchiveFetchDetailFmt,
-                                               archive.getName(), ++i, archives.size());
-                try
-                (
-                    final ArchiveReader the_reader = ArchiveReaders.createReader(url);
-                )
+                // Add merged samples to item in chunks
+                final List<VType> chunk = new ArrayList<>();
+                final List<String> names = new ArrayList<>();
+                // Each chunk replaces existing samples from the end of the
+                // previous chunk, or the start of the request, to its last sample
+                Instant covered = start;
+                Instant last = null;
+                long last_update = System.currentTimeMillis();
+                while (! cancelled  &&  merged.hasNext())
                 {
-                    reader.set(the_reader);
-                    try
-                    (
-                        final ValueIterator value_iter = (item.getRequestType() == RequestType.RAW)
-                                            ? the_reader.getRawValues(item.getResolvedName(), start, end)
-                                            : the_reader.getOptimizedValues(item.getResolvedName(), start, end, bins)
-                    )
-                    {
-                        // Get samples into array
-                        final List<VType> result = new ArrayList<>();
-                        while (value_iter.hasNext())
-                            result.add(value_iter.next());
-                        samples += result.size();
-                        item.mergeArchivedSamples(archive.getName(), result);
-                    }
-                    catch (UnknownChannelException e)
-                    {
-                        // Do not immediately notify about unknown channels. First search for the data in all archive
-                        // sources and only report this kind of errors at the end
-                        archives_without_channel.add(archive);
-                    }
-                    finally
+                    final VType value = merged.next();
+                    final Instant time = VTypeHelper.getTimestamp(value);
+                    // Only break chunks between distinct time stamps,
+                    // since the next chunk replaces samples at or after its start
+                    if (last != null  &&  time.isAfter(last)  &&
+                        (chunk.size() >= UPDATE_SAMPLES  ||
+                         System.currentTimeMillis() - last_update >= POLL_PERIOD_MS))
                     {
-                        reader.set(null);
+                        samples += chunk.size();
+                        item.mergeArchivedSamples(names, chunk, covered, last);
+                        covered = last.plusNanos(1);
+                        chunk.clear();
+                        names.clear();
+                        last_update = System.currentTimeMillis();
                     }
+                    chunk.add(value);
+                    names.add(readers.get(merged.getIndex()).archive.getName());
+                    last = time;
                 }
-                catch (Exception ex)
-                {   // Tell listener unless it's the result of a 'cancel'?
-                    if (! cancelled)
-                        listener.archiveFetchFailed(ArchiveFetchJob.this, archive, ex);
-                    // Continue with the next data source
+                if (! cancelled  &&  chunk.size() > 0)
+                {
+                    samples += chunk.size();
+                    item.mergeArchivedSamples(names, chunk, covered, last);
                 }
             }
+            catch (Exception ex)
+            {
+                logger.log(Level.WARNING, "Cannot merge archived data for " + ArchiveFetchJob.this, ex);
+            }
             final long end_time = System.currentTimeMillis();
             logger.log(Level.FINE,
                     "Ended {0} with {1} samples in {2} secs",
@@ -172,6 +386,10 @@ public class ArchiveFetchJob implements JobRunnable
             if (cancelled)
                 return;
 
+            final List<ArchiveDataSource> archives_without_channel = new ArrayList<>();
+            for (SourceReader source : readers)
+                if (source.not_found)
+                    archives_without_channel.add(source.archive);
             if (archives_without_channel.size() > 0)
                 listener.channelNotFound(ArchiveFetchJob.this,
                         archives_without_channel.size() < archives.size(),
@@ -187,6 +405,41 @@ public class ArchiveFetchJob implements JobRunnable
         }
     }
 
+    /** @return Cache for archived samples, <code>null</code> if disabled */
+    private static synchronized SampleCache getCache()
+    {
+        if (! cache_initialized)
+        {
+            cache_initialized = true;
+            if (! Preferences.cache_directory.isEmpty())
+            {
+                try
+                {
+                    cache = new SampleCache(new File(Preferences.cache_directory), Preferences.cache_size_mb * 1024L * 1024L);
+                }
+                catch (Exception ex)
+                {
+                    logger.log(Level.WARNING, "Cannot use archive sample cache " + Preferences.cache_directory, ex);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /** @param url Archive data source URL
+     *  @return Reader for the data source, using the sample cache if enabled
+     *  @throws Exception on error
+     */
+    private static ArchiveReader createReader(final String url) throws Exception
+    {
+        final ArchiveReader reader = ArchiveReaders.createReader(url);
+        // Imported data is already held in memory
+        final SampleCache sample_cache = getCache();
+        if (sample_cache == null  ||  url.startsWith(ImportArchiveReaderFactory.PREFIX))
+            return reader;
+        return new CachingArchiveReader(reader, url, sample_cache);
+    }
+
     /** Schedule a new job.
      *
      *  @param item the item for which the data are fetched
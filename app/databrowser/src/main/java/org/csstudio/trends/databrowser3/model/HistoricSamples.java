@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -8,6 +8,7 @@
 package org.csstudio.trends.databrowser3.model;
 
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,25 +40,34 @@ public class HistoricSamples extends PlotSamples
         @Override
         public int size()
         {
-            return samples.length;
+            return samples.size();
         }
 
         @Override
         public PlotSample get(int index)
         {
-            return samples[index];
+            return samples.get(index);
+        }
+
+        @Override
+        public Instant getPosition(final int index)
+        {
+            return samples.getPosition(index);
         }
     };
 
     // No locking in here, all access is via PVSamples
 
+    /** Alarms, displays and sources of the historic samples */
+    private PlotSampleTable.Dictionary dictionary = new PlotSampleTable.Dictionary();
+
     /** "All" historic samples */
-    private PlotSample samples[] = new PlotSample[0];
+    private PlotSampleTable samples;
 
     /** If set, samples beyond this time are hidden from access */
     private Optional<Instant> border_time = Optional.empty();
 
-    /** Subset of samples.length that's below border_time
+    /** Subset of samples.size() that's below border_time
      *  @see #computeVisibleSize()
      */
     private int visible_size = 0;
@@ -70,6 +80,7 @@ public class HistoricSamples extends PlotSamples
     HistoricSamples(final AtomicInteger waveform_index)
     {
         this.waveform_index = waveform_index;
+        samples = new PlotSampleTable(waveform_index, dictionary, 0);
     }
 
     /** Define a new 'border' time beyond which no samples
@@ -94,17 +105,61 @@ public class HistoricSamples extends PlotSamples
             visible_size = (last_index < 0)   ?   0   :   last_index + 1;
         }
         else
-            visible_size = samples.length;
+            visible_size = samples.size();
     }
 
-    /** {@inheritDoc} */
+    /** @param i Sample index
+     *  @return Sample index
+     *  @throws IndexOutOfBoundsException if sample is not visible
+     */
     @SuppressWarnings("nls")
-    @Override
-    public PlotSample get(final int i)
+    private int checkVisible(final int i)
     {
         if (i >= visible_size)
             throw new IndexOutOfBoundsException("Index " + i + " exceeds visible size " + visible_size);
-        return samples[i];
+        return i;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PlotSample get(final int i)
+    {
+        return samples.get(checkVisible(i));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Instant getPosition(final int i)
+    {
+        return samples.getPosition(checkVisible(i));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getValue(final int i)
+    {
+        return samples.getValue(checkVisible(i));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getStdDev(final int i)
+    {
+        return samples.getStdDev(checkVisible(i));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getMin(final int i)
+    {
+        return samples.getMin(checkVisible(i));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getMax(final int i)
+    {
+        return samples.getMax(checkVisible(i));
     }
 
     /** {@inheritDoc} */
@@ -114,11 +169,18 @@ public class HistoricSamples extends PlotSamples
         return visible_size;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public boolean isOrdered()
+    {
+        return samples.isOrdered();
+    }
+
     /**
      * @return the number of samples, ignoring the border time
      */
     public int getRawSize() {
-        return samples.length;
+        return samples.size();
     }
 
     /**
@@ -128,7 +190,7 @@ public class HistoricSamples extends PlotSamples
      * @return the plot sample
      */
     public PlotSample getRawSample(int i) {
-        return samples[i];
+        return samples.get(i);
     }
 
     /** Merge newly received archive data into historic samples
@@ -136,16 +198,28 @@ public class HistoricSamples extends PlotSamples
      *  @param result Samples to add/merge
      */
     public void mergeArchivedData(final String source, final List<VType> result)
+    {
+        mergeArchivedData(Collections.nCopies(result.size(), source), result, null, null);
+    }
+
+    /** Merge newly received archive data into historic samples
+     *  @param sources Info about data source of each sample
+     *  @param result Samples to add/merge
+     *  @param from Start of time range covered by the result, <code>null</code> for time of first sample
+     *  @param to End of time range covered by the result, <code>null</code> for time of last sample
+     */
+    public void mergeArchivedData(final List<String> sources, final List<VType> result,
+                                  final Instant from, final Instant to)
     {
         // Anything new at all?
         if (result.size() <= 0)
             return;
-        // Turn IValues into PlotSamples
-        final PlotSample new_samples[] = new PlotSample[result.size()];
-        for (int i=0; i<new_samples.length; ++i)
-            new_samples[i] = new PlotSample(waveform_index, source, result.get(i));
+        // Turn IValues into table of PlotSamples
+        final PlotSampleTable new_samples = new PlotSampleTable(waveform_index, dictionary, result.size());
+        for (int i=0; i<result.size(); ++i)
+            new_samples.add(sources.get(i), result.get(i));
         // Merge with existing samples
-        final PlotSample merged[] = PlotSampleMerger.merge(samples, new_samples);
+        final PlotSampleTable merged = PlotSampleMerger.merge(samples, new_samples, from, to);
         if (merged == samples)
             return;
         samples = merged;
@@ -157,6 +231,7 @@ public class HistoricSamples extends PlotSamples
     public void clear()
     {
         visible_size = 0;
-        samples = new PlotSample[0];
+        dictionary = new PlotSampleTable.Dictionary();
+        samples = new PlotSampleTable(waveform_index, dictionary, 0);
     }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2020 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -7,14 +7,15 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser3.model;
 
+import java.time.Instant;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.csstudio.trends.databrowser3.preferences.Preferences;
-import org.phoebus.framework.util.RingBuffer;
 
 /** Ring buffer for 'live' samples.
  *  <p>
- *  New samples are always added to the end of a ring buffer.
+ *  New samples are always added to the end of a ring buffer,
+ *  a {@link PlotSampleTable}.
  *
  *  @author Kay Kasemir
  *  @author Takashi Nakamoto changed LiveSamples to handle waveform index.
@@ -23,8 +24,7 @@ public class LiveSamples extends PlotSamples
 {
     // No locking in here, all access is via PVSamples
 
-    private RingBuffer<PlotSample> samples =
-        new RingBuffer<PlotSample>(Preferences.live_buffer_size);
+    private PlotSampleTable samples;
 
     /** Waveform index */
     final private AtomicInteger waveform_index;
@@ -32,6 +32,7 @@ public class LiveSamples extends PlotSamples
     LiveSamples(final AtomicInteger waveform_index)
     {
         this.waveform_index = waveform_index;
+        samples = new PlotSampleTable(waveform_index, new PlotSampleTable.Dictionary(), Preferences.live_buffer_size);
     }
 
     /** @return Maximum number of samples in ring buffer */
@@ -50,13 +51,12 @@ public class LiveSamples extends PlotSamples
     {
         if (new_capacity < 10)
             new_capacity = 10;
-        samples.setCapacity(new_capacity);
+        samples = samples.resize(new_capacity);
     }
 
     /** @param sample Sample to add to ring buffer */
     void add(final PlotSample sample)
     {
-        sample.setWaveformIndex(waveform_index);
         samples.add(sample);
         have_new_samples.set(true);
     }
@@ -73,10 +73,47 @@ public class LiveSamples extends PlotSamples
         return samples.get(i);
     }
 
+    @Override
+    public Instant getPosition(final int i)
+    {
+        return samples.getPosition(i);
+    }
+
+    @Override
+    public double getValue(final int i)
+    {
+        return samples.getValue(i);
+    }
+
+    @Override
+    public double getStdDev(final int i)
+    {
+        return samples.getStdDev(i);
+    }
+
+    @Override
+    public double getMin(final int i)
+    {
+        return samples.getMin(i);
+    }
+
+    @Override
+    public double getMax(final int i)
+    {
+        return samples.getMax(i);
+    }
+
+    @Override
+    public boolean isOrdered()
+    {
+        return samples.isOrdered();
+    }
+
     /** Delete all samples */
     public void clear()
     {
-        samples.clear();
+        // Start over with empty dictionary
+        samples = new PlotSampleTable(waveform_index, new PlotSampleTable.Dictionary(), samples.getCapacity());
         have_new_samples.set(true);
     }
 }
@@ -9,8 +9,10 @@ package org.csstudio.trends.databrowser3.model;
 
 import static org.csstudio.trends.databrowser3.Activator.logger;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -429,13 +431,28 @@ public class PVItem extends ModelItem
      */
     public void mergeArchivedSamples(final String server_name,
             final List<VType> new_samples)
+    {
+        mergeArchivedSamples(Collections.nCopies(new_samples.size(), server_name), new_samples, null, null);
+    }
+
+    /** Add data retrieved from several archives to the 'historic' section
+     *
+     *  <p>Existing historic samples within the covered time range are replaced.
+     *
+     *  @param server_names Archive server that provided each sample
+     *  @param new_samples Historic data, in time order
+     *  @param from Start of time range covered by the data, <code>null</code> for time of first sample
+     *  @param to End of time range covered by the data, <code>null</code> for time of last sample
+     */
+    public void mergeArchivedSamples(final List<String> server_names,
+            final List<VType> new_samples, final Instant from, final Instant to)
     {
         final boolean need_refresh;
         if (! samples.lockForWriting())
             return;
         try
         {
-            samples.mergeArchivedData(server_name, new_samples);
+            samples.mergeArchivedData(server_names, new_samples, from, to);
             need_refresh = automaticRefresh && model.isPresent() &&
                     samples.isHistoryRefreshNeeded(model.get().getTimerange());
         }
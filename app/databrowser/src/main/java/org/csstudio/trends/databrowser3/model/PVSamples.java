@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@ package org.csstudio.trends.databrowser3.model;
 import static org.csstudio.trends.databrowser3.Activator.logger;
 
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -91,7 +92,7 @@ public class PVSamples extends PlotSamples
         if (raw <= 0)
             return raw;
         final PlotSample last = get(raw-1);
-        if (org.phoebus.core.vtypes.VTypeHelper.getSeverity(last.getVType()) == AlarmSeverity.UNDEFINED)
+        if (last.getSeverity() == AlarmSeverity.UNDEFINED)
             return raw;
         // Last sample is valid, so it should still apply 'now'
         return raw+1;
@@ -126,6 +127,69 @@ public class PVSamples extends PlotSamples
             return new PlotSample(sample.getSource(), VTypeHelper.transformTimestampToNow(sample.getVType()));
     }
 
+    /** @param index 0... getSize()-1
+     *  @return Position of sample, see {@link #get(int)}
+     */
+    @Override
+    public Instant getPosition(final int index)
+    {
+        final int raw_count = getRawSize();
+        if (index < raw_count)
+            return getRawPosition(index);
+        // Last sample is valid, so it should still apply 'now'
+        final Instant last = getRawPosition(raw_count-1);
+        final Instant now = Instant.now();
+        return now.compareTo(last) < 0 ? last : now;
+    }
+
+    // Value etc. of the continuation to 'now' are those of the last sample
+
+    /** {@inheritDoc} */
+    @Override
+    public double getValue(final int index)
+    {
+        final int raw = Math.min(index, getRawSize()-1);
+        final int num_old = history.size();
+        return raw < num_old ? history.getValue(raw) : live.getValue(raw - num_old);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getStdDev(final int index)
+    {
+        final int raw = Math.min(index, getRawSize()-1);
+        final int num_old = history.size();
+        return raw < num_old ? history.getStdDev(raw) : live.getStdDev(raw - num_old);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getMin(final int index)
+    {
+        final int raw = Math.min(index, getRawSize()-1);
+        final int num_old = history.size();
+        return raw < num_old ? history.getMin(raw) : live.getMin(raw - num_old);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getMax(final int index)
+    {
+        final int raw = Math.min(index, getRawSize()-1);
+        final int num_old = history.size();
+        return raw < num_old ? history.getMax(raw) : live.getMax(raw - num_old);
+    }
+
+    /** @return <code>true</code> if historic and live samples are in time order.
+     *          Historic samples end before the first live sample,
+     *          and the continuation to 'now' follows the last sample.
+     */
+    @Override
+    public boolean isOrdered()
+    {
+        return history.isOrdered()  &&  live.isOrdered();
+    }
+
     /** Get 'raw' sample, no continuation until 'now'
      *  @param index 0... getRawSize()-1
      *  @return Sample from historic or live sample subsection
@@ -138,6 +202,17 @@ public class PVSamples extends PlotSamples
         return live.get(index - num_old);
     }
 
+    /** @param index 0... getRawSize()-1
+     *  @return Position of sample from historic or live sample subsection
+     */
+    private Instant getRawPosition(final int index)
+    {
+        final int num_old = history.size();
+        if (index < num_old)
+            return history.getPosition(index);
+        return live.getPosition(index - num_old);
+    }
+
     /** Test if samples changed since the last time
      *  <code>testAndClearNewSamplesFlag</code> was called.
      *  @return <code>true</code> if there were new samples
@@ -168,6 +243,18 @@ public class PVSamples extends PlotSamples
      */
     public void mergeArchivedData(final String source,
             final List<VType> result)
+    {
+        mergeArchivedData(Collections.nCopies(result.size(), source), result, null, null);
+    }
+
+    /** Add data retrieved from several archives to the 'historic' section
+     *  @param sources Source of each sample
+     *  @param result Historic data
+     *  @param from Start of time range covered by the data, <code>null</code> for time of first sample
+     *  @param to End of time range covered by the data, <code>null</code> for time of last sample
+     */
+    public void mergeArchivedData(final List<String> sources,
+            final List<VType> result, final Instant from, final Instant to)
     {
         if (! lockForWriting())
             return;
@@ -178,7 +265,7 @@ public class PVSamples extends PlotSamples
                 emptyHistoryOnAdd = false;
                 history.clear();
             }
-            history.mergeArchivedData(source, result);
+            history.mergeArchivedData(sources, result, from, to);
         }
         finally
         {
@@ -207,7 +294,7 @@ public class PVSamples extends PlotSamples
         {
             // Skip the initial UNDEFINED/Disconnected sample sent by PVManager
             if (live.size() == 0  &&
-                org.phoebus.core.vtypes.VTypeHelper.getSeverity(sample.getVType()) == AlarmSeverity.UNDEFINED)
+                sample.getSeverity() == AlarmSeverity.UNDEFINED)
                 return;
             live.add(sample);
             // History ends before the start of 'live' samples.
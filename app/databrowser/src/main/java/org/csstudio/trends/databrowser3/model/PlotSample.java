@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -39,10 +39,10 @@ public class PlotSample implements PlotDataItem<Instant>
     /** Source of the data */
     final private String source;
 
-    /** Info string.
+    /** Info string, <code>null</code> to use alarm info.
      *  @see #getInfo()
      */
-    private String info;
+    final private String info;
 
     /** Waveform index */
     private AtomicInteger waveform_index;
@@ -58,20 +58,23 @@ public class PlotSample implements PlotDataItem<Instant>
         this.waveform_index = waveform_index;
         this.value = value;
         this.source = source;
-        if (info == null)
-        {
-            this.info = decodeAlarm(value);
-            // For string PV add the text to info
-            if (value instanceof VString)
-                this.info = ((VString) value).getValue() + (" " + this.info).trim();
-        }
-        else
-            this.info = info;
+        this.info = info;
     }
 
-    private static String decodeAlarm(VType value)
+    /** Initialize for derived class that provides the value
+     *  @param waveform_index Waveform index
+     *  @param source Info about the source of this sample
+     */
+    PlotSample(final AtomicInteger waveform_index, final  String source)
+    {
+        this(waveform_index, source, null, null);
+    }
+
+    /** @param alarm Alarm, may be <code>null</code>
+     *  @return Info text for alarm
+     */
+    static String decodeAlarm(final Alarm alarm)
     {
-        final Alarm alarm = Alarm.alarmOf(value);
         if (alarm != null)
         {
             if (alarm.getSeverity() == AlarmSeverity.NONE)
@@ -135,6 +138,18 @@ public class PlotSample implements PlotDataItem<Instant>
         return value;
     }
 
+    /** @return Alarm severity of the value */
+    public AlarmSeverity getSeverity()
+    {
+        return org.phoebus.core.vtypes.VTypeHelper.getSeverity(value);
+    }
+
+    /** @return <code>true</code> if info is the alarm info of the value */
+    boolean hasDefaultInfo()
+    {
+        return info == null;
+    }
+
     /** @return Control system time stamp */
     private Instant getTime()
     {
@@ -206,12 +221,18 @@ public class PlotSample implements PlotDataItem<Instant>
     @Override
     public String getInfo()
     {
-        return info;
+        if (info != null)
+            return info;
+        final String alarm = decodeAlarm(Alarm.alarmOf(value));
+        // For string PV add the text to info
+        if (value instanceof VString)
+            return ((VString) value).getValue() + (" " + alarm).trim();
+        return alarm;
     }
 
     @Override
     public String toString()
     {
-        return VTypeHelper.toString(value);
+        return VTypeHelper.toString(getVType());
     }
 }
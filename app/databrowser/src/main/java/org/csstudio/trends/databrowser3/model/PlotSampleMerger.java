@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,6 +23,68 @@ public class PlotSampleMerger
 {
     final private static TimeDataSearch searcher = new TimeDataSearch();
 
+    /** Searchable access to table */
+    private static class TableAccess extends PlotSamples
+    {
+        private final PlotSampleTable samples;
+
+        TableAccess(final PlotSampleTable samples)
+        {
+            this.samples = samples;
+        }
+
+        @Override
+        public int size()
+        {
+            return samples.size();
+        }
+
+        @Override
+        public PlotSample get(final int index)
+        {
+            return samples.get(index);
+        }
+
+        @Override
+        public Instant getPosition(final int index)
+        {
+            return samples.getPosition(index);
+        }
+    }
+
+    /** Determine which existing samples remain around new data
+     *  @param old Existing samples, must already be locked, not empty
+     *  @param add_start Start of the time range covered by the new data
+     *  @param add_end End of the time range covered by the new data
+     *  @return <code>{ Nl, r }</code>: Keep <code>old[0 .. Nl-1]</code> before the new data
+     *          and <code>old[r ...]</code> after the new data
+     */
+    private static int[] findOldSections(final PlotSamples old, final Instant add_start, final Instant add_end)
+    {
+        final int No = old.size();
+        final Instant old_start = old.getPosition(0);
+        // Assume old samples are this:        +=============+
+        // All new samples are before: +--...+
+        if (add_end.compareTo(old_start) < 0)
+            return new int[] { 0, 0 };
+        //                               +=x===========+
+        // before, maybe overlap    +---..................+
+        if (add_start.compareTo(old_start) <= 0)
+        {
+            // Result starts with 'new' samples. Then, how many 'old' samples?
+            // Determine the first sample to use from the 'old'
+            final int x = searcher.findSampleGreaterThan(old, add_end);
+            return new int[] { 0, (x < 0) ? No : x };
+        }
+        // New samples start             +===l=====r===+
+        // within old time sample range      +-----+
+        // or                                +---............--+
+        // Determine the left/right indices of the section within 'old'.
+        final int l = searcher.findSampleLessThan(old, add_start);
+        final int r = searcher.findSampleGreaterThan(old, add_end);
+        return new int[] { (l < 0) ? 0 : l + 1, (r < 0) ? No : r };
+    }
+
     /** Add newly received samples to existing array of samples.
      *  @param old Existing data
      *  @param add Newly received data
@@ -37,76 +99,88 @@ public class PlotSampleMerger
             return old;
         final int No = old.length;
         final int Na = add.length;
-        // Both lists have at least one sample.
-        // Determine start/end times.
-        Instant old_start = old[0].getPosition();
-        // ITimestamp old_end = old[No-1].getTime();
-        Instant add_start = add[0].getPosition();
-        Instant add_end = add[Na-1].getPosition();
 
         final PlotSampleArray searchable_array = new PlotSampleArray();
         // Not accessed from other threads, but lock to allow lock checks
         searchable_array.lockForWriting();
+        searchable_array.set(Arrays.asList(old));
+        final int[] sections = findOldSections(searchable_array, add[0].getPosition(), add[Na-1].getPosition());
+        final int Nl = sections[0];
+        final int r = sections[1];
+        final int Nr = No - r;
+        if (Nl <= 0  &&  Nr <= 0)
+            return add;
 
-        //        System.out.print("Have samples " + old_start.toString());
-        //        System.out.print(" to " + old_end.toString());
-        //        System.out.println(" (" + old.length + ")");
-        //        System.out.print("New Samples  " + add_start.toString());
-        //        System.out.print(" to " + add_end.toString());
-        //        System.out.println(" (" + add.length + ")");
+        final PlotSample result[] = new PlotSample[Nl + Na + Nr];
+        // Nl old samples
+        if (Nl > 0)
+            System.arraycopy(old, 0, result, 0, Nl);
+        // add new samples
+        System.arraycopy(add, 0, result, Nl, Na);
+        // old[r ... N-1]
+        if (Nr > 0)
+            System.arraycopy(old, r, result, Nl+Na, Nr);
+        return result;
+    }
 
-        // Assume old samples are this:        +=============+
-        // All new samples are before: +--...+
-        if (add_end.compareTo(old_start) < 0)
-        {
-            final PlotSample result[] = new PlotSample[Na + No];
-            System.arraycopy(add, 0, result, 0, Na);
-            System.arraycopy(old, 0, result, Na, No);
-            return result;
-        }
-        //                               +=x===========+
-        // before, maybe overlap    +---..................+
-        if (add_start.compareTo(old_start) <= 0)
-        {
-            // Result starts with 'new' samples. Then, how many 'old' samples?
-            // Determine the first sample to use from the 'old'
-            searchable_array.set(Arrays.asList(old));
-            int x = searcher.findSampleGreaterThan(searchable_array, add_end);
-            if (x < 0)
-            {   // Old samples contain nothing beyond end of new samples
-                return add;
-            }
-            final int copy_old = No - x;
-            final PlotSample result[] = new PlotSample[Na + copy_old];
-            // add new samples
-            System.arraycopy(add, 0, result, 0, Na);
-            // add old[x, ...]);
-            System.arraycopy(old, x, result, Na, copy_old);
-            return result;
-        }
-        // New samples start             +===l=====r===+
-        // within old time sample range      +-----+
-        // or                                +---............--+
-        if (add_start.compareTo(old_start) >= 0)
-        {
-            // Determine the left/right indices of the section within 'old'.
-            searchable_array.set(Arrays.asList(old));
-            final int l = searcher.findSampleLessThan(searchable_array, add_start);
-            final int r = searcher.findSampleGreaterThan(searchable_array, add_end);
-            final int Nl = (l < 0) ? 0 : l + 1;
-            final int Nr = (r < 0) ? 0 : No-r;
-            final PlotSample result[] = new PlotSample[Nl + Na + Nr];
-            // Nl old samples
-            if (Nl > 0)
-                System.arraycopy(old, 0, result, 0, Nl);
-            // add new samples
-            System.arraycopy(add, 0, result, Nl, Na);
-            // old[r ... N-1]
-            if (Nr > 0)
-                System.arraycopy(old, r, result, Nl+Na, Nr);
-            return result;
-        }
+    /** Add newly received samples to existing table of samples.
+     *  @param old Existing data
+     *  @param add Newly received data, sharing the dictionary of the existing data
+     *  @return Table that combines new and old data
+     */
+    static PlotSampleTable merge(final PlotSampleTable old, final PlotSampleTable add)
+    {
+        return merge(old, add, null, null);
+    }
+
+    /** Add newly received samples to existing table of samples.
+     *
+     *  <p>Existing samples within the time range covered by the new data
+     *  are replaced, even where that range extends beyond the new samples.
+     *  When data for one request arrives in several parts,
+     *  each part can thus replace existing samples in the gap
+     *  between the previous part and itself.
+     *
+     *  @param old Existing data
+     *  @param add Newly received data, sharing the dictionary of the existing data
+     *  @param from Start of the time range covered by the new data, <code>null</code> for time of first new sample
+     *  @param to End of the time range covered by the new data, <code>null</code> for time of last new sample
+     *  @return Table that combines new and old data
+     */
+    static PlotSampleTable merge(final PlotSampleTable old, final PlotSampleTable add,
+                                 final Instant from, final Instant to)
+    {
+        // If one is empty, return the other as is:
+        if (old == null  ||  old.size() <= 0)
+            return add;
+        if (add == null  ||  add.size() <= 0)
+            return old;
+        final int No = old.size();
+        final int Na = add.size();
+        // Covered range includes at least all new samples
+        Instant add_start = add.getPosition(0);
+        Instant add_end = add.getPosition(Na-1);
+        if (from != null  &&  from.isBefore(add_start))
+            add_start = from;
+        if (to != null  &&  to.isAfter(add_end))
+            add_end = to;
+
+        final int[] sections = findOldSections(new TableAccess(old), add_start, add_end);
+        final int Nl = sections[0];
+        final int r = sections[1];
+        final int Nr = No - r;
+        if (Nl <= 0  &&  Nr <= 0)
+            return add;
 
-        throw new Error("Cannot handle this case");  //$NON-NLS-1$
+        final PlotSampleTable result = old.createTable(Nl + Na + Nr);
+        // Nl old samples
+        if (Nl > 0)
+            result.add(old, 0, Nl);
+        // add new samples
+        result.add(add, 0, Na);
+        // old[r ... N-1]
+        if (Nr > 0)
+            result.add(old, r, Nr);
+        return result;
     }
 }
@@ -0,0 +1,654 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser3.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.epics.vtype.Alarm;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.EnumDisplay;
+import org.epics.vtype.Time;
+import org.epics.vtype.VByte;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VEnum;
+import org.epics.vtype.VFloat;
+import org.epics.vtype.VInt;
+import org.epics.vtype.VLong;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VShort;
+import org.epics.vtype.VStatistics;
+import org.epics.vtype.VType;
+
+/** Columnar storage of {@link PlotSample}s
+ *
+ *  <p>Scalar numbers, enums and statistics are kept as time stamp,
+ *  value and index of their alarm, display and source
+ *  in parallel arrays, instead of a {@link PlotSample} with
+ *  {@link VType}, {@link Alarm}, {@link Time} and value objects.
+ *  Minimum, maximum and standard deviation are only allocated
+ *  once statistics are added.
+ *
+ *  <p>{@link #get(int)} returns a {@link PlotSample} that reads
+ *  position and value from the table.
+ *  Its {@link VType} is only created when requested,
+ *  for example by the sample view.
+ *  Painting and searching use {@link #getPosition(int)}, {@link #getValue(int)}
+ *  and related accessors, which read the table without creating a sample.
+ *
+ *  <p>Other samples like arrays or strings, or scalars with
+ *  time stamps or alarms that cannot be stored that way,
+ *  are kept as {@link PlotSample}.
+ *
+ *  <p>Like {@link org.phoebus.framework.util.RingBuffer},
+ *  adding to a full table drops the oldest sample.
+ *  Not thread-safe, all access is via {@link PVSamples}.
+ */
+@SuppressWarnings("nls")
+class PlotSampleTable
+{
+    /** Distinct alarms, displays and sources of samples
+     *
+     *  <p>Tables that share a dictionary can copy samples between each other.
+     */
+    static class Dictionary
+    {
+        /** Limit for the number of entries */
+        private static final int MAX_SIZE = Short.MAX_VALUE;
+
+        private final List<Object> items = new ArrayList<>();
+        private final Map<Object, Integer> index = new HashMap<>();
+
+        /** @param item Alarm, display or source
+         *  @return Index of item, -1 if it cannot be added
+         */
+        int getIndex(final Object item)
+        {
+            if (item == null)
+                return -1;
+            final Integer known = index.get(item);
+            if (known != null)
+                return known;
+            final int N = items.size();
+            if (N >= MAX_SIZE)
+                return -1;
+            items.add(item);
+            index.put(item, N);
+            return N;
+        }
+
+        /** @param index Index
+         *  @return Item
+         */
+        Object get(final int index)
+        {
+            return items.get(index);
+        }
+    }
+
+    /** Kind of sample */
+    private static final byte OBJECT = 0, DOUBLE = 1, FLOAT = 2, LONG = 3, INT = 4, SHORT = 5, BYTE = 6, ENUM = 7, STATISTICS = 8;
+
+    /** Mask for the kind of sample, remaining bits are flags */
+    private static final byte KIND_MASK = 0x0F;
+
+    /** Flag for a user tag of 0, otherwise the user tag is <code>null</code> */
+    private static final byte TAG_ZERO = 0x10;
+
+    /** Limit for seconds that can be represented as epoch nanoseconds */
+    private static final long MAX_SECONDS = Long.MAX_VALUE / 1000000000L - 1;
+
+    private final AtomicInteger waveform_index;
+
+    private final Dictionary dictionary;
+
+    //  Indices of valid entries:
+    //  [start], [start+1], ..., [start+size-1]
+    //  with wrap-around at [capacity-1].
+    private final int capacity;
+    private int start = 0, size = 0;
+
+    /** Kind of sample in each slot, with flags */
+    private byte[] kinds;
+
+    /** Time stamp as nanoseconds since epoch */
+    private long[] stamps;
+
+    /** Number value, double or float as raw bits, enum index, or statistics average as raw bits */
+    private long[] values;
+
+    /** Index of alarm, display or enum display, and source in dictionary */
+    private short[] alarms, displays, sources;
+
+    /** Statistics, allocated when needed */
+    private double[] stddevs, mins, maxs;
+    private int[] counts;
+
+    /** Samples kept as {@link PlotSample}, allocated when needed */
+    private PlotSample[] objects;
+
+    /** Number of samples with a later time stamp than the following sample */
+    private int inversions = 0;
+
+    /** @param waveform_index Waveform index for samples
+     *  @param dictionary Dictionary for alarms, displays and sources
+     *  @param capacity Maximum number of samples
+     */
+    PlotSampleTable(final AtomicInteger waveform_index, final Dictionary dictionary, final int capacity)
+    {
+        this.waveform_index = waveform_index;
+        this.dictionary = dictionary;
+        this.capacity = capacity;
+    }
+
+    /** @return Number of samples */
+    int size()
+    {
+        return size;
+    }
+
+    /** @return <code>true</code> if samples are in time order */
+    boolean isOrdered()
+    {
+        return inversions == 0;
+    }
+
+    /** @return Maximum number of samples */
+    int getCapacity()
+    {
+        return capacity;
+    }
+
+    /** @param capacity Maximum number of samples
+     *  @return Empty table that shares the dictionary of this table
+     */
+    PlotSampleTable createTable(final int capacity)
+    {
+        return new PlotSampleTable(waveform_index, dictionary, capacity);
+    }
+
+    /** @param new_capacity New sample count capacity
+     *  @return Table with that capacity and the newest samples of this table
+     *  @throws Exception on out-of-memory error
+     */
+    PlotSampleTable resize(final int new_capacity) throws Exception
+    {
+        try
+        {
+            final PlotSampleTable resized = createTable(new_capacity);
+            final int keep = Math.min(size, new_capacity);
+            resized.add(this, size - keep, keep);
+            return resized;
+        }
+        catch (OutOfMemoryError err)
+        {
+            throw new Exception("Out of memory: " + err.getMessage());
+        }
+    }
+
+    /** @return Slot for next sample, dropping the oldest sample if the table is full */
+    private int nextSlot()
+    {
+        if (kinds == null)
+        {   // Allocate on first sample, since some items never receive any
+            kinds = new byte[capacity];
+            stamps = new long[capacity];
+            values = new long[capacity];
+            alarms = new short[capacity];
+            displays = new short[capacity];
+            sources = new short[capacity];
+        }
+        if (size >= capacity)
+        {
+            // Dropping the oldest sample removes its order relative to the next one
+            if (size > 1  &&  compareSlots(start, (start + 1) % capacity) > 0)
+                --inversions;
+            ++start; // Overwrite oldest element
+            if (start >= capacity)
+                start = 0;
+        }
+        else
+            ++size; // Add to end of table
+        final int i = (start + size - 1) % capacity;
+        if (objects != null)
+            objects[i] = null;
+        return i;
+    }
+
+    /** Update order information for newly added sample
+     *  @param i Slot of the last sample
+     */
+    private void checkOrder(final int i)
+    {
+        if (size > 1  &&  compareSlots((i + capacity - 1) % capacity, i) > 0)
+            ++inversions;
+    }
+
+    /** @param a Slot
+     *  @param b Other slot
+     *  @return Comparison of the time stamps of the two slots
+     */
+    private int compareSlots(final int a, final int b)
+    {
+        if (kinds[a] != OBJECT  &&  kinds[b] != OBJECT)
+            return Long.compare(stamps[a], stamps[b]);
+        final Instant time_a = kinds[a] == OBJECT ? objects[a].getPosition() : Instant.ofEpochSecond(0, stamps[a]);
+        final Instant time_b = kinds[b] == OBJECT ? objects[b].getPosition() : Instant.ofEpochSecond(0, stamps[b]);
+        return time_a.compareTo(time_b);
+    }
+
+    /** @param source Source of the sample
+     *  @param value Value to add
+     */
+    void add(final String source, final VType value)
+    {
+        final int i = nextSlot();
+        if (! addScalar(i, source, value))
+            setObject(i, new PlotSample(waveform_index, source, value));
+        checkOrder(i);
+    }
+
+    /** @param sample Sample to add */
+    void add(final PlotSample sample)
+    {
+        final int i = nextSlot();
+        // Keep samples with special info text as they are
+        if (sample.getClass() == PlotSample.class  &&  sample.hasDefaultInfo()  &&
+            addScalar(i, sample.getSource(), sample.getVType()))
+        {
+            checkOrder(i);
+            return;
+        }
+        sample.setWaveformIndex(waveform_index);
+        setObject(i, sample);
+        checkOrder(i);
+    }
+
+    /** @param other Table that shares this table's dictionary
+     *  @param index Index of first sample in other table to add
+     *  @param count Number of samples to add
+     */
+    void add(final PlotSampleTable other, final int index, final int count)
+    {
+        if (other.dictionary != dictionary)
+            throw new IllegalArgumentException("Tables must share dictionary");
+        for (int n=0; n<count; ++n)
+        {
+            final int si = other.getSlot(index + n);
+            final int i = nextSlot();
+            final byte kind = other.kinds[si];
+            kinds[i] = kind;
+            if (kind == OBJECT)
+            {
+                objects()[i] = other.objects[si];
+                checkOrder(i);
+                continue;
+            }
+            stamps[i] = other.stamps[si];
+            values[i] = other.values[si];
+            alarms[i] = other.alarms[si];
+            displays[i] = other.displays[si];
+            sources[i] = other.sources[si];
+            if ((kind & KIND_MASK) == STATISTICS)
+            {
+                allocateStatistics();
+                stddevs[i] = other.stddevs[si];
+                mins[i] = other.mins[si];
+                maxs[i] = other.maxs[si];
+                counts[i] = other.counts[si];
+            }
+            checkOrder(i);
+        }
+    }
+
+    /** @return Objects column, allocated if needed */
+    private PlotSample[] objects()
+    {
+        if (objects == null)
+            objects = new PlotSample[capacity];
+        return objects;
+    }
+
+    /** @param i Slot
+     *  @param sample Sample to keep as object
+     */
+    private void setObject(final int i, final PlotSample sample)
+    {
+        kinds[i] = OBJECT;
+        objects()[i] = sample;
+    }
+
+    private void allocateStatistics()
+    {
+        if (stddevs != null)
+            return;
+        stddevs = new double[capacity];
+        mins = new double[capacity];
+        maxs = new double[capacity];
+        counts = new int[capacity];
+    }
+
+    /** @param i Slot
+     *  @param source Source of the sample
+     *  @param value Sample
+     *  @return <code>true</code> if sample was stored as scalar
+     */
+    private boolean addScalar(final int i, final String source, final VType value)
+    {
+        final byte kind;
+        final long number;
+        final Object display;
+        if (value instanceof VNumber)
+        {
+            if (value instanceof VDouble)
+            {
+                kind = DOUBLE;
+                number = Double.doubleToRawLongBits(((VDouble) value).getValue());
+            }
+            else if (value instanceof VFloat)
+            {
+                kind = FLOAT;
+                number = Float.floatToRawIntBits(((VFloat) value).getValue());
+            }
+            else if (value instanceof VLong)
+            {
+                kind = LONG;
+                number = ((VLong) value).getValue();
+            }
+            else if (value instanceof VInt)
+            {
+                kind = INT;
+                number = ((VInt) value).getValue();
+            }
+            else if (value instanceof VShort)
+            {
+                kind = SHORT;
+                number = ((VShort) value).getValue();
+            }
+            else if (value instanceof VByte)
+            {
+                kind = BYTE;
+                number = ((VByte) value).getValue();
+            }
+            else // Unsigned or other numbers
+                return false;
+            display = ((VNumber) value).getDisplay();
+        }
+        else if (value instanceof VEnum)
+        {
+            kind = ENUM;
+            number = ((VEnum) value).getIndex();
+            display = ((VEnum) value).getDisplay();
+        }
+        else if (value instanceof VStatistics)
+        {
+            kind = STATISTICS;
+            number = Double.doubleToRawLongBits(((VStatistics) value).getAverage());
+            display = ((VStatistics) value).getDisplay();
+        }
+        else
+            return false;
+
+        final Time time = Time.timeOf(value);
+        if (time == null  ||  ! time.isValid())
+            return false;
+        final Integer tag = time.getUserTag();
+        if (tag != null  &&  tag.intValue() != 0)
+            return false;
+        final Instant stamp = time.getTimestamp();
+        if (Math.abs(stamp.getEpochSecond()) > MAX_SECONDS)
+            return false;
+
+        final int alarm_index = dictionary.getIndex(Alarm.alarmOf(value));
+        final int display_index = dictionary.getIndex(display);
+        final int source_index = dictionary.getIndex(source);
+        if (alarm_index < 0  ||  display_index < 0  ||  source_index < 0)
+            return false;
+
+        kinds[i] = tag == null ? kind : (byte) (kind | TAG_ZERO);
+        stamps[i] = stamp.getEpochSecond() * 1000000000L + stamp.getNano();
+        values[i] = number;
+        alarms[i] = (short) alarm_index;
+        displays[i] = (short) display_index;
+        sources[i] = (short) source_index;
+        if (kind == STATISTICS)
+        {
+            final VStatistics stats = (VStatistics) value;
+            allocateStatistics();
+            stddevs[i] = stats.getStdDev();
+            mins[i] = stats.getMin();
+            maxs[i] = stats.getMax();
+            counts[i] = stats.getNSamples();
+        }
+        return true;
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Slot of that sample
+     */
+    private int getSlot(final int index)
+    {
+        if (index < 0  ||  index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " exceeds size " + size);
+        return (start + index) % capacity;
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Sample
+     */
+    PlotSample get(final int index)
+    {
+        final int i = getSlot(index);
+        if (kinds[i] == OBJECT)
+            return objects[i];
+        return new TableSample(this, i);
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Time stamp of the sample
+     */
+    Instant getPosition(final int index)
+    {
+        final int i = getSlot(index);
+        if (kinds[i] == OBJECT)
+            return objects[i].getPosition();
+        return Instant.ofEpochSecond(0, stamps[i]);
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Value of the sample
+     */
+    double getValue(final int index)
+    {
+        final int i = getSlot(index);
+        if (kinds[i] == OBJECT)
+            return objects[i].getValue();
+        return toDouble((byte) (kinds[i] & KIND_MASK), values[i]);
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Standard deviation of the sample, or {@link Double#NaN}
+     */
+    double getStdDev(final int index)
+    {
+        final int i = getSlot(index);
+        if (kinds[i] == OBJECT)
+            return objects[i].getStdDev();
+        return hasStatistics(i) ? stddevs[i] : Double.NaN;
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Minimum of the sample, or {@link Double#NaN}
+     */
+    double getMin(final int index)
+    {
+        final int i = getSlot(index);
+        if (kinds[i] == OBJECT)
+            return objects[i].getMin();
+        return hasStatistics(i) ? mins[i] : Double.NaN;
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Maximum of the sample, or {@link Double#NaN}
+     */
+    double getMax(final int index)
+    {
+        final int i = getSlot(index);
+        if (kinds[i] == OBJECT)
+            return objects[i].getMax();
+        return hasStatistics(i) ? maxs[i] : Double.NaN;
+    }
+
+    /** @param i Slot
+     *  @return <code>true</code> if slot holds statistics that apply to the plot
+     */
+    private boolean hasStatistics(final int i)
+    {
+        // See PlotSample: Statistics only apply to waveform index 0
+        return (kinds[i] & KIND_MASK) == STATISTICS  &&  waveform_index.get() == 0;
+    }
+
+    /** @param kind Kind of sample
+     *  @param number Number value of the sample
+     *  @return Value as double
+     */
+    private static double toDouble(final byte kind, final long number)
+    {
+        switch (kind)
+        {
+        case DOUBLE:
+        case STATISTICS:
+            return Double.longBitsToDouble(number);
+        case FLOAT:
+            return Float.intBitsToFloat((int) number);
+        default:
+            return number;
+        }
+    }
+
+    /** Sample that was read from the table */
+    private static class TableSample extends PlotSample
+    {
+        private final AtomicInteger waveform_index;
+        private final byte kind;
+        private final boolean tag_zero;
+        private final Instant time;
+        private final long number;
+        private final Alarm alarm;
+        private final Object display;
+        private final double stddev, min, max;
+        private final int count;
+
+        /** Value, created when requested */
+        private VType value = null;
+
+        TableSample(final PlotSampleTable table, final int i)
+        {
+            super(table.waveform_index, (String) table.dictionary.get(table.sources[i]));
+            waveform_index = table.waveform_index;
+            kind = (byte) (table.kinds[i] & KIND_MASK);
+            tag_zero = (table.kinds[i] & TAG_ZERO) != 0;
+            time = Instant.ofEpochSecond(0, table.stamps[i]);
+            number = table.values[i];
+            alarm = (Alarm) table.dictionary.get(table.alarms[i]);
+            display = table.dictionary.get(table.displays[i]);
+            if (kind == STATISTICS)
+            {
+                stddev = table.stddevs[i];
+                min = table.mins[i];
+                max = table.maxs[i];
+                count = table.counts[i];
+            }
+            else
+            {
+                stddev = min = max = Double.NaN;
+                count = 0;
+            }
+        }
+
+        @Override
+        public VType getVType()
+        {
+            if (value == null)
+                value = createVType();
+            return value;
+        }
+
+        private VType createVType()
+        {
+            final Time stamp = tag_zero ? Time.of(time, 0, true) : Time.of(time);
+            switch (kind)
+            {
+            case DOUBLE:
+                return VDouble.of(Double.longBitsToDouble(number), alarm, stamp, (Display) display);
+            case FLOAT:
+                return VFloat.of(Float.intBitsToFloat((int) number), alarm, stamp, (Display) display);
+            case LONG:
+                return VLong.of(number, alarm, stamp, (Display) display);
+            case INT:
+                return VInt.of((int) number, alarm, stamp, (Display) display);
+            case SHORT:
+                return VShort.of((short) number, alarm, stamp, (Display) display);
+            case BYTE:
+                return VByte.of((byte) number, alarm, stamp, (Display) display);
+            case ENUM:
+                return VEnum.of((int) number, (EnumDisplay) display, alarm, stamp);
+            default:
+                return VStatistics.of(Double.longBitsToDouble(number), stddev, min, max, count, alarm, stamp, (Display) display);
+            }
+        }
+
+        @Override
+        public Instant getPosition()
+        {
+            return time;
+        }
+
+        @Override
+        public double getValue()
+        {
+            return toDouble(kind, number);
+        }
+
+        @Override
+        public double getStdDev()
+        {
+            // See PlotSample: Statistics only apply to waveform index 0
+            return waveform_index.get() == 0 ? stddev : Double.NaN;
+        }
+
+        @Override
+        public double getMin()
+        {
+            return waveform_index.get() == 0 ? min : Double.NaN;
+        }
+
+        @Override
+        public double getMax()
+        {
+            return waveform_index.get() == 0 ? max : Double.NaN;
+        }
+
+        @Override
+        public AlarmSeverity getSeverity()
+        {
+            return alarm.getSeverity();
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return decodeAlarm(alarm);
+        }
+    }
+}
@@ -51,6 +51,8 @@ public class Preferences
     @Preference public static int archive_fetch_delay;
     @Preference public static int concurrent_requests;
     @Preference public static ArchiveRescale archive_rescale;
+    @Preference public static String cache_directory;
+    @Preference public static int cache_size_mb;
     public static List<ArchiveDataSource> archive_urls;
     public static List<ArchiveDataSource> archives;
     @Preference public static boolean automatic_history_refresh;
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import org.epics.vtype.VType;
+import org.phoebus.core.vtypes.VTypeHelper;
+
+/** Merge values from several <code>ValueIterator</code> by priority
+ *
+ *  <p>Each base iterator covers the time range from its first
+ *  to its last sample.
+ *  Within that time range, its samples replace those
+ *  of base iterators with a lower index.
+ *  This is the same result as merging the samples of each base iterator
+ *  one after the other into existing data, where the time range of new data
+ *  replaces the old data, but samples are returned as soon as they are
+ *  known to remain, in time order.
+ *
+ *  <p>In contrast, the {@link MergingValueIterator} returns
+ *  all samples of all base iterators.
+ */
+public class PriorityMergingValueIterator implements ValueIterator
+{
+    /** The base iterators, lowest priority first */
+    final private ValueIterator iters[];
+
+    /** The 'current' values of each <code>iter</code>, <code>null</code> when done */
+    final private VType raw_data[];
+
+    /** Time stamps of <code>raw_data</code> */
+    final private Instant raw_time[];
+
+    /** Time of first sample of each base iterator, <code>null</code> if it has no samples */
+    final private Instant first[];
+
+    /** Time of the last sample read from each base iterator */
+    final private Instant last[];
+
+    private VType value;
+
+    /** Index of the iterator that provided <code>value</code> */
+    private int value_index = -1;
+
+    /** Index of the iterator that provided the sample last returned by <code>next()</code> */
+    private int index = -1;
+
+    /** Constructor.
+     *  @param iters The 'base' iterators, in order of increasing priority
+     *  @throws Exception on error in archive access
+     */
+    public PriorityMergingValueIterator(final ValueIterator... iters) throws Exception
+    {
+        this.iters = iters;
+        raw_data = new VType[iters.length];
+        raw_time = new Instant[iters.length];
+        first = new Instant[iters.length];
+        last = new Instant[iters.length];
+
+        // Get first sample from each base iterator
+        for (int i=0; i<iters.length; ++i)
+        {
+            read(i);
+            first[i] = raw_time[i];
+        }
+        fetchNext();
+    }
+
+    /** Read next sample of a base iterator
+     *  @param i Index of base iterator
+     */
+    private void read(final int i)
+    {
+        if (iters[i].hasNext())
+        {
+            raw_data[i] = iters[i].next();
+            raw_time[i] = VTypeHelper.getTimestamp(raw_data[i]);
+            last[i] = raw_time[i];
+        }
+        else
+        {
+            raw_data[i] = null;
+            raw_time[i] = null;
+        }
+    }
+
+    /** @param i Index of base iterator
+     *  @param time Time of a sample from that iterator
+     *  @return <code>true</code> if a base iterator with higher priority covers the time
+     */
+    private boolean isReplaced(final int i, final Instant time)
+    {
+        for (int j=i+1; j<iters.length; ++j)
+        {
+            // Base iterator j covers first[j] .. last sample,
+            // which is at least raw_time[j] while it has more samples
+            if (first[j] != null  &&  first[j].compareTo(time) <= 0  &&
+                (raw_data[j] != null  ||  last[j].compareTo(time) >= 0))
+                return true;
+        }
+        return false;
+    }
+
+    /** Determine the next value, i.e. the oldest sample from the base iterators
+     *  that's not replaced by a base iterator of higher priority
+     */
+    private void fetchNext()
+    {
+        while (true)
+        {
+            // Find oldest time stamp
+            Instant time = null;
+            int index = -1;
+            for (int i=0; i<raw_data.length; ++i)
+            {
+                if (raw_data[i] == null)
+                    continue;
+                if (time == null  ||  raw_time[i].compareTo(time) < 0)
+                {
+                    time = raw_time[i];
+                    index = i;
+                }
+            }
+            if (time == null)
+            {   // No channel left with any data.
+                value = null;
+                return;
+            }
+            final VType sample = raw_data[index];
+            read(index);
+            if (! isReplaced(index, time))
+            {
+                value = sample;
+                value_index = index;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return value != null;
+    }
+
+    @Override
+    public VType next()
+    {
+        if (! hasNext())
+            throw new IllegalStateException();
+        final VType result = value;
+        index = value_index;
+        fetchNext();
+        return result;
+    }
+
+    /** @return Index of the base iterator that provided the sample
+     *          last returned by <code>next()</code>, -1 before the first call
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        for (ValueIterator iter : iters)
+            iter.close();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017-2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2017-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,17 @@ import org.epics.vtype.VType;
  */
 public interface ValueIterator extends Iterator<VType>, Closeable
 {
+    /** Iterators that end early because of an error
+     *  may return <code>false</code> from <code>hasNext()</code>
+     *  and report the error here.
+     *
+     *  @return Error that ended the iteration, or <code>null</code>
+     */
+    public default Exception getError()
+    {
+        return null;
+    }
+
     @Override
     public default void close() throws IOException
     {
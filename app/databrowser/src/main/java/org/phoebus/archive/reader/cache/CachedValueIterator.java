@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader.cache;
+
+import static org.phoebus.archive.reader.ArchiveReaders.logger;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+
+import org.epics.vtype.VType;
+import org.phoebus.archive.reader.ValueIterator;
+import org.phoebus.core.vtypes.VTypeHelper;
+
+/** Iterator over buckets of samples, read from cache or archive
+ *
+ *  <p>Each bucket holds the last sample before the bucket start, if there is one,
+ *  followed by the samples within the bucket.
+ *  Consecutive buckets that are not in the cache are fetched with one request.
+ */
+@SuppressWarnings("nls")
+class CachedValueIterator implements ValueIterator
+{
+    private final CachingArchiveReader reader;
+    private final String name;
+    private final Instant start, end;
+    private final long bucket_secs;
+    private final int bins;
+
+    /** Next bucket to read, and last bucket */
+    private long bucket;
+    private final long last_bucket;
+
+    /** Samples to return */
+    private final Deque<VType> samples = new ArrayDeque<>();
+
+    /** Last sample before the start time */
+    private VType before = null;
+
+    /** Have samples within the time range been found? */
+    private boolean started = false;
+
+    /** Error that ended the iteration */
+    private volatile Exception error = null;
+
+    /** @param reader Caching reader
+     *  @param name Channel name
+     *  @param start Start time
+     *  @param end End time
+     *  @param bucket_secs Bucket size in seconds
+     *  @param bins Bins per bucket, 0 for raw data
+     *  @throws Exception on error
+     */
+    CachedValueIterator(final CachingArchiveReader reader, final String name,
+                        final Instant start, final Instant end,
+                        final long bucket_secs, final int bins) throws Exception
+    {
+        this.reader = reader;
+        this.name = name;
+        this.start = start;
+        this.end = end;
+        this.bucket_secs = bucket_secs;
+        this.bins = bins;
+        bucket = Math.floorDiv(start.getEpochSecond(), bucket_secs);
+        last_bucket = Math.floorDiv(end.getEpochSecond(), bucket_secs);
+
+        // Fetch first buckets right away to report errors like UnknownChannelException
+        while (samples.isEmpty()  &&  bucket <= last_bucket)
+            fetch();
+    }
+
+    private Instant getStart(final long bucket)
+    {
+        return Instant.ofEpochSecond(bucket * bucket_secs);
+    }
+
+    private String getKey(final long bucket)
+    {
+        return reader.getKey(name, bucket_secs, bins, bucket);
+    }
+
+    /** @param bucket Bucket index
+     *  @return <code>true</code> if bucket may be cached
+     */
+    private boolean isCacheable(final long bucket)
+    {
+        return getStart(bucket+1).isBefore(Instant.now().minus(CachingArchiveReader.HOLDOFF));
+    }
+
+    /** Read next bucket from cache,
+     *  or fetch next buckets that are not cached from archive
+     *  @throws Exception on error
+     */
+    private void fetch() throws Exception
+    {
+        final SampleCache cache = reader.getCache();
+        final List<VType> cached = isCacheable(bucket) ? cache.get(getKey(bucket)) : null;
+        if (cached != null)
+            add(bucket++, cached);
+        else
+            fetchRun();
+
+        // At end, return the sample before the start time if there was nothing else
+        if (bucket > last_bucket  &&  ! started  &&  before != null)
+        {
+            samples.add(before);
+            started = true;
+        }
+    }
+
+    /** Fetch buckets from archive until the next cached bucket
+     *  @throws Exception on error
+     */
+    private void fetchRun() throws Exception
+    {
+        final SampleCache cache = reader.getCache();
+        long run_end = bucket;
+        while (run_end < last_bucket  &&
+               ! (isCacheable(run_end+1)  &&  cache.contains(getKey(run_end+1))))
+            ++run_end;
+
+        // Fetch run, splitting samples into buckets
+        final Instant run_start_time = getStart(bucket);
+        final Instant run_end_time = getStart(run_end+1);
+        final List<List<VType>> buckets = new ArrayList<>();
+        for (long b=bucket; b<=run_end; ++b)
+            buckets.add(new ArrayList<>());
+        // Number of buckets known to be complete.
+        // Readers may end the samples early when they run into an error,
+        // logging but not reporting it.
+        // A bucket is thus only known to be complete once a sample
+        // after the bucket has been received.
+        int complete = 0;
+        try
+        (
+            ValueIterator values = bins > 0
+                ? reader.getReader().getOptimizedValues(name, run_start_time, run_end_time, (int) (bins * (run_end - bucket + 1)))
+                : reader.getReader().getRawValues(name, run_start_time, run_end_time)
+        )
+        {
+            VType previous = null;
+            int index = 0;
+            while (values.hasNext())
+            {
+                final VType value = values.next();
+                final Instant time = VTypeHelper.getTimestamp(value);
+                if (! time.isBefore(run_end_time))
+                {
+                    complete = buckets.size();
+                    break;
+                }
+                // Advance to bucket of this sample,
+                // starting each bucket with the previous sample
+                while (index < buckets.size()-1  &&  ! time.isBefore(getStart(bucket+index+1)))
+                {
+                    ++index;
+                    if (previous != null)
+                        buckets.get(index).add(previous);
+                }
+                complete = Math.max(complete, index);
+                buckets.get(index).add(value);
+                previous = value;
+            }
+            // Buckets without samples only hold the previous sample
+            while (index < buckets.size()-1)
+            {
+                ++index;
+                if (previous != null)
+                    buckets.get(index).add(previous);
+            }
+        }
+
+        for (int i=0; i<buckets.size(); ++i)
+        {
+            final List<VType> bucket_samples = buckets.get(i);
+            // Don't cache data that may be incomplete
+            if (i < complete  &&  ! reader.isCancelled()  &&  isCacheable(bucket))
+                cache.put(getKey(bucket), bucket_samples);
+            add(bucket++, bucket_samples);
+        }
+    }
+
+    /** @param bucket Bucket index
+     *  @param bucket_samples Samples of that bucket
+     */
+    private void add(final long bucket, final List<VType> bucket_samples)
+    {
+        final Instant bucket_start = getStart(bucket);
+        for (VType value : bucket_samples)
+        {
+            final Instant time = VTypeHelper.getTimestamp(value);
+            if (time.isBefore(start))
+            {
+                if (! started)
+                    before = value;
+                continue;
+            }
+            if (time.isAfter(end))
+                break;
+            // Skip sample before bucket, already handled in previous bucket
+            if (time.isBefore(bucket_start))
+                continue;
+            if (! started)
+            {   // Start with the last sample before the start time
+                if (before != null)
+                    samples.add(before);
+                started = true;
+            }
+            samples.add(value);
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        try
+        {
+            while (samples.isEmpty()  &&  bucket <= last_bucket  &&  ! reader.isCancelled())
+                fetch();
+        }
+        catch (Exception ex)
+        {
+            logger.log(Level.WARNING, "Cannot fetch samples for " + name, ex);
+            error = ex;
+            bucket = last_bucket + 1;
+        }
+        return ! samples.isEmpty();
+    }
+
+    @Override
+    public Exception getError()
+    {
+        return error;
+    }
+
+    @Override
+    public VType next()
+    {
+        if (! hasNext())
+            throw new NoSuchElementException();
+        return samples.removeFirst();
+    }
+
+    @Override
+    public void close()
+    {
+        samples.clear();
+        bucket = last_bucket + 1;
+    }
+}
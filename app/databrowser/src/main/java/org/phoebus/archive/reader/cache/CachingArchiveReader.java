@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+
+import org.phoebus.archive.reader.ArchiveReader;
+import org.phoebus.archive.reader.UnknownChannelException;
+import org.phoebus.archive.reader.ValueIterator;
+
+/** ArchiveReader that caches the samples of another reader
+ *
+ *  <p>Requests are split into time buckets.
+ *  The samples of each bucket are cached under a key made from
+ *  the data source URL, channel name, bucket size, resolution
+ *  and bucket index.
+ *  When panning, the bucket boundaries remain the same,
+ *  so previously fetched buckets are read from the cache
+ *  and only the new buckets are fetched from the archive.
+ *
+ *  <p>Bucket sizes are a power of two seconds,
+ *  about 1/8 of the requested time range.
+ *  For optimized requests, the number of bins per bucket
+ *  is rounded up to a power of two, so similar zoom levels
+ *  also share buckets.
+ *
+ *  <p>Buckets that end within the last {@link #HOLDOFF}
+ *  are fetched, but not cached, since the archive may
+ *  still receive data for that time range.
+ */
+@SuppressWarnings("nls")
+public class CachingArchiveReader implements ArchiveReader
+{
+    /** Only cache buckets that ended at least this long ago */
+    public static final Duration HOLDOFF = Duration.ofMinutes(10);
+
+    /** Smallest bucket size in seconds */
+    private static final long MIN_BUCKET_SECS = 64;
+
+    /** Approximate number of buckets per request */
+    private static final long BUCKETS = 8;
+
+    private final ArchiveReader reader;
+    private final String url;
+    private final SampleCache cache;
+    private volatile boolean cancelled = false;
+
+    /** @param reader Reader that provides the samples
+     *  @param url URL of that reader's data source
+     *  @param cache Cache for samples
+     */
+    public CachingArchiveReader(final ArchiveReader reader, final String url, final SampleCache cache)
+    {
+        this.reader = reader;
+        this.url = url;
+        this.cache = cache;
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return reader.getDescription();
+    }
+
+    @Override
+    public Collection<String> getNamesByPattern(final String glob_pattern) throws Exception
+    {
+        return reader.getNamesByPattern(glob_pattern);
+    }
+
+    /** @param start Start time
+     *  @param end End time
+     *  @return Bucket size in seconds for that time range
+     */
+    static long getBucketSeconds(final Instant start, final Instant end)
+    {
+        final long span = Math.max(1, end.getEpochSecond() - start.getEpochSecond());
+        return Math.max(MIN_BUCKET_SECS, Long.highestOneBit(span / BUCKETS));
+    }
+
+    @Override
+    public ValueIterator getRawValues(final String name, final Instant start, final Instant end) throws UnknownChannelException, Exception
+    {
+        return new CachedValueIterator(this, name, start, end, getBucketSeconds(start, end), 0);
+    }
+
+    @Override
+    public ValueIterator getOptimizedValues(final String name, final Instant start, final Instant end, final int count) throws UnknownChannelException, Exception
+    {
+        final long bucket_secs = getBucketSeconds(start, end);
+        final long span = Math.max(1, end.getEpochSecond() - start.getEpochSecond());
+        final long bins = Math.max(1, count * bucket_secs / span);
+        // Round up to power of two
+        final long bins_per_bucket = Long.highestOneBit(bins) == bins ? bins : Long.highestOneBit(bins) << 1;
+        return new CachedValueIterator(this, name, start, end, bucket_secs, (int) Math.min(bins_per_bucket, Integer.MAX_VALUE/BUCKETS));
+    }
+
+    /** @param name Channel name
+     *  @param bucket_secs Bucket size
+     *  @param bins Bins per bucket, 0 for raw data
+     *  @param bucket Bucket index
+     *  @return Cache key
+     */
+    String getKey(final String name, final long bucket_secs, final int bins, final long bucket)
+    {
+        return url + "\n" + name + "\n" + bucket_secs + "\n" + bins + "\n" + bucket;
+    }
+
+    /** @return Reader that provides the samples */
+    ArchiveReader getReader()
+    {
+        return reader;
+    }
+
+    /** @return Cache */
+    SampleCache getCache()
+    {
+        return cache;
+    }
+
+    /** @return <code>true</code> if cancelled */
+    boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    @Override
+    public void cancel()
+    {
+        cancelled = true;
+        reader.cancel();
+    }
+
+    @Override
+    public void close()
+    {
+        reader.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Cached " + url;
+    }
+}
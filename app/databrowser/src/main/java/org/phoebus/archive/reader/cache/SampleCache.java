@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader.cache;
+
+import static org.phoebus.archive.reader.ArchiveReaders.logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.epics.vtype.VType;
+import org.phoebus.core.vtypes.SampleCodec;
+
+/** Disk-backed cache of archived samples
+ *
+ *  <p>Each entry holds the samples for one key
+ *  in a compressed file within the cache directory.
+ *  When the total size of the files exceeds the limit,
+ *  the least recently used entries are deleted.
+ *
+ *  <p>Entries of a previous session are re-used,
+ *  ordered by their file modification time.
+ *  Thread-safe.
+ */
+@SuppressWarnings("nls")
+public class SampleCache
+{
+    /** Start of each file */
+    private static final int MAGIC = 0x53434831;
+
+    private static final String SUFFIX = ".cache";
+
+    /** Prefix and suffix of temporary files used while writing an entry */
+    private static final String TMP_PREFIX = "entry", TMP_SUFFIX = ".tmp";
+
+    private final File directory;
+
+    private final long max_bytes;
+
+    /** File names and sizes, least recently used first */
+    private final Map<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Total size of files */
+    private long total = 0;
+
+    /** @param directory Cache directory
+     *  @param max_bytes Maximum size of cached files
+     *  @throws Exception on error
+     */
+    public SampleCache(final File directory, final long max_bytes) throws Exception
+    {
+        this.directory = directory;
+        this.max_bytes = max_bytes;
+        if (! directory.isDirectory()  &&  ! directory.mkdirs())
+            throw new Exception("Cannot create cache directory " + directory);
+
+        final File[] existing = directory.listFiles();
+        if (existing != null)
+        {
+            Arrays.sort(existing, Comparator.comparingLong(File::lastModified));
+            for (File file : existing)
+            {
+                if (file.getName().endsWith(SUFFIX))
+                {
+                    files.put(file.getName(), file.length());
+                    total += file.length();
+                }
+                else if (file.isFile()  &&
+                         file.getName().startsWith(TMP_PREFIX)  &&
+                         file.getName().endsWith(TMP_SUFFIX))
+                    // Left over from crash while writing an entry
+                    file.delete();
+            }
+        }
+        synchronized (this)
+        {
+            evict();
+        }
+        logger.log(Level.CONFIG, "Archive sample cache " + directory + " has " + files.size() + " entries, " + total + " bytes");
+    }
+
+    /** @param key Cache key
+     *  @return File name for that key
+     */
+    private static String getFileName(final String key)
+    {
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + SUFFIX;
+    }
+
+    /** @param key Cache key
+     *  @return <code>true</code> if cache has an entry for the key
+     */
+    public synchronized boolean contains(final String key)
+    {
+        return files.containsKey(getFileName(key));
+    }
+
+    /** @param key Cache key
+     *  @return Cached samples or <code>null</code>
+     */
+    public List<VType> get(final String key)
+    {
+        final String name = getFileName(key);
+        synchronized (this)
+        {
+            // Check and mark as recently used
+            if (files.get(name) == null)
+                return null;
+        }
+        final File file = new File(directory, name);
+        try
+        (
+            DataInputStream in = new DataInputStream(new InflaterInputStream(new BufferedInputStream(new FileInputStream(file))))
+        )
+        {
+            if (in.readInt() != MAGIC)
+                throw new Exception("Invalid cache file");
+            // Check for hash collision
+            if (! key.equals(in.readUTF()))
+                return null;
+            final int count = in.readInt();
+            final List<VType> samples = new ArrayList<>(count);
+            for (int i=0; i<count; ++i)
+                samples.add(SampleCodec.decode(in));
+            return samples;
+        }
+        catch (Exception ex)
+        {   // File removed by other thread, or corrupted
+            logger.log(Level.FINE, "Cannot read cached samples for " + key, ex);
+            remove(name);
+            return null;
+        }
+    }
+
+    /** @param key Cache key
+     *  @param samples Samples to cache
+     */
+    public void put(final String key, final List<VType> samples)
+    {
+        final String name = getFileName(key);
+        final File file = new File(directory, name);
+        try
+        {
+            // Write to temporary file, then move into place,
+            // so get() never sees a partially written file
+            final File tmp = File.createTempFile(TMP_PREFIX, TMP_SUFFIX, directory);
+            try
+            (
+                DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+            )
+            {
+                out.writeInt(MAGIC);
+                out.writeUTF(key);
+                out.writeInt(samples.size());
+                for (VType sample : samples)
+                    SampleCodec.encode(out, sample);
+            }
+            catch (Exception ex)
+            {
+                tmp.delete();
+                throw ex;
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (Exception ex)
+        {
+            logger.log(Level.WARNING, "Cannot cache samples for " + key, ex);
+            return;
+        }
+
+        final long size = file.length();
+        synchronized (this)
+        {
+            final Long previous = files.put(name, size);
+            total += size - (previous == null ? 0 : previous);
+            evict();
+        }
+    }
+
+    /** @param name File name of entry to remove */
+    private synchronized void remove(final String name)
+    {
+        final Long size = files.remove(name);
+        if (size != null)
+            total -= size;
+        new File(directory, name).delete();
+    }
+
+    /** Delete least recently used entries while cache exceeds limit */
+    private void evict()
+    {
+        final Iterator<Map.Entry<String, Long>> entries = files.entrySet().iterator();
+        // Keep at least the most recent entry
+        while (total > max_bytes  &&  files.size() > 1  &&  entries.hasNext())
+        {
+            final Map.Entry<String, Long> entry = entries.next();
+            new File(directory, entry.getKey()).delete();
+            total -= entry.getValue();
+            entries.remove();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SampleCache " + directory;
+    }
+}
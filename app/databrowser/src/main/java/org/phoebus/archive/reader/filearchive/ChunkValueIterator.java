@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader.filearchive;
+
+import static org.phoebus.archive.reader.ArchiveReaders.logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.zip.InflaterInputStream;
+
+import org.epics.vtype.Time;
+import org.epics.vtype.VType;
+import org.phoebus.archive.reader.ValueIterator;
+import org.phoebus.core.vtypes.SampleCodec;
+
+/** Iterator over the samples in the partition files of a channel
+ *
+ *  <p>Starts with the last sample before the start time, if there is one,
+ *  followed by the samples within the requested time range.
+ *  Only chunks that overlap the time range are decompressed.
+ *  Chunks with overlapping time ranges are merged,
+ *  and samples are returned in time order.
+ */
+@SuppressWarnings("nls")
+class ChunkValueIterator implements ValueIterator
+{
+    /** Start of each chunk */
+    private static final int CHUNK_MAGIC = 0x43484B31;
+
+    /** Size of chunk header */
+    private static final int HEADER = 2*Integer.BYTES + 2*Long.BYTES + Integer.BYTES;
+
+    private static final String SUFFIX = ".chunks";
+
+    private static final DateTimeFormatter PARTITION = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private static final Comparator<VType> by_time = Comparator.comparing(value -> Time.timeOf(value).getTimestamp());
+
+    /** Chunk in a partition file */
+    private static class Chunk
+    {
+        final long offset, first, last;
+        final int count, size;
+
+        Chunk(final long offset, final long first, final long last, final int count, final int size)
+        {
+            this.offset = offset;
+            this.first = first;
+            this.last = last;
+            this.count = count;
+            this.size = size;
+        }
+    }
+
+    private final long start, end;
+
+    /** Partition files to read, oldest first */
+    private final Deque<File> partitions = new ArrayDeque<>();
+
+    /** Chunks of current partition to read, grouped into runs of overlapping chunks */
+    private final Deque<List<Chunk>> runs = new ArrayDeque<>();
+
+    /** Current partition file */
+    private RandomAccessFile file = null;
+
+    /** Samples to return */
+    private final Deque<VType> samples = new ArrayDeque<>();
+
+    /** @param directory Channel directory
+     *  @param start Start time
+     *  @param end End time
+     *  @throws Exception on error
+     */
+    ChunkValueIterator(final File directory, final Instant start, final Instant end) throws Exception
+    {
+        this.start = toNanos(start);
+        this.end = toNanos(end);
+
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null)
+            return;
+        // Names yyyyMMdd sort in time order
+        Arrays.sort(files);
+
+        final String first = PARTITION.format(start) + SUFFIX;
+        final String last = PARTITION.format(end) + SUFFIX;
+        for (File part : files)
+        {
+            final String name = part.getName();
+            if (name.compareTo(first) >= 0  &&  name.compareTo(last) <= 0)
+                partitions.add(part);
+        }
+
+        // Locate last sample before start, going back in partitions
+        for (int i=files.length-1; i>=0; --i)
+        {
+            if (files[i].getName().compareTo(first) > 0)
+                continue;
+            if (findPrevious(files[i]))
+                break;
+        }
+    }
+
+    private static long toNanos(final Instant time)
+    {
+        return time.getEpochSecond() * 1000000000L + time.getNano();
+    }
+
+    /** @param part Partition file
+     *  @return <code>true</code> if partition has samples before start time
+     *  @throws Exception on error
+     */
+    private boolean findPrevious(final File part) throws Exception
+    {
+        try (RandomAccessFile previous = new RandomAccessFile(part, "r"))
+        {
+            // Chunk with latest data before start
+            Chunk best = null;
+            for (Chunk chunk : readChunks(part, previous))
+                if (chunk.first < start  &&
+                    (best == null  ||  Math.min(chunk.last, start) > Math.min(best.last, start)))
+                    best = chunk;
+            if (best == null)
+                return false;
+            VType found = null;
+            for (VType value : decode(previous, best))
+            {
+                final long time = toNanos(Time.timeOf(value).getTimestamp());
+                if (time < start  &&  (found == null  ||  by_time.compare(value, found) >= 0))
+                    found = value;
+            }
+            if (found != null)
+                samples.add(found);
+            return true;
+        }
+    }
+
+    /** @param part Partition file
+     *  @param raf Open partition file
+     *  @return Chunks in the file
+     *  @throws IOException on error
+     */
+    private static List<Chunk> readChunks(final File part, final RandomAccessFile raf) throws IOException
+    {
+        final List<Chunk> chunks = new ArrayList<>();
+        final long length = raf.length();
+        long offset = 0;
+        while (offset + HEADER <= length)
+        {
+            raf.seek(offset);
+            final int magic = raf.readInt();
+            final long first = raf.readLong();
+            final long last = raf.readLong();
+            final int count = raf.readInt();
+            final int size = raf.readInt();
+            if (magic != CHUNK_MAGIC  ||  size < 0  ||  offset + HEADER + size > length)
+            {   // Chunk may still be written, or was truncated by a crash
+                logger.log(Level.FINE, "Incomplete chunk in " + part + " at " + offset);
+                break;
+            }
+            chunks.add(new Chunk(offset + HEADER, first, last, count, size));
+            offset += HEADER + size;
+        }
+        return chunks;
+    }
+
+    /** @param raf Open partition file
+     *  @param chunk Chunk to read
+     *  @return Samples in chunk
+     *  @throws Exception on error
+     */
+    private static List<VType> decode(final RandomAccessFile raf, final Chunk chunk) throws Exception
+    {
+        final byte[] data = new byte[chunk.size];
+        raf.seek(chunk.offset);
+        raf.readFully(data);
+        final List<VType> values = new ArrayList<>(chunk.count);
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data))))
+        {
+            for (int i=0; i<chunk.count; ++i)
+                values.add(SampleCodec.decode(in));
+        }
+        return values;
+    }
+
+    /** Open next partition
+     *  @return <code>true</code> if there are chunks to read
+     *  @throws Exception on error
+     */
+    private boolean nextPartition() throws Exception
+    {
+        closeFile();
+        while (! partitions.isEmpty())
+        {
+            final File part = partitions.removeFirst();
+            file = new RandomAccessFile(part, "r");
+            final List<Chunk> chunks = readChunks(part, file);
+            chunks.removeIf(chunk -> chunk.last < start  ||  chunk.first > end);
+            chunks.sort(Comparator.comparingLong(chunk -> chunk.first));
+            // Group chunks with overlapping time range into runs
+            List<Chunk> run = null;
+            long run_end = Long.MIN_VALUE;
+            for (Chunk chunk : chunks)
+            {
+                if (run == null  ||  chunk.first > run_end)
+                {
+                    run = new ArrayList<>();
+                    runs.add(run);
+                    run_end = chunk.last;
+                }
+                else
+                    run_end = Math.max(run_end, chunk.last);
+                run.add(chunk);
+            }
+            if (! runs.isEmpty())
+                return true;
+            closeFile();
+        }
+        return false;
+    }
+
+    /** Fetch samples of the next run of chunks
+     *  @return <code>true</code> if samples were found
+     *  @throws Exception on error
+     */
+    private boolean fetch() throws Exception
+    {
+        while (true)
+        {
+            if (runs.isEmpty()  &&  ! nextPartition())
+                return false;
+            final List<Chunk> run = runs.removeFirst();
+            final List<VType> values = new ArrayList<>();
+            for (Chunk chunk : run)
+                values.addAll(decode(file, chunk));
+            // Writer appends samples as received, which may be out of order
+            // within a chunk. Sorting already ordered samples is cheap.
+            values.sort(by_time);
+            for (VType value : values)
+            {
+                final long time = toNanos(Time.timeOf(value).getTimestamp());
+                if (time >= start  &&  time <= end)
+                    samples.add(value);
+            }
+            if (! samples.isEmpty())
+                return true;
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (! samples.isEmpty())
+            return true;
+        try
+        {
+            return fetch();
+        }
+        catch (Exception ex)
+        {
+            logger.log(Level.WARNING, "Cannot read file archive samples", ex);
+            closeFile();
+            partitions.clear();
+            runs.clear();
+            return false;
+        }
+    }
+
+    @Override
+    public VType next()
+    {
+        if (! hasNext())
+            throw new NoSuchElementException();
+        return samples.removeFirst();
+    }
+
+    private void closeFile()
+    {
+        if (file != null)
+        {
+            try
+            {
+                file.close();
+            }
+            catch (IOException ex)
+            {
+                // Ignore, only reading
+            }
+            file = null;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        closeFile();
+        partitions.clear();
+        runs.clear();
+        samples.clear();
+    }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader.filearchive;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.phoebus.archive.reader.ArchiveReader;
+import org.phoebus.archive.reader.UnknownChannelException;
+import org.phoebus.archive.reader.ValueIterator;
+import org.phoebus.ui.text.RegExHelper;
+
+/** Reader for the file archive written by the archive engine
+ *
+ *  <p>Each channel has a directory below the archive root,
+ *  named after the URL-encoded channel name,
+ *  with one file of compressed sample chunks per UTC day.
+ *  See the archive engine's FileArchiveWriter for details.
+ */
+@SuppressWarnings("nls")
+public class FileArchiveReader implements ArchiveReader
+{
+    private final File root;
+
+    /** @param root Root directory of the archive
+     *  @throws Exception on error
+     */
+    public FileArchiveReader(final File root) throws Exception
+    {
+        if (! root.isDirectory())
+            throw new Exception("Cannot find archive directory " + root);
+        this.root = root;
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "File archive " + root;
+    }
+
+    @Override
+    public Collection<String> getNamesByPattern(final String glob_pattern) throws Exception
+    {
+        final List<String> result = new ArrayList<>();
+        if (glob_pattern.isEmpty())
+            return result;
+        final Pattern pattern = Pattern.compile(RegExHelper.fullRegexFromGlob(glob_pattern), Pattern.CASE_INSENSITIVE);
+        final File[] dirs = root.listFiles(File::isDirectory);
+        if (dirs != null)
+            for (File dir : dirs)
+            {
+                final String name = URLDecoder.decode(dir.getName(), StandardCharsets.UTF_8);
+                if (pattern.matcher(name).matches())
+                    result.add(name);
+            }
+        result.sort(String::compareTo);
+        return result;
+    }
+
+    @Override
+    public ValueIterator getRawValues(final String name, final Instant start, final Instant end)
+            throws UnknownChannelException, Exception
+    {
+        final String dir_name = URLEncoder.encode(name, StandardCharsets.UTF_8).replace("*", "%2A");
+        final File dir = new File(root, dir_name);
+        if (! dir.isDirectory())
+            throw new UnknownChannelException(name);
+        return new ChunkValueIterator(dir, start, end);
+    }
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser3.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.epics.vtype.Alarm;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VStatistics;
+import org.epics.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test for PlotSampleTable */
+@SuppressWarnings("nls")
+public class PlotSampleTableUnitTest
+{
+    @Test
+    public void testScalars()
+    {
+        final AtomicInteger waveform_index = new AtomicInteger(0);
+        final PlotSampleTable table = new PlotSampleTable(waveform_index, new PlotSampleTable.Dictionary(), 10);
+        table.add("Test", TestHelper.makeValue(1));
+        table.add("Test", TestHelper.makeError(2, "Disconnected"));
+        final Instant time = Instant.ofEpochSecond(3, 42);
+        table.add("Archive", VStatistics.of(3.0, 0.5, 1.0, 5.0, 7, Alarm.none(), Time.of(time), Display.none()));
+        assertThat(table.size(), equalTo(3));
+
+        PlotSample sample = table.get(0);
+        assertThat(sample.getValue(), equalTo(1.0));
+        assertThat(sample.getSource(), equalTo("Test"));
+        assertThat(sample.getInfo(), equalTo(""));
+        assertThat(sample.getVType(), instanceOf(VDouble.class));
+
+        sample = table.get(1);
+        assertThat(sample.getSeverity(), equalTo(AlarmSeverity.UNDEFINED));
+        assertThat(sample.getInfo(), equalTo("UNDEFINED / Disconnected"));
+
+        sample = table.get(2);
+        assertThat(sample.getPosition(), equalTo(time));
+        assertThat(sample.getValue(), equalTo(3.0));
+        assertThat(sample.getMin(), equalTo(1.0));
+        assertThat(sample.getMax(), equalTo(5.0));
+        assertThat(sample.getStdDev(), equalTo(0.5));
+        final VType value = sample.getVType();
+        assertThat(value, instanceOf(VStatistics.class));
+        assertThat(((VStatistics) value).getNSamples(), equalTo(7));
+        assertThat(Time.timeOf(value).getTimestamp(), equalTo(time));
+
+        // Statistics only apply to the first waveform element
+        waveform_index.set(1);
+        assertThat(Double.isNaN(table.get(2).getMin()), equalTo(true));
+    }
+
+    @Test
+    public void testUserTag()
+    {
+        final PlotSampleTable table = new PlotSampleTable(new AtomicInteger(0), new PlotSampleTable.Dictionary(), 10);
+        final Instant time = Instant.ofEpochSecond(1);
+        table.add("Test", VDouble.of(1.0, Alarm.none(), Time.of(time), Display.none()));
+        table.add("Test", VDouble.of(2.0, Alarm.none(), Time.of(time, 0, true), Display.none()));
+        assertThat(Time.timeOf(table.get(0).getVType()).getUserTag(), nullValue());
+        assertThat(Time.timeOf(table.get(1).getVType()).getUserTag(), equalTo(0));
+    }
+
+    @Test
+    public void testAccessors()
+    {
+        final AtomicInteger waveform_index = new AtomicInteger(0);
+        final PlotSampleTable table = new PlotSampleTable(waveform_index, new PlotSampleTable.Dictionary(), 10);
+        table.add("Test", TestHelper.makeValue(1));
+        table.add(new PlotSample("Test", "Error"));
+        table.add("Test", TestHelper.makeWaveform(2, new double[] { 1, 2, 3 }));
+        table.add("Archive", VStatistics.of(3.0, 0.5, 1.0, 5.0, 7, Alarm.none(), Time.of(Instant.ofEpochSecond(3)), Display.none()));
+
+        // Accessors by index match the samples
+        for (int index : new int[] { 0, 1 })
+        {
+            waveform_index.set(index);
+            for (int i=0; i<table.size(); ++i)
+            {
+                final PlotSample sample = table.get(i);
+                assertThat(table.getPosition(i), equalTo(sample.getPosition()));
+                assertThat(table.getValue(i), equalTo(sample.getValue()));
+                assertThat(table.getStdDev(i), equalTo(sample.getStdDev()));
+                assertThat(table.getMin(i), equalTo(sample.getMin()));
+                assertThat(table.getMax(i), equalTo(sample.getMax()));
+            }
+        }
+        assertThat(table.getValue(2), equalTo(2.0));
+        assertThat(table.getMax(3), equalTo(Double.NaN));
+    }
+
+    @Test
+    public void testObjects()
+    {
+        final PlotSampleTable table = new PlotSampleTable(new AtomicInteger(0), new PlotSampleTable.Dictionary(), 10);
+        final PlotSample error = new PlotSample("Test", "Error");
+        table.add(error);
+        table.add("Test", TestHelper.makeWaveform(1, new double[] { 1, 2, 3 }));
+        assertThat(table.get(0), sameInstance(error));
+        assertThat(table.get(1).getValue(), equalTo(1.0));
+    }
+
+    @Test
+    public void testRing() throws Exception
+    {
+        PlotSampleTable table = new PlotSampleTable(new AtomicInteger(0), new PlotSampleTable.Dictionary(), 5);
+        for (int i=0; i<8; ++i)
+            table.add("Test", TestHelper.makeValue(i));
+        assertThat(table.size(), equalTo(5));
+        assertThat(table.get(0).getValue(), equalTo(3.0));
+        assertThat(table.get(4).getValue(), equalTo(7.0));
+
+        // Keeps newest samples
+        table = table.resize(3);
+        assertThat(table.size(), equalTo(3));
+        assertThat(table.get(0).getValue(), equalTo(5.0));
+        assertThat(table.get(2).getValue(), equalTo(7.0));
+    }
+
+    @Test
+    public void testOrder() throws Exception
+    {
+        final PlotSampleTable table = new PlotSampleTable(new AtomicInteger(0), new PlotSampleTable.Dictionary(), 5);
+        assertThat(table.isOrdered(), equalTo(true));
+        table.add("Test", TestHelper.makeValue(1));
+        table.add("Test", TestHelper.makeValue(2));
+        // Same time stamp is still ordered
+        table.add("Test", TestHelper.makeValue(2));
+        assertThat(table.isOrdered(), equalTo(true));
+
+        // Sample kept as object, time stamped 'now'
+        table.add(new PlotSample("Test", "Error"));
+        assertThat(table.isOrdered(), equalTo(true));
+        // Samples that go back in time
+        table.add("Test", TestHelper.makeValue(3));
+        assertThat(table.isOrdered(), equalTo(false));
+        table.add("Test", TestHelper.makeValue(1));
+        assertThat(table.isOrdered(), equalTo(false));
+
+        // Ring drops the older samples, remaining ones are in order
+        for (int i=4; i<9; ++i)
+        {
+            table.add("Test", TestHelper.makeValue(i));
+            assertThat(table.isOrdered(), equalTo(i >= 7));
+        }
+
+        // Copy keeps the order
+        final PlotSampleTable copy = table.resize(10);
+        assertThat(copy.isOrdered(), equalTo(true));
+        copy.add("Test", TestHelper.makeValue(5));
+        assertThat(copy.isOrdered(), equalTo(false));
+        assertThat(copy.resize(1).isOrdered(), equalTo(true));
+    }
+
+    @Test
+    public void testMerge()
+    {
+        final PlotSampleTable.Dictionary dictionary = new PlotSampleTable.Dictionary();
+        final PlotSampleTable old = new PlotSampleTable(new AtomicInteger(0), dictionary, 10);
+        for (int i=0; i<10; ++i)
+            old.add("Old", TestHelper.makeValue(i));
+        final PlotSampleTable add = old.createTable(3);
+        for (int i=4; i<7; ++i)
+            add.add("New", TestHelper.makeValue(i));
+
+        final PlotSampleTable merged = PlotSampleMerger.merge(old, add);
+        assertThat(merged.size(), equalTo(10));
+        assertThat(merged.get(3).getSource(), equalTo("Old"));
+        assertThat(merged.get(4).getSource(), equalTo("New"));
+        assertThat(merged.get(6).getSource(), equalTo("New"));
+        assertThat(merged.get(7).getSource(), equalTo("Old"));
+        for (int i=0; i<10; ++i)
+            assertThat(merged.get(i).getValue(), equalTo((double) i));
+    }
+
+    @Test
+    public void testMergeCases()
+    {
+        // Old samples 10..19, new samples before, overlapping, within, after
+        final int[][] new_values = { { 1, 2 }, { 5, 12 }, { 10, 19 }, { 13, 15 }, { 18, 25 }, { 30, 31 } };
+        final int[][] expected =
+        {
+            { 1, 2, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19 },
+            { 5, 12, 13, 14, 15, 16, 17, 18, 19 },
+            { 10, 19 },
+            { 10, 11, 12, 13, 15, 16, 17, 18, 19 },
+            { 10, 11, 12, 13, 14, 15, 16, 17, 18, 25 },
+            { 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 30, 31 }
+        };
+        final PlotSampleTable.Dictionary dictionary = new PlotSampleTable.Dictionary();
+        final PlotSampleTable old = new PlotSampleTable(new AtomicInteger(0), dictionary, 10);
+        final PlotSample[] old_array = new PlotSample[10];
+        for (int i=0; i<10; ++i)
+        {
+            old.add("Old", TestHelper.makeValue(10 + i));
+            old_array[i] = new PlotSample("Old", TestHelper.makeValue(10 + i));
+        }
+
+        for (int c=0; c<new_values.length; ++c)
+        {
+            final PlotSampleTable add = old.createTable(2);
+            final PlotSample[] add_array = new PlotSample[2];
+            for (int i=0; i<2; ++i)
+            {
+                add.add("New", TestHelper.makeValue(new_values[c][i]));
+                add_array[i] = new PlotSample("New", TestHelper.makeValue(new_values[c][i]));
+            }
+
+            // Table and array merge keep the same old samples
+            final PlotSampleTable merged = PlotSampleMerger.merge(old, add);
+            final PlotSample[] merged_array = PlotSampleMerger.merge(old_array, add_array);
+            assertThat(merged.size(), equalTo(expected[c].length));
+            assertThat(merged_array.length, equalTo(expected[c].length));
+            for (int i=0; i<expected[c].length; ++i)
+            {
+                assertThat(merged.get(i).getValue(), equalTo((double) expected[c][i]));
+                assertThat(merged_array[i].getValue(), equalTo((double) expected[c][i]));
+                assertThat(merged_array[i].getSource(), equalTo(merged.get(i).getSource()));
+            }
+        }
+    }
+
+    @Test
+    public void testMergeChunks()
+    {
+        final PlotSampleTable.Dictionary dictionary = new PlotSampleTable.Dictionary();
+        PlotSampleTable merged = new PlotSampleTable(new AtomicInteger(0), dictionary, 10);
+        for (int i=0; i<10; ++i)
+            merged.add("Old", TestHelper.makeValue(i));
+
+        // New data for 1..8 arrives in two chunks, 1, 3 and 6, 8
+        final PlotSampleTable chunk1 = merged.createTable(2);
+        chunk1.add("New", TestHelper.makeValue(1));
+        chunk1.add("New", TestHelper.makeValue(3));
+        final PlotSampleTable chunk2 = merged.createTable(2);
+        chunk2.add("New", TestHelper.makeValue(6));
+        chunk2.add("New", TestHelper.makeValue(8));
+
+        // Second chunk covers the gap after the first chunk,
+        // replacing old samples 4, 5 and 7
+        final Instant start = Instant.ofEpochMilli(1);
+        final Instant end1 = chunk1.getPosition(1);
+        merged = PlotSampleMerger.merge(merged, chunk1, start, end1);
+        merged = PlotSampleMerger.merge(merged, chunk2, end1.plusNanos(1), chunk2.getPosition(1));
+
+        final int[] expected = { 0, 1, 3, 6, 8, 9 };
+        assertThat(merged.size(), equalTo(expected.length));
+        for (int i=0; i<expected.length; ++i)
+        {
+            assertThat(merged.get(i).getValue(), equalTo((double) expected[i]));
+            final boolean is_new = i > 0  &&  i < expected.length-1;
+            assertThat(merged.get(i).getSource(), equalTo(is_new ? "New" : "Old"));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.time.Instant;
+
+import org.epics.vtype.Alarm;
+import org.epics.vtype.VString;
+import org.epics.vtype.VType;
+import org.junit.Test;
+import org.phoebus.pv.TimeHelper;
+
+/** JUnit test of the {@link PriorityMergingValueIterator} */
+@SuppressWarnings("nls")
+public class PriorityMergingValueIteratorUnitTest
+{
+    /** @param iters Iterators to merge
+     *  @return Merged sample values
+     */
+    private static String merge(final ValueIterator... iters) throws Exception
+    {
+        final StringBuilder result = new StringBuilder();
+        try (PriorityMergingValueIterator merged = new PriorityMergingValueIterator(iters))
+        {
+            while (merged.hasNext())
+            {
+                final VString value = (VString) merged.next();
+                // Index identifies the iterator that provided the value
+                assertThat(value.getValue().charAt(0) - 'A', equalTo(merged.getIndex()));
+                if (result.length() > 0)
+                    result.append(",");
+                result.append(value.getValue());
+            }
+        }
+        return result.toString();
+    }
+
+    /** @param name Name
+     *  @param seconds Time stamps
+     *  @return Iterator for samples "name seconds" at given time stamps
+     */
+    private static ValueIterator create(final String name, final int... seconds)
+    {
+        final VType[] values = new VType[seconds.length];
+        for (int i=0; i<seconds.length; ++i)
+            values[i] = VString.of(name + " " + seconds[i], Alarm.none(), TimeHelper.fromInstant(Instant.ofEpochSecond(seconds[i])));
+        return new DemoDataIterator(values);
+    }
+
+    @Test
+    public void testOverlap() throws Exception
+    {
+        // B replaces A from time 6 on
+        assertThat(merge(DemoDataIterator.forStrings("A"), DemoDataIterator.forStrings("B", 5)),
+                   equalTo("A 1,A 2,A 3,A 4,A 5,B 1,B 2,B 3,B 4,B 5,B 6,B 7,B 8,B 9,B 10"));
+
+        // Lagging 'B' with lower priority is replaced up to time 10
+        assertThat(merge(create("A", 6, 7, 8, 9, 10, 11, 12, 13, 14, 15), create("B", 1, 2, 3, 4, 5, 6, 7, 8, 9, 10)),
+                   equalTo("B 1,B 2,B 3,B 4,B 5,B 6,B 7,B 8,B 9,B 10,A 11,A 12,A 13,A 14,A 15"));
+    }
+
+    @Test
+    public void testNested() throws Exception
+    {
+        // B replaces the samples of A in the range 3 .. 6, including same time stamps,
+        // C replaces 8 .. 9, while an empty D has no effect
+        assertThat(merge(create("A", 1, 2, 3, 4, 5, 6, 7, 8, 9, 10),
+                         create("B", 3, 5, 6),
+                         create("C", 8, 9),
+                         create("D")),
+                   equalTo("A 1,A 2,B 3,B 5,B 6,A 7,C 8,C 9,A 10"));
+    }
+}
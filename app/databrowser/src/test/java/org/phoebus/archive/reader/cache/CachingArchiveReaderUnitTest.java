@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader.cache;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VType;
+import org.junit.Test;
+import org.phoebus.archive.reader.ArchiveReader;
+import org.phoebus.archive.reader.ValueIterator;
+
+/** JUnit test of the {@link CachingArchiveReader} */
+@SuppressWarnings("nls")
+public class CachingArchiveReaderUnitTest
+{
+    /** Reader with one sample every 10 seconds, counting requests */
+    private static class DemoReader implements ArchiveReader
+    {
+        final AtomicInteger requests = new AtomicInteger();
+
+        /** Simulate a reader that silently ends the samples after this time */
+        volatile long fail_after = Long.MAX_VALUE;
+
+        /** Simulate a reader that throws an error */
+        volatile boolean error = false;
+
+        @Override
+        public String getDescription()
+        {
+            return "Demo";
+        }
+
+        @Override
+        public Collection<String> getNamesByPattern(final String glob_pattern)
+        {
+            return List.of("demo");
+        }
+
+        @Override
+        public ValueIterator getRawValues(final String name, final Instant start, final Instant end) throws Exception
+        {
+            requests.incrementAndGet();
+            if (error)
+                throw new Exception("Demo error");
+            // Last sample before start, then samples within range
+            final List<VType> values = new ArrayList<>();
+            final long first = Math.max(0, (start.getEpochSecond() - 1) / 10 * 10);
+            for (long secs = first; secs <= end.getEpochSecond()  &&  secs <= fail_after; secs += 10)
+                values.add(VDouble.of(secs, Alarm.none(), Time.of(Instant.ofEpochSecond(secs)), Display.none()));
+            return iterate(values);
+        }
+    }
+
+    private static ValueIterator iterate(final List<VType> values)
+    {
+        return new ValueIterator()
+        {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return i < values.size();
+            }
+
+            @Override
+            public VType next()
+            {
+                return values.get(i++);
+            }
+
+            @Override
+            public void close()
+            {
+                // NOP
+            }
+        };
+    }
+
+    private static List<Double> read(final ArchiveReader reader, final long start, final long end) throws Exception
+    {
+        final List<Double> result = new ArrayList<>();
+        try (ValueIterator values = reader.getRawValues("demo", Instant.ofEpochSecond(start), Instant.ofEpochSecond(end)))
+        {
+            while (values.hasNext())
+                result.add(((VNumber) values.next()).getValue().doubleValue());
+        }
+        return result;
+    }
+
+    @Test
+    public void testCache() throws Exception
+    {
+        final File directory = Files.createTempDirectory("cache").toFile();
+        final SampleCache cache = new SampleCache(directory, 10*1024*1024);
+        final DemoReader demo = new DemoReader();
+        final ArchiveReader reader = new CachingArchiveReader(demo, "demo://", cache);
+
+        // Cached data must match the original data
+        final List<Double> expected = read(demo, 1005, 5000);
+        System.out.println(expected.get(0) + " .. " + expected.get(expected.size()-1));
+        assertThat(expected.get(0), equalTo(1000.0));
+
+        demo.requests.set(0);
+        assertThat(read(reader, 1005, 5000), equalTo(expected));
+        assertThat(demo.requests.get(), equalTo(1));
+
+        // Same range is read from cache
+        demo.requests.set(0);
+        assertThat(read(reader, 1005, 5000), equalTo(expected));
+        assertThat(demo.requests.get(), equalTo(0));
+
+        // Panning only fetches the new time range
+        demo.requests.set(0);
+        final List<Double> panned = read(reader, 3000, 7000);
+        assertThat(panned, equalTo(read(demo, 3000, 7000)));
+        assertThat(demo.requests.get(), equalTo(1 + 1));
+
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testIncompleteData() throws Exception
+    {
+        final File directory = Files.createTempDirectory("cache").toFile();
+        final SampleCache cache = new SampleCache(directory, 10*1024*1024);
+        final DemoReader demo = new DemoReader();
+        final ArchiveReader reader = new CachingArchiveReader(demo, "demo://", cache);
+        final List<Double> expected = read(demo, 1005, 5000);
+
+        // Reader ends early, as if it ran into an error
+        demo.fail_after = 3000;
+        final List<Double> received = read(reader, 1005, 5000);
+        assertThat(received.get(received.size()-1), equalTo(3000.0));
+
+        // Incomplete buckets were not cached and are fetched again
+        demo.fail_after = Long.MAX_VALUE;
+        demo.requests.set(0);
+        assertThat(read(reader, 1005, 5000), equalTo(expected));
+        assertThat(demo.requests.get(), equalTo(1));
+
+        // Now all buckets are cached
+        demo.requests.set(0);
+        assertThat(read(reader, 1005, 5000), equalTo(expected));
+        assertThat(demo.requests.get(), equalTo(0));
+
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testError() throws Exception
+    {
+        final File directory = Files.createTempDirectory("cache").toFile();
+        final SampleCache cache = new SampleCache(directory, 10*1024*1024);
+        final DemoReader demo = new DemoReader();
+        final ArchiveReader reader = new CachingArchiveReader(demo, "demo://", cache);
+        read(reader, 1005, 5000);
+
+        // When panning, cached samples are returned,
+        // then fetching the new time range fails
+        demo.error = true;
+        final List<Double> received = new ArrayList<>();
+        try (ValueIterator values = reader.getRawValues("demo", Instant.ofEpochSecond(3000), Instant.ofEpochSecond(7000)))
+        {
+            assertThat(values.getError(), nullValue());
+            while (values.hasNext())
+                received.add(((VNumber) values.next()).getValue().doubleValue());
+            // Error is reported instead of silently ending the samples
+            assertThat(values.getError().getMessage(), equalTo("Demo error"));
+        }
+        assertThat(received.get(0), equalTo(2990.0));
+        // Samples end with the last cached bucket
+        assertThat(received.get(received.size()-1) >= 5000.0, equalTo(true));
+        assertThat(received.get(received.size()-1) < 7000.0, equalTo(true));
+
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testOtherFiles() throws Exception
+    {
+        final File directory = Files.createTempDirectory("cache").toFile();
+        final File other = new File(directory, "other.txt");
+        final File tmp = File.createTempFile("entry", ".tmp", directory);
+        Files.writeString(other.toPath(), "Not a cache file");
+
+        // Cache only removes its own leftover temporary files
+        new SampleCache(directory, 10*1024*1024);
+        assertThat(other.exists(), equalTo(true));
+        assertThat(tmp.exists(), equalTo(false));
+
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.archive.reader.filearchive;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.phoebus.archive.reader.ValueIterator;
+import org.phoebus.core.vtypes.SampleCodec;
+
+/** JUnit test of the {@link FileArchiveReader}
+ *
+ *  <p>Creates chunk files in the format of the archive engine's
+ *  FileArchiveWriter and reads them back.
+ */
+@SuppressWarnings("nls")
+public class FileArchiveReaderUnitTest
+{
+    private static final Instant DAY = Instant.parse("2021-03-01T00:00:00Z");
+
+    /** Seconds from DAY to the next day */
+    private static final int DAY2 = 24*60*60;
+
+    private File root;
+
+    @Before
+    public void createArchive() throws Exception
+    {
+        root = Files.createTempDirectory("filearchive").toFile();
+        final File dir = new File(root, "Test%3APV1");
+        dir.mkdirs();
+        final File day1 = new File(dir, "20210301.chunks");
+        // Samples in a chunk are in the order they were received
+        writeChunk(day1, 10, 5, 7);
+        // Chunk that overlaps the previous one
+        writeChunk(day1, 6, 12);
+        // Single chunk with samples out of order
+        writeChunk(new File(dir, "20210302.chunks"), DAY2 + 10, DAY2 + 1, DAY2 + 5);
+        // Incomplete chunk at end of file is ignored
+        try (FileOutputStream out = new FileOutputStream(day1, true))
+        {
+            out.write(new byte[] { 0x43, 0x48 });
+        }
+    }
+
+    @After
+    public void deleteArchive() throws Exception
+    {
+        Files.walk(root.toPath())
+             .sorted(Comparator.reverseOrder())
+             .map(path -> path.toFile())
+             .forEach(File::delete);
+    }
+
+    /** Append chunk to partition file
+     *  @param file Partition file
+     *  @param seconds Seconds after DAY of the samples to write, also used as value
+     *  @throws Exception on error
+     */
+    private static void writeChunk(final File file, final int... seconds) throws Exception
+    {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (DataOutputStream samples = new DataOutputStream(new DeflaterOutputStream(buf)))
+        {
+            for (int secs : seconds)
+                SampleCodec.encode(samples, VDouble.of(secs, Alarm.none(), Time.of(DAY.plusSeconds(secs)), Display.none()));
+        }
+        long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+        for (int secs : seconds)
+        {
+            first = Math.min(first, secs * 1000000000L);
+            last = Math.max(last, secs * 1000000000L);
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true)))
+        {
+            out.writeInt(0x43484B31);
+            out.writeLong(DAY.getEpochSecond() * 1000000000L + first);
+            out.writeLong(DAY.getEpochSecond() * 1000000000L + last);
+            out.writeInt(seconds.length);
+            out.writeInt(buf.size());
+            buf.writeTo(out);
+        }
+    }
+
+    private static List<Double> read(final ValueIterator values) throws Exception
+    {
+        final List<Double> result = new ArrayList<>();
+        while (values.hasNext())
+        {
+            final VType value = values.next();
+            final double number = ((VDouble) value).getValue();
+            assertThat(Time.timeOf(value).getTimestamp(), equalTo(DAY.plusSeconds((long) number)));
+            result.add(number);
+        }
+        values.close();
+        return result;
+    }
+
+    @Test
+    public void testNames() throws Exception
+    {
+        final FileArchiveReader reader = new FileArchiveReader(root);
+        assertThat(reader.getNamesByPattern("test:*"), equalTo(List.of("Test:PV1")));
+        assertThat(reader.getNamesByPattern("PV?"), equalTo(List.of("Test:PV1")));
+        assertThat(reader.getNamesByPattern("Other"), equalTo(List.of()));
+        reader.close();
+    }
+
+    @Test
+    public void testTimeOrder() throws Exception
+    {
+        final FileArchiveReader reader = new FileArchiveReader(root);
+
+        // All samples, in time order across chunks and partitions
+        assertThat(read(reader.getRawValues("Test:PV1", DAY, DAY.plusSeconds(2*DAY2))),
+                   equalTo(List.of(5.0, 6.0, 7.0, 10.0, 12.0, DAY2 + 1.0, DAY2 + 5.0, DAY2 + 10.0)));
+
+        // Starts with last sample before the start time
+        assertThat(read(reader.getRawValues("Test:PV1", DAY.plusSeconds(6), DAY.plusSeconds(11))),
+                   equalTo(List.of(5.0, 6.0, 7.0, 10.0)));
+
+        // Single chunk of the next day, starting with last sample of previous day
+        assertThat(read(reader.getRawValues("Test:PV1", DAY.plusSeconds(DAY2), DAY.plusSeconds(2*DAY2))),
+                   equalTo(List.of(12.0, DAY2 + 1.0, DAY2 + 5.0, DAY2 + 10.0)));
+        reader.close();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 Oak Ridge National Laboratory.
+ * Copyright (c) 2014-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -58,6 +58,76 @@ public interface PlotDataProvider<XTYPE extends Comparable<XTYPE>>
      */
     public PlotDataItem<XTYPE> get(int index);
 
+    /** Position of a sample
+     *
+     *  <p>The plot library uses this and the following
+     *  accessors while painting and auto-scaling.
+     *  A data provider that stores samples in arrays
+     *  can implement them to avoid creating
+     *  a {@link PlotDataItem} for each sample.
+     *
+     *  @param index Sample index 0 .. size()-1
+     *  @return Position of that sample
+     *  @see PlotDataItem#getPosition()
+     */
+    public default XTYPE getPosition(final int index)
+    {
+        return get(index).getPosition();
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Value of that sample
+     *  @see PlotDataItem#getValue()
+     */
+    public default double getValue(final int index)
+    {
+        return get(index).getValue();
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Standard deviation of that sample, or {@link Double#NaN}
+     *  @see PlotDataItem#getStdDev()
+     */
+    public default double getStdDev(final int index)
+    {
+        return get(index).getStdDev();
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Minimum of that sample, or {@link Double#NaN}
+     *  @see PlotDataItem#getMin()
+     */
+    public default double getMin(final int index)
+    {
+        return get(index).getMin();
+    }
+
+    /** @param index Sample index 0 .. size()-1
+     *  @return Maximum of that sample, or {@link Double#NaN}
+     *  @see PlotDataItem#getMax()
+     */
+    public default double getMax(final int index)
+    {
+        return get(index).getMax();
+    }
+
+    /** Check if positions are known to be ordered
+     *
+     *  <p>Users of ordered data can locate samples by position
+     *  with a binary search.
+     *  A data provider that maintains its samples in order
+     *  should return <code>true</code>, which saves users from
+     *  checking the order via {@link PlotDataSearch#isOrdered(PlotDataProvider)}
+     *  whenever they access the data.
+     *
+     *  @return <code>true</code> if the 'positions' are known to be in order,
+     *          <code>false</code> if they might be unordered
+     */
+    public default boolean isOrdered()
+    {
+        return false;
+    }
+
     //    public String toString()
     //    {
     //        // Derived class should include InstrumentedReadWriteLock#toString()
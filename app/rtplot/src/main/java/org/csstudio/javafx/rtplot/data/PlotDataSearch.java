@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2015-2016 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,6 +15,26 @@ public class PlotDataSearch<XTYPE extends Comparable<XTYPE>>
     protected int cmp;
     protected int mid;
 
+    /** @param data Data, must already be locked
+     *  @return <code>true</code> if the 'positions' are in order,
+     *          which is required for the binary search
+     */
+    public boolean isOrdered(final PlotDataProvider<XTYPE> data)
+    {
+        final int N = data.size();
+        if (N <= 0)
+            return false;
+        XTYPE prev = data.getPosition(0);
+        for (int i=1; i<N; ++i)
+        {
+            final XTYPE current = data.getPosition(i);
+            if (prev.compareTo(current) > 0)
+                return false;
+            prev = current;
+        }
+        return true;
+    }
+
     /** Perform binary search for given value.
      *  @param data Data, must already be locked
      *  @param x The value to look for.
@@ -31,7 +51,7 @@ public class PlotDataSearch<XTYPE extends Comparable<XTYPE>>
         {
             mid = (low + high) / 2;
             // Compare 'mid' sample with goal
-            cmp = data.get(mid).getPosition().compareTo(x);
+            cmp = data.getPosition(mid).compareTo(x);
             // See where to look next
             if (cmp == 0)
                 return true; // key found
@@ -78,7 +98,7 @@ public class PlotDataSearch<XTYPE extends Comparable<XTYPE>>
         while (i > 0)
         {
             --i;
-            if (data.get(i).getPosition().compareTo(x) < 0)
+            if (data.getPosition(i).compareTo(x) < 0)
                 return i;
         }
         return -1;
@@ -118,7 +138,7 @@ public class PlotDataSearch<XTYPE extends Comparable<XTYPE>>
         // Look for sample > x
         while (++i < data.size())
         {
-            if (data.get(i).getPosition().compareTo(x) > 0)
+            if (data.getPosition(i).compareTo(x) > 0)
                 return i;
         }
         return -1;
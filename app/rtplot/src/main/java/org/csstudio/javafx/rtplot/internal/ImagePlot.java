@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2015-2020 Oak Ridge National Laboratory.
+ * Copyright (c) 2015-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,7 +19,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.function.ToDoubleFunction;
+import java.util.function.IntToDoubleFunction;
 import java.util.function.ToIntFunction;
 import java.util.logging.Level;
 
@@ -33,8 +33,8 @@ import org.csstudio.javafx.rtplot.RegionOfInterest;
 import org.csstudio.javafx.rtplot.data.ValueRange;
 import org.csstudio.javafx.rtplot.internal.undo.ChangeImageZoom;
 import org.csstudio.javafx.rtplot.internal.util.GraphicsUtils;
+import org.csstudio.javafx.rtplot.internal.util.ImageColorMapper;
 import org.csstudio.javafx.rtplot.internal.util.LinearScreenTransform;
-import org.csstudio.javafx.rtplot.internal.util.Log10;
 import org.epics.util.array.ArrayByte;
 import org.epics.util.array.ArrayInteger;
 import org.epics.util.array.ArrayShort;
@@ -107,6 +107,9 @@ public class ImagePlot extends PlotCanvasBase
     /** Mapping of value 0..1 to color */
     private volatile ColorMappingFunction color_mapping = ColorMappingFunction.GRAYSCALE;
 
+    /** Maps image data to colors */
+    private final ImageColorMapper color_mapper = new ImageColorMapper();
+
     /** Image data */
     private volatile ListNumber image_data = null;
 
@@ -429,22 +432,6 @@ public class ImagePlot extends PlotCanvasBase
         x_axis.setBounds(image_area.x, image_area.height, image_area.width, x_axis_height);
     }
 
-    // Functionals for reading the next Number as an unsigned value
-    private static double getUnsignedByte(final IteratorNumber iter)
-    {
-        return Byte.toUnsignedInt(iter.nextByte());
-    }
-
-    private static double getUnsignedShort(final IteratorNumber iter)
-    {
-        return Short.toUnsignedInt(iter.nextShort());
-    }
-
-    private static double getUnsignedInt(final IteratorNumber iter)
-    {
-        return Integer.toUnsignedLong(iter.nextInt());
-    }
-
     // Functionals for RGB
     private static int getUByteForRGB(final IteratorNumber iter)
     {
@@ -516,7 +503,7 @@ public class ImagePlot extends PlotCanvasBase
         final VImageType type = this.vimage_type;
         final ColorMappingFunction color_mapping = this.color_mapping;
 
-        ToDoubleFunction<IteratorNumber> next_sample_func = IteratorNumber::nextDouble;
+        IntToDoubleFunction sample_reader = null;
     	boolean isRGB = type == VImageType.TYPE_RGB1 || type == VImageType.TYPE_RGB2 || type == VImageType.TYPE_RGB3;
     	@SuppressWarnings("unchecked")
 		final ToIntFunction<IteratorNumber> next_rgb [] = new ToIntFunction [3];
@@ -574,26 +561,16 @@ public class ImagePlot extends PlotCanvasBase
             }
             else //is not RGB
             {
-	            if (unsigned)
-	            {
-	                if (numbers instanceof ArrayShort)
-	                    next_sample_func = ImagePlot::getUnsignedShort;
-	                else if (numbers instanceof ArrayByte)
-	                    next_sample_func = ImagePlot::getUnsignedByte;
-	                else if (numbers instanceof ArrayInteger)
-	                    next_sample_func = ImagePlot::getUnsignedInt;
-	                else
-	                    logger.log(Level.WARNING, "Cannot handle unsigned data of type " + numbers.getClass().getName());
-	            }
+	            sample_reader = ImageColorMapper.createSampleReader(numbers, unsigned);
 
 	            if (autoscale)
 	            {   // Compute min..max before layout of color bar
-	                final IteratorNumber iter = numbers.iterator();
+	                final int N = numbers.size();
 	                min = Double.MAX_VALUE;
 	                max = Double.NEGATIVE_INFINITY;
-	                while (iter.hasNext())
+	                for (int i=0; i<N; ++i)
 	                {
-	                    final double sample = next_sample_func.applyAsDouble(iter);
+	                    final double sample = sample_reader.applyAsDouble(i);
 	                    if (sample > max)
 	                        max = sample;
 	                    if (sample < min)
@@ -627,7 +604,7 @@ public class ImagePlot extends PlotCanvasBase
             // Paint the image
             gc.setClip(image_area.x, image_area.y, image_area.width, image_area.height);
             final Object image_or_error =  !isRGB ?
-            		drawData(data_width, data_height, numbers, next_sample_func, min, max, color_mapping) :
+            		drawData(data_width, data_height, numbers, unsigned, min, max, color_mapping) :
         			drawDataRGB(data_width, data_height, numbers, next_rgb, type);
             if (image_or_error instanceof BufferedImage)
             {
@@ -826,15 +803,15 @@ public class ImagePlot extends PlotCanvasBase
     /** @param data_width
      *  @param data_height
      *  @param numbers
-     *  @param next_sample_func
+     *  @param unsigned
      *  @param min
      *  @param max
      *  @param color_mapping
      *  @return {@link BufferedImage}, sized to match data or String with error message
      */
     private Object drawData(final int data_width, final int data_height, final ListNumber numbers,
-                                   final ToDoubleFunction<IteratorNumber> next_sample_func,
-                                   double min, double max, final ColorMappingFunction color_mapping)
+                            final boolean unsigned, double min, double max,
+                            final ColorMappingFunction color_mapping)
     {
         // final long start = System.nanoTime();
 
@@ -866,41 +843,9 @@ public class ImagePlot extends PlotCanvasBase
         // but only 8 bits per pixel instead of 8 bits each for R, G and B isn't enough resolution.
         // Rounding of values into 8 bits creates artifacts.
         final int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
-        final IteratorNumber iter = numbers.iterator();
-        int idx = 0;
+        color_mapper.mapColors(data, data_width, data_height, numbers, unsigned, min, max,
+                               colorbar_axis.isLogarithmic(), color_mapping);
 
-        if (colorbar_axis.isLogarithmic())
-        {
-            final double lmin = Log10.log10(min),
-                         lmax = Log10.log10(max),
-                         span = lmax - lmin;
-            for (int y=0; y<data_height; ++y)
-                for (int x=0; x<data_width; ++x)
-                {
-                    final double sample = Log10.log10(next_sample_func.applyAsDouble(iter));
-                    double scaled = (sample - lmin) / span;
-                    if (scaled < 0.0)
-                        scaled = 0;
-                    else if (scaled > 1.0)
-                        scaled = 1.0;
-                    data[idx++] = color_mapping.getRGB(scaled);
-                }
-        }
-        else
-        {
-            final double span = max - min;
-            for (int y=0; y<data_height; ++y)
-                for (int x=0; x<data_width; ++x)
-                {
-                    final double sample = next_sample_func.applyAsDouble(iter);
-                    double scaled = (sample - min) / span;
-                    if (scaled < 0.0)
-                        scaled = 0;
-                    else if (scaled > 1.0)
-                        scaled = 1.0;
-                    data[idx++] = color_mapping.getRGB(scaled);
-                }
-        }
         // final long nano = System.nanoTime() - start;
         // avg_nano = (avg_nano*3 + nano)/4;
         // if (++runs > 100)
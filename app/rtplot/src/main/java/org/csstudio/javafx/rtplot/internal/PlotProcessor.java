@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014-2020 Oak Ridge National Laboratory.
+ * Copyright (c) 2014-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,7 +25,6 @@ import org.csstudio.javafx.rtplot.Messages;
 import org.csstudio.javafx.rtplot.PointType;
 import org.csstudio.javafx.rtplot.Trace;
 import org.csstudio.javafx.rtplot.TraceType;
-import org.csstudio.javafx.rtplot.data.PlotDataItem;
 import org.csstudio.javafx.rtplot.data.PlotDataProvider;
 import org.csstudio.javafx.rtplot.data.PlotDataSearch;
 import org.csstudio.javafx.rtplot.data.ValueRange;
@@ -78,7 +77,7 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                     final int N = data.size();
                     for (int i=0; i<N; ++i)
                     {
-                        XTYPE pos = data.get(i).getPosition();
+                        XTYPE pos = data.getPosition(i);
                         // If sample is Double (not Instant), AND NaN/inf, skip this trace
                         if ((pos instanceof Double)  &&  !Double.isFinite((Double) pos))
                             continue;
@@ -99,25 +98,6 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
         return new AxisRange<>(start, end);
     }
 
-    /** @param data {@link PlotDataProvider} with values
-     *  @return <code>true</code> if the 'positions' are in order
-     */
-    private boolean isOrdered(final PlotDataProvider<XTYPE> data)
-    {
-        final int N = data.size();
-        if (N <= 0)
-            return false;
-        XTYPE prev = data.get(0).getPosition();
-        for (int i=1; i<N; ++i)
-        {
-            final XTYPE current = data.get(i).getPosition();
-            if (prev.compareTo(current) > 0)
-                return false;
-            prev = current;
-        }
-        return true;
-    }
-
     /** Submit background job to determine value range
      *  @param data {@link PlotDataProvider} with values
      *  @param position_range Range of positions to consider
@@ -141,7 +121,7 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                     if (data.size() > 0)
                     {
                         int start, stop;
-                        if (isOrdered(data))
+                        if (data.isOrdered()  ||  search.isOrdered(data))
                         {
                             // Find start..stop indices from ordered positions to match axis range.
                             // Consider first sample at-or-before start
@@ -168,8 +148,7 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                         // Check [start .. stop], including stop
                         for (int idx = start; idx <= stop; idx++)
                         {
-                            final PlotDataItem<XTYPE> item = data.get(idx);
-                            final double value = item.getValue();
+                            final double value = data.getValue(idx);
                             if (!Double.isFinite(value))
                                 continue;
                             if (value < low)
@@ -177,10 +156,12 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                             if (value > high)
                                 high = value;
                             // Implies Double.isFinite(min), ..(max)
-                            if (item.getMin() < low)
-                                low = item.getMin();
-                            if (item.getMax() > high)
-                                high = item.getMax();
+                            final double min = data.getMin(idx);
+                            if (min < low)
+                                low = min;
+                            final double max = data.getMax(idx);
+                            if (max > high)
+                                high = max;
                         }
                     }
                 }
@@ -370,8 +351,8 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                 final int index = search.findSampleGreaterOrEqual(data, location);
                 if (index >= 0)
                 {
-                    location = data.get(index).getPosition();
-                    value = data.get(index).getValue();
+                    location = data.getPosition(index);
+                    value = data.getValue(index);
                 }
                 else
                     location = null;
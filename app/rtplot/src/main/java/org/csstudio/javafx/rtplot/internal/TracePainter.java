@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014-2015-2016 Oak Ridge National Laboratory.
+ * Copyright (c) 2014-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,10 +22,10 @@ import org.csstudio.javafx.rtplot.LineStyle;
 import org.csstudio.javafx.rtplot.PointType;
 import org.csstudio.javafx.rtplot.Trace;
 import org.csstudio.javafx.rtplot.TraceType;
-import org.csstudio.javafx.rtplot.data.PlotDataItem;
 import org.csstudio.javafx.rtplot.data.PlotDataProvider;
 import org.csstudio.javafx.rtplot.internal.util.GraphicsUtils;
 import org.csstudio.javafx.rtplot.internal.util.IntList;
+import org.csstudio.javafx.rtplot.internal.util.PixelDecimator;
 import org.csstudio.javafx.rtplot.internal.util.ScreenTransform;
 
 /** Helper for painting a {@link Trace}
@@ -56,6 +56,9 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
     final private static int OUTSIDE = 1000;
     private int x_min, x_max, y_min, y_max;
 
+    /** Reduces samples for value lines to visible range and pixel columns */
+    final private PixelDecimator<XTYPE> decimator = new PixelDecimator<>();
+
     final private int clipX(final double x)
     {
         if (x < x_min)
@@ -101,13 +104,10 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
 
         // TODO Optimize drawing
         //
-        // Determine first sample to draw via PlotDataSearch.findSampleLessOrEqual(),
-        // then end drawing when reaching right end of area.
+        // Value lines are decimated to the visible range and pixel columns.
+        // Could do the same for min/max, std. deviation, points.
         //
         // Loop only once, performing drawMinMax, drawStdDev, drawValueStaircase in one loop
-        //
-        // For now, main point is that this happens in non-UI thread,
-        // so the slower the better to test UI responsiveness.
         final PlotDataProvider<XTYPE> data = trace.getData();
         try
         {
@@ -133,38 +133,38 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
                 drawMinMaxArea(gc, x_transform, y_axis, data);
                 gc.setPaint(color);
                 drawStdDevLines(gc, x_transform, y_axis, data, trace.getWidth());
-                drawValueStaircase(gc, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
+                drawValueStaircase(gc, bounds, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
                 break;
             case AREA_DIRECT:
                 gc.setPaint(tpcolor);
                 drawMinMaxArea(gc, x_transform, y_axis, data);
                 gc.setPaint(color);
                 drawStdDevLines(gc, x_transform, y_axis, data, trace.getWidth());
-                drawValueLines(gc, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
+                drawValueLines(gc, bounds, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
                 break;
             case LINES:
                 drawMinMaxLines(gc, x_transform, y_axis, data, trace.getWidth());
                 gc.setPaint(tpcolor);
                 drawStdDevLines(gc, x_transform, y_axis, data, trace.getWidth());
                 gc.setPaint(color);
-                drawValueStaircase(gc, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
+                drawValueStaircase(gc, bounds, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
                 break;
             case LINES_DIRECT:
                 drawMinMaxLines(gc, x_transform, y_axis, data, trace.getWidth());
                 gc.setPaint(tpcolor);
                 drawStdDevLines(gc, x_transform, y_axis, data, trace.getWidth());
                 gc.setPaint(color);
-                drawValueLines(gc, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
+                drawValueLines(gc, bounds, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
                 break;
             case SINGLE_LINE:
-                drawValueStaircase(gc, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
+                drawValueStaircase(gc, bounds, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
                 break;
             case SINGLE_LINE_DIRECT:
-                drawValueLines(gc, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
+                drawValueLines(gc, bounds, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
                 break;
             case LINES_ERROR_BARS:
                 drawErrorBars(gc, x_transform, y_axis, data, trace.getPointSize());
-                drawValueLines(gc, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
+                drawValueLines(gc, bounds, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
                 break;
             case ERROR_BARS:
                 // Compare error bars to area and min/max lines
@@ -182,7 +182,7 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
                     drawHistogram(gc, x_transform, y_axis, data);
                 break;
             default:
-                drawValueStaircase(gc, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
+                drawValueStaircase(gc, bounds, x_transform, y_axis, data, trace.getWidth(), trace.getLineStyle());
             }
 
             final PointType point_type = trace.getPointType();
@@ -234,26 +234,28 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
 
     /** Draw values of data as staircase line
      *  @param gc GC
+     *  @param bounds Visible area
      *  @param x_transform Horizontal axis
      *  @param y_axis Value axis
      *  @param data Data
      *  @param line_width
      *  @param line_style
      */
-    final private void drawValueStaircase(final Graphics2D gc,
+    final private void drawValueStaircase(final Graphics2D gc, final Rectangle bounds,
             final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
             final PlotDataProvider<XTYPE> data, final int line_width, final LineStyle line_style)
     {
         final IntList poly_x = new IntList(INITIAL_ARRAY_SIZE);
         final IntList poly_y = new IntList(INITIAL_ARRAY_SIZE);
-        final int N = data.size();
+        // Wide lines reach into the visible area from beyond its edges
+        decimator.decimate(data, x_transform, bounds.x - line_width, bounds.x + bounds.width + line_width, x_min, x_max);
+        final int N = decimator.size();
         int last_x = -1, last_y = -1;
         gc.setStroke(createStroke(line_width, line_style));
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
-            final double value = item.getValue();
+            final int x = decimator.getX(i);
+            final double value = decimator.getValue(i);
             if (poly_x.size() > 0  && x != last_x)
             {   // Staircase from last 'y'..
                 poly_x.add(x);
@@ -280,27 +282,29 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
 
     /** Draw values of data as direct line
      *  @param gc GC
+     *  @param bounds Visible area
      *  @param x_transform Horizontal axis
      *  @param y_axis Value axis
      *  @param data Data
      *  @param line_width
      *  @param line_style
      */
-    final private void drawValueLines(final Graphics2D gc,
+    final private void drawValueLines(final Graphics2D gc, final Rectangle bounds,
             final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
             final PlotDataProvider<XTYPE> data, final int line_width, final LineStyle line_style)
     {
         final IntList value_poly_x = new IntList(INITIAL_ARRAY_SIZE);
         final IntList value_poly_y = new IntList(INITIAL_ARRAY_SIZE);
-        final int N = data.size();
+        // Wide lines reach into the visible area from beyond its edges
+        decimator.decimate(data, x_transform, bounds.x - line_width, bounds.x + bounds.width + line_width, x_min, x_max);
+        final int N = decimator.size();
 
         gc.setStroke(createStroke(line_width, line_style));
         int last_x = -1, last_y = -1;
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
-            final double value = item.getValue();
+            final int x = decimator.getX(i);
+            final double value = decimator.getValue(i);
             if (Double.isNaN(value))
                 flushPolyLine(gc, value_poly_x, value_poly_y, line_width);
             else
@@ -336,14 +340,13 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
 
         for (int i = 0;  i < N;  ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            double ymin = item.getMin();
-            double ymax = item.getMax();
+            double ymin = data.getMin(i);
+            double ymax = data.getMax(i);
             if (Double.isNaN(ymin)  ||  Double.isNaN(ymax))
                 flushPolyFill(gc, pos, min, max);
             else
             {
-                final int x1 = clipX(x_transform.transform(item.getPosition()));
+                final int x1 = clipX(x_transform.transform(data.getPosition(i)));
                 final int y1min = clipY(y_axis.getScreenCoord(ymin));
                 final int y1max = clipY(y_axis.getScreenCoord(ymax));
                 pos.add(x1);
@@ -372,9 +375,8 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         final int N = data.size();
         for (int i = 0;  i < N;  ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            double ymin = item.getMin();
-            double ymax = item.getMax();
+            double ymin = data.getMin(i);
+            double ymax = data.getMax(i);
             if (Double.isNaN(ymin)  ||  Double.isNaN(ymax))
             {
                 flushPolyLine(gc, min_x, min_y, line_width);
@@ -382,7 +384,7 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
             }
             else
             {
-                final int x1 = clipX(x_transform.transform(item.getPosition()));
+                final int x1 = clipX(x_transform.transform(data.getPosition(i)));
                 final int y1min = clipY(y_axis.getScreenCoord(ymin));
                 final int y1max = clipY(y_axis.getScreenCoord(ymax));
                 min_x.add(x1);   min_y.add(y1min);
@@ -411,9 +413,8 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         final int N = data.size();
         for (int i = 0;  i < N;  ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            double value = item.getValue();
-            double dev = item.getStdDev();
+            double value = data.getValue(i);
+            double dev = data.getStdDev(i);
             if (Double.isNaN(value) ||  ! (dev > 0))
             {
                 flushPolyLine(gc, lower_poly_x, lower_poly_y, line_width);
@@ -421,7 +422,7 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
             }
             else
             {
-                final int x = clipX(x_transform.transform(item.getPosition()));
+                final int x = clipX(x_transform.transform(data.getPosition(i)));
                 final int low_y = clipY(y_axis.getScreenCoord(value - dev));
                 final int upp_y = clipY(y_axis.getScreenCoord(value + dev));
                 lower_poly_x.add(x);  lower_poly_y.add(low_y);
@@ -461,20 +462,19 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         final int N = data.size();
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            final double value = item.getValue();
+            final double value = data.getValue(i);
             if (!Double.isNaN(value))
             {
-                final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
+                final int x = clipX(Math.round(x_transform.transform(data.getPosition(i))));
                 final int y = clipY(y_axis.getScreenCoord(value));
-                final double min = item.getMin();
+                final double min = data.getMin(i);
                 if (!Double.isNaN(min))
                 {
                     final int ym = clipY(y_axis.getScreenCoord(min));
                     gc.drawLine(x, y, x, ym);
                     gc.drawLine(x-size/2, ym, x+size/2, ym);
                 }
-                final double max = item.getMax();
+                final double max = data.getMax(i);
                 if (!Double.isNaN(max))
                 {
                     final int ym = clipY(y_axis.getScreenCoord(max));
@@ -501,11 +501,10 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         int last_x = -1, last_y = -1;
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            final double value = item.getValue();
+            final double value = data.getValue(i);
             if (!Double.isNaN(value))
             {
-                final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
+                final int x = clipX(Math.round(x_transform.transform(data.getPosition(i))));
                 final int y = clipY(y_axis.getScreenCoord(value));
                 if (x == last_x  &&  y == last_y)
                     continue;
@@ -597,11 +596,10 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         final int y0 = clipY(y_axis.getScreenCoord(0.0));
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            final double value = item.getValue();
+            final double value = data.getValue(i);
             if (Double.isNaN(value))
                 continue;
-            final int x = (int) Math.round(x_transform.transform(item.getPosition()));
+            final int x = (int) Math.round(x_transform.transform(data.getPosition(i)));
             final int y = clipY(y_axis.getScreenCoord(value));
             if (y0 > y)
                 gc.fillRect(x-width/2, y, width, y0-y);
@@ -632,9 +630,8 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         int last_x1 = -1, last_x = -1, last_y = -1;
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
-            final double value = item.getValue();
-            final int x = (int) Math.round(x_transform.transform(item.getPosition()));
+            final double value = data.getValue(i);
+            final int x = (int) Math.round(x_transform.transform(data.getPosition(i)));
             final int y = Double.isNaN(value) ?  -1  :  clipY(y_axis.getScreenCoord(value));
             if (last_x >= 0)
             {
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.javafx.rtplot.internal.util;
+
+import org.csstudio.javafx.rtplot.ColorMappingFunction;
+
+/** Lookup table for a {@link ColorMappingFunction}
+ *
+ *  <p>Pre-computes the colors for {@link #SIZE} equally spaced values.
+ *  That's well above the 256 levels of each color component,
+ *  so unlike an 8 bit color model it does not cause visible
+ *  banding for color maps that change more than one component.
+ */
+public class ColorLookupTable
+{
+    /** Number of colors in table */
+    public static final int SIZE = 4096;
+
+    private final ColorMappingFunction mapping;
+
+    private final int[] colors = new int[SIZE];
+
+    /** @param mapping Color mapping */
+    public ColorLookupTable(final ColorMappingFunction mapping)
+    {
+        this.mapping = mapping;
+        for (int i=0; i<SIZE; ++i)
+            colors[i] = mapping.getRGB(i / (double) (SIZE-1));
+    }
+
+    /** @return Color mapping of this table */
+    public ColorMappingFunction getMapping()
+    {
+        return mapping;
+    }
+
+    /** @param value Value 0.0 to 1.0, values outside of that range are clamped
+     *  @return RGB value of the color
+     */
+    public int getRGB(final double value)
+    {
+        if (value <= 0.0)
+            return colors[0];
+        if (value >= 1.0)
+            return colors[SIZE-1];
+        return colors[(int) (value * (SIZE-1) + 0.5)];
+    }
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.javafx.rtplot.internal.util;
+
+import static org.csstudio.javafx.rtplot.Activator.logger;
+
+import java.util.function.IntToDoubleFunction;
+import java.util.logging.Level;
+import java.util.stream.IntStream;
+
+import org.csstudio.javafx.rtplot.ColorMappingFunction;
+import org.epics.util.array.ArrayUByte;
+import org.epics.util.array.ArrayUInteger;
+import org.epics.util.array.ArrayUShort;
+import org.epics.util.array.ListByte;
+import org.epics.util.array.ListInteger;
+import org.epics.util.array.ListNumber;
+import org.epics.util.array.ListShort;
+import org.epics.util.array.UnsafeUnwrapper;
+
+/** Maps image data to the colors of a {@link ColorMappingFunction}
+ *
+ *  <p>Fills the pixels of the image plot's buffer.
+ *  Not thread-safe, meant to be called by the one thread
+ *  that updates the image.
+ */
+@SuppressWarnings("nls")
+public class ImageColorMapper
+{
+    /** Images with at least this many pixels are rendered in parallel */
+    private static final int PARALLEL_PIXELS = 256 * 1024;
+
+    /** Approximate number of pixels per parallel tile */
+    private static final int TILE_PIXELS = 64 * 1024;
+
+    /** Renders a range of image pixels */
+    @FunctionalInterface
+    private interface PixelRenderer
+    {
+        /** @param start Index of first pixel
+         *  @param end Index after last pixel
+         */
+        void render(int start, int end);
+    }
+
+    /** Lookup table for the most recently used color mapping */
+    private ColorLookupTable color_lut = null;
+
+    /** @param color_mapping Color mapping
+     *  @return Lookup table for that mapping
+     */
+    private ColorLookupTable getColorLookupTable(final ColorMappingFunction color_mapping)
+    {
+        ColorLookupTable lut = color_lut;
+        if (lut == null  ||  lut.getMapping() != color_mapping)
+            color_lut = lut = new ColorLookupTable(color_mapping);
+        return lut;
+    }
+
+    /** @param sample Sample
+     *  @param log Use log10 of the sample?
+     *  @param low Lower end of value range, log10 for log scale
+     *  @param span Span of value range, in log10 for log scale
+     *  @return Sample scaled to 0.0 .. 1.0
+     */
+    private static double scale(final double sample, final boolean log, final double low, final double span)
+    {
+        final double scaled = ((log ? Log10.log10(sample) : sample) - low) / span;
+        if (scaled < 0.0)
+            return 0.0;
+        else if (scaled > 1.0)
+            return 1.0;
+        return scaled;
+    }
+
+    /** @param numbers Image data
+     *  @return <code>true</code> if the list type holds unsigned numbers,
+     *          which are then read as unsigned even without the 'unsigned' flag
+     */
+    private static boolean isUnsignedType(final ListNumber numbers)
+    {
+        return numbers instanceof ArrayUByte  ||
+               numbers instanceof ArrayUShort  ||
+               numbers instanceof ArrayUInteger;
+    }
+
+    /** @param numbers Image data
+     *  @param unsigned Is the data meant to be treated as 'unsigned'
+     *  @return Function that reads sample at index, using direct array access where possible
+     */
+    public static IntToDoubleFunction createSampleReader(final ListNumber numbers, final boolean unsigned)
+    {
+        final boolean as_unsigned = unsigned  ||  isUnsignedType(numbers);
+        final UnsafeUnwrapper.Array<?> wrapped = UnsafeUnwrapper.wrappedArray(numbers);
+        if (wrapped != null)
+        {
+            final int start = wrapped.startIndex;
+            if (wrapped.array instanceof short[])
+            {
+                final short[] values = (short[]) wrapped.array;
+                if (as_unsigned)
+                    return i -> Short.toUnsignedInt(values[start + i]);
+                return i -> values[start + i];
+            }
+            if (wrapped.array instanceof byte[])
+            {
+                final byte[] values = (byte[]) wrapped.array;
+                if (as_unsigned)
+                    return i -> Byte.toUnsignedInt(values[start + i]);
+                return i -> values[start + i];
+            }
+            if (wrapped.array instanceof int[])
+            {
+                final int[] values = (int[]) wrapped.array;
+                if (as_unsigned)
+                    return i -> Integer.toUnsignedLong(values[start + i]);
+                return i -> values[start + i];
+            }
+            if (wrapped.array instanceof double[])
+            {
+                final double[] values = (double[]) wrapped.array;
+                return i -> values[start + i];
+            }
+            if (wrapped.array instanceof float[])
+            {
+                final float[] values = (float[]) wrapped.array;
+                return i -> values[start + i];
+            }
+        }
+        if (unsigned  &&  ! isUnsignedType(numbers))
+        {
+            if (numbers instanceof ListShort)
+                return i -> Short.toUnsignedInt(numbers.getShort(i));
+            if (numbers instanceof ListByte)
+                return i -> Byte.toUnsignedInt(numbers.getByte(i));
+            if (numbers instanceof ListInteger)
+                return i -> Integer.toUnsignedLong(numbers.getInt(i));
+            logger.log(Level.WARNING, "Cannot handle unsigned data of type " + numbers.getClass().getName());
+        }
+        return numbers::getDouble;
+    }
+
+    /** Map image data to colors
+     *
+     *  @param data Pixels of the image, ARGB, at least data_width * data_height
+     *  @param data_width Width of the image data
+     *  @param data_height Height of the image data
+     *  @param numbers Image data, at least data_width * data_height samples
+     *  @param unsigned Is the data meant to be treated as 'unsigned'
+     *  @param min Value for the first color
+     *  @param max Value for the last color, must be larger than min
+     *  @param log Use log scale?
+     *  @param color_mapping Color mapping
+     */
+    public void mapColors(final int[] data, final int data_width, final int data_height,
+                          final ListNumber numbers, final boolean unsigned,
+                          final double min, final double max, final boolean log,
+                          final ColorMappingFunction color_mapping)
+    {
+        final int pixels = data_width * data_height;
+
+        final IntToDoubleFunction sample_reader = createSampleReader(numbers, unsigned);
+        final double low, span;
+        if (log)
+        {
+            low = Log10.log10(min);
+            span = Log10.log10(max) - low;
+        }
+        else
+        {
+            low = min;
+            span = max - min;
+        }
+
+        // 8 and 16 bit data has few possible values.
+        // For large images, compute the color of each possible value,
+        // then look up the color of each pixel by its value.
+        // Otherwise scale each pixel and use lookup table of color map.
+        final boolean as_unsigned = unsigned  ||  isUnsignedType(numbers);
+        final UnsafeUnwrapper.Array<?> wrapped = UnsafeUnwrapper.wrappedArray(numbers);
+        final Object array = wrapped == null ? null : wrapped.array;
+        final int offset = wrapped == null ? 0 : wrapped.startIndex;
+        final PixelRenderer renderer;
+        if (array instanceof short[]  &&  pixels > 65536)
+        {
+            final short[] values = (short[]) array;
+            final int[] colors = new int[65536];
+            for (int i=0; i<colors.length; ++i)
+                colors[i] = color_mapping.getRGB(scale(as_unsigned ? i : (short) i, log, low, span));
+            renderer = (start, end) ->
+            {
+                for (int i=start; i<end; ++i)
+                    data[i] = colors[values[offset + i] & 0xFFFF];
+            };
+        }
+        else if (array instanceof byte[]  &&  pixels > 256)
+        {
+            final byte[] values = (byte[]) array;
+            final int[] colors = new int[256];
+            for (int i=0; i<colors.length; ++i)
+                colors[i] = color_mapping.getRGB(scale(as_unsigned ? i : (byte) i, log, low, span));
+            renderer = (start, end) ->
+            {
+                for (int i=start; i<end; ++i)
+                    data[i] = colors[values[offset + i] & 0xFF];
+            };
+        }
+        else
+        {
+            final ColorLookupTable lut = getColorLookupTable(color_mapping);
+            renderer = (start, end) ->
+            {
+                for (int i=start; i<end; ++i)
+                    data[i] = lut.getRGB(scale(sample_reader.applyAsDouble(i), log, low, span));
+            };
+        }
+
+        if (pixels < PARALLEL_PIXELS)
+            renderer.render(0, pixels);
+        else
+        {   // Render tiles of complete rows in parallel
+            final int rows = Math.max(1, TILE_PIXELS / data_width);
+            final int tiles = (data_height + rows - 1) / rows;
+            IntStream.range(0, tiles).parallel().forEach(tile ->
+            {
+                final int start = tile * rows * data_width;
+                renderer.render(start, Math.min(pixels, start + rows * data_width));
+            });
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.javafx.rtplot.internal.util;
+
+import java.util.Arrays;
+
+import org.csstudio.javafx.rtplot.data.PlotDataProvider;
+import org.csstudio.javafx.rtplot.data.PlotDataSearch;
+
+/** Reduces samples to what's visible on screen
+ *
+ *  <p>For data with ordered positions, only the samples within the
+ *  visible range plus one sample beyond each end are considered.
+ *  Checking the order takes time proportional to the number of samples,
+ *  which is avoided for data providers that know their data to be ordered.
+ *
+ *  <p>Consecutive samples that fall into the same pixel column
+ *  are reduced to the first, minimum, maximum and last value.
+ *  Solid lines drawn through the reduced samples cover the same pixels
+ *  as lines through all the original samples,
+ *  but there are at most 4 samples per pixel column.
+ *
+ *  <p>'NaN' values are kept, since they separate line segments.
+ *
+ *  @param <XTYPE> Data type of horizontal axis
+ */
+public class PixelDecimator<XTYPE extends Comparable<XTYPE>>
+{
+    private final PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
+
+    /** Reduced samples: Screen position and value */
+    private int[] x = new int[1024];
+    private double[] value = new double[1024];
+    private int size = 0;
+
+    /** Pixel column that's being reduced, its sample count, and values */
+    private int column_x;
+    private int column_count = 0;
+    private double first, min, max, last;
+    private boolean min_before_max;
+
+    /** Reduce samples
+     *
+     *  <p>All samples in the pixel columns <code>left .. right</code>
+     *  are considered.
+     *
+     *  @param data Data, must already be locked
+     *  @param x_transform Horizontal transformation
+     *  @param left Left edge of screen range to draw
+     *  @param right Right edge of screen range to draw
+     *  @param x_min Minimum screen position, smaller ones are clipped
+     *  @param x_max Maximum screen position, larger ones are clipped
+     */
+    public void decimate(final PlotDataProvider<XTYPE> data, final ScreenTransform<XTYPE> x_transform,
+                         final int left, final int right, final int x_min, final int x_max)
+    {
+        size = 0;
+        column_count = 0;
+        final int N = data.size();
+        if (N <= 0)
+            return;
+
+        int start = 0, stop = N-1;
+        if (data.isOrdered()  ||  search.isOrdered(data))
+        {
+            // Start and end in the pixel columns just outside the range
+            XTYPE low = x_transform.inverse(left - 1);
+            XTYPE high = x_transform.inverse(right + 1);
+            if (low.compareTo(high) > 0)
+            {   // Axis is inverted
+                final XTYPE tmp = low;
+                low = high;
+                high = tmp;
+            }
+            // Last sample at-or-before low, first sample after high
+            start = Math.max(0, search.findSampleLessOrEqual(data, low));
+            stop = search.findSampleGreaterThan(data, high);
+            if (stop < 0)
+                stop = N-1;
+        }
+
+        for (int i=start; i<=stop; ++i)
+        {
+            final long pos = Math.round(x_transform.transform(data.getPosition(i)));
+            final int sx = pos < x_min ? x_min : (pos > x_max ? x_max : (int) pos);
+            final double val = data.getValue(i);
+            if (Double.isNaN(val))
+            {
+                flushColumn();
+                add(sx, val);
+            }
+            else if (column_count > 0  &&  sx == column_x)
+            {
+                if (val < min)
+                {
+                    min = val;
+                    min_before_max = false;
+                }
+                if (val > max)
+                {
+                    max = val;
+                    min_before_max = true;
+                }
+                last = val;
+                ++column_count;
+            }
+            else
+            {
+                flushColumn();
+                column_x = sx;
+                first = min = max = last = val;
+                min_before_max = true;
+                column_count = 1;
+            }
+        }
+        flushColumn();
+    }
+
+    /** Add reduced samples for current pixel column */
+    private void flushColumn()
+    {
+        if (column_count <= 0)
+            return;
+        add(column_x, first);
+        if (column_count > 1)
+        {
+            // Extremes in the order they were encountered
+            if (min_before_max)
+            {
+                addIfNew(column_x, min);
+                addIfNew(column_x, max);
+            }
+            else
+            {
+                addIfNew(column_x, max);
+                addIfNew(column_x, min);
+            }
+            addIfNew(column_x, last);
+        }
+        column_count = 0;
+    }
+
+    private void addIfNew(final int sx, final double val)
+    {
+        if (value[size-1] != val)
+            add(sx, val);
+    }
+
+    private void add(final int sx, final double val)
+    {
+        if (size == x.length)
+        {
+            x = Arrays.copyOf(x, 2*size);
+            value = Arrays.copyOf(value, 2*size);
+        }
+        x[size] = sx;
+        value[size++] = val;
+    }
+
+    /** @return Number of reduced samples */
+    public int size()
+    {
+        return size;
+    }
+
+    /** @param index Index 0 .. size()-1
+     *  @return Screen position of reduced sample
+     */
+    public int getX(final int index)
+    {
+        return x[index];
+    }
+
+    /** @param index Index 0 .. size()-1
+     *  @return Value of reduced sample, may be NaN
+     */
+    public double getValue(final int index)
+    {
+        return value[index];
+    }
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.javafx.rtplot.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.csstudio.javafx.rtplot.ColorMappingFunction;
+import org.csstudio.javafx.rtplot.internal.util.ColorLookupTable;
+import org.junit.Test;
+
+/** JUnit test of {@link ColorLookupTable} */
+public class ColorLookupTableTest
+{
+    @Test
+    public void testLookup()
+    {
+        final ColorMappingFunction mapping = ColorMappingFunction.GRAYSCALE;
+        final ColorLookupTable lut = new ColorLookupTable(mapping);
+
+        assertThat(lut.getRGB(0.0), equalTo(mapping.getRGB(0.0)));
+        assertThat(lut.getRGB(1.0), equalTo(mapping.getRGB(1.0)));
+        // Values beyond 0..1 are clamped
+        assertThat(lut.getRGB(-5.0), equalTo(mapping.getRGB(0.0)));
+        assertThat(lut.getRGB(5.0), equalTo(mapping.getRGB(1.0)));
+
+        // Gray scale has 256 levels, table has enough entries to match all of them
+        for (int level=0; level<256; ++level)
+            assertThat(lut.getRGB(level / 255.0), equalTo(mapping.getRGB(level / 255.0)));
+    }
+}
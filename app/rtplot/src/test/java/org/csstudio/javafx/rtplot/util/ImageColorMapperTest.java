@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.javafx.rtplot.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.csstudio.javafx.rtplot.ColorMappingFunction;
+import org.csstudio.javafx.rtplot.internal.util.ColorLookupTable;
+import org.csstudio.javafx.rtplot.internal.util.ImageColorMapper;
+import org.csstudio.javafx.rtplot.internal.util.Log10;
+import org.epics.util.array.ArrayByte;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.array.ArrayShort;
+import org.epics.util.array.ArrayUShort;
+import org.epics.util.array.IteratorNumber;
+import org.epics.util.array.ListNumber;
+import org.junit.Test;
+
+/** JUnit test of {@link ImageColorMapper}
+ *
+ *  <p>Compares with the color of each pixel
+ *  as computed before lookup tables were used.
+ */
+public class ImageColorMapperTest
+{
+    /** Color map that changes all components, similar to 'jet' */
+    private static final ColorMappingFunction JET = value ->
+    {
+        return ColorMappingFunction.getRGB(new int[]
+        {
+            component(1.5 - Math.abs(4*value - 3)),
+            component(1.5 - Math.abs(4*value - 2)),
+            component(1.5 - Math.abs(4*value - 1))
+        });
+    };
+
+    private static int component(final double level)
+    {
+        return (int) (Math.max(0.0, Math.min(level, 1.0)) * 255 + 0.5);
+    }
+
+    /** Map each pixel like the original ImagePlot code */
+    private static int[] mapOriginal(final ListNumber numbers, final boolean unsigned, final int pixels,
+                                     final double min, final double max, final boolean log,
+                                     final ColorMappingFunction mapping)
+    {
+        final int[] data = new int[pixels];
+        final IteratorNumber iter = numbers.iterator();
+        final double low = log ? Log10.log10(min) : min,
+                     span = (log ? Log10.log10(max) : max) - low;
+        for (int idx=0; idx<pixels; ++idx)
+        {
+            double sample;
+            if (unsigned  &&  numbers instanceof ArrayShort)
+                sample = Short.toUnsignedInt(iter.nextShort());
+            else if (unsigned  &&  numbers instanceof ArrayByte)
+                sample = Byte.toUnsignedInt(iter.nextByte());
+            else
+                sample = iter.nextDouble();
+            if (log)
+                sample = Log10.log10(sample);
+            double scaled = (sample - low) / span;
+            if (scaled < 0.0)
+                scaled = 0;
+            else if (scaled > 1.0)
+                scaled = 1.0;
+            data[idx] = mapping.getRGB(scaled);
+        }
+        return data;
+    }
+
+    /** @return Largest difference in any color component */
+    private static int getColorDifference(final int rgb1, final int rgb2)
+    {
+        int diff = 0;
+        for (int shift=0; shift<=16; shift+=8)
+            diff = Math.max(diff, Math.abs(((rgb1 >> shift) & 0xFF) - ((rgb2 >> shift) & 0xFF)));
+        return diff;
+    }
+
+    @Test
+    public void testShortData()
+    {
+        // Large 16 bit image maps each possible value,
+        // and is rendered in parallel
+        final int width = 640, height = 480, pixels = width * height;
+        final short[] values = new short[pixels];
+        final Random random = new Random(42);
+        for (int i=0; i<pixels; ++i)
+            values[i] = (short) random.nextInt(65536);
+
+        final ImageColorMapper mapper = new ImageColorMapper();
+        final int[] data = new int[pixels];
+        for (boolean unsigned : new boolean[] { false, true })
+            for (boolean log : new boolean[] { false, true })
+            {
+                final ListNumber numbers = ArrayShort.of(values);
+                final double min = log ? 10.0 : -1000.0, max = 30000.0;
+                mapper.mapColors(data, width, height, numbers, unsigned, min, max, log, JET);
+                assertThat(data, equalTo(mapOriginal(numbers, unsigned, pixels, min, max, log, JET)));
+            }
+
+        // Unsigned list type is read as unsigned.
+        // Its array is not accessible, so it's mapped via lookup table
+        final ListNumber numbers = ArrayUShort.of(values);
+        mapper.mapColors(data, width, height, numbers, false, 0.0, 65535.0, false, JET);
+        final int[] original = mapOriginal(numbers, false, pixels, 0.0, 65535.0, false, JET);
+        for (int i=0; i<pixels; ++i)
+            assertTrue(getColorDifference(data[i], original[i]) <= 1);
+    }
+
+    @Test
+    public void testByteData()
+    {
+        final int width = 100, height = 20, pixels = width * height;
+        final byte[] values = new byte[pixels];
+        for (int i=0; i<pixels; ++i)
+            values[i] = (byte) i;
+
+        final ImageColorMapper mapper = new ImageColorMapper();
+        final int[] data = new int[pixels];
+        for (boolean unsigned : new boolean[] { false, true })
+        {
+            final ListNumber numbers = ArrayByte.of(values);
+            mapper.mapColors(data, width, height, numbers, unsigned, -100.0, 200.0, false, ColorMappingFunction.GRAYSCALE);
+            assertThat(data, equalTo(mapOriginal(numbers, unsigned, pixels, -100.0, 200.0, false, ColorMappingFunction.GRAYSCALE)));
+        }
+
+        // Section of a larger array
+        final ListNumber numbers = ArrayByte.of(values).subList(1000, 2000);
+        mapper.mapColors(data, 100, 10, numbers, true, 0.0, 255.0, false, JET);
+        final int[] expected = mapOriginal(numbers, true, 1000, 0.0, 255.0, false, JET);
+        for (int i=0; i<1000; ++i)
+            assertThat(data[i], equalTo(expected[i]));
+    }
+
+    @Test
+    public void testLookupTable()
+    {
+        // Other data is scaled and mapped via lookup table.
+        // Test small and large, parallel images
+        final Random random = new Random(42);
+        for (int height : new int[] { 10, 1000 })
+        {
+            final int width = 500, pixels = width * height;
+            final double[] values = new double[pixels];
+            for (int i=0; i<pixels; ++i)
+                values[i] = random.nextDouble() * 120.0 - 10.0;
+            final ListNumber numbers = ArrayDouble.of(values);
+
+            final ImageColorMapper mapper = new ImageColorMapper();
+            final int[] data = new int[pixels];
+            for (ColorMappingFunction mapping : new ColorMappingFunction[] { ColorMappingFunction.GRAYSCALE, JET })
+            {
+                mapper.mapColors(data, width, height, numbers, false, 0.0, 100.0, false, mapping);
+                final int[] original = mapOriginal(numbers, false, pixels, 0.0, 100.0, false, mapping);
+                for (int i=0; i<pixels; ++i)
+                {
+                    // Value is quantized to one of the table's levels
+                    final double scaled = Math.max(0.0, Math.min(values[i] / 100.0, 1.0));
+                    final double level = Math.round(scaled * (ColorLookupTable.SIZE-1)) / (double) (ColorLookupTable.SIZE-1);
+                    assertThat(data[i], equalTo(mapping.getRGB(level)));
+                    // With 4096 levels, components differ by at most 1 from the original color
+                    assertTrue(getColorDifference(data[i], original[i]) <= 1);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.javafx.rtplot.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.csstudio.javafx.rtplot.data.ArrayPlotDataProvider;
+import org.csstudio.javafx.rtplot.data.SimpleDataItem;
+import org.csstudio.javafx.rtplot.internal.util.LinearScreenTransform;
+import org.csstudio.javafx.rtplot.internal.util.PixelDecimator;
+import org.junit.Test;
+
+/** JUnit test of {@link PixelDecimator} */
+public class PixelDecimatorTest
+{
+    @Test
+    public void testDecimation() throws Exception
+    {
+        // 100 samples per pixel column
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+        for (int i=0; i<10000; ++i)
+            data.add(new SimpleDataItem<>(i/100.0, Math.sin(i/10.0)));
+        final LinearScreenTransform t = new LinearScreenTransform();
+        t.config(0.0, 100.0, 0, 100);
+
+        final PixelDecimator<Double> decimator = new PixelDecimator<>();
+        decimator.decimate(data, t, 0, 100, -1000, 1000);
+        assertTrue(decimator.size() <= 4 * 101);
+
+        // Each column has the full value range
+        double min = 0, max = 0;
+        for (int i=0; i<decimator.size(); ++i)
+            if (decimator.getX(i) == 50)
+            {
+                min = Math.min(min, decimator.getValue(i));
+                max = Math.max(max, decimator.getValue(i));
+            }
+        assertTrue(min < -0.99);
+        assertTrue(max > 0.99);
+    }
+
+    @Test
+    public void testNaN() throws Exception
+    {
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+        data.add(new SimpleDataItem<>(1.0, 1.0));
+        data.add(new SimpleDataItem<>(1.1, 2.0));
+        data.add(new SimpleDataItem<>(1.2, Double.NaN));
+        data.add(new SimpleDataItem<>(1.3, 3.0));
+        final LinearScreenTransform t = new LinearScreenTransform();
+        t.config(0.0, 10.0, 0, 10);
+
+        final PixelDecimator<Double> decimator = new PixelDecimator<>();
+        decimator.decimate(data, t, 0, 10, -1000, 1000);
+        assertThat(decimator.size(), equalTo(4));
+        assertThat(decimator.getValue(1), equalTo(2.0));
+        assertTrue(Double.isNaN(decimator.getValue(2)));
+        assertThat(decimator.getValue(3), equalTo(3.0));
+    }
+
+    @Test
+    public void testVisibleRange() throws Exception
+    {
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+        for (int i=0; i<1000; ++i)
+            data.add(new SimpleDataItem<>((double) i, i));
+        final LinearScreenTransform t = new LinearScreenTransform();
+        t.config(0.0, 1000.0, 0, 1000);
+
+        // Samples for columns 100 .. 200, from one column before to one sample after the next
+        final PixelDecimator<Double> decimator = new PixelDecimator<>();
+        decimator.decimate(data, t, 100, 200, -1000, 1000);
+        assertThat(decimator.size(), equalTo(104));
+        assertThat(decimator.getX(0), equalTo(99));
+        assertThat(decimator.getX(103), equalTo(202));
+    }
+}
@@ -35,6 +35,7 @@ import org.csstudio.apputil.formula.node.OrNode;
 import org.csstudio.apputil.formula.node.PwrNode;
 import org.csstudio.apputil.formula.node.RndNode;
 import org.csstudio.apputil.formula.node.SPIFuncNode;
+import org.csstudio.apputil.formula.node.ScalarProgram;
 import org.csstudio.apputil.formula.node.SubNode;
 import org.csstudio.apputil.formula.spi.FormulaFunction;
 import org.epics.vtype.VType;
@@ -75,6 +76,9 @@ import org.epics.vtype.VType;
  *  <p>The formula string is parsed into a tree, so that subsequent
  *  evaluations, possibly with modified values for input variables,
  *  are reasonably fast.
+ *  Trees that only perform arithmetic on numbers are further
+ *  compiled into a {@link ScalarProgram}, which is used
+ *  as long as all variables hold scalar numbers.
  *
  *  <p>Functions can be provided via the {@link FormulaFunction} SPI.
  *
@@ -92,6 +96,9 @@ public class Formula implements Node
 
     final private Node tree;
 
+    /** Compiled tree, <code>null</code> if tree cannot be compiled */
+    final private ScalarProgram program;
+
     private static final VariableNode constants[] = new VariableNode[]
     {
         new VariableNode("E", Math.E),
@@ -145,6 +152,7 @@ public class Formula implements Node
         }
         this.determine_variables = false;
         tree = parse();
+        program = ScalarProgram.compile(tree);
     }
 
     /** Create formula from string.
@@ -159,6 +167,7 @@ public class Formula implements Node
         this.variables = new ArrayList<>();
         this.determine_variables = determine_variables;
         tree = parse();
+        program = ScalarProgram.compile(tree);
     }
 
     /** @return Original formula that got parsed. */
@@ -178,6 +187,12 @@ public class Formula implements Node
     @Override
     public VType eval()
     {
+        if (program != null)
+        {
+            final VType result = program.eval();
+            if (result != null)
+                return result;
+        }
         return tree.eval();
     }
 
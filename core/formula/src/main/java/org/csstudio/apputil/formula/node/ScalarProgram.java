@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.apputil.formula.node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.apputil.formula.Node;
+import org.csstudio.apputil.formula.VariableNode;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VType;
+
+/** Formula tree compiled into a flat program for scalar numbers
+ *
+ *  <p>Evaluating the node tree creates a {@link VType}
+ *  for the result of each node.
+ *  A tree that only contains numeric constants, variables
+ *  and unary or binary operators can instead be compiled
+ *  into a list of instructions that operate on <code>double</code>
+ *  registers, with alarm, time and display passed along
+ *  just like the tree would.
+ *  Only the final result is turned into a {@link VType}.
+ *
+ *  <p>The program can only handle variables with scalar numeric values.
+ *  For strings, arrays etc. the tree needs to be evaluated.
+ */
+public class ScalarProgram
+{
+    /** Instruction codes */
+    private static final byte CONSTANT = 0, VARIABLE = 1, UNARY = 2, BINARY = 3;
+
+    /** Instruction 'i' writes its result to register 'i' */
+    private final byte[] code;
+
+    /** Constant value, variable, unary or binary node for each instruction */
+    private final Object[] refs;
+
+    /** Registers used as input by each instruction */
+    private final int[] arg1, arg2;
+
+    /** Helper for compiling a tree */
+    private static class Builder
+    {
+        final List<Byte> code = new ArrayList<>();
+        final List<Object> refs = new ArrayList<>();
+        final List<Integer> arg1 = new ArrayList<>(), arg2 = new ArrayList<>();
+
+        int add(final byte op, final Object ref, final int a, final int b)
+        {
+            code.add(op);
+            refs.add(ref);
+            arg1.add(a);
+            arg2.add(b);
+            return code.size() - 1;
+        }
+    }
+
+    /** Compile formula tree
+     *  @param tree Tree of formula nodes
+     *  @return {@link ScalarProgram} or <code>null</code> if tree cannot be compiled
+     */
+    public static ScalarProgram compile(final Node tree)
+    {
+        // Result of tree with just a constant or variable is that
+        // constant or variable, unchanged, so nothing to compile
+        if (! (tree instanceof AbstractBinaryNode  ||  tree instanceof AbstractUnaryNode))
+            return null;
+        final Builder builder = new Builder();
+        if (compile(tree, builder) < 0)
+            return null;
+        return new ScalarProgram(builder);
+    }
+
+    /** @param node Node to compile
+     *  @param builder Builder for the program
+     *  @return Register that holds result of node, -1 if node cannot be compiled
+     */
+    private static int compile(final Node node, final Builder builder)
+    {
+        if (node instanceof ConstantNode)
+        {
+            final VType value = ((ConstantNode) node).value;
+            if (! (value instanceof VNumber))
+                return -1;
+            return builder.add(CONSTANT, value, -1, -1);
+        }
+        if (node instanceof VariableNode)
+            return builder.add(VARIABLE, node, -1, -1);
+        if (node instanceof AbstractUnaryNode)
+        {
+            final int a = compile(((AbstractUnaryNode) node).n, builder);
+            if (a < 0)
+                return -1;
+            return builder.add(UNARY, node, a, -1);
+        }
+        if (node instanceof AbstractBinaryNode)
+        {
+            final AbstractBinaryNode binary = (AbstractBinaryNode) node;
+            final int a = compile(binary.left, builder);
+            if (a < 0)
+                return -1;
+            final int b = compile(binary.right, builder);
+            if (b < 0)
+                return -1;
+            return builder.add(BINARY, node, a, b);
+        }
+        return -1;
+    }
+
+    private ScalarProgram(final Builder builder)
+    {
+        final int N = builder.code.size();
+        code = new byte[N];
+        refs = builder.refs.toArray();
+        arg1 = new int[N];
+        arg2 = new int[N];
+        for (int i=0; i<N; ++i)
+        {
+            code[i] = builder.code.get(i);
+            arg1[i] = builder.arg1.get(i);
+            arg2[i] = builder.arg2.get(i);
+        }
+    }
+
+    /** Evaluate the program
+     *  @return Result or <code>null</code> if a variable does not hold a scalar number,
+     *          so tree needs to be evaluated
+     */
+    public VType eval()
+    {
+        final int N = code.length;
+        final double[] value = new double[N];
+        final Alarm[] alarm = new Alarm[N];
+        final Time[] time = new Time[N];
+        final Display[] display = new Display[N];
+
+        for (int i=0; i<N; ++i)
+        {
+            switch (code[i])
+            {
+            case CONSTANT:
+            case VARIABLE:
+            {
+                final VType v = code[i] == CONSTANT
+                              ? (VType) refs[i]
+                              : ((VariableNode) refs[i]).eval();
+                if (! (v instanceof VNumber))
+                    return null;
+                value[i] = ((VNumber) v).getValue().doubleValue();
+                alarm[i] = Alarm.alarmOf(v);
+                time[i] = Time.timeOf(v);
+                display[i] = Display.displayOf(v);
+                break;
+            }
+            case UNARY:
+            {
+                final int a = arg1[i];
+                value[i] = ((AbstractUnaryNode) refs[i]).calc(value[a]);
+                alarm[i] = alarm[a];
+                time[i] = time[a];
+                display[i] = display[a];
+                break;
+            }
+            default:
+            {
+                final int a = arg1[i], b = arg2[i];
+                value[i] = ((AbstractBinaryNode) refs[i]).calc(value[a], value[b]);
+                alarm[i] = highestAlarmOf(alarm[a], alarm[b]);
+                time[i] = time[a].getTimestamp().isAfter(time[b].getTimestamp()) ? time[a] : time[b];
+                display[i] = display[a];
+            }
+            }
+        }
+        final int result = N-1;
+        return VDouble.of(value[result], alarm[result], time[result], display[result]);
+    }
+
+    /** @param a Alarm
+     *  @param b Other alarm
+     *  @return Highest alarm, same as {@link Alarm#highestAlarmOf(List, boolean)}
+     */
+    private static Alarm highestAlarmOf(final Alarm a, final Alarm b)
+    {
+        Alarm highest = Alarm.none();
+        if (a.getSeverity().compareTo(highest.getSeverity()) > 0)
+            highest = a;
+        if (b.getSeverity().compareTo(highest.getSeverity()) > 0)
+            highest = b;
+        return highest;
+    }
+}
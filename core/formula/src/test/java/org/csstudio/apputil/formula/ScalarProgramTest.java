@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.apputil.formula;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.time.Instant;
+
+import org.csstudio.apputil.formula.node.AddNode;
+import org.csstudio.apputil.formula.node.ConstantNode;
+import org.csstudio.apputil.formula.node.IfNode;
+import org.csstudio.apputil.formula.node.MulNode;
+import org.csstudio.apputil.formula.node.NotNode;
+import org.csstudio.apputil.formula.node.ScalarProgram;
+import org.csstudio.apputil.formula.node.SubNode;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.AlarmStatus;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VInt;
+import org.epics.vtype.VString;
+import org.epics.vtype.VType;
+import org.junit.Test;
+import org.phoebus.core.vtypes.VTypeHelper;
+
+/** Compare {@link ScalarProgram} with evaluation of the tree */
+@SuppressWarnings("nls")
+public class ScalarProgramTest
+{
+    private final static double epsilon = 0.001;
+
+    private static void assertSame(final Node tree)
+    {
+        final ScalarProgram program = ScalarProgram.compile(tree);
+        assertNotNull(program);
+        final VType expected = tree.eval();
+        final VType result = program.eval();
+        assertEquals(VTypeHelper.toDouble(expected), VTypeHelper.toDouble(result), epsilon);
+        assertEquals(Alarm.alarmOf(expected), Alarm.alarmOf(result));
+        assertEquals(Time.timeOf(expected), Time.timeOf(result));
+        assertEquals(Display.displayOf(expected), Display.displayOf(result));
+    }
+
+    @Test
+    public void testScalarProgram() throws Exception
+    {
+        final VariableNode a = new VariableNode("a",
+            VDouble.of(2.0, Alarm.of(AlarmSeverity.MINOR, AlarmStatus.RECORD, "LOW"), Time.of(Instant.ofEpochSecond(100)), Display.none()));
+        final VariableNode b = new VariableNode("b",
+            VInt.of(3, Alarm.of(AlarmSeverity.MAJOR, AlarmStatus.RECORD, "HIHI"), Time.of(Instant.ofEpochSecond(200)), Display.none()));
+
+        assertSame(new AddNode(a, b));
+        assertSame(new SubNode(new ConstantNode(10), new MulNode(a, b)));
+        assertSame(new NotNode(new SubNode(b, a)));
+
+        // Strings or arrays in variables require the tree
+        final ScalarProgram program = ScalarProgram.compile(new AddNode(a, b));
+        b.setValue(VString.of("Text", Alarm.none(), Time.now()));
+        assertNull(program.eval());
+
+        // Constant strings or unsupported nodes aren't compiled
+        assertNull(ScalarProgram.compile(new AddNode(a, new ConstantNode("Text"))));
+        assertNull(ScalarProgram.compile(new IfNode(a, a, b)));
+        assertNull(ScalarProgram.compile(a));
+    }
+
+    @Test
+    public void testFormula() throws Exception
+    {
+        final Formula formula = new Formula("2*a + b", true);
+        final VariableNode[] vars = formula.getVariables();
+        vars[0].setValue(3.0);
+        vars[1].setValue(4.0);
+        assertEquals(10.0, VTypeHelper.toDouble(formula.eval()), epsilon);
+
+        // Falls back to tree for strings
+        vars[1].setValue(VString.of("x", Alarm.none(), Time.now()));
+        assertEquals("6.0x", VTypeHelper.toString(formula.eval()));
+    }
+}
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.csstudio.apputil.formula.Formula;
@@ -31,25 +32,54 @@ import org.phoebus.pv.PV;
 @SuppressWarnings("nls")
 public class FormulaPV extends PV
 {
-    /** Evaluate formulas on one thread
-     *  to decouple and throttle input updates
+    /** Evaluate formulas on a few threads
+     *  to decouple and throttle input updates.
+     *
+     *  <p>Each formula is assigned to one of the threads
+     *  based on its name, so updates of one formula are
+     *  evaluated in order while a slow formula only delays
+     *  the other formulas on the same thread.
      */
-    private static final ExecutorService update_thread = Executors.newSingleThreadExecutor(target ->
-    {
-        final Thread thread = new Thread(target, "FormulaPV");
-        thread.setDaemon(true);
-        return thread;
-    });
+    private static final ExecutorService[] update_threads = createUpdateThreads();
 
     /** Is there already a pending update? */
     private AtomicBoolean pending = new AtomicBoolean();
 
+    /** Thread used to evaluate this formula */
+    private final ExecutorService update_thread;
+
+    /** Evaluation statistics */
+    private final AtomicLong evaluations = new AtomicLong(),
+                             skipped = new AtomicLong(),
+                             evaluation_nanos = new AtomicLong(),
+                             max_evaluation_nanos = new AtomicLong();
+
     private Formula formula;
     private volatile FormulaInput[] inputs;
 
+    private static ExecutorService[] createUpdateThreads()
+    {
+        final int count = FormulaPVPreferences.threads > 0
+                        ? FormulaPVPreferences.threads
+                        : Runtime.getRuntime().availableProcessors();
+        final ExecutorService[] threads = new ExecutorService[count];
+        for (int i=0; i<count; ++i)
+        {
+            final String name = "FormulaPV-" + (i+1);
+            threads[i] = Executors.newSingleThreadExecutor(target ->
+            {
+                final Thread thread = new Thread(target, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return threads;
+    }
+
     protected FormulaPV(final String name, final String expression)
     {
         super(name);
+        update_thread = update_threads[Math.floorMod(name.hashCode(), update_threads.length)];
         try
         {
             // Parse expression...
@@ -93,11 +123,40 @@ public class FormulaPV extends PV
         return pvs;
     }
 
+    /** @return Number of times the formula has been evaluated */
+    public long getEvaluationCount()
+    {
+        return evaluations.get();
+    }
+
+    /** @return Number of input updates that did not cause another evaluation
+     *          because one was already pending
+     */
+    public long getSkippedUpdates()
+    {
+        return skipped.get();
+    }
+
+    /** @return Total time spent evaluating the formula in nanoseconds */
+    public long getEvaluationNanos()
+    {
+        return evaluation_nanos.get();
+    }
+
+    /** @return Longest evaluation of the formula in nanoseconds */
+    public long getMaxEvaluationNanos()
+    {
+        return max_evaluation_nanos.get();
+    }
+
     /** Schedule evaluation of formula */
     void update()
     {
         if (pending.getAndSet(true))
+        {
+            skipped.incrementAndGet();
             logger.log(Level.FINE, () -> getName() + " skips recalc on " + Thread.currentThread());
+        }
         else
             update_thread.submit(this::doUpdate);
     }
@@ -111,13 +170,22 @@ public class FormulaPV extends PV
         // Simulate slow evaluation
         // try { Thread.sleep(100); } catch (InterruptedException e) {}
 
+        final long start = System.nanoTime();
         final VType value = formula.eval();
+        final long nanos = System.nanoTime() - start;
+        evaluations.incrementAndGet();
+        evaluation_nanos.addAndGet(nanos);
+        max_evaluation_nanos.accumulateAndGet(nanos, Math::max);
+
         notifyListenersOfValue(value);
     }
 
     @Override
     protected void close()
     {
+        logger.log(Level.FINE, () -> getName() + " evaluated " + evaluations.get() + " times, " +
+                                     skipped.get() + " updates skipped, max. " +
+                                     max_evaluation_nanos.get()/1000 + " us");
         // Close variable PVs
         // Inputs or individual input may be null for formulas that failed to initialize
         if (inputs != null)
@@ -17,6 +17,7 @@ import org.phoebus.framework.preferences.Preference;
 class FormulaPVPreferences
 {
     @Preference public static int throttle_ms;
+    @Preference public static int threads;
 
     static
     {
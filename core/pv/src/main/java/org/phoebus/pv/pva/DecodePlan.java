@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.pv.pva;
+
+import java.util.BitSet;
+
+import org.epics.pva.data.PVAArray;
+import org.epics.pva.data.PVABoolArray;
+import org.epics.pva.data.PVAData;
+import org.epics.pva.data.PVANumber;
+import org.epics.pva.data.PVAStructure;
+import org.epics.pva.data.PVAStructureArray;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VType;
+
+/** Decode plan for monitor updates of a numeric scalar or array PV
+ *
+ *  <p>Created from the structure of the first received update.
+ *  Determines which structure elements hold the alarm and
+ *  the display, control and alarm limits.
+ *  For each following update, the 'changes' of the monitor
+ *  are used to decode only those parts of the {@link Alarm} and {@link Display}
+ *  that changed. Typically only value and time change,
+ *  and the previous {@link Alarm} and {@link Display} are re-used.
+ *
+ *  <p>Structures that are not plain NTScalar or NTScalarArray
+ *  data with a numeric value are not handled by a plan
+ *  and decoded via {@link PVAStructureHelper}.
+ */
+@SuppressWarnings("nls")
+class DecodePlan
+{
+    /** Structure elements that affect the {@link Alarm} */
+    private final BitSet alarm_elements;
+
+    /** Structure elements that affect the {@link Display} */
+    private final BitSet display_elements;
+
+    /** Is the value numeric, or a numeric (or string) array? */
+    private final boolean is_scalar;
+
+    private Alarm alarm = null;
+
+    private Display display = null;
+
+    /** @param struct Structure of monitored data
+     *  @param name_helper Name helper
+     *  @return {@link DecodePlan} or <code>null</code> if structure cannot be handled by a plan
+     *  @throws Exception on error
+     */
+    static DecodePlan create(final PVAStructure struct, final PVNameHelper name_helper) throws Exception
+    {
+        // Only handle plain "value" fields, not sub-fields or array elements
+        if (! name_helper.getField().equals("value")  ||
+            name_helper.getElementIndex().isPresent())
+            return null;
+
+        String type = struct.getStructureName();
+        if (type.startsWith("epics:nt/"))
+            type = type.substring(9);
+        if (type.equals("NTEnum:1.0")    ||
+            type.equals("NTNDArray:1.0") ||
+            type.equals("NTTable:1.0"))
+            return null;
+
+        final PVAData value = struct.get("value");
+        if (value instanceof PVANumber)
+            return new DecodePlan(struct, true);
+        if (value instanceof PVAArray  &&
+            ! (value instanceof PVAStructureArray  ||  value instanceof PVABoolArray))
+            return new DecodePlan(struct, false);
+        return null;
+    }
+
+    private DecodePlan(final PVAStructure struct, final boolean is_scalar) throws Exception
+    {
+        this.is_scalar = is_scalar;
+        alarm_elements = getElements(struct, "alarm");
+        display_elements = getElements(struct, "display", "control", "valueAlarm");
+    }
+
+    /** @param struct Top-level structure
+     *  @param names Names of sub-structures
+     *  @return Indices of top-level structure and the named sub-structures, including all their elements
+     *  @throws Exception on error
+     */
+    private static BitSet getElements(final PVAStructure struct, final String... names) throws Exception
+    {
+        final BitSet elements = new BitSet();
+        // Change of complete structure affects all sub-structures
+        elements.set(0);
+        for (String name : names)
+        {
+            final PVAData section = struct.get(name);
+            if (section != null)
+            {
+                final int index = struct.getIndex(section);
+                elements.set(index, index + 1 + countElements(section));
+            }
+        }
+        return elements;
+    }
+
+    /** @param data Structure element
+     *  @return Number of elements within a structure, including nested structures
+     */
+    private static int countElements(final PVAData data)
+    {
+        if (! (data instanceof PVAStructure))
+            return 0;
+        int count = 0;
+        for (PVAData element : ((PVAStructure) data).get())
+            count += 1 + countElements(element);
+        return count;
+    }
+
+    /** Decode monitor update
+     *
+     *  <p>Must be called with updates of the structure
+     *  used to create the plan, in the order received.
+     *
+     *  @param struct Received data
+     *  @param changes Elements of the structure that changed
+     *  @return {@link VType}
+     *  @throws Exception on error
+     */
+    VType decode(final PVAStructure struct, final BitSet changes) throws Exception
+    {
+        if (alarm == null  ||  changes.intersects(alarm_elements))
+            alarm = Decoders.decodeAlarm(struct);
+        if (display == null  ||  changes.intersects(display_elements))
+            display = Decoders.decodeDisplay(struct);
+        final Time time = Decoders.decodeTime(struct);
+
+        final PVAData value = struct.get("value");
+        if (is_scalar)
+            return Decoders.decodeNumber((PVANumber) value, alarm, time, display);
+        return Decoders.decodeArray((PVAArray) value, alarm, time, display);
+    }
+}
@@ -229,7 +229,7 @@ public class Decoders
         }
     }
 
-    private static Display decodeDisplay(final PVAStructure struct)
+    static Display decodeDisplay(final PVAStructure struct)
     {
         String units;
         NumberFormat format;
@@ -334,92 +334,142 @@ public class Decoders
 
     public static VType decodeDouble(final PVAStructure struct, final PVADouble field)
     {
-        return VDouble.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+        return decodeDouble(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeDouble(final PVADouble field, final Alarm alarm, final Time time, final Display display)
+    {
+        return VDouble.of(field.get(), alarm, time, display);
     }
 
     public static VType decodeFloat(final PVAStructure struct, final PVAFloat field)
     {
-        return VFloat.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+        return decodeFloat(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeFloat(final PVAFloat field, final Alarm alarm, final Time time, final Display display)
+    {
+        return VFloat.of(field.get(), alarm, time, display);
     }
 
     public static VType decodeLong(final PVAStructure struct, final PVALong field)
+    {
+        return decodeLong(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeLong(final PVALong field, final Alarm alarm, final Time time, final Display display)
     {
         if (field.isUnsigned())
-            return VULong.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
-        return VLong.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VULong.of(field.get(), alarm, time, display);
+        return VLong.of(field.get(), alarm, time, display);
     }
 
     public static VType decodeInt(final PVAStructure struct, final PVAInt field)
+    {
+        return decodeInt(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeInt(final PVAInt field, final Alarm alarm, final Time time, final Display display)
     {
         if (field.isUnsigned())
-            return VUInt.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
-        return VInt.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VUInt.of(field.get(), alarm, time, display);
+        return VInt.of(field.get(), alarm, time, display);
     }
 
     public static VType decodeShort(final PVAStructure struct, final PVAShort field)
+    {
+        return decodeShort(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeShort(final PVAShort field, final Alarm alarm, final Time time, final Display display)
     {
         if (field.isUnsigned())
-            return VUShort.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
-        return VShort.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VUShort.of(field.get(), alarm, time, display);
+        return VShort.of(field.get(), alarm, time, display);
     }
 
     public static VType decodeByte(final PVAStructure struct, final PVAByte field)
+    {
+        return decodeByte(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeByte(final PVAByte field, final Alarm alarm, final Time time, final Display display)
     {
         if (field.isUnsigned())
-            return VUByte.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
-        return VByte.of(field.get(), decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VUByte.of(field.get(), alarm, time, display);
+        return VByte.of(field.get(), alarm, time, display);
     }
 
     public static VType decodeDoubleArray(final PVAStructure struct, final PVADoubleArray field)
     {
-        return VDoubleArray.of(ArrayDouble.of(field.get()),
-                               decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+        return decodeDoubleArray(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeDoubleArray(final PVADoubleArray field, final Alarm alarm, final Time time, final Display display)
+    {
+        return VDoubleArray.of(ArrayDouble.of(field.get()), alarm, time, display);
     }
 
     public static VType decodeFloatArray(final PVAStructure struct, final PVAFloatArray field)
     {
-        return VFloatArray.of(ArrayFloat.of(field.get()),
-                              decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+        return decodeFloatArray(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeFloatArray(final PVAFloatArray field, final Alarm alarm, final Time time, final Display display)
+    {
+        return VFloatArray.of(ArrayFloat.of(field.get()), alarm, time, display);
     }
 
     public static VType decodeLongArray(final PVAStructure struct, final PVALongArray field)
+    {
+        return decodeLongArray(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeLongArray(final PVALongArray field, final Alarm alarm, final Time time, final Display display)
     {
         if (field.isUnsigned())
-            return VULongArray.of(ArrayULong.of(field.get()),
-                                  decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VULongArray.of(ArrayULong.of(field.get()), alarm, time, display);
         else
-            return VLongArray.of(ArrayLong.of(field.get()),
-                                 decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VLongArray.of(ArrayLong.of(field.get()), alarm, time, display);
     }
 
     public static VType decodeIntArray(final PVAStructure struct, final PVAIntArray field)
+    {
+        return decodeIntArray(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeIntArray(final PVAIntArray field, final Alarm alarm, final Time time, final Display display)
     {
         if (field.isUnsigned())
-            return VUIntArray.of(ArrayUInteger.of(field.get()),
-                                 decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VUIntArray.of(ArrayUInteger.of(field.get()), alarm, time, display);
         else
-            return VIntArray.of(ArrayInteger.of(field.get()),
-                                decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VIntArray.of(ArrayInteger.of(field.get()), alarm, time, display);
     }
 
     public static VType decodeShortArray(final PVAStructure struct, final PVAShortArray field)
+    {
+        return decodeShortArray(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeShortArray(final PVAShortArray field, final Alarm alarm, final Time time, final Display display)
     {
         if (field.isUnsigned())
-            return VUShortArray.of(ArrayUShort.of(field.get()),
-                                   decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VUShortArray.of(ArrayUShort.of(field.get()), alarm, time, display);
         else
-            return VShortArray.of(ArrayShort.of(field.get()),
-                                  decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VShortArray.of(ArrayShort.of(field.get()), alarm, time, display);
     }
 
     public static VType decodeByteArray(final PVAStructure struct, final PVAByteArray field)
+    {
+        return decodeByteArray(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    private static VType decodeByteArray(final PVAByteArray field, final Alarm alarm, final Time time, final Display display)
     {
         if (field.isUnsigned())
-            return VUByteArray.of(ArrayUByte.of(field.get()),
-                                  decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VUByteArray.of(ArrayUByte.of(field.get()), alarm, time, display);
         else
-            return VByteArray.of(ArrayByte.of(field.get()),
-                                 decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+            return VByteArray.of(ArrayByte.of(field.get()), alarm, time, display);
     }
 
     public static VType decodeStringArray(final PVAStructure struct, final PVAStringArray field)
@@ -428,38 +478,64 @@ public class Decoders
     }
 
     public static VType decodeNumber(final PVAStructure struct, final PVANumber field) throws Exception
+    {
+        return decodeNumber(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    /** @param field Numeric value
+     *  @param alarm Alarm
+     *  @param time Time
+     *  @param display Display
+     *  @return VType for the value
+     *  @throws Exception on error
+     */
+    static VType decodeNumber(final PVANumber field, final Alarm alarm, final Time time, final Display display) throws Exception
     {
         if (field instanceof PVADouble)
-            return Decoders.decodeDouble(struct, (PVADouble) field);
+            return Decoders.decodeDouble((PVADouble) field, alarm, time, display);
         if (field instanceof PVAFloat)
-            return Decoders.decodeFloat(struct, (PVAFloat) field);
+            return Decoders.decodeFloat((PVAFloat) field, alarm, time, display);
         if (field instanceof PVALong)
-            return Decoders.decodeLong(struct, (PVALong) field);
+            return Decoders.decodeLong((PVALong) field, alarm, time, display);
         if (field instanceof PVAInt)
-            return Decoders.decodeInt(struct, (PVAInt) field);
+            return Decoders.decodeInt((PVAInt) field, alarm, time, display);
         if (field instanceof PVAShort)
-            return Decoders.decodeShort(struct, (PVAShort) field);
+            return Decoders.decodeShort((PVAShort) field, alarm, time, display);
         if (field instanceof PVAByte)
-            return Decoders.decodeByte(struct, (PVAByte) field);
+            return Decoders.decodeByte((PVAByte) field, alarm, time, display);
         throw new Exception("Cannot handle " + field.getClass().getName());
     }
 
     public static VType decodeArray(final PVAStructure struct, final PVAArray field) throws Exception
+    {
+        if (field instanceof PVAStringArray)
+            return Decoders.decodeStringArray(struct, (PVAStringArray) field);
+        return decodeArray(field, decodeAlarm(struct), decodeTime(struct), decodeDisplay(struct));
+    }
+
+    /** @param field Array value
+     *  @param alarm Alarm
+     *  @param time Time
+     *  @param display Display, ignored for string array
+     *  @return VType for the value
+     *  @throws Exception on error
+     */
+    static VType decodeArray(final PVAArray field, final Alarm alarm, final Time time, final Display display) throws Exception
     {
         if (field instanceof PVADoubleArray)
-            return Decoders.decodeDoubleArray(struct, (PVADoubleArray) field);
+            return Decoders.decodeDoubleArray((PVADoubleArray) field, alarm, time, display);
         if (field instanceof PVAFloatArray)
-            return Decoders.decodeFloatArray(struct, (PVAFloatArray) field);
+            return Decoders.decodeFloatArray((PVAFloatArray) field, alarm, time, display);
         if (field instanceof PVALongArray)
-            return Decoders.decodeLongArray(struct, (PVALongArray) field);
+            return Decoders.decodeLongArray((PVALongArray) field, alarm, time, display);
         if (field instanceof PVAIntArray)
-            return Decoders.decodeIntArray(struct, (PVAIntArray) field);
+            return Decoders.decodeIntArray((PVAIntArray) field, alarm, time, display);
         if (field instanceof PVAShortArray)
-            return Decoders.decodeShortArray(struct, (PVAShortArray) field);
+            return Decoders.decodeShortArray((PVAShortArray) field, alarm, time, display);
         if (field instanceof PVAByteArray)
-            return Decoders.decodeByteArray(struct, (PVAByteArray) field);
+            return Decoders.decodeByteArray((PVAByteArray) field, alarm, time, display);
         if (field instanceof PVAStringArray)
-            return Decoders.decodeStringArray(struct, (PVAStringArray) field);
+            return VStringArray.of(Arrays.asList(((PVAStringArray) field).get()), alarm, time);
         throw new Exception("Cannot handle " + field.getClass().getName());
     }
 }
@@ -32,6 +32,12 @@ public class PVA_PV extends PV
     private final PVAChannel channel;
     final PVNameHelper name_helper;
 
+    /** Plan for decoding monitor updates, or <code>null</code> */
+    private volatile DecodePlan plan = null;
+
+    /** Create plan on next monitor update? */
+    private volatile boolean create_plan = true;
+
     public PVA_PV(final String name, final String base_name) throws Exception
     {
         super(name);
@@ -48,6 +54,9 @@ public class PVA_PV extends PV
         {   // When connected, subscribe to updates
             try
             {
+                // Structure may differ after reconnect, create new plan
+                plan = null;
+                create_plan = true;
                 channel.subscribe(name_helper.getReadRequest(), this::handleMonitor);
             }
             catch (Exception ex)
@@ -81,8 +90,7 @@ public class PVA_PV extends PV
         else
             try
             {
-                final VType value = PVAStructureHelper.getVType(data, name_helper);
-                notifyListenersOfValue(value);
+                notifyListenersOfValue(decodeMonitor(changes, data));
             }
             catch (Exception ex)
             {
@@ -91,6 +99,34 @@ public class PVA_PV extends PV
             }
         }
 
+    /** @param changes Elements of the structure that changed
+     *  @param data Complete data
+     *  @return {@link VType}
+     *  @throws Exception on error
+     */
+    private VType decodeMonitor(final BitSet changes, final PVAStructure data) throws Exception
+    {
+        if (create_plan)
+        {
+            create_plan = false;
+            plan = DecodePlan.create(data, name_helper);
+        }
+        final DecodePlan the_plan = plan;
+        if (the_plan != null)
+        {
+            try
+            {
+                return the_plan.decode(data, changes);
+            }
+            catch (Exception ex)
+            {
+                logger.log(Level.FINE, "Cannot use decode plan for " + this, ex);
+                plan = null;
+            }
+        }
+        return PVAStructureHelper.getVType(data, name_helper);
+    }
+
     @Override
     public Future<VType> asyncRead() throws Exception
     {
@@ -39,6 +39,8 @@ public class PVA_Preferences
     private static final String EPICS_PVA_CONN_TMO = "epics_pva_conn_tmo";
     private static final String EPICS_PVA_MAX_ARRAY_FORMATTING = "epics_pva_max_array_formatting";
     private static final String EPICS_PVA_SEND_BUFFER_SIZE = "epics_pva_send_buffer_size";
+    private static final String EPICS_PVA_TCP_SELECTOR_THREADS = "epics_pva_tcp_selector_threads";
+    private static final String EPICS_PVA_MONITOR_DISPATCH_THREADS = "epics_pva_monitor_dispatch_threads";
 
     private static final PVA_Preferences instance = new PVA_Preferences();
 
@@ -90,6 +92,14 @@ public class PVA_Preferences
         setSystemProperty("EPICS_PVA_SEND_BUFFER_SIZE", send_buffer_size);
         logger.log(Level.INFO, "PVA " + EPICS_PVA_SEND_BUFFER_SIZE + ": " + send_buffer_size);
 
+        final String selector_threads = prefs.get(EPICS_PVA_TCP_SELECTOR_THREADS);
+        setSystemProperty("EPICS_PVA_TCP_SELECTOR_THREADS", selector_threads);
+        logger.log(Level.INFO, "PVA " + EPICS_PVA_TCP_SELECTOR_THREADS + ": " + selector_threads);
+
+        final String dispatch_threads = prefs.get(EPICS_PVA_MONITOR_DISPATCH_THREADS);
+        setSystemProperty("EPICS_PVA_MONITOR_DISPATCH_THREADS", dispatch_threads);
+        logger.log(Level.INFO, "PVA " + EPICS_PVA_MONITOR_DISPATCH_THREADS + ": " + dispatch_threads);
+
     }
 
     /** Sets property from preferences to System properties only if property
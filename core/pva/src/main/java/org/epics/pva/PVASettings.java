@@ -85,6 +85,48 @@ public class PVASettings
      */
     public static int EPICS_PVA_CONN_TMO = 30;
 
+    /** Number of threads used to multiplex all TCP connections
+     *
+     *  <p>By default (0), each TCP connection uses a dedicated
+     *  receive and send thread.
+     *  A positive value selects a non-blocking mode where all
+     *  client and server connections are handled by that many
+     *  selector threads.
+     *
+     *  <p>Since received messages are then handled on the selector thread,
+     *  slow message handlers delay all connections served by that thread.
+     */
+    public static int EPICS_PVA_TCP_SELECTOR_THREADS = 0;
+
+    /** Number of threads used to invoke client monitor listeners
+     *
+     *  <p>By default (0), a {@link org.epics.pva.client.MonitorListener}
+     *  is invoked on the thread that receives data from the TCP connection,
+     *  so a slow listener delays all channels of that connection.
+     *
+     *  <p>A positive value decodes received updates on the TCP thread,
+     *  then hands a copy of the latest value to a pool of that many threads
+     *  which invoke the listeners.
+     *  When a listener cannot keep up, intermediate updates are dropped
+     *  and the fields that changed in them are reported as overruns.
+     */
+    public static int EPICS_PVA_MONITOR_DISPATCH_THREADS = 0;
+
+    /** Re-use arrays when decoding received array data?
+     *
+     *  <p>By default, each received array value is decoded
+     *  into a newly allocated array.
+     *  When enabled, a received array that has the same size
+     *  as the previous value is decoded into the existing array,
+     *  which avoids allocating a new array for each update of a large waveform.
+     *
+     *  <p>Code that holds on to a previously received array
+     *  will then see it change, so this may only be enabled
+     *  when all listeners copy or otherwise consume the data
+     *  before the next update is received.
+     */
+    public static boolean EPICS_PVA_REUSE_ARRAYS = false;
+
     /** Maximum number of array elements shown when printing data */
     public static int EPICS_PVA_MAX_ARRAY_FORMATTING = 256;
 
@@ -98,6 +140,9 @@ public class PVASettings
         EPICS_PVA_CONN_TMO = get("EPICS_PVA_CONN_TMO", EPICS_PVA_CONN_TMO);
         EPICS_PVA_MAX_ARRAY_FORMATTING = get("EPICS_PVA_MAX_ARRAY_FORMATTING", EPICS_PVA_MAX_ARRAY_FORMATTING);
         EPICS_PVA_SEND_BUFFER_SIZE = get("EPICS_PVA_SEND_BUFFER_SIZE", EPICS_PVA_SEND_BUFFER_SIZE);
+        EPICS_PVA_REUSE_ARRAYS = get("EPICS_PVA_REUSE_ARRAYS", EPICS_PVA_REUSE_ARRAYS);
+        EPICS_PVA_TCP_SELECTOR_THREADS = get("EPICS_PVA_TCP_SELECTOR_THREADS", EPICS_PVA_TCP_SELECTOR_THREADS);
+        EPICS_PVA_MONITOR_DISPATCH_THREADS = get("EPICS_PVA_MONITOR_DISPATCH_THREADS", EPICS_PVA_MONITOR_DISPATCH_THREADS);
     }
 
     /** Get setting from property, environment or default
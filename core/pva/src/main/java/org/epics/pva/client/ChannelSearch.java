@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -110,6 +111,13 @@ class ChannelSearch
         return thread;
     });
 
+    /** Channels registered for an immediate search.
+     *  Sent by the timer thread, packing all channels
+     *  registered until then into as few search requests as possible.
+     *  SYNC on access.
+     */
+    private final List<PVAChannel> immediate_searches = new ArrayList<>();
+
     /** Buffer for assembling search messages */
     private final ByteBuffer send_buffer = ByteBuffer.allocate(PVASettings.MAX_UDP_UNFRAGMENTED_SEND);
 
@@ -185,7 +193,26 @@ class ChannelSearch
         searched_channels.computeIfAbsent(channel.getCID(), id -> new SearchedChannel(channel));
         // Issue immediate search request?
         if (now)
-            search(channel);
+        {
+            final boolean schedule;
+            synchronized (immediate_searches)
+            {
+                schedule = immediate_searches.isEmpty();
+                immediate_searches.add(channel);
+            }
+            // A task is already scheduled unless this is the first pending channel
+            if (schedule)
+            {
+                try
+                {
+                    timer.execute(this::runImmediateSearches);
+                }
+                catch (RejectedExecutionException ex)
+                {
+                    // Closed, no more searches
+                }
+            }
+        }
     }
 
     /** Stop searching for channel
@@ -230,15 +257,35 @@ class ChannelSearch
     /** Invoked by timer: Check searched channels for the next one to handle */
     private void runSearches()
     {
+        // Collect channels to search in this period,
+        // then pack them into as few search requests as possible
+        final List<PVAChannel> to_search = new ArrayList<>();
         for (SearchedChannel searched : searched_channels.values())
         {
             final int counter = searched.search_counter.updateAndGet(val -> val >= MAX_SEARCH_COUNT ? MAX_SEARCH_RESET : val+1);
             if (isPowerOfTwo(counter))
             {
                 logger.log(Level.FINE, () -> "Searching... " + searched.channel);
-                search(searched.channel);
+                to_search.add(searched.channel);
             }
         }
+        if (! to_search.isEmpty())
+            search(to_search);
+    }
+
+    /** Invoked by timer: Search channels registered for an immediate search */
+    private void runImmediateSearches()
+    {
+        final List<PVAChannel> to_search;
+        synchronized (immediate_searches)
+        {
+            to_search = new ArrayList<>(immediate_searches);
+            immediate_searches.clear();
+        }
+        // Skip channels that have meanwhile been found or closed
+        to_search.removeIf(channel -> ! searched_channels.containsKey(channel.getCID()));
+        if (! to_search.isEmpty())
+            search(to_search);
     }
 
     /** Issue a PVA server list request */
@@ -249,6 +296,7 @@ class ChannelSearch
         // Lock the send buffer to avoid concurrent use.
         synchronized (send_buffer)
         {
+            send_buffer.clear();
             final int payload_start = send_buffer.position() + PVAHeader.HEADER_SIZE;
             SearchRequest.encode(true, 0, -1, null, udp.getResponseAddress(), send_buffer);
             send_buffer.flip();
@@ -257,22 +305,42 @@ class ChannelSearch
         }
     }
 
-    /** Issue search for channel
-     *  @param channel Channel to search
+    /** Issue search for channels
+     *
+     *  <p>Each search request contains as many channels
+     *  as fit into one UDP packet.
+     *
+     *  @param channels Channels to search
      */
-    private void search(final PVAChannel channel)
+    private void search(final List<PVAChannel> channels)
     {
+        final int N = channels.size();
+        final int[] cids = new int[N];
+        final String[] names = new String[N];
+        for (int i=0; i<N; ++i)
+        {
+            cids[i] = channels.get(i).getCID();
+            names[i] = channels.get(i).getName();
+        }
+
         // Search is invoked for new SearchedChannel(channel, now)
         // as well as by regular, timed search.
         // Lock the send buffer to avoid concurrent use.
         synchronized (send_buffer)
         {
-            final int payload_start = send_buffer.position() + PVAHeader.HEADER_SIZE;
-            final int seq = search_sequence.incrementAndGet();
-            SearchRequest.encode(true, seq, channel.getCID(), channel.getName(), udp.getResponseAddress(), send_buffer);
-            send_buffer.flip();
-            logger.log(Level.FINE, "Search Request #" + seq + " for " + channel);
-            sendSearch(payload_start);
+            int start = 0;
+            while (start < N)
+            {
+                send_buffer.clear();
+                final int payload_start = send_buffer.position() + PVAHeader.HEADER_SIZE;
+                final int seq = search_sequence.incrementAndGet();
+                final int next = SearchRequest.encode(true, seq, cids, names, start, udp.getResponseAddress(), send_buffer);
+                send_buffer.flip();
+                if (logger.isLoggable(Level.FINE))
+                    logger.log(Level.FINE, "Search Request #" + seq + " for " + channels.subList(start, next));
+                sendSearch(payload_start);
+                start = next;
+            }
         }
     }
 
@@ -315,6 +383,10 @@ class ChannelSearch
     public void close()
     {
         searched_channels.clear();
+        synchronized (immediate_searches)
+        {
+            immediate_searches.clear();
+        }
 
         timer.shutdown();
     }
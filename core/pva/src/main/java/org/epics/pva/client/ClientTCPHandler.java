@@ -187,11 +187,10 @@ class ClientTCPHandler extends TCPHandler
     }
 
     @Override
-    protected void send(ByteBuffer buffer) throws Exception
+    protected void onSend()
     {
         // Remember when we last sent a message to the server
         last_message_sent = System.currentTimeMillis();
-        super.send(buffer);
     }
 
     ResponseHandler getResponseHandler(final int request_id)
@@ -320,6 +319,7 @@ class ClientTCPHandler extends TCPHandler
         // Reply to Connection Validation request.
         logger.log(Level.FINE, () -> "Sending connection validation response, auth = " + auth);
         // Since send thread is not running, yet, send directly
+        send_buffer.clear();
         PVAHeader.encodeMessageHeader(send_buffer, PVAHeader.FLAG_NONE, PVAHeader.CMD_CONNECTION_VALIDATION, 4+2+2+1);
         final int start = send_buffer.position();
 
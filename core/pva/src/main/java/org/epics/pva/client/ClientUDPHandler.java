@@ -231,14 +231,17 @@ class ClientUDPHandler extends UDPHandler
                     }
                 }
                 else
-                    for (int i=0; i<search.name.length; ++i)
+                {
+                    int start = 0;
+                    while (start < search.name.length)
                     {
                         forward_buffer.clear();
-                        SearchRequest.encode(false, search.seq, search.cid[i], search.name[i], search.client, forward_buffer);
+                        start = SearchRequest.encode(false, search.seq, search.cid, search.name, start, search.client, forward_buffer);
                         forward_buffer.flip();
                         logger.log(Level.FINER, () -> "Forward search to " + local_multicast + "\n" + Hexdump.toHexdump(forward_buffer));
                         send(forward_buffer, local_multicast);
                     }
+                }
             }
         }
         catch (Exception ex)
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.epics.pva.client;
+
+import static org.epics.pva.PVASettings.logger;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.epics.pva.PVASettings;
+import org.epics.pva.data.PVAStructure;
+
+/** Invokes a {@link MonitorListener} off the TCP receive thread
+ *
+ *  <p>When {@link PVASettings#EPICS_PVA_MONITOR_DISPATCH_THREADS} is positive,
+ *  each subscription holds at most one pending update.
+ *  A pool of worker threads invokes the listeners.
+ *  Updates for the same subscription are delivered in order,
+ *  one at a time.
+ *
+ *  <p>When a new update arrives while the previous one is still pending,
+ *  the pending update is dropped.
+ *  Its changes are merged into the new update,
+ *  and fields that changed in both are marked as overruns.
+ */
+@SuppressWarnings("nls")
+public class MonitorDispatcher
+{
+    /** Shared worker threads, created on first use */
+    private static ExecutorService workers = null;
+
+    /** Updates passed to listeners by all dispatchers */
+    private static final AtomicLong total_dispatched = new AtomicLong();
+
+    /** Updates dropped by all dispatchers */
+    private static final AtomicLong total_dropped = new AtomicLong();
+
+    private final PVAChannel channel;
+
+    private final MonitorListener listener;
+
+    /** Pending update. SYNC on this */
+    private BitSet changes = null, overruns = null;
+    private PVAStructure data = null;
+
+    /** Has server canceled the subscription? SYNC on this */
+    private boolean ended = false;
+
+    /** Is a worker scheduled to deliver the pending update? SYNC on this */
+    private boolean scheduled = false;
+
+    /** Has client closed the subscription? SYNC on this */
+    private boolean closed = false;
+
+    /** Updates passed to listener, dropped updates */
+    private final AtomicLong dispatched = new AtomicLong(), dropped = new AtomicLong();
+
+    /** @return Is dispatch to worker threads enabled? */
+    static boolean isEnabled()
+    {
+        return PVASettings.EPICS_PVA_MONITOR_DISPATCH_THREADS > 0;
+    }
+
+    private static synchronized ExecutorService getWorkers()
+    {
+        if (workers == null)
+        {
+            final AtomicInteger count = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(PVASettings.EPICS_PVA_MONITOR_DISPATCH_THREADS, runnable ->
+            {
+                final Thread thread = new Thread(runnable, "PVA Monitor Dispatch " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.log(Level.CONFIG, "Using " + PVASettings.EPICS_PVA_MONITOR_DISPATCH_THREADS + " monitor dispatch threads");
+        }
+        return workers;
+    }
+
+    /** @return Number of updates passed to listeners by all subscriptions */
+    public static long getDispatchedUpdates()
+    {
+        return total_dispatched.get();
+    }
+
+    /** @return Number of updates dropped because listeners did not keep up */
+    public static long getDroppedUpdates()
+    {
+        return total_dropped.get();
+    }
+
+    /** @param channel Channel of the subscription
+     *  @param listener Listener to invoke
+     */
+    MonitorDispatcher(final PVAChannel channel, final MonitorListener listener)
+    {
+        this.channel = channel;
+        this.listener = listener;
+    }
+
+    /** Hand update to worker thread
+     *
+     *  <p>Called on the TCP receive thread.
+     *
+     *  @param changes Elements of the structure that changed
+     *  @param overruns Elements of the structure with skipped updates
+     *  @param data Copy of the complete data
+     */
+    void dispatch(final BitSet changes, final BitSet overruns, final PVAStructure data)
+    {
+        synchronized (this)
+        {
+            if (closed)
+                return;
+            if (this.data != null)
+            {
+                // Listener has not received the previous update
+                dropped.incrementAndGet();
+                total_dropped.incrementAndGet();
+                final BitSet skipped = (BitSet) this.changes.clone();
+                skipped.and(changes);
+                overruns.or(skipped);
+                overruns.or(this.overruns);
+                changes.or(this.changes);
+            }
+            this.changes = changes;
+            this.overruns = overruns;
+            this.data = data;
+        }
+        schedule();
+    }
+
+    /** Indicate end of subscription triggered by server
+     *
+     *  <p>Listener receives <code>null</code> data
+     *  after any pending update.
+     */
+    void dispatchEnd()
+    {
+        synchronized (this)
+        {
+            if (closed)
+                return;
+            ended = true;
+        }
+        schedule();
+    }
+
+    private void schedule()
+    {
+        synchronized (this)
+        {
+            if (scheduled)
+                return;
+            scheduled = true;
+        }
+        getWorkers().submit(this::deliver);
+    }
+
+    /** Called by worker thread to pass pending update to listener */
+    private void deliver()
+    {
+        while (true)
+        {
+            final BitSet changes, overruns;
+            final PVAStructure data;
+            final boolean end;
+            synchronized (this)
+            {
+                if (closed)
+                {
+                    scheduled = false;
+                    return;
+                }
+                changes = this.changes;
+                overruns = this.overruns;
+                data = this.data;
+                end = data == null  &&  ended;
+                if (data == null  &&  !end)
+                {
+                    scheduled = false;
+                    return;
+                }
+                this.changes = null;
+                this.overruns = null;
+                this.data = null;
+                if (end)
+                    ended = false;
+            }
+
+            try
+            {
+                listener.handleMonitor(channel, changes, overruns, data);
+            }
+            catch (Throwable ex)
+            {
+                logger.log(Level.WARNING, "Monitor listener error for " + channel, ex);
+            }
+            if (! end)
+            {
+                dispatched.incrementAndGet();
+                total_dispatched.incrementAndGet();
+            }
+        }
+    }
+
+    /** Close subscription
+     *
+     *  <p>Pending updates are dropped,
+     *  listener will not be called again
+     *  except for an update that's already being delivered.
+     */
+    void close()
+    {
+        synchronized (this)
+        {
+            closed = true;
+            changes = null;
+            overruns = null;
+            data = null;
+            ended = false;
+        }
+        logger.log(Level.FINE, () -> "Monitor dispatch for " + channel + ": " +
+                                     dispatched.get() + " updates, " + dropped.get() + " dropped");
+    }
+}
@@ -32,6 +32,9 @@ import org.epics.pva.data.PVAStructure;
  *  <p>In pipeline mode, acknowledges to server when
  *  half the pipelines number of updates have been received.
  *
+ *  <p>Listener is invoked on the TCP receive thread,
+ *  or via a {@link MonitorDispatcher} when that is enabled.
+ *
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
@@ -43,6 +46,9 @@ class MonitorRequest implements AutoCloseable, RequestEncoder, ResponseHandler
 
     private final MonitorListener listener;
 
+    /** Dispatcher for updates, <code>null</code> to invoke listener on receive thread */
+    private final MonitorDispatcher dispatcher;
+
     private final int request_id;
 
     /** Next request to send, cycling from INIT to START.
@@ -67,6 +73,7 @@ class MonitorRequest implements AutoCloseable, RequestEncoder, ResponseHandler
         this.request = request;
         this.pipeline = pipeline;
         this.listener = listener;
+        this.dispatcher = MonitorDispatcher.isEnabled() ? new MonitorDispatcher(channel, listener) : null;
         this.request_id = channel.getClient().allocateRequestID();
         channel.getTCP().submit(this, this);
     }
@@ -185,7 +192,10 @@ class MonitorRequest implements AutoCloseable, RequestEncoder, ResponseHandler
                     logger.log(Level.FINE, () -> "Received final (empty) monitor #" + request_id + " for " + channel);
 
                 // Indicate end of subscription triggered by server
-                listener.handleMonitor(channel, null, null, null);
+                if (dispatcher == null)
+                    listener.handleMonitor(channel, null, null, null);
+                else
+                    dispatcher.dispatchEnd();
 
                 // Flag that the monitor has been destroyed
                 state = PVAHeader.CMD_SUB_DESTROY;
@@ -232,13 +242,20 @@ class MonitorRequest implements AutoCloseable, RequestEncoder, ResponseHandler
         final BitSet overrun = PVABitSet.decodeBitSet(buffer);
         logger.log(Level.FINER, () -> "Overruns: " + overrun);
 
-        // Notify listener of latest value
-        listener.handleMonitor(channel, changes, overrun, data);
+        // Notify listener of latest value.
+        // Dispatcher receives a copy since 'data' is updated
+        // by the next received value while listener might still use it
+        if (dispatcher == null)
+            listener.handleMonitor(channel, changes, overrun, data);
+        else
+            dispatcher.dispatch(changes, overrun, data.cloneData());
     }
 
     @Override
     public void close() throws Exception
     {
+        if (dispatcher != null)
+            dispatcher.close();
         final ClientTCPHandler tcp = channel.tcp.get();
         // If TCP connection is already closed, no need nor way to cancel the subscription
         if (tcp == null)
@@ -132,6 +132,10 @@ public class PVAHeader
 
 
     /** Encode common PVA message header
+     *
+     *  <p>Header is added at the current buffer position,
+     *  which allows combining several messages in one buffer.
+     *
      *  @param buffer Buffer into which to encode
      *  @param flags  Combination of FLAG_
      *  @param command Command
@@ -143,7 +147,6 @@ public class PVAHeader
             flags |= FLAG_BIG_ENDIAN;
         else
             flags &= ~FLAG_BIG_ENDIAN;
-        buffer.clear();
         buffer.put(PVA_MAGIC);
         buffer.put(PVA_PROTOCOL_REVISION);
         buffer.put(flags);
@@ -124,9 +124,44 @@ public class SearchRequest
         return search;
     }
 
+    /** Encode search request for one channel
+     *
+     *  @param unicast Is this a unicast?
+     *  @param seq Search sequence
+     *  @param cid Channel ID, -1 for 'list' request
+     *  @param name Channel name, <code>null</code> for 'list' request
+     *  @param address Address where client expects reply
+     *  @param buffer Buffer into which to encode
+     */
     public static void encode(final boolean unicast, final int seq, final int cid, final String name, final InetSocketAddress address, final ByteBuffer buffer)
+    {
+        if (cid < 0)
+            encode(unicast, seq, null, null, 0, address, buffer);
+        else
+            encode(unicast, seq, new int[] { cid }, new String[] { name }, 0, address, buffer);
+    }
+
+    /** Encode search request for several channels
+     *
+     *  <p>Adds as many channels as fit into the remaining buffer,
+     *  but at least one.
+     *
+     *  @param unicast Is this a unicast?
+     *  @param seq Search sequence
+     *  @param cids Channel IDs, <code>null</code> for 'list' request
+     *  @param names Channel names, <code>null</code> for 'list' request
+     *  @param start Index of first channel to encode
+     *  @param address Address where client expects reply
+     *  @param buffer Buffer into which to encode
+     *  @return Index of first channel that did not fit into the buffer,
+     *          <code>cids.length</code> when all channels have been encoded
+     *          (<code>start</code> for 'list' request)
+     */
+    public static int encode(final boolean unicast, final int seq, final int[] cids, final String[] names, final int start,
+                             final InetSocketAddress address, final ByteBuffer buffer)
     {
         // Create with zero payload size, to be patched later
+        final int size_offset = buffer.position() + PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE;
         PVAHeader.encodeMessageHeader(buffer, PVAHeader.FLAG_NONE, PVAHeader.CMD_SEARCH, 0);
 
         final int payload_start = buffer.position();
@@ -139,7 +174,7 @@ public class SearchRequest
         // Mark search message as unicast so that receiver will forward
         // it via local broadcast to other local listeners.
         // 0-bit for replyRequired, 7-th bit for "sent as unicast" (1)/"sent as broadcast/multicast" (0)
-        buffer.put((byte) ((unicast ? 0x80 : 0x00) | (cid < 0 ? 0x01 : 0x00)));
+        buffer.put((byte) ((unicast ? 0x80 : 0x00) | (cids == null ? 0x01 : 0x00)));
 
         // reserved
         buffer.put((byte) 0);
@@ -154,7 +189,8 @@ public class SearchRequest
 
         // string[] protocols with count as byte since < 254
         // struct { int searchInstanceID, string channelName } channels[] with count as short?!
-        if (cid < 0)
+        int next = start;
+        if (cids == null)
         {
             buffer.put((byte)0);
             buffer.putShort((short)0);
@@ -164,12 +200,23 @@ public class SearchRequest
             buffer.put((byte)1);
             PVAString.encodeString("tcp", buffer);
 
-            buffer.putShort((short)1);
-            buffer.putInt(cid);
-            PVAString.encodeString(name, buffer);
+            // Channel count, to be patched
+            final int count_offset = buffer.position();
+            buffer.putShort((short)0);
+            do
+            {
+                buffer.putInt(cids[next]);
+                PVAString.encodeString(names[next], buffer);
+                ++next;
+            }
+            while (next < cids.length  &&
+                   next - start < 0xFFFF  &&
+                   buffer.remaining() >= 4 + PVAString.getEncodedSize(names[next]));
+            buffer.putShort(count_offset, (short) (next - start));
         }
 
         // Update payload size
-        buffer.putInt(PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE, buffer.position() - payload_start);
+        buffer.putInt(size_offset, buffer.position() - payload_start);
+        return next;
     }
 }
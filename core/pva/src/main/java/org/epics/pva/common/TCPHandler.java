@@ -12,13 +12,19 @@ import static org.epics.pva.PVASettings.logger;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.epics.pva.PVASettings;
@@ -34,6 +40,13 @@ import org.epics.pva.data.PVAString;
  *
  *  <p>Maintains send queue.
  *
+ *  <p>By default, each connection uses a dedicated receive and send thread.
+ *  When {@link PVASettings#EPICS_PVA_TCP_SELECTOR_THREADS} is positive,
+ *  the socket is instead handled by a shared {@link TCPSelector}.
+ *  Either way, received messages are dispatched to
+ *  {@link #handleControlMessage(byte, ByteBuffer)} and
+ *  {@link #handleApplicationMessage(byte, ByteBuffer)}.
+ *
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
@@ -72,8 +85,15 @@ abstract public class TCPHandler
      */
     private ByteBuffer segments = null;
 
-    /** Buffer used to send data via {@link TCPHandler#send_thread} */
-    protected final ByteBuffer send_buffer = ByteBuffer.allocate(PVASettings.EPICS_PVA_SEND_BUFFER_SIZE);
+    /** Buffer used to send data via {@link TCPHandler#send_thread}
+     *
+     *  <p>Several queued messages are combined into the buffer
+     *  until it holds {@link #server_buffer_size}.
+     *  Extra room beyond the configured send buffer size
+     *  assert that a message which fits into an empty buffer
+     *  also fits after such a batch of smaller messages.
+     */
+    protected final ByteBuffer send_buffer = ByteBuffer.allocate(PVASettings.EPICS_PVA_SEND_BUFFER_SIZE + PVASettings.TCP_BUFFER_SIZE);
 
     /** Queue of items to send to peer */
     private final BlockingQueue<RequestEncoder> send_items = new LinkedBlockingQueue<>();
@@ -96,12 +116,46 @@ abstract public class TCPHandler
         return thread;
     });
 
-    /** Thread that runs {@link TCPHandler#receiver()} */
+    /** Thread that runs {@link TCPHandler#receiver()},
+     *  or completed when selector stops reading
+     */
     private final Future<Void> receive_thread;
 
-    /** Thread that runs {@link TCPHandler#sender()} */
+    /** Thread that runs {@link TCPHandler#sender()},
+     *  or completed when selector is done sending
+     */
     private volatile Future<Void> send_thread;
 
+    /** Selector that handles this connection, <code>null</code> when using dedicated threads */
+    private final TCPSelector selector;
+
+    /** Key of the connection registered with the {@link #selector} */
+    private volatile SelectionKey selection_key;
+
+    /** Has selector been asked to check if socket is ready to write? */
+    private final AtomicBoolean write_requested = new AtomicBoolean();
+
+    /** Does {@link #send_buffer} hold data that selector still needs to write? */
+    private boolean pending_send = false;
+
+    /** Selector used to await write-readiness of a non-blocking socket in {@link #send(ByteBuffer)}
+     *
+     *  <p>Created on first use
+     */
+    private Selector write_selector = null;
+
+    /** Start of a selector write stall [ns], 0 when not stalled */
+    private long stall_start = 0;
+
+    /** Maximum number of items that were in the send queue */
+    private final AtomicInteger max_send_queue_size = new AtomicInteger();
+
+    /** Number of times that the socket could not accept more data */
+    private final AtomicLong write_stalls = new AtomicLong();
+
+    /** Total time spent waiting for the socket to accept more data [ns] */
+    private final AtomicLong write_stall_nanos = new AtomicLong();
+
     /** Start receiving messages
      *
      *  <p>Will accept messages to be sent,
@@ -118,7 +172,27 @@ abstract public class TCPHandler
         this.client_mode = client_mode;
 
         // Start receiving data
-        receive_thread = thread_pool.submit(this::receiver);
+        if (TCPSelector.isEnabled())
+        {
+            TCPSelector use = null;
+            try
+            {
+                use = TCPSelector.get();
+                use.register(socket, this);
+            }
+            catch (Exception ex)
+            {
+                logger.log(Level.WARNING, "Cannot use TCP selector, falling back to receive thread", ex);
+                use = null;
+            }
+            selector = use;
+        }
+        else
+            selector = null;
+        if (selector == null)
+            receive_thread = thread_pool.submit(this::receiver);
+        else
+            receive_thread = new CompletableFuture<>();
     }
 
     /** Start send thread
@@ -130,10 +204,15 @@ abstract public class TCPHandler
      */
     protected void startSender() throws Exception
     {
-        if (send_thread == null)
+        if (send_thread != null)
+            throw new Exception("Send thread already running");
+        if (selector == null)
             send_thread = thread_pool.submit(this::sender);
         else
-            throw new Exception("Send thread already running");
+        {
+            send_thread = new CompletableFuture<>();
+            requestWrite();
+        }
     }
 
     /** @return Remote address of this end of the TCP socket */
@@ -148,6 +227,12 @@ abstract public class TCPHandler
         return send_items.isEmpty();
     }
 
+    /** @return Number of items currently in the send queue */
+    public int getSendQueueSize()
+    {
+        return send_items.size();
+    }
+
     /** Submit item to be sent to peer
      *  @param item {@link RequestEncoder}
      *  @return <code>true</code> on success,
@@ -156,7 +241,12 @@ abstract public class TCPHandler
     public boolean submit(final RequestEncoder item)
     {
         if (send_items.offer(item))
+        {
+            max_send_queue_size.accumulateAndGet(send_items.size(), Math::max);
+            if (selector != null  &&  send_thread != null)
+                requestWrite();
             return true;
+        }
         logger.log(Level.WARNING, this + " send queue full");
         return false;
     }
@@ -170,20 +260,11 @@ abstract public class TCPHandler
             logger.log(Level.FINER, Thread.currentThread().getName() + " started");
             while (true)
             {
-                send_buffer.clear();
                 final RequestEncoder to_send = send_items.take();
                 if (to_send == END_REQUEST)
                     break;
-                try
-                {
-                    to_send.encodeRequest(server_version, send_buffer);
-                }
-                catch (Exception ex)
-                {
-                    logger.log(Level.WARNING, Thread.currentThread().getName() + " request encoding error", ex);
+                if (! encode(to_send))
                     continue;
-                }
-                send_buffer.flip();
                 send(send_buffer);
             }
         }
@@ -195,6 +276,48 @@ abstract public class TCPHandler
         return null;
     }
 
+    /** Encode items into {@link #send_buffer}
+     *
+     *  <p>After encoding the first item, more queued items
+     *  are added while the buffer holds less than {@link #server_buffer_size},
+     *  so many small messages are sent with one socket write.
+     *
+     *  @param to_send First item to encode
+     *  @return <code>true</code> if buffer is now ready to be sent,
+     *          <code>false</code> if nothing was encoded
+     */
+    private boolean encode(final RequestEncoder to_send)
+    {
+        send_buffer.clear();
+        RequestEncoder item = to_send;
+        while (true)
+        {
+            final int start = send_buffer.position();
+            try
+            {
+                item.encodeRequest(server_version, send_buffer);
+            }
+            catch (Exception ex)
+            {
+                logger.log(Level.WARNING, Thread.currentThread().getName() + " request encoding error", ex);
+                // Drop what might have been encoded for this item
+                send_buffer.position(start);
+            }
+
+            if (send_buffer.position() >= server_buffer_size)
+                break;
+            // Sender is the only consumer of the queue,
+            // so it's safe to peek and then remove the item.
+            // END_REQUEST remains in the queue, to be handled by sender.
+            item = send_items.peek();
+            if (item == null  ||  item == END_REQUEST)
+                break;
+            send_items.poll();
+        }
+        send_buffer.flip();
+        return send_buffer.hasRemaining();
+    }
+
     /** Send message
      *
      *  <p>Must only be called by outside code before
@@ -206,42 +329,229 @@ abstract public class TCPHandler
     protected void send(final ByteBuffer buffer) throws Exception
     {
         logger.log(Level.FINER, () -> Thread.currentThread().getName() + ":\n" + Hexdump.toHexdump(buffer));
+        onSend();
+
+        final int total = buffer.limit();
+        while (buffer.hasRemaining())
+        {
+            final int sent = write(buffer);
+            if (sent < 0)
+                throw new Exception("Connection closed");
+            else if (sent == 0)
+            {
+                // Only happens for non-blocking socket
+                logger.log(Level.FINER, "Send buffer full after " + buffer.position() + " of " + total + " bytes.");
+                awaitWritable();
+            }
+        }
+    }
+
+    /** Wait until non-blocking socket is ready to write
+     *  @throws Exception on error, including timeout
+     */
+    private void awaitWritable() throws Exception
+    {
+        write_stalls.incrementAndGet();
+        final long start = System.nanoTime();
+        try
+        {
+            synchronized (this)
+            {
+                if (write_selector == null)
+                {
+                    write_selector = Selector.open();
+                    socket.register(write_selector, SelectionKey.OP_WRITE);
+                }
+            }
+            // A selector's select() is not interrupted by closing the socket,
+            // so wait in steps and check if handler has been closed
+            final long timeout = TimeUnit.SECONDS.toNanos(PVASettings.EPICS_PVA_CONN_TMO);
+            while (write_selector.select(100) <= 0)
+            {
+                if (! running)
+                    throw new Exception("Connection closed");
+                if (System.nanoTime() - start > timeout)
+                    throw new Exception("Timeout waiting to send to " + this);
+            }
+            write_selector.selectedKeys().clear();
+        }
+        finally
+        {
+            write_stall_nanos.addAndGet(System.nanoTime() - start);
+        }
+    }
 
+    /** Write next batch of buffer to socket
+     *  @param buffer Buffer to send, limit marks end of data to send
+     *  @return Number of bytes written, may be 0 for non-blocking socket
+     *  @throws Exception on error
+     */
+    private int write(final ByteBuffer buffer) throws Exception
+    {
         // Original AbstractCodec.send() mentions
         // Microsoft KB article KB823764:
         // Limiting buffer size increases performance.
         final int batch_limit = server_buffer_size / 2;
         final int total = buffer.limit();
-        int batch = total - buffer.position();
-        if (batch > batch_limit)
+        if (total - buffer.position() > batch_limit)
+            buffer.limit(buffer.position() + batch_limit);
+        try
+        {
+            return socket.write(buffer);
+        }
+        finally
+        {
+            buffer.limit(total);
+        }
+    }
+
+    /** Invoked before a message is sent
+     *
+     *  <p>Derived class may override to track activity
+     */
+    protected void onSend()
+    {
+        // NOP
+    }
+
+    /** Ask selector to call {@link #handleWritable()} */
+    private void requestWrite()
+    {
+        // Selection key is set once the selector thread registered the socket,
+        // so read it when the selector thread runs the request
+        if (write_requested.compareAndSet(false, true))
+            selector.execute(() -> selector.setWriteInterest(selection_key, true));
+    }
+
+    /** @param key Key of connection registered with {@link #selector} */
+    void setSelectionKey(final SelectionKey key)
+    {
+        selection_key = key;
+    }
+
+    /** Called by {@link #selector} when socket is ready to write */
+    void handleWritable()
+    {
+        try
         {
-            batch = batch_limit;
-            buffer.limit(buffer.position() + batch);
+            if (stall_start != 0)
+            {
+                write_stall_nanos.addAndGet(System.nanoTime() - stall_start);
+                stall_start = 0;
+            }
+            while (true)
+            {
+                if (! sendQueuedItems())
+                {   // Socket is full, keep waiting for write-readiness
+                    write_stalls.incrementAndGet();
+                    stall_start = System.nanoTime();
+                    return;
+                }
+
+                // Queue is drained, or sender is done.
+                // Unless more items were added right now, stop checking for write-readiness
+                write_requested.set(false);
+                if (send_thread.isDone()  ||
+                    send_items.isEmpty()  ||
+                    ! write_requested.compareAndSet(false, true))
+                    break;
+            }
         }
+        catch (Exception ex)
+        {
+            if (running)
+                logger.log(Level.WARNING, this + " sender exits because of error", ex);
+            ((CompletableFuture<Void>) send_thread).complete(null);
+        }
+        selector.setWriteInterest(selection_key, false);
+    }
 
-        int tries = 0;
-        while (batch > 0)
+    /** Send queued items while socket accepts data
+     *  @return <code>true</code> when done, <code>false</code> when socket can't accept more data
+     *  @throws Exception on error
+     */
+    private boolean sendQueuedItems() throws Exception
+    {
+        final CompletableFuture<Void> sender = (CompletableFuture<Void>) send_thread;
+        while (! sender.isDone())
         {
-            final int sent = socket.write(buffer);
-            if (sent < 0)
-                throw new Exception("Connection closed");
-            else if (sent == 0)
+            if (pending_send)
             {
-                logger.log(Level.FINER, "Send buffer full after " + buffer.position() + " of " + total + " bytes.");
-                Thread.sleep(Math.max(++tries * 100, 1000));
+                while (send_buffer.hasRemaining())
+                {
+                    final int sent = write(send_buffer);
+                    if (sent < 0)
+                        throw new Exception("Connection closed");
+                    if (sent == 0)
+                        return false;
+                }
+                pending_send = false;
             }
-            else
+
+            final RequestEncoder to_send = send_items.poll();
+            if (to_send == null)
+                return true;
+            if (to_send == END_REQUEST)
+                sender.complete(null);
+            else if (encode(to_send))
             {
-                // Wrote _something_
-                tries = 0;
-                // Determine next batch
-                batch = total - buffer.position();
-                if (batch > batch_limit)
-                    batch = batch_limit;
-                // In case batch > 0, move limit to write that batch
-                buffer.limit(buffer.position() + batch);
+                logger.log(Level.FINER, () -> Thread.currentThread().getName() + ":\n" + Hexdump.toHexdump(send_buffer));
+                onSend();
+                pending_send = true;
             }
         }
+        return true;
+    }
+
+    /** Called by {@link #selector} when socket has data to read */
+    void handleReadable()
+    {
+        try
+        {
+            // Read what's available, assert space for at least the current message
+            receive_buffer = assertBufferSize(receive_buffer, PVAHeader.checkMessageAndGetSize(receive_buffer, client_mode));
+            final int read = socket.read(receive_buffer);
+            if (read < 0)
+            {
+                logger.log(Level.FINER, () -> this + ": socket closed");
+                receiverDone();
+                return;
+            }
+            if (read > 0)
+                logger.log(Level.FINER, () -> this + ": " + read + " bytes");
+
+            // Handle all complete messages
+            int message_size = PVAHeader.checkMessageAndGetSize(receive_buffer, client_mode);
+            while (receive_buffer.position() >= message_size)
+            {
+                handleReceivedMessage(message_size);
+                message_size = PVAHeader.checkMessageAndGetSize(receive_buffer, client_mode);
+            }
+        }
+        catch (Exception ex)
+        {
+            handleReceiverError(ex);
+        }
+    }
+
+    /** Called by {@link #selector} when receiving fails
+     *  @param ex Error
+     */
+    void handleReceiverError(final Exception ex)
+    {
+        if (running)
+            logger.log(Level.WARNING, this + " receiver exits because of error", ex);
+        receiverDone();
+    }
+
+    /** Selector stopped reading the socket */
+    private void receiverDone()
+    {
+        final SelectionKey key = selection_key;
+        if (key != null)
+            key.cancel();
+        if (((CompletableFuture<Void>) receive_thread).complete(null))
+            onReceiverExited(running);
     }
 
     /** Receiver */
@@ -274,35 +584,7 @@ abstract public class TCPHandler
                     message_size = PVAHeader.checkMessageAndGetSize(receive_buffer, client_mode);
                 }
                 // .. then decode
-                receive_buffer.flip();
-                logger.log(Level.FINER, () -> Thread.currentThread().getName() + ":\n" + Hexdump.toHexdump(receive_buffer));
-
-                // While buffer may contain more data,
-                // limit it to the end of this message to prevent
-                // message handler from reading beyond message boundary.
-                final int actual_limit = receive_buffer.limit();
-                receive_buffer.limit(message_size);
-                try
-                {
-                    handleMessage(receive_buffer);
-                }
-                catch (Exception ex)
-                {
-                    // Once we fail to decode and handle a message,
-                    // it is likely that the server/client protocol gets
-                    // out of step and never recovers.
-                    // Still, log error and keep reading in case
-                    // the issue is limited to just this one message.
-                    logger.log(Level.WARNING, Thread.currentThread().getName() + " message error. Protocol might be broken from here on.", ex);
-                }
-
-                receive_buffer.limit(actual_limit);
-                // No matter if message handler read the complete message,
-                // position at end of handled message
-                receive_buffer.position(message_size);
-
-                // Shift rest to start of buffer and handle next message
-                receive_buffer.compact();
+                handleReceivedMessage(message_size);
             }
         }
         catch (Exception ex)
@@ -318,6 +600,45 @@ abstract public class TCPHandler
         return null;
     }
 
+    /** Handle message at start of receive buffer
+     *
+     *  <p>Remaining data is then shifted to start of buffer
+     *
+     *  @param message_size Size of the complete message at start of receive buffer
+     */
+    private void handleReceivedMessage(final int message_size)
+    {
+        receive_buffer.flip();
+        logger.log(Level.FINER, () -> Thread.currentThread().getName() + ":\n" + Hexdump.toHexdump(receive_buffer));
+
+        // While buffer may contain more data,
+        // limit it to the end of this message to prevent
+        // message handler from reading beyond message boundary.
+        final int actual_limit = receive_buffer.limit();
+        receive_buffer.limit(message_size);
+        try
+        {
+            handleMessage(receive_buffer);
+        }
+        catch (Exception ex)
+        {
+            // Once we fail to decode and handle a message,
+            // it is likely that the server/client protocol gets
+            // out of step and never recovers.
+            // Still, log error and keep reading in case
+            // the issue is limited to just this one message.
+            logger.log(Level.WARNING, Thread.currentThread().getName() + " message error. Protocol might be broken from here on.", ex);
+        }
+
+        receive_buffer.limit(actual_limit);
+        // No matter if message handler read the complete message,
+        // position at end of handled message
+        receive_buffer.position(message_size);
+
+        // Shift rest to start of buffer and handle next message
+        receive_buffer.compact();
+    }
+
     /** Invoked when the receiver thread exits because socket has been closed.
      *
      *  <p>Derived class may override to perform cleanup
@@ -527,10 +848,14 @@ abstract public class TCPHandler
     /** Close network socket and threads
      *  @param wait Wait for threads to end?
      */
-    public void close(final boolean wait)
+    public void close(boolean wait)
     {
         logger.log(Level.FINE, "Closing " + this);
 
+        // Selector thread cannot wait for itself to send and receive
+        if (selector != null  &&  selector.isSelectorThread())
+            wait = false;
+
         // Wait until all requests are sent out
         submit(END_REQUEST);
         try
@@ -547,6 +872,8 @@ abstract public class TCPHandler
         {
             running = false;
             socket.close();
+            if (selector != null)
+                receiverDone();
             if (wait)
                 receive_thread.get(5, TimeUnit.SECONDS);
         }
@@ -554,6 +881,24 @@ abstract public class TCPHandler
         {
             logger.log(Level.WARNING, "Cannot stop receive thread", ex);
         }
+
+        synchronized (this)
+        {
+            if (write_selector != null)
+            {
+                try
+                {
+                    write_selector.close();
+                }
+                catch (Exception ex)
+                {
+                    // Ignore
+                }
+            }
+        }
+        logger.log(Level.FINE, () -> this + " max. send queue size " + max_send_queue_size.get() +
+                                     ", " + write_stalls.get() + " write stalls, " +
+                                     TimeUnit.NANOSECONDS.toMillis(write_stall_nanos.get()) + " ms");
         logger.log(Level.FINE, () -> this + " closed  ============================");
     }
 
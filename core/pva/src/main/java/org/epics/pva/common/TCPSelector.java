@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.epics.pva.common;
+
+import static org.epics.pva.PVASettings.logger;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.epics.pva.PVASettings;
+
+/** Selector thread that handles many TCP connections
+ *
+ *  <p>When {@link PVASettings#EPICS_PVA_TCP_SELECTOR_THREADS} is positive,
+ *  {@link TCPHandler}s do not start a dedicated receive and send thread
+ *  for each connection.
+ *  Instead, all sockets are registered with one of a small, fixed
+ *  number of selector threads, which read and dispatch received messages
+ *  and send queued messages whenever a socket is ready.
+ */
+@SuppressWarnings("nls")
+class TCPSelector
+{
+    /** Shared selectors, created on first use */
+    private static TCPSelector[] selectors = null;
+
+    /** Index of the next selector to use */
+    private static final AtomicInteger next = new AtomicInteger();
+
+    private final Selector selector;
+
+    private final Thread thread;
+
+    /** Tasks to run on the selector thread, for example registering a socket */
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /** @return Is the use of selector threads enabled? */
+    static boolean isEnabled()
+    {
+        return PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS > 0;
+    }
+
+    /** @return Selector to use for a new connection, assigned round-robin
+     *  @throws Exception on error
+     */
+    static synchronized TCPSelector get() throws Exception
+    {
+        if (selectors == null)
+        {
+            final TCPSelector[] created = new TCPSelector[PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS];
+            for (int i=0; i<created.length; ++i)
+                created[i] = new TCPSelector(i+1);
+            selectors = created;
+            logger.log(Level.CONFIG, "Using " + created.length + " TCP selector threads");
+        }
+        return selectors[Math.floorMod(next.getAndIncrement(), selectors.length)];
+    }
+
+    private TCPSelector(final int index) throws Exception
+    {
+        selector = Selector.open();
+        thread = new Thread(this::run, "TCP selector " + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** @return Is the caller running on this selector's thread? */
+    boolean isSelectorThread()
+    {
+        return Thread.currentThread() == thread;
+    }
+
+    /** Run code on the selector thread
+     *  @param task Task to run
+     */
+    void execute(final Runnable task)
+    {
+        if (isSelectorThread())
+            task.run();
+        else
+        {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    /** Register a connection
+     *
+     *  <p>Socket is configured to be non-blocking
+     *  and registered to be read.
+     *
+     *  @param socket Socket of the connection
+     *  @param handler {@link TCPHandler} that will be called when socket can be read or written
+     *  @throws Exception on error
+     */
+    void register(final SocketChannel socket, final TCPHandler handler) throws Exception
+    {
+        socket.configureBlocking(false);
+        execute(() ->
+        {
+            try
+            {
+                handler.setSelectionKey(socket.register(selector, SelectionKey.OP_READ, handler));
+            }
+            catch (Exception ex)
+            {
+                logger.log(Level.WARNING, thread.getName() + " cannot register " + handler, ex);
+                handler.handleReceiverError(ex);
+            }
+        });
+    }
+
+    /** Update interest in write-readiness of a connection
+     *  @param key Key of the connection
+     *  @param write Should selector check if socket is ready to write?
+     */
+    void setWriteInterest(final SelectionKey key, final boolean write)
+    {
+        execute(() ->
+        {
+            if (key == null  ||  ! key.isValid())
+                return;
+            if (write)
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            else
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        });
+    }
+
+    /** Selector thread */
+    private void run()
+    {
+        logger.log(Level.FINER, thread.getName() + " started");
+        while (true)
+        {
+            try
+            {
+                selector.select();
+
+                Runnable task;
+                while ((task = tasks.poll()) != null)
+                    task.run();
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    final TCPHandler handler = (TCPHandler) key.attachment();
+                    if (key.isValid()  &&  key.isReadable())
+                        handler.handleReadable();
+                    if (key.isValid()  &&  key.isWritable())
+                        handler.handleWritable();
+                }
+            }
+            catch (Throwable ex)
+            {
+                // Handlers deal with their own errors,
+                // so this is unexpected. Log, but keep serving the remaining connections
+                logger.log(Level.WARNING, thread.getName() + " error", ex);
+            }
+        }
+    }
+}
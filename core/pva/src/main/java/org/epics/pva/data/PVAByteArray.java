@@ -107,7 +107,10 @@ public class PVAByteArray extends PVAData implements PVAArray
     public void decode(final PVATypeRegistry types, final ByteBuffer buffer) throws Exception
     {
         final int size = PVASize.decodeSize(buffer);
-        final byte[] new_value = new byte[size];
+        final byte[] old_value = value;
+        final byte[] new_value = (PVASettings.EPICS_PVA_REUSE_ARRAYS  &&  old_value != null  &&  old_value.length == size)
+                                 ? old_value
+                                 : new byte[size];
         buffer.get(new_value);
         value = new_value;
     }
@@ -117,8 +120,7 @@ public class PVAByteArray extends PVAData implements PVAArray
     {
         final byte[] copy = value;
         PVASize.encodeSize(copy.length, buffer);
-        for (int i=0; i<copy.length; ++i)
-            buffer.put(copy[i]);
+        buffer.put(copy);
     }
 
     @Override
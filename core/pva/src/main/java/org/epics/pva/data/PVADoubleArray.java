@@ -98,9 +98,13 @@ public class PVADoubleArray extends PVAData implements PVAArray
     public void decode(final PVATypeRegistry types, final ByteBuffer buffer) throws Exception
     {
         final int size = PVASize.decodeSize(buffer);
-        final double[] new_value = new double[size];
-        for (int i=0; i<size; ++i)
-            new_value[i] = buffer.getDouble();
+        final double[] old_value = value;
+        final double[] new_value = (PVASettings.EPICS_PVA_REUSE_ARRAYS  &&  old_value != null  &&  old_value.length == size)
+                                   ? old_value
+                                   : new double[size];
+        // Bulk transfer via view buffer, which uses the byte order of the buffer
+        buffer.asDoubleBuffer().get(new_value);
+        buffer.position(buffer.position() + size * Double.BYTES);
         value = new_value;
     }
 
@@ -109,8 +113,8 @@ public class PVADoubleArray extends PVAData implements PVAArray
     {
         final double[] copy = value;
         PVASize.encodeSize(copy.length, buffer);
-        for (int i=0; i<copy.length; ++i)
-            buffer.putDouble(copy[i]);
+        buffer.asDoubleBuffer().put(copy);
+        buffer.position(buffer.position() + copy.length * Double.BYTES);
     }
 
     @Override
@@ -95,9 +95,13 @@ public class PVAFloatArray extends PVAData implements PVAArray
     public void decode(final PVATypeRegistry types, final ByteBuffer buffer) throws Exception
     {
         final int size = PVASize.decodeSize(buffer);
-        final float[] new_value = new float[size];
-        for (int i=0; i<size; ++i)
-            new_value[i] = buffer.getFloat();
+        final float[] old_value = value;
+        final float[] new_value = (PVASettings.EPICS_PVA_REUSE_ARRAYS  &&  old_value != null  &&  old_value.length == size)
+                                  ? old_value
+                                  : new float[size];
+        // Bulk transfer via view buffer, which uses the byte order of the buffer
+        buffer.asFloatBuffer().get(new_value);
+        buffer.position(buffer.position() + size * Float.BYTES);
         value = new_value;
     }
 
@@ -106,8 +110,8 @@ public class PVAFloatArray extends PVAData implements PVAArray
     {
         final float[] copy = value;
         PVASize.encodeSize(copy.length, buffer);
-        for (int i=0; i<copy.length; ++i)
-            buffer.putFloat(copy[i]);
+        buffer.asFloatBuffer().put(copy);
+        buffer.position(buffer.position() + copy.length * Float.BYTES);
     }
 
     @Override
@@ -107,9 +107,13 @@ public class PVAIntArray extends PVAData implements PVAArray
     public void decode(final PVATypeRegistry types, final ByteBuffer buffer) throws Exception
     {
         final int size = PVASize.decodeSize(buffer);
-        final int[] new_value = new int[size];
-        for (int i=0; i<size; ++i)
-            new_value[i] = buffer.getInt();
+        final int[] old_value = value;
+        final int[] new_value = (PVASettings.EPICS_PVA_REUSE_ARRAYS  &&  old_value != null  &&  old_value.length == size)
+                                ? old_value
+                                : new int[size];
+        // Bulk transfer via view buffer, which uses the byte order of the buffer
+        buffer.asIntBuffer().get(new_value);
+        buffer.position(buffer.position() + size * Integer.BYTES);
         value = new_value;
     }
 
@@ -118,8 +122,8 @@ public class PVAIntArray extends PVAData implements PVAArray
     {
         final int[] copy = value;
         PVASize.encodeSize(copy.length, buffer);
-        for (int i=0; i<copy.length; ++i)
-            buffer.putInt(copy[i]);
+        buffer.asIntBuffer().put(copy);
+        buffer.position(buffer.position() + copy.length * Integer.BYTES);
     }
 
     @Override
@@ -107,9 +107,13 @@ public class PVALongArray extends PVAData implements PVAArray
     public void decode(final PVATypeRegistry types, final ByteBuffer buffer) throws Exception
     {
         final int size = PVASize.decodeSize(buffer);
-        final long[] new_value = new long[size];
-        for (int i=0; i<size; ++i)
-            new_value[i] = buffer.getLong();
+        final long[] old_value = value;
+        final long[] new_value = (PVASettings.EPICS_PVA_REUSE_ARRAYS  &&  old_value != null  &&  old_value.length == size)
+                                 ? old_value
+                                 : new long[size];
+        // Bulk transfer via view buffer, which uses the byte order of the buffer
+        buffer.asLongBuffer().get(new_value);
+        buffer.position(buffer.position() + size * Long.BYTES);
         value = new_value;
     }
 
@@ -118,8 +122,8 @@ public class PVALongArray extends PVAData implements PVAArray
     {
         final long[] copy = value;
         PVASize.encodeSize(copy.length, buffer);
-        for (int i=0; i<copy.length; ++i)
-            buffer.putLong(copy[i]);
+        buffer.asLongBuffer().put(copy);
+        buffer.position(buffer.position() + copy.length * Long.BYTES);
     }
 
     @Override
@@ -107,15 +107,13 @@ public class PVAShortArray extends PVAData implements PVAArray
     public void decode(final PVATypeRegistry types, final ByteBuffer buffer) throws Exception
     {
         final int size = PVASize.decodeSize(buffer);
-        // Try to re-use existing array
-        final short[] new_value = new short[size];
-        // Considered using
-        //   buffer.asShortBuffer().get(new_value);
-        // but debugger shows that it ends up in the same loop:
-        //   for (..) short_array[i] = buffer.get()
-        // Profiler shows that it's overall slower.
-        for (int i=0; i<size; ++i)
-            new_value[i] = buffer.getShort();
+        final short[] old_value = value;
+        final short[] new_value = (PVASettings.EPICS_PVA_REUSE_ARRAYS  &&  old_value != null  &&  old_value.length == size)
+                                  ? old_value
+                                  : new short[size];
+        // Bulk transfer via view buffer, which uses the byte order of the buffer
+        buffer.asShortBuffer().get(new_value);
+        buffer.position(buffer.position() + size * Short.BYTES);
         value = new_value;
     }
 
@@ -124,8 +122,8 @@ public class PVAShortArray extends PVAData implements PVAArray
     {
         final short[] copy = value;
         PVASize.encodeSize(copy.length, buffer);
-        for (int i=0; i<copy.length; ++i)
-            buffer.putShort(copy[i]);
+        buffer.asShortBuffer().put(copy);
+        buffer.position(buffer.position() + copy.length * Short.BYTES);
     }
 
     @Override
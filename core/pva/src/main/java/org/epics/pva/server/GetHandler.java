@@ -75,6 +75,7 @@ class GetHandler implements CommandHandler<ServerTCPHandler>
         {
             logger.log(Level.FINE, () -> "Sending error: " + message);
 
+            final int size_offset = buffer.position() + PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE;
             PVAHeader.encodeMessageHeader(buffer, PVAHeader.FLAG_SERVER, command, 0);
             final int payload_start = buffer.position();
             buffer.putInt(req);
@@ -82,7 +83,7 @@ class GetHandler implements CommandHandler<ServerTCPHandler>
             final PVAStatus error = new PVAStatus(PVAStatus.Type.ERROR, message, "");
             error.encode(buffer);
 
-            buffer.putInt(PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE, buffer.position() - payload_start);
+            buffer.putInt(size_offset, buffer.position() - payload_start);
         });
     }
 
@@ -94,6 +95,7 @@ class GetHandler implements CommandHandler<ServerTCPHandler>
             final PVAStructure type = pv.getData();
             logger.log(Level.FINE, () -> "Sending data INIT reply for " + pv + " as\n" + type.formatType());
 
+            final int size_offset = buffer.position() + PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE;
             PVAHeader.encodeMessageHeader(buffer, PVAHeader.FLAG_SERVER, command, 0);
             final int payload_start = buffer.position();
             // int requestID
@@ -106,7 +108,7 @@ class GetHandler implements CommandHandler<ServerTCPHandler>
             final BitSet described = new BitSet();
             type.encodeType(buffer, described);
             final int payload_end = buffer.position();
-            buffer.putInt(PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE, payload_end - payload_start);
+            buffer.putInt(size_offset, payload_end - payload_start);
         });
     }
 
@@ -128,6 +130,7 @@ class GetHandler implements CommandHandler<ServerTCPHandler>
                 logger.log(Level.FINE, () -> "Sending " + cmd + " data for " + pv + ":\n" + data.format());
             }
 
+            final int size_offset = buffer.position() + PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE;
             PVAHeader.encodeMessageHeader(buffer, PVAHeader.FLAG_SERVER, command, 0);
             final int payload_start = buffer.position();
             // int requestID
@@ -143,7 +146,7 @@ class GetHandler implements CommandHandler<ServerTCPHandler>
             // Data
             data.encode(buffer);
             final int payload_end = buffer.position();
-            buffer.putInt(PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE, payload_end - payload_start);
+            buffer.putInt(size_offset, payload_end - payload_start);
         });
     }
 }
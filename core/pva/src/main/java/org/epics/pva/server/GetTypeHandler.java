@@ -62,6 +62,7 @@ class GetTypeHandler implements CommandHandler<ServerTCPHandler>
         {
             logger.log(Level.FINE, () -> "Sending GET TYPE reply for " + pv + " as\n" + type.formatType());
 
+            final int size_offset = buffer.position() + PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE;
             PVAHeader.encodeMessageHeader(buffer, PVAHeader.FLAG_SERVER, PVAHeader.CMD_GET_TYPE, 0);
             final int payload_start = buffer.position();
             // int requestID
@@ -72,7 +73,7 @@ class GetTypeHandler implements CommandHandler<ServerTCPHandler>
             final BitSet described = new BitSet();
             type.encodeType(buffer, described);
             final int payload_end = buffer.position();
-            buffer.putInt(PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE, payload_end - payload_start);
+            buffer.putInt(size_offset, payload_end - payload_start);
         });
     }
 }
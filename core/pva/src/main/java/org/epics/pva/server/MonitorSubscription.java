@@ -58,6 +58,12 @@ class MonitorSubscription
      */
     private final BitSet overrun = new BitSet();
 
+    /** Update shared with other subscriptions, <code>null</code> when
+     *  this subscription needs to encode its own changes
+     *  SYNC on data
+     */
+    private SharedMonitorUpdate shared = null;
+
     /** Is an update pending to be sent out?
      *
      *  <p>Used to prevent scheduling more updates that TCP connection can handle.
@@ -82,7 +88,11 @@ class MonitorSubscription
         return this.tcp == tcp  &&  (req == -1 || this.req == req);
     }
 
-    void update(final PVAStructure new_data) throws Exception
+    /** @param new_data Updated value
+     *  @param shared_update Update that may be shared with other subscriptions, or <code>null</code>
+     *  @throws Exception on error
+     */
+    void update(final PVAStructure new_data, final SharedMonitorUpdate shared_update) throws Exception
     {
         synchronized (data)
         {
@@ -91,6 +101,16 @@ class MonitorSubscription
             // Update data, see what's new
             changes = data.update(new_data);
 
+            // If the previous value has been sent, i.e. there are no overruns,
+            // this subscription sends the same update as others
+            if (shared_update != null  &&
+                old_changes.isEmpty()  &&
+                overrun.isEmpty()      &&
+                shared_update.isFor(changes))
+                shared = shared_update;
+            else
+                shared = null;
+
             // Accumulate overrun:
             // See what had changed before, and now changed again
             old_changes.and(changes);
@@ -110,6 +130,7 @@ class MonitorSubscription
 
         logger.log(Level.FINE, () -> "Sending MONITOR value for " + pv + ": changes " + changes + ", overrun " + overrun);
 
+        final int size_offset = buffer.position() + PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE;
         PVAHeader.encodeMessageHeader(buffer, PVAHeader.FLAG_SERVER, PVAHeader.CMD_MONITOR, 0);
         final int payload_start = buffer.position();
 
@@ -119,32 +140,46 @@ class MonitorSubscription
 
         synchronized (data)
         {
-            // Encode what changed
-            PVABitSet.encodeBitSet(changes, buffer);
-            // Encode the changed data
-            for (int index = changes.nextSetBit(0);
-                    index >= 0;
-                    index = changes.nextSetBit(index + 1))
+            final int shared_start = buffer.position();
+            if (shared != null  &&  shared.copyTo(buffer))
             {
-                // final version of index to allow use in logging lambdas
-                final int i = index;
-                final PVAData element = data.get(i);
-                logger.log(Level.FINER, () -> "Encode data for indexed element " + i + ": " + element);
-                element.encode(buffer);
-
-                // Javadoc for nextSetBit() suggests checking for MAX_VALUE
-                // to avoid index + 1 overflow and thus starting over with first bit
-                if (i == Integer.MAX_VALUE)
-                    break;
+                logger.log(Level.FINER, () -> "Using shared update for " + pv);
+                changes.clear();
             }
-            changes.clear();
-
-            PVABitSet.encodeBitSet(overrun, buffer);
-            overrun.clear();
+            else
+            {
+                // Encode what changed
+                PVABitSet.encodeBitSet(changes, buffer);
+                // Encode the changed data
+                for (int index = changes.nextSetBit(0);
+                        index >= 0;
+                        index = changes.nextSetBit(index + 1))
+                {
+                    // final version of index to allow use in logging lambdas
+                    final int i = index;
+                    final PVAData element = data.get(i);
+                    logger.log(Level.FINER, () -> "Encode data for indexed element " + i + ": " + element);
+                    element.encode(buffer);
+
+                    // Javadoc for nextSetBit() suggests checking for MAX_VALUE
+                    // to avoid index + 1 overflow and thus starting over with first bit
+                    if (i == Integer.MAX_VALUE)
+                        break;
+                }
+                changes.clear();
+
+                PVABitSet.encodeBitSet(overrun, buffer);
+                overrun.clear();
+
+                // Allow other subscriptions to use this update
+                if (shared != null)
+                    shared.remember(buffer, shared_start);
+            }
+            shared = null;
         }
 
         final int payload_end = buffer.position();
-        buffer.putInt(PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE, payload_end - payload_start);
+        buffer.putInt(size_offset, payload_end - payload_start);
     }
 
     @Override
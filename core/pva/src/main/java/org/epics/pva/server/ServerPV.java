@@ -197,13 +197,18 @@ public class ServerPV implements AutoCloseable
     public void update(final PVAStructure new_data) throws Exception
     {
         // Update data
+        final BitSet changes;
         synchronized (data)
         {
-            data.update(new_data);
+            changes = data.update(new_data);
         }
-        // Update subscriptions
+        // Update subscriptions.
+        // With more than one subscription, they can share the encoded update
+        final SharedMonitorUpdate shared = subscriptions.size() > 1
+                                         ? new SharedMonitorUpdate(changes)
+                                         : null;
         for (MonitorSubscription subscription : subscriptions)
-            subscription.update(new_data);
+            subscription.update(new_data, shared);
     }
 
     /** Get current value (thread-safe copy)
@@ -117,7 +117,7 @@ class ServerUDPHandler extends UDPHandler
             {   // pvlist request
                 search_handler.handleSearchRequest(0, -1, null, search.client);
                 if (search.unicast)
-                    PVAServer.POOL.submit(() -> forwardSearchRequest(0, -1, null, search.client));
+                    PVAServer.POOL.submit(() -> forwardSearchRequest(0, null, null, search.client));
             }
         }
         else
@@ -127,9 +127,9 @@ class ServerUDPHandler extends UDPHandler
                 final int cid = search.cid[i];
                 final String name = search.name[i];
                 search_handler.handleSearchRequest(search.seq, cid, name, search.client);
-                if (search.unicast)
-                    PVAServer.POOL.submit(() -> forwardSearchRequest(search.seq, cid, name, search.client));
             }
+            if (search.unicast)
+                PVAServer.POOL.submit(() -> forwardSearchRequest(search.seq, search.cid, search.name, search.client));
         }
 
         return true;
@@ -144,29 +144,33 @@ class ServerUDPHandler extends UDPHandler
      *  allowing all servers on this host to reply.
      *
      *  @param seq Search sequence or 0
-     *  @param cid Channel ID or -1
-     *  @param name Name or <code>null</code>
-     *  @param address Client's address ..
-     *  @param port    .. and port
+     *  @param cids Channel IDs or <code>null</code>
+     *  @param names Names or <code>null</code>
+     *  @param address Client's address and port
      */
-    private void forwardSearchRequest(final int seq, final int cid, final String name, final InetSocketAddress address)
+    private void forwardSearchRequest(final int seq, final int[] cids, final String[] names, final InetSocketAddress address)
     {
         if (local_multicast == null)
             return;
         synchronized (send_buffer)
         {
-            send_buffer.clear();
-            SearchRequest.encode(false, seq, cid, name, address, send_buffer);
-            send_buffer.flip();
-            logger.log(Level.FINER, () -> "Forward search to " + local_multicast + "\n" + Hexdump.toHexdump(send_buffer));
-            try
-            {
-                udp.send(send_buffer, local_multicast);
-            }
-            catch (Exception ex)
+            int start = 0;
+            do
             {
-                logger.log(Level.WARNING, "Cannot forward search", ex);
+                send_buffer.clear();
+                start = SearchRequest.encode(false, seq, cids, names, start, address, send_buffer);
+                send_buffer.flip();
+                logger.log(Level.FINER, () -> "Forward search to " + local_multicast + "\n" + Hexdump.toHexdump(send_buffer));
+                try
+                {
+                    udp.send(send_buffer, local_multicast);
+                }
+                catch (Exception ex)
+                {
+                    logger.log(Level.WARNING, "Cannot forward search", ex);
+                }
             }
+            while (cids != null  &&  start < cids.length);
         }
     }
 
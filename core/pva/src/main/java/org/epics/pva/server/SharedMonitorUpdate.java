@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.epics.pva.server;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+
+/** Encoded value update, shared by monitor subscriptions
+ *
+ *  <p>When a {@link ServerPV} is updated, all subscriptions
+ *  that had already sent their previous value and thus have no overrun
+ *  will send the same changes with the same data.
+ *  The first subscription to send the update encodes it,
+ *  the others copy those bytes instead of encoding the data again.
+ *
+ *  <p>Subscriptions that are still sending a previous value
+ *  combine changes and encode them on their own.
+ */
+class SharedMonitorUpdate
+{
+    /** Changes in this update */
+    private final BitSet changes;
+
+    /** Encoded changes, data and (empty) overrun, <code>null</code> until first encoded.
+     *  SYNC on this
+     */
+    private byte[] encoded = null;
+
+    /** Byte order used for {@link #encoded} */
+    private ByteOrder order;
+
+    /** @param changes Changes in this update */
+    SharedMonitorUpdate(final BitSet changes)
+    {
+        this.changes = changes;
+    }
+
+    /** @param changes Changes of a subscription
+     *  @return Do they match this update?
+     */
+    boolean isFor(final BitSet changes)
+    {
+        return this.changes.equals(changes);
+    }
+
+    /** Add previously encoded update to buffer
+     *  @param buffer Buffer where encoded update is added
+     *  @return <code>true</code> if update was added,
+     *          <code>false</code> if it has not been encoded for the buffer's byte order
+     */
+    synchronized boolean copyTo(final ByteBuffer buffer)
+    {
+        if (encoded == null  ||  order != buffer.order())
+            return false;
+        buffer.put(encoded);
+        return true;
+    }
+
+    /** Remember encoded update
+     *  @param buffer Buffer that holds the encoded update
+     *  @param start Start of encoded update in buffer
+     */
+    synchronized void remember(final ByteBuffer buffer, final int start)
+    {
+        final ByteBuffer copy = buffer.duplicate();
+        copy.limit(buffer.position());
+        copy.position(start);
+        encoded = new byte[copy.remaining()];
+        copy.get(encoded);
+        order = buffer.order();
+    }
+}
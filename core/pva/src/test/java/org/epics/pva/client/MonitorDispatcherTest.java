@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.epics.pva.client;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.epics.pva.PVASettings;
+import org.epics.pva.data.PVAInt;
+import org.epics.pva.data.PVAStructure;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class MonitorDispatcherTest
+{
+    private static BitSet bits(final int... set)
+    {
+        final BitSet bits = new BitSet();
+        for (int bit : set)
+            bits.set(bit);
+        return bits;
+    }
+
+    private static PVAStructure value(final int value)
+    {
+        return new PVAStructure("", "demo_t", new PVAInt("value", value));
+    }
+
+    private int original_threads;
+
+    @Before
+    public void setup()
+    {
+        original_threads = PVASettings.EPICS_PVA_MONITOR_DISPATCH_THREADS;
+        PVASettings.EPICS_PVA_MONITOR_DISPATCH_THREADS = 1;
+    }
+
+    @After
+    public void restore()
+    {
+        PVASettings.EPICS_PVA_MONITOR_DISPATCH_THREADS = original_threads;
+    }
+
+    @Test
+    public void testLatestValue() throws Exception
+    {
+        final CountDownLatch first_received = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final CountDownLatch ended = new CountDownLatch(1);
+        final List<PVAStructure> values = new CopyOnWriteArrayList<>();
+        final List<BitSet> changes = new CopyOnWriteArrayList<>();
+        final List<BitSet> overruns = new CopyOnWriteArrayList<>();
+        final MonitorListener listener = (channel, changed, overrun, data) ->
+        {
+            if (data == null)
+            {
+                ended.countDown();
+                return;
+            }
+            values.add(data);
+            changes.add(changed);
+            overruns.add(overrun);
+            first_received.countDown();
+            try
+            {
+                proceed.await();
+            }
+            catch (InterruptedException ex)
+            {
+                // Ignore
+            }
+        };
+        final MonitorDispatcher dispatcher = new MonitorDispatcher(null, listener);
+        final long dropped = MonitorDispatcher.getDroppedUpdates();
+
+        // Listener is stuck in the first update
+        dispatcher.dispatch(bits(1), bits(), value(1));
+        first_received.await(5, TimeUnit.SECONDS);
+
+        // .. while these arrive, so only the last one is kept
+        dispatcher.dispatch(bits(1), bits(), value(2));
+        dispatcher.dispatch(bits(2), bits(), value(3));
+        dispatcher.dispatch(bits(1), bits(), value(4));
+        dispatcher.dispatchEnd();
+        proceed.countDown();
+
+        assertThat(ended.await(5, TimeUnit.SECONDS), equalTo(true));
+        assertThat(values.size(), equalTo(2));
+        assertThat(values.get(0).get("value").toString(), equalTo(value(1).get("value").toString()));
+        assertThat(values.get(1).get("value").toString(), equalTo(value(4).get("value").toString()));
+
+        // Changes of the dropped updates are merged,
+        // element 1 changed more than once, so it's an overrun
+        assertThat(changes.get(1), equalTo(bits(1, 2)));
+        assertThat(overruns.get(1), equalTo(bits(1)));
+        assertThat(MonitorDispatcher.getDroppedUpdates() - dropped, equalTo(2L));
+    }
+
+    @Test
+    public void testClose() throws Exception
+    {
+        final CountDownLatch first_received = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final List<PVAStructure> values = new CopyOnWriteArrayList<>();
+        final MonitorListener listener = (channel, changed, overrun, data) ->
+        {
+            values.add(data);
+            first_received.countDown();
+            try
+            {
+                proceed.await();
+            }
+            catch (InterruptedException ex)
+            {
+                // Ignore
+            }
+        };
+        final MonitorDispatcher dispatcher = new MonitorDispatcher(null, listener);
+
+        // Listener is stuck in the first update while the next one is queued
+        dispatcher.dispatch(bits(1), bits(), value(1));
+        assertThat(first_received.await(5, TimeUnit.SECONDS), equalTo(true));
+        dispatcher.dispatch(bits(1), bits(), value(2));
+
+        // Closing drops the queued update and ignores new ones
+        dispatcher.close();
+        dispatcher.dispatch(bits(1), bits(), value(3));
+        dispatcher.dispatchEnd();
+        proceed.countDown();
+
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertThat(values.size(), equalTo(1));
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.epics.pva.combined;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.epics.pva.PVASettings;
+import org.epics.pva.client.ClientChannelState;
+import org.epics.pva.client.PVAChannel;
+import org.epics.pva.client.PVAClient;
+import org.epics.pva.data.PVADouble;
+import org.epics.pva.data.PVAStructure;
+import org.epics.pva.server.PVAServer;
+import org.epics.pva.server.ServerPV;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Client and server on the local host, using TCP selector threads */
+@SuppressWarnings("nls")
+public class TCPSelectorTest
+{
+    private static int orig_threads;
+    private static String orig_addr_list;
+    private static boolean orig_auto_addr_list;
+
+    @BeforeClass
+    public static void useSelectors()
+    {
+        orig_threads = PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS;
+        orig_addr_list = PVASettings.EPICS_PVA_ADDR_LIST;
+        orig_auto_addr_list = PVASettings.EPICS_PVA_AUTO_ADDR_LIST;
+        PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS = 2;
+        PVASettings.EPICS_PVA_ADDR_LIST = "127.0.0.1";
+        PVASettings.EPICS_PVA_AUTO_ADDR_LIST = false;
+    }
+
+    @AfterClass
+    public static void restoreSettings()
+    {
+        PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS = orig_threads;
+        PVASettings.EPICS_PVA_ADDR_LIST = orig_addr_list;
+        PVASettings.EPICS_PVA_AUTO_ADDR_LIST = orig_auto_addr_list;
+    }
+
+    private static boolean haveSelectorThreads()
+    {
+        return Thread.getAllStackTraces()
+                     .keySet()
+                     .stream()
+                     .anyMatch(thread -> thread.getName().startsWith("TCP selector"));
+    }
+
+    @Test
+    public void testConnectGetMonitorClose() throws Exception
+    {
+        final PVAServer server = new PVAServer();
+        final PVADouble value = new PVADouble("value", 1.0);
+        final PVAStructure data = new PVAStructure("demo", "demo_t", value);
+        final ServerPV pv = server.createPV("selector_test", data);
+
+        final PVAClient client = new PVAClient();
+        final PVAChannel channel = client.getChannel("selector_test");
+        channel.connect().get(10, TimeUnit.SECONDS);
+        assertThat(haveSelectorThreads(), equalTo(true));
+
+        // Get
+        final PVAStructure read = channel.read("").get(10, TimeUnit.SECONDS);
+        assertThat(((PVADouble) read.get("value")).get(), equalTo(1.0));
+
+        // Monitor receives initial value, then each update
+        final BlockingQueue<Double> received = new LinkedBlockingQueue<>();
+        final AutoCloseable subscription = channel.subscribe("", (ch, changes, overruns, update) ->
+            received.add(((PVADouble) update.get("value")).get()));
+        assertThat(received.poll(10, TimeUnit.SECONDS), equalTo(1.0));
+        for (int i=2; i<=5; ++i)
+        {
+            value.set(i);
+            pv.update(data);
+            assertThat(received.poll(10, TimeUnit.SECONDS), equalTo((double) i));
+        }
+
+        // Closing the subscription ends it on the server
+        subscription.close();
+        for (int i=0; i<100  &&  pv.isSubscribed(); ++i)
+            TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(pv.isSubscribed(), equalTo(false));
+
+        // Close channel and connections
+        channel.close();
+        for (int i=0; i<100  &&  channel.getState() != ClientChannelState.CLOSED; ++i)
+            TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(channel.getState(), equalTo(ClientChannelState.CLOSED));
+        client.close();
+        server.close();
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.epics.pva.common;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/** Encode and decode search requests for several channels */
+@SuppressWarnings("nls")
+public class SearchRequestTest
+{
+    private static final InetSocketAddress CLIENT = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5076);
+
+    /** @param buffer Buffer with encoded message, flipped
+     *  @return Decoded search request
+     *  @throws Exception on error
+     */
+    private static SearchRequest decode(final ByteBuffer buffer) throws Exception
+    {
+        final int size = PVAHeader.checkMessageAndGetSize(buffer.duplicate().position(buffer.limit()), false);
+        assertThat(size, equalTo(buffer.limit()));
+        assertThat(buffer.get(3), equalTo(PVAHeader.CMD_SEARCH));
+        final byte version = buffer.get(1);
+        final int payload = buffer.getInt(PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE);
+        buffer.position(PVAHeader.HEADER_SIZE);
+        final SearchRequest search = SearchRequest.decode(CLIENT, version, payload, buffer);
+        assertThat(search, notNullValue());
+        // Payload has been read completely
+        assertThat(buffer.remaining(), equalTo(0));
+        return search;
+    }
+
+    @Test
+    public void testSeveralChannels() throws Exception
+    {
+        final int[] cids = { 1, 2, 42 };
+        final String[] names = { "ramp", "sine", "some:longer:channel:name" };
+
+        final ByteBuffer buffer = ByteBuffer.allocate(1000);
+        final int next = SearchRequest.encode(true, 17, cids, names, 0, CLIENT, buffer);
+        assertThat(next, equalTo(cids.length));
+        buffer.flip();
+
+        final SearchRequest search = decode(buffer);
+        assertThat(search.seq, equalTo(17));
+        assertThat(search.unicast, equalTo(true));
+        assertThat(search.reply_required, equalTo(false));
+        assertThat(search.client, equalTo(CLIENT));
+        assertThat(search.cid, equalTo(cids));
+        assertThat(search.name, equalTo(names));
+    }
+
+    @Test
+    public void testSplitRequests() throws Exception
+    {
+        final int N = 100;
+        final int[] cids = new int[N];
+        final String[] names = new String[N];
+        for (int i=0; i<N; ++i)
+        {
+            cids[i] = i;
+            names[i] = "channel" + i;
+        }
+
+        // Buffer only fits a few channels per request
+        final ByteBuffer buffer = ByteBuffer.allocate(200);
+        final List<Integer> decoded_cids = new ArrayList<>();
+        final List<String> decoded_names = new ArrayList<>();
+        int start = 0, requests = 0;
+        while (start < N)
+        {
+            buffer.clear();
+            final int next = SearchRequest.encode(false, requests, cids, names, start, CLIENT, buffer);
+            assertThat(next, not(equalTo(start)));
+            buffer.flip();
+
+            final SearchRequest search = decode(buffer);
+            assertThat(search.seq, equalTo(requests));
+            assertThat(search.unicast, equalTo(false));
+            assertThat(search.name.length, equalTo(next - start));
+            for (int i=0; i<search.name.length; ++i)
+            {
+                decoded_cids.add(search.cid[i]);
+                decoded_names.add(search.name[i]);
+            }
+            start = next;
+            ++requests;
+        }
+        assertThat(requests > 1, equalTo(true));
+
+        // All channels were sent once, in order
+        assertThat(decoded_cids.size(), equalTo(N));
+        for (int i=0; i<N; ++i)
+        {
+            assertThat(decoded_cids.get(i), equalTo(cids[i]));
+            assertThat(decoded_names.get(i), equalTo(names[i]));
+        }
+    }
+}
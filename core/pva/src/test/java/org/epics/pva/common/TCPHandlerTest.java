@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.epics.pva.common;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.epics.pva.PVASettings;
+import org.epics.pva.data.PVAString;
+import org.junit.Test;
+
+/** Send many messages between two {@link TCPHandler}s
+ *
+ *  <p>Sender combines queued messages into one buffer,
+ *  each encoded at a different buffer position with its
+ *  payload size patched into the header afterwards.
+ *  Receiver must find each message intact.
+ */
+@SuppressWarnings("nls")
+public class TCPHandlerTest
+{
+    private static final int N = 2000;
+
+    private static class Sender extends TCPHandler
+    {
+        final AtomicInteger writes = new AtomicInteger();
+
+        Sender(final SocketChannel socket)
+        {
+            super(socket, false);
+        }
+
+        @Override
+        protected void onSend()
+        {
+            writes.incrementAndGet();
+        }
+    }
+
+    private static class Receiver extends TCPHandler
+    {
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        Receiver(final SocketChannel socket)
+        {
+            super(socket, true);
+        }
+
+        @Override
+        protected void handleApplicationMessage(final byte command, final ByteBuffer buffer) throws Exception
+        {
+            if (command != PVAHeader.CMD_ECHO)
+                throw new Exception("Unexpected command " + command);
+            final int index = buffer.getInt();
+            final String text = PVAString.decodeString(buffer);
+            // Payload must end exactly at the end of the message
+            if (buffer.hasRemaining())
+                throw new Exception("Message " + index + " has " + buffer.remaining() + " extra bytes");
+            received.add(index + ":" + text);
+        }
+    }
+
+    /** @param index Message index
+     *  @return Text for that message, varying in length
+     */
+    private static String text(final int index)
+    {
+        final StringBuilder buf = new StringBuilder();
+        for (int i=0; i<index % 50; ++i)
+            buf.append((char) ('a' + i % 26));
+        return buf.toString();
+    }
+
+    /** @param index Message index
+     *  @return Encoder for that message
+     */
+    private static RequestEncoder message(final int index)
+    {
+        return (version, buffer) ->
+        {
+            final int size_offset = buffer.position() + PVAHeader.HEADER_OFFSET_PAYLOAD_SIZE;
+            PVAHeader.encodeMessageHeader(buffer, PVAHeader.FLAG_SERVER, PVAHeader.CMD_ECHO, 0);
+            final int payload_start = buffer.position();
+            buffer.putInt(index);
+            PVAString.encodeString(text(index), buffer);
+            final int payload_end = buffer.position();
+            buffer.putInt(size_offset, payload_end - payload_start);
+        };
+    }
+
+    private void sendMessages() throws Exception
+    {
+        try
+        (
+            ServerSocketChannel server = ServerSocketChannel.open();
+        )
+        {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            final SocketChannel client_socket = SocketChannel.open(server.getLocalAddress());
+            final SocketChannel server_socket = server.accept();
+            final Receiver receiver = new Receiver(client_socket);
+            final Sender sender = new Sender(server_socket);
+
+            // Queue all messages before the sender starts,
+            // so they are encoded back-to-back into few buffers
+            for (int i=0; i<N; ++i)
+                assertThat(sender.submit(message(i)), equalTo(true));
+            sender.startSender();
+
+            for (int i=0; i<N; ++i)
+                assertThat(receiver.received.poll(10, TimeUnit.SECONDS), equalTo(i + ":" + text(i)));
+
+            // Each write is limited to about the TCP buffer size,
+            // so there are several writes, but far fewer than messages
+            final int writes = sender.writes.get();
+            System.out.println(N + " messages sent in " + writes + " writes");
+            assertThat(writes > 1, equalTo(true));
+            assertThat(writes < N / 10, equalTo(true));
+
+            sender.close(true);
+            receiver.close(true);
+        }
+    }
+
+    @Test
+    public void testBatchedSendThread() throws Exception
+    {
+        final int orig = PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS;
+        PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS = 0;
+        try
+        {
+            sendMessages();
+        }
+        finally
+        {
+            PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS = orig;
+        }
+    }
+
+    @Test
+    public void testBatchedSelector() throws Exception
+    {
+        final int orig = PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS;
+        PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS = 1;
+        try
+        {
+            sendMessages();
+        }
+        finally
+        {
+            PVASettings.EPICS_PVA_TCP_SELECTOR_THREADS = orig;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.core.vtypes;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.epics.util.array.ArrayByte;
+import org.epics.util.array.ArrayDouble;
+import org.epics.util.array.ListNumber;
+import org.epics.util.stats.Range;
+import org.epics.util.text.NumberFormats;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.AlarmStatus;
+import org.epics.vtype.Display;
+import org.epics.vtype.EnumDisplay;
+import org.epics.vtype.Time;
+import org.epics.vtype.VByteArray;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VEnum;
+import org.epics.vtype.VLong;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VNumberArray;
+import org.epics.vtype.VStatistics;
+import org.epics.vtype.VString;
+import org.epics.vtype.VStringArray;
+import org.epics.vtype.VType;
+
+/** Binary encoding of samples
+ *
+ *  <p>Used by the archive engine for its spill log and file archive,
+ *  and by the Data Browser to read that file archive
+ *  and for its local sample cache.
+ *  Each sample is written as type, time, alarm, value
+ *  and, for numbers, display information.
+ *  Types that have no specific encoding are written as text,
+ *  like the RDB writer handles them.
+ */
+@SuppressWarnings("nls")
+public class SampleCodec
+{
+    /** Sample types */
+    private static final byte DOUBLE = 1, LONG = 2, DOUBLE_ARRAY = 3, BYTE_ARRAY = 4,
+                              ENUM = 5, STRING = 6, STRING_ARRAY = 7, STATISTICS = 8;
+
+    private SampleCodec()
+    {
+        // Static helpers only
+    }
+
+    /** @param out Stream to which sample is written
+     *  @param value Sample
+     *  @throws IOException on error
+     */
+    public static void encode(final DataOutputStream out, final VType value) throws IOException
+    {
+        if (value instanceof VNumber)
+        {
+            final Number number = ((VNumber) value).getValue();
+            if (number instanceof Double  ||  number instanceof Float)
+            {
+                out.writeByte(DOUBLE);
+                encodeMeta(out, value);
+                out.writeDouble(number.doubleValue());
+            }
+            else
+            {
+                out.writeByte(LONG);
+                encodeMeta(out, value);
+                out.writeLong(number.longValue());
+            }
+            encodeDisplay(out, ((VNumber) value).getDisplay());
+        }
+        else if (value instanceof VStatistics)
+        {
+            final VStatistics stats = (VStatistics) value;
+            out.writeByte(STATISTICS);
+            encodeMeta(out, value);
+            out.writeDouble(stats.getAverage());
+            out.writeDouble(stats.getStdDev());
+            out.writeDouble(stats.getMin());
+            out.writeDouble(stats.getMax());
+            out.writeInt(stats.getNSamples());
+            encodeDisplay(out, stats.getDisplay());
+        }
+        else if (value instanceof VByteArray)
+        {
+            out.writeByte(BYTE_ARRAY);
+            encodeMeta(out, value);
+            final ListNumber data = ((VByteArray) value).getData();
+            final int N = data.size();
+            out.writeInt(N);
+            for (int i=0; i<N; ++i)
+                out.writeByte(data.getByte(i));
+            encodeDisplay(out, ((VByteArray) value).getDisplay());
+        }
+        else if (value instanceof VNumberArray)
+        {
+            out.writeByte(DOUBLE_ARRAY);
+            encodeMeta(out, value);
+            final ListNumber data = ((VNumberArray) value).getData();
+            final int N = data.size();
+            out.writeInt(N);
+            for (int i=0; i<N; ++i)
+                out.writeDouble(data.getDouble(i));
+            encodeDisplay(out, ((VNumberArray) value).getDisplay());
+        }
+        else if (value instanceof VEnum)
+        {
+            out.writeByte(ENUM);
+            encodeMeta(out, value);
+            final VEnum enumerated = (VEnum) value;
+            out.writeInt(enumerated.getIndex());
+            encodeStrings(out, enumerated.getDisplay().getChoices());
+        }
+        else if (value instanceof VStringArray)
+        {
+            out.writeByte(STRING_ARRAY);
+            encodeMeta(out, value);
+            encodeStrings(out, ((VStringArray) value).getData());
+        }
+        else
+        {   // Like RDB writer, handle unknown types as text
+            out.writeByte(STRING);
+            encodeMeta(out, value);
+            out.writeUTF(value instanceof VString ? ((VString) value).getValue() : value.toString());
+        }
+    }
+
+    private static void encodeMeta(final DataOutputStream out, final VType value) throws IOException
+    {
+        final Time time = Time.timeOf(value);
+        out.writeLong(time.getTimestamp().getEpochSecond());
+        out.writeInt(time.getTimestamp().getNano());
+        out.writeBoolean(time.isValid());
+        final Alarm alarm = Alarm.alarmOf(value);
+        out.writeByte(alarm.getSeverity().ordinal());
+        out.writeByte(alarm.getStatus().ordinal());
+        out.writeUTF(alarm.getName());
+    }
+
+    private static void encodeDisplay(final DataOutputStream out, final Display display) throws IOException
+    {
+        encodeRange(out, display.getDisplayRange());
+        encodeRange(out, display.getAlarmRange());
+        encodeRange(out, display.getWarningRange());
+        encodeRange(out, display.getControlRange());
+        out.writeUTF(display.getUnit());
+        final NumberFormat format = display.getFormat();
+        out.writeInt(format == null ? -1 : format.getMinimumFractionDigits());
+    }
+
+    private static void encodeRange(final DataOutputStream out, final Range range) throws IOException
+    {
+        out.writeDouble(range.getMinimum());
+        out.writeDouble(range.getMaximum());
+    }
+
+    private static void encodeStrings(final DataOutputStream out, final List<String> strings) throws IOException
+    {
+        out.writeInt(strings.size());
+        for (String text : strings)
+            out.writeUTF(text);
+    }
+
+    /** @param in Stream from which sample is read
+     *  @return Sample
+     *  @throws Exception on error
+     */
+    public static VType decode(final DataInputStream in) throws Exception
+    {
+        final byte type = in.readByte();
+        final Time time = Time.of(Instant.ofEpochSecond(in.readLong(), in.readInt()), 0, in.readBoolean());
+        final AlarmSeverity severity = AlarmSeverity.values()[in.readByte()];
+        final AlarmStatus status = AlarmStatus.values()[in.readByte()];
+        final Alarm alarm = Alarm.of(severity, status, in.readUTF());
+        switch (type)
+        {
+        case DOUBLE:
+        {
+            final double value = in.readDouble();
+            return VDouble.of(value, alarm, time, decodeDisplay(in));
+        }
+        case LONG:
+        {
+            final long value = in.readLong();
+            return VLong.of(value, alarm, time, decodeDisplay(in));
+        }
+        case STATISTICS:
+        {
+            final double average = in.readDouble();
+            final double stddev = in.readDouble();
+            final double min = in.readDouble();
+            final double max = in.readDouble();
+            final int count = in.readInt();
+            return VStatistics.of(average, stddev, min, max, count, alarm, time, decodeDisplay(in));
+        }
+        case BYTE_ARRAY:
+        {
+            final byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return VByteArray.of(ArrayByte.of(data), alarm, time, decodeDisplay(in));
+        }
+        case DOUBLE_ARRAY:
+        {
+            final double[] data = new double[in.readInt()];
+            for (int i=0; i<data.length; ++i)
+                data[i] = in.readDouble();
+            return VNumberArray.of(ArrayDouble.of(data), alarm, time, decodeDisplay(in));
+        }
+        case ENUM:
+        {
+            final int index = in.readInt();
+            return VEnum.of(index, EnumDisplay.of(decodeStrings(in)), alarm, time);
+        }
+        case STRING_ARRAY:
+            return VStringArray.of(decodeStrings(in), alarm, time);
+        case STRING:
+            return VString.of(in.readUTF(), alarm, time);
+        default:
+            throw new Exception("Unknown sample type " + type);
+        }
+    }
+
+    private static Display decodeDisplay(final DataInputStream in) throws IOException
+    {
+        final Range display = decodeRange(in);
+        final Range alarm = decodeRange(in);
+        final Range warning = decodeRange(in);
+        final Range control = decodeRange(in);
+        final String units = in.readUTF();
+        final int precision = in.readInt();
+        final NumberFormat format = precision < 0 ? Display.none().getFormat() : NumberFormats.precisionFormat(precision);
+        return Display.of(display, alarm, warning, control, units, format);
+    }
+
+    private static Range decodeRange(final DataInputStream in) throws IOException
+    {
+        final double min = in.readDouble();
+        final double max = in.readDouble();
+        return Range.of(min, max);
+    }
+
+    private static List<String> decodeStrings(final DataInputStream in) throws IOException
+    {
+        final int N = in.readInt();
+        final List<String> strings = new ArrayList<>(N);
+        for (int i=0; i<N; ++i)
+            strings.add(in.readUTF());
+        return strings;
+    }
+}
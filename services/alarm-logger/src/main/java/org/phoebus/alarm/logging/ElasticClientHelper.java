@@ -7,22 +7,35 @@ import static org.phoebus.alarm.logging.AlarmLoggingService.logger;
 
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 
 import org.apache.http.HttpHost;
-import org.elasticsearch.action.DocWriteResponse.Result;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.sniff.Sniffer;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.phoebus.applications.alarm.messages.AlarmCommandMessage;
 import org.phoebus.applications.alarm.messages.AlarmConfigMessage;
 import org.phoebus.applications.alarm.messages.AlarmStateMessage;
 
 /**
+ * Documents are indexed via a {@link BulkProcessor}, i.e. asynchronously.
+ * Kafka streams commit the offsets of the logged messages independent of the bulk requests,
+ * so documents that are still queued when the alarm logger crashes are lost: Messages are logged at most once.
+ * On a normal shutdown the queued documents are indexed before the client is closed.
+ *
  * @author Kunal Shroff {@literal <kunalshroff9@gmail.gov>}
  *
  */
@@ -31,11 +44,20 @@ public class ElasticClientHelper {
     private static RestHighLevelClient client;
     private static ElasticClientHelper instance;
     private static Sniffer sniffer;
+    private static BulkProcessor bulkProcessor;
 
     private ElasticClientHelper() {
         try {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 logger.info("Shutting down the ElasticClientHelper.");
+                if (bulkProcessor != null) {
+                    try {
+                        // Index the queued documents
+                        bulkProcessor.awaitClose(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        logger.log(Level.WARNING, "Failed to index all queued documents", e);
+                    }
+                }
                 if (client != null) {
                     try {
                         sniffer.close();
@@ -51,6 +73,8 @@ public class ElasticClientHelper {
                 sniffer = Sniffer.builder(client.getLowLevelClient()).build();
                 logger.log(Level.INFO, "ES Sniff feature is enabled");
             }
+            bulkProcessor = createBulkProcessor(
+                    (request, bulkListener) -> client.bulkAsync(request, RequestOptions.DEFAULT, bulkListener), props);
         } catch (Exception e) {
             try {
                 sniffer.close();
@@ -62,7 +86,47 @@ public class ElasticClientHelper {
 
     }
 
-    public static ElasticClientHelper getInstance() {
+    /**
+     * Create the processor that collects documents into bulk requests.
+     * A bulk request is sent when it reaches the configured number of documents or size,
+     * or when the flush interval expires.
+     * Requests are sent asynchronously, with a limited number of requests in flight,
+     * and retried with exponential backoff when rejected by an overloaded elastic node.
+     *
+     * @param consumer sends a bulk request, notifying the listener
+     * @param props alarm logger properties with the es_bulk_* settings
+     * @return {@link BulkProcessor}
+     */
+    static BulkProcessor createBulkProcessor(BiConsumer<BulkRequest, ActionListener<BulkResponse>> consumer, Properties props) {
+        BulkProcessor.Listener listener = new BulkProcessor.Listener() {
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request) {
+                logger.log(Level.FINE, () -> "Indexing " + request.numberOfActions() + " documents");
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+                if (response.hasFailures()) {
+                    logger.log(Level.SEVERE, "failed to log messages: " + response.buildFailureMessage());
+                }
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+                logger.log(Level.SEVERE, "failed to log " + request.numberOfActions() + " messages", failure);
+            }
+        };
+        return BulkProcessor.builder(consumer, listener)
+                .setBulkActions(Integer.parseInt(props.getProperty("es_bulk_actions")))
+                .setBulkSize(new ByteSizeValue(Long.parseLong(props.getProperty("es_bulk_size_mb")), ByteSizeUnit.MB))
+                .setFlushInterval(TimeValue.timeValueMillis(Long.parseLong(props.getProperty("es_bulk_flush_interval_ms"))))
+                .setConcurrentRequests(Integer.parseInt(props.getProperty("es_bulk_concurrent_requests")))
+                .setBackoffPolicy(BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(100),
+                        Integer.parseInt(props.getProperty("es_bulk_retries"))))
+                .build();
+    }
+
+    public static synchronized ElasticClientHelper getInstance() {
         if (instance == null) {
             instance = new ElasticClientHelper();
         }
@@ -91,39 +155,60 @@ public class ElasticClientHelper {
         }
     }
 
-    public boolean indexAlarmStateDocument(String indexName, AlarmStateMessage alarmStateMessage) {
+    /**
+     * Queue an alarm state message for indexing
+     * Note: this is an asynchronous call, the document is indexed as part of a bulk request,
+     * see {@link ElasticClientHelper} about lost documents
+     *
+     * @param indexName elastic index name
+     * @param alarmStateMessage message to index
+     */
+    public void indexAlarmStateDocument(String indexName, AlarmStateMessage alarmStateMessage) {
         IndexRequest indexRequest = new IndexRequest(indexName.toLowerCase(), "alarm");
-        try {
-            indexRequest.source(alarmStateMessage.sourceMap());
-            IndexResponse indexResponse = client.index(indexRequest, RequestOptions.DEFAULT);
-            return indexResponse.getResult().equals(Result.CREATED);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "failed to log message " + alarmStateMessage + " to index " + indexName, e);
-            return false;
-        }
+        indexRequest.source(alarmStateMessage.sourceMap());
+        queue(indexRequest, alarmStateMessage);
     }
 
-    public boolean indexAlarmCmdDocument(String indexName, AlarmCommandMessage alarmCommandMessage) {
+    /**
+     * Queue an alarm command message for indexing
+     * Note: this is an asynchronous call, the document is indexed as part of a bulk request,
+     * see {@link ElasticClientHelper} about lost documents
+     *
+     * @param indexName elastic index name
+     * @param alarmCommandMessage message to index
+     */
+    public void indexAlarmCmdDocument(String indexName, AlarmCommandMessage alarmCommandMessage) {
         IndexRequest indexRequest = new IndexRequest(indexName.toLowerCase(), "alarm_cmd");
-        try {
-            indexRequest.source(alarmCommandMessage.sourceMap());
-            IndexResponse indexResponse = client.index(indexRequest, RequestOptions.DEFAULT);
-            return indexResponse.getResult().equals(Result.CREATED);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "failed to log message " + alarmCommandMessage + " to index " + indexName, e);
-            return false;
-        }
+        indexRequest.source(alarmCommandMessage.sourceMap());
+        queue(indexRequest, alarmCommandMessage);
     }
 
-    public boolean indexAlarmConfigDocument(String indexName, AlarmConfigMessage alarmConfigMessage) {
+    /**
+     * Queue an alarm config message for indexing
+     * Note: this is an asynchronous call, the document is indexed as part of a bulk request,
+     * see {@link ElasticClientHelper} about lost documents
+     *
+     * @param indexName elastic index name
+     * @param alarmConfigMessage message to index
+     */
+    public void indexAlarmConfigDocument(String indexName, AlarmConfigMessage alarmConfigMessage) {
         IndexRequest indexRequest = new IndexRequest(indexName.toLowerCase(), "alarm_config");
-        try {
-            indexRequest.source(alarmConfigMessage.sourceMap());
-            IndexResponse indexResponse = client.index(indexRequest, RequestOptions.DEFAULT);
-            return indexResponse.getResult().equals(Result.CREATED);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "failed to log message " + alarmConfigMessage + " to index " + indexName, e);
-            return false;
+        indexRequest.source(alarmConfigMessage.sourceMap());
+        queue(indexRequest, alarmConfigMessage);
+    }
+
+    /**
+     * Queue a document for indexing
+     *
+     * @param indexRequest document to index
+     * @param message message for the document, used to log errors
+     */
+    private void queue(IndexRequest indexRequest, Object message) {
+        if (bulkProcessor == null) {
+            logger.log(Level.SEVERE, "failed to log message " + message + " to index " + indexRequest.index()
+                    + ", no connection to elastic");
+            return;
         }
+        bulkProcessor.add(indexRequest);
     }
 }
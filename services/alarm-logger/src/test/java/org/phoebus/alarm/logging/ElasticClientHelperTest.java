@@ -0,0 +1,53 @@
+package org.phoebus.alarm.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Test;
+
+public class ElasticClientHelperTest {
+
+    private static IndexRequest createRequest(int i) {
+        return new IndexRequest("test", "alarm").source(Map.of("message", "Message " + i));
+    }
+
+    @Test
+    public void bulkProcessorTest() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("es_bulk_actions", "3");
+        props.setProperty("es_bulk_size_mb", "5");
+        props.setProperty("es_bulk_flush_interval_ms", "60000");
+        // Send requests in the calling thread
+        props.setProperty("es_bulk_concurrent_requests", "0");
+        props.setProperty("es_bulk_retries", "0");
+
+        List<BulkRequest> sent = new ArrayList<>();
+        BulkProcessor processor = ElasticClientHelper.createBulkProcessor((request, listener) -> {
+            sent.add(request);
+            listener.onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+        }, props);
+
+        // Documents are queued until the bulk request is full
+        for (int i = 0; i < 5; ++i) {
+            processor.add(createRequest(i));
+        }
+        assertEquals(1, sent.size());
+        assertEquals(3, sent.get(0).numberOfActions());
+
+        // Closing indexes the remaining documents
+        assertTrue(processor.awaitClose(10, TimeUnit.SECONDS));
+        assertEquals(2, sent.size());
+        assertEquals(2, sent.get(1).numberOfActions());
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2018-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -88,7 +88,7 @@ public class AlarmServerMain implements ServerModelListener
                 final ConcurrentHashMap<String, ClientState> initial_states = init.shutdown();
 
                 logger.info("Start handling alarms");
-                model = new ServerModel(server, config, initial_states, this);
+                model = new ServerModel(server, config, initial_states, init.getSnapshot(), this);
                 model.start();
 
                 if (use_shell)
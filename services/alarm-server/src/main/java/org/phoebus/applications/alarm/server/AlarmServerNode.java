@@ -25,6 +25,11 @@ import org.phoebus.applications.alarm.server.actions.AutomatedActionsHelper;
 /** Alarm tree node as used by server
  *
  *  <p>Is part of ServerModel, can maximize severity.
+ *
+ *  <p>Counts the enabled children for each severity level,
+ *  so a change in one child only updates the counters
+ *  of the nodes on its path to the root,
+ *  instead of checking all children of each node on that path.
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
@@ -44,6 +49,9 @@ public class AlarmServerNode extends AlarmClientNode
 
     private volatile String severity_pv_name = null;
 
+    /** Severity counts of the enabled children. SYNC on this */
+    private final SeverityCounts severity_counts = new SeverityCounts();
+
     public AlarmServerNode(final ServerModel model, final AlarmClientNode parent, final String name)
     {
         super(parent, name);
@@ -56,6 +64,56 @@ public class AlarmServerNode extends AlarmClientNode
         return (AlarmServerNode) parent;
     }
 
+    /** @param child Child item
+     *  @return <code>true</code> if child's severity is included in this node's severity
+     */
+    private static boolean isCounted(final AlarmTreeItem<?> child)
+    {
+        // Skip disabled PVs
+        return ! (child instanceof AlarmServerPV)  ||
+               ((AlarmServerPV) child).isEnabled();
+    }
+
+    /** Update severity counters for one child
+     *
+     *  <p>Caller must synchronize on this node.
+     *  @param child Child item
+     */
+    private void countChild(final AlarmTreeItem<?> child)
+    {
+        severity_counts.update(child, isCounted(child) ? child.getState().severity : null);
+    }
+
+    /** Update severity of this item for a change in one child.
+     *  Recursively updates parent items.
+     *  @param child Child item that changed its severity or 'enabled' state
+     */
+    public void updateSeverity(final AlarmTreeItem<?> child)
+    {
+        synchronized (this)
+        {
+            countChild(child);
+        }
+        maximizeSeverity();
+    }
+
+    /** Set severity of this item by maximizing over its child severities,
+     *  after re-counting all children.
+     *  Recursively updates parent items.
+     *
+     *  <p>To be called when children are removed.
+     */
+    public void recountSeverity()
+    {
+        synchronized (this)
+        {
+            severity_counts.clear();
+            for (AlarmTreeItem<?> child : getChildren())
+                countChild(child);
+        }
+        maximizeSeverity();
+    }
+
     /** Set severity of this item by maximizing over its child severities.
      *  Recursively updates parent items.
      */
@@ -63,38 +121,37 @@ public class AlarmServerNode extends AlarmClientNode
     {
         try
         {
-            SeverityLevel new_severity = SeverityLevel.OK;
-
-            for (AlarmTreeItem<?> child : getChildren())
+            // Determine new state while holding the lock,
+            // but notify without holding it
+            final BasicState new_state;
+            synchronized (this)
             {
-                // Skip disabled PVs
-                if ((child instanceof AlarmServerPV)  &&
-                    ! ((AlarmServerPV) child).isEnabled())
-                    continue;
-                final SeverityLevel child_severity = child.getState().severity;
-                if (child_severity.ordinal() > new_severity.ordinal())
-                    new_severity = child_severity;
+                final SeverityLevel new_severity = severity_counts.getMaximum();
+                if (never_updated  ||  new_severity != getState().severity)
+                {
+                    never_updated = false;
+                    new_state = new BasicState(new_severity);
+                    setState(new_state);
+                }
+                else
+                    new_state = null;
             }
+            if (new_state == null)
+                return;
 
-            if (never_updated  ||  new_severity != getState().severity)
-            {
-                never_updated = false;
-                final BasicState new_state = new BasicState(new_severity);
-                setState(new_state);
-                model.sendStateUpdate(getPathName(), new_state);
-
-                // Update automated actions
-                AutomatedActionsHelper.update(automated_actions, new_severity);
-
-                // Write optional severity PV
-                final String pv = severity_pv_name;
-                if (pv != null)
-                    SeverityPVHandler.update(pv, new_severity);
-            }
+            model.sendStateUpdate(getPathName(), new_state);
+
+            // Update automated actions
+            AutomatedActionsHelper.update(automated_actions, new_state.severity);
+
+            // Write optional severity PV
+            final String pv = severity_pv_name;
+            if (pv != null)
+                SeverityPVHandler.update(pv, new_state.severity);
 
             // Percolate changes towards root
             if (parent instanceof AlarmServerNode)
-                ((AlarmServerNode) parent).maximizeSeverity();
+                ((AlarmServerNode) parent).updateSeverity(this);
         }
         catch (Throwable ex)
         {
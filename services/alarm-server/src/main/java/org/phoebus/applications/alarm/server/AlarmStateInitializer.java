@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2018-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -9,6 +9,7 @@ package org.phoebus.applications.alarm.server;
 
 import static org.phoebus.applications.alarm.AlarmSystem.logger;
 
+import java.io.File;
 import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,6 +21,7 @@ import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.phoebus.applications.alarm.AlarmSystem;
 import org.phoebus.applications.alarm.ResettableTimeout;
+import org.phoebus.applications.alarm.client.AlarmTopicSnapshot;
 import org.phoebus.applications.alarm.client.ClientState;
 import org.phoebus.applications.alarm.client.KafkaHelper;
 import org.phoebus.applications.alarm.model.SeverityLevel;
@@ -38,6 +40,11 @@ import org.phoebus.applications.alarm.model.json.JsonModelReader;
  *  and then assume that we have a good snapshot when there are
  *  no more state updates for a while.
  *
+ *  <p>When snapshots are enabled, past states are first read
+ *  from the {@link AlarmTopicSnapshot}, and only newer updates
+ *  from the topic.
+ *  The snapshot is then passed on to the {@link ServerModel}.
+ *
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
@@ -49,12 +56,23 @@ public class AlarmStateInitializer
     private final Thread thread;
     private final ConcurrentHashMap<String, ClientState> inititial_severity = new ConcurrentHashMap<>();
 
+    /** Snapshot of the topic, <code>null</code> if snapshots are disabled */
+    private final AlarmTopicSnapshot snapshot;
+
     /** @param server Kafka Server host:port
      *  @param config_name Name of alarm tree root
      */
     public AlarmStateInitializer(final String server, final String config_name)
     {
-        consumer = KafkaHelper.connectConsumer(server, List.of(config_name), List.of(config_name));
+        final File snapshot_file = AlarmTopicSnapshot.getFile(config_name);
+        snapshot = snapshot_file == null ? null : AlarmTopicSnapshot.read(snapshot_file, config_name);
+
+        consumer = KafkaHelper.connectConsumer(server, List.of(config_name), List.of(config_name),
+                                               snapshot == null ? part -> null : snapshot::getStartOffset);
+
+        // Apply snapshot unless the topic no longer matches it
+        if (snapshot != null  &&  snapshot.checkOffsets(consumer))
+            snapshot.forEach(this::handleUpdate);
 
         thread = new Thread(this::run, "AlarmStateInitializer");
         thread.setDaemon(true);
@@ -87,47 +105,57 @@ public class AlarmStateInitializer
         final ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(100));
         for (final ConsumerRecord<String, String> record : records)
         {
-            if (record.key().length() < 2)
-            {
-                logger.log(Level.WARNING, "Invalid key, expecting type:path, got " + record.key());
-                continue;
-            }
-            final String type = record.key().substring(0, 2);
-            // Only handle state updates
-            if (type.equals(AlarmSystem.STATE_PREFIX))
+            handleUpdate(record.key(), record.value());
+            if (snapshot != null)
+                snapshot.update(record.partition(), record.offset(), record.key(), record.value());
+        }
+    }
+
+    /** Handle one update, received or from snapshot
+     *  @param key Record key "type:path"
+     *  @param node_config Record value
+     */
+    private void handleUpdate(final String key, final String node_config)
+    {
+        if (key.length() < 2)
+        {
+            logger.log(Level.WARNING, "Invalid key, expecting type:path, got " + key);
+            return;
+        }
+        final String type = key.substring(0, 2);
+        // Only handle state updates
+        if (type.equals(AlarmSystem.STATE_PREFIX))
+        {
+            final String path = key.substring(3);
+            try
             {
-                final String path = record.key().substring(3);
-                final String node_config = record.value();
-                try
+                // System.out.printf("\n%s - %s:\n", path, node_config);
+                if (node_config == null)
+                {   // No config -> Delete node
+                    inititial_severity.remove(path);
+                    timer.reset();
+                }
+                else
                 {
-                    // System.out.printf("\n%s - %s:\n", path, node_config);
-                    if (node_config == null)
-                    {   // No config -> Delete node
-                        inititial_severity.remove(path);
-                        timer.reset();
-                    }
-                    else
+                    // Get node_config as JSON map to check for "pv" key
+                    final Object json = JsonModelReader.parseJsonText(node_config);
+                    final ClientState state = JsonModelReader.parseClientState(json);
+                    if (state != null)
                     {
-                        // Get node_config as JSON map to check for "pv" key
-                        final Object json = JsonModelReader.parseJsonText(node_config);
-                        final ClientState state = JsonModelReader.parseClientState(json);
-                        if (state != null)
-                        {
-                            // Delete when PV was OK, or track non-OK severity.
-                            if (state.severity == SeverityLevel.OK)
-                                inititial_severity.remove(path);
-                            else
-                                inititial_severity.put(path, state);
-                            timer.reset();
-                        }
+                        // Delete when PV was OK, or track non-OK severity.
+                        if (state.severity == SeverityLevel.OK)
+                            inititial_severity.remove(path);
+                        else
+                            inititial_severity.put(path, state);
+                        timer.reset();
                     }
                 }
-                catch (final Exception ex)
-                {
-                    logger.log(Level.WARNING,
-                               "Alarm state check error for path " + path +
-                               ", config " + node_config, ex);
-                }
+            }
+            catch (final Exception ex)
+            {
+                logger.log(Level.WARNING,
+                           "Alarm state check error for path " + path +
+                           ", config " + node_config, ex);
             }
         }
     }
@@ -156,4 +184,12 @@ public class AlarmStateInitializer
         }
         return inititial_severity;
     }
+
+    /** @return Snapshot with all updates read so far, <code>null</code> if snapshots are disabled.
+     *          Only to be used after {@link #shutdown()}
+     */
+    public AlarmTopicSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
 }
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.phoebus.applications.alarm.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.phoebus.applications.alarm.model.AlarmTreeItem;
+
+/** Index of alarm tree items by PV name
+ *
+ *  <p>PV names are compared ignoring case.
+ *  Several items may use the same PV name,
+ *  for example in different sections of the alarm tree.
+ *
+ *  <p>Thread safe.
+ *
+ *  @param <ITEM> Alarm tree item type
+ */
+class PVNameIndex<ITEM extends AlarmTreeItem<?>>
+{
+    /** Items for each normalized PV name, in the order they were added.
+     *  Lists are replaced, never modified, so readers don't need to lock.
+     */
+    private final ConcurrentHashMap<String, List<ITEM>> items = new ConcurrentHashMap<>();
+
+    /** @param name PV name
+     *  @return Name used for the index, ignoring case
+     */
+    private static String normalize(final String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /** @param item Item to add, indexed by its name */
+    public void add(final ITEM item)
+    {
+        items.compute(normalize(item.getName()), (name, list) ->
+        {
+            if (list == null)
+                return List.of(item);
+            if (list.contains(item))
+                return list;
+            final List<ITEM> result = new ArrayList<>(list);
+            result.add(item);
+            return result;
+        });
+    }
+
+    /** @param item Item to remove, leaving other items with the same name in the index */
+    public void remove(final ITEM item)
+    {
+        items.computeIfPresent(normalize(item.getName()), (name, list) ->
+        {
+            final List<ITEM> result = new ArrayList<>(list);
+            result.remove(item);
+            return result.isEmpty() ? null : result;
+        });
+    }
+
+    /** @param name PV name
+     *  @return First item with that name that is still in the index, or <code>null</code>
+     */
+    public ITEM find(final String name)
+    {
+        final List<ITEM> list = items.get(normalize(name));
+        return list == null ? null : list.get(0);
+    }
+
+    /** Remove all items */
+    public void clear()
+    {
+        items.clear();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2018-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -9,6 +9,7 @@ package org.phoebus.applications.alarm.server;
 
 import static org.phoebus.applications.alarm.AlarmSystem.logger;
 
+import java.io.File;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
@@ -23,6 +24,7 @@ import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.phoebus.applications.alarm.AlarmSystem;
 import org.phoebus.applications.alarm.client.AlarmClientNode;
+import org.phoebus.applications.alarm.client.AlarmTopicSnapshot;
 import org.phoebus.applications.alarm.client.ClientState;
 import org.phoebus.applications.alarm.client.KafkaHelper;
 import org.phoebus.applications.alarm.model.AlarmTreeItem;
@@ -43,6 +45,10 @@ import org.phoebus.applications.alarm.model.json.JsonModelWriter;
  *
  *  <p>Publishes alarm state updates to the "AcceleratorState" topic.
  *
+ *  <p>When snapshots are enabled, the configuration is first loaded
+ *  from the {@link AlarmTopicSnapshot}, and the topic is then read
+ *  from the offsets saved in the snapshot.
+ *
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
@@ -61,20 +67,39 @@ class ServerModel
     private final String config_state_topic, command_topic, talk_topic;
     private final ServerModelListener listener;
     private final AlarmServerNode root;
+
+    /** Index of all items in the tree by path name */
+    private final ConcurrentHashMap<String, AlarmTreeItem<?>> items_by_path = new ConcurrentHashMap<>();
+
+    /** Index of alarm tree leaves by PV name */
+    private final PVNameIndex<AlarmServerPV> pvs_by_name = new PVNameIndex<>();
+
     private volatile boolean running = true;
     private final Consumer<String, String> consumer;
     private final Producer<String, String> producer;
+    private final StatePublisher state_publisher;
     private final Thread thread;
     private long last_state_update = 0;
     private long last_annunciation = 0;
 
+    /** Snapshot file, <code>null</code> if snapshots are disabled */
+    private final File snapshot_file;
+
+    /** Snapshot of the topic, <code>null</code> if snapshots are disabled */
+    private final AlarmTopicSnapshot snapshot;
+
+    /** Time of last snapshot write (ms) */
+    private long last_snapshot = 0;
+
     /** @param kafka_servers Servers
      *  @param config_name Name of alarm tree root
      * @param initial_states
+     *  @param snapshot Snapshot from which to load the configuration, <code>null</code> if snapshots are disabled
      *  @throws Exception on error
      */
     public ServerModel(final String kafka_servers, final String config_name,
                        final ConcurrentHashMap<String, ClientState> initial_states,
+                       final AlarmTopicSnapshot snapshot,
                        final ServerModelListener listener) throws Exception
     {
         this.initial_states = initial_states;
@@ -87,11 +112,17 @@ class ServerModel
         this.listener = Objects.requireNonNull(listener);
 
         root = new AlarmServerNode(this, null, config_name);
+        addToIndex(root);
+
+        this.snapshot = snapshot;
+        snapshot_file = snapshot == null ? null : AlarmTopicSnapshot.getFile(config_name);
 
         consumer = KafkaHelper.connectConsumer(Objects.requireNonNull(kafka_servers),
                                                List.of(config_state_topic, command_topic),
-                                               List.of(config_state_topic));
+                                               List.of(config_state_topic),
+                                               snapshot == null ? part -> null : snapshot::getStartOffset);
         producer = KafkaHelper.connectProducer(kafka_servers);
+        state_publisher = new StatePublisher(producer, config_state_topic, AlarmSystem.state_update_window);
 
         thread = new Thread(this::run, "ServerModel");
         thread.setDaemon(true);
@@ -120,12 +151,14 @@ class ServerModel
     {
         try
         {
+            loadSnapshot();
             while (running)
             {
                 checkUpdates();
                 final long now = System.currentTimeMillis();
                 checkIdle(now);
                 checkNag(now);
+                checkSnapshot(now);
             }
         }
         catch (Throwable ex)
@@ -136,83 +169,138 @@ class ServerModel
         }
         finally
         {
+            if (snapshot != null  &&  snapshot.isChanged())
+                writeSnapshot();
             consumer.close();
         }
     }
 
+    /** Load configuration from snapshot, unless the topic no longer matches the snapshot */
+    private void loadSnapshot()
+    {
+        if (snapshot == null  ||  snapshot.size() <= 0  ||  !snapshot.checkOffsets(consumer))
+            return;
+        final long start = System.currentTimeMillis();
+        // Server only reads the configuration, ignoring states
+        snapshot.forEach((key, value) ->
+        {
+            if (key.startsWith(AlarmSystem.CONFIG_PREFIX))
+                handleUpdate(config_state_topic, key, value);
+        });
+        last_snapshot = System.currentTimeMillis();
+        logger.log(Level.INFO, "Loaded configuration for " + root.getName() +
+                               " from snapshot in " + (last_snapshot - start) + " ms");
+    }
+
+    /** Write snapshot if it changed and the snapshot period has passed
+     *  @param now Current millisec
+     */
+    private void checkSnapshot(final long now)
+    {
+        if (snapshot == null  ||  !snapshot.isChanged()  ||
+            now - last_snapshot < AlarmSystem.snapshot_period_ms)
+            return;
+        last_snapshot = now;
+        writeSnapshot();
+    }
+
+    /** Write snapshot, logging errors */
+    private void writeSnapshot()
+    {
+        try
+        {
+            snapshot.write(snapshot_file);
+        }
+        catch (Exception ex)
+        {
+            logger.log(Level.WARNING, "Cannot write alarm snapshot " + snapshot_file, ex);
+        }
+    }
+
     /** Perform one check for updates */
     private void checkUpdates()
     {
         final ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(100));
         for (ConsumerRecord<String, String> record : records)
         {
-            final int sep = record.key().indexOf(':');
-            if (sep < 0)
-            {
-                logger.log(Level.WARNING, "Invalid key, expecting type:path, got " + record.key());
-                continue;
-            }
+            handleUpdate(record.topic(), record.key(), record.value());
+            if (snapshot != null  &&  record.topic().equals(config_state_topic))
+                snapshot.update(record.partition(), record.offset(), record.key(), record.value());
+        }
+    }
 
-            final String type = record.key().substring(0, sep+1);
-            final String path = record.key().substring(sep+1);
-            if (type.equals(AlarmSystem.COMMAND_PREFIX)  ||  record.topic().equals(command_topic))
-            {
-                final String json = record.value();
-                listener.handleCommand(path, json);
-            }
-            else if (type.equals(AlarmSystem.CONFIG_PREFIX))
+    /** Handle one update, received or from snapshot
+     *  @param topic Topic of the record
+     *  @param key Record key "type:path"
+     *  @param value Record value
+     */
+    private void handleUpdate(final String topic, final String key, final String value)
+    {
+        final int sep = key.indexOf(':');
+        if (sep < 0)
+        {
+            logger.log(Level.WARNING, "Invalid key, expecting type:path, got " + key);
+            return;
+        }
+
+        final String type = key.substring(0, sep+1);
+        final String path = key.substring(sep+1);
+        if (type.equals(AlarmSystem.COMMAND_PREFIX)  ||  topic.equals(command_topic))
+        {
+            listener.handleCommand(path, value);
+        }
+        else if (type.equals(AlarmSystem.CONFIG_PREFIX))
+        {
+            final String node_config = value;
+            try
             {
-                final String node_config = record.value();
-                try
+                // System.out.printf("\n%s - %s:\n", path, node_config);
+                if (node_config == null)
+                {   // No config -> Delete node
+                    final AlarmTreeItem<?> node = deleteNode(path);
+                    if (node != null)
+                        stopPVs(node);
+                }
+                else
                 {
-                    // System.out.printf("\n%s - %s:\n", path, node_config);
-                    if (node_config == null)
-                    {   // No config -> Delete node
-                        final AlarmTreeItem<?> node = deleteNode(path);
-                        if (node != null)
-                            stopPVs(node);
-                    }
-                    else
+                    // Get node_config as JSON map to check for "pv" key
+                    final Object json = JsonModelReader.parseJsonText(node_config);
+                    AlarmTreeItem<?> node = findNode(path);
+
+                    // New node? Create it.
+                    final boolean new_node = node == null;
+                    if (new_node)
+                        node = findOrCreateNode(path, JsonModelReader.isLeafConfigOrState(json));
+
+                    // If an existing (i.e. started) PV is about to be updated, stop it.
+                    if (node instanceof AlarmServerPV   &&  !new_node)
+                        ((AlarmServerPV)node).stop();
+
+                    // Return value of update..() tells us if it really changed.
+                    // It might not have been necessary to stop the PV, but hard to tell in advance...
+                    JsonModelReader.updateAlarmItemConfig(node, json);
+
+                    // A new PV, or an existing one that was stopped: Start it
+                    if (node instanceof AlarmServerPV)
                     {
-                        // Get node_config as JSON map to check for "pv" key
-                        final Object json = JsonModelReader.parseJsonText(node_config);
-                        AlarmTreeItem<?> node = findNode(path);
-
-                        // New node? Create it.
-                        final boolean new_node = node == null;
-                        if (new_node)
-                            node = findOrCreateNode(path, JsonModelReader.isLeafConfigOrState(json));
-
-                        // If an existing (i.e. started) PV is about to be updated, stop it.
-                        if (node instanceof AlarmServerPV   &&  !new_node)
-                            ((AlarmServerPV)node).stop();
-
-                        // Return value of update..() tells us if it really changed.
-                        // It might not have been necessary to stop the PV, but hard to tell in advance...
-                        JsonModelReader.updateAlarmItemConfig(node, json);
-
-                        // A new PV, or an existing one that was stopped: Start it
-                        if (node instanceof AlarmServerPV)
-                        {
-                            final AlarmServerPV pv = (AlarmServerPV) node;
-                            // Update parents in case node was disabled
-                            // (i.e. 'start()' won't do anything),
-                            // and to reflect last known state ASAP
-                            // before the PV connects
-                            pv.getParent().maximizeSeverity();
-                            pv.start();
-                        }
+                        final AlarmServerPV pv = (AlarmServerPV) node;
+                        // Update parents in case node was disabled
+                        // (i.e. 'start()' won't do anything),
+                        // and to reflect last known state ASAP
+                        // before the PV connects
+                        pv.getParent().updateSeverity(pv);
+                        pv.start();
                     }
                 }
-                catch (Exception ex)
-                {
-                    logger.log(Level.WARNING,
-                               "Alarm config update error for path " + path +
-                               ", config " + node_config, ex);
-                }
             }
-            // else: Ignore state updates (which we sent ourselves)
+            catch (Exception ex)
+            {
+                logger.log(Level.WARNING,
+                           "Alarm config update error for path " + path +
+                           ", config " + node_config, ex);
+            }
         }
+        // else: Ignore state updates (which we sent ourselves)
     }
 
     /** Find existing node
@@ -223,6 +311,12 @@ class ServerModel
      */
     public AlarmTreeItem<?> findNode(final String path) throws Exception
     {
+        final AlarmTreeItem<?> known = items_by_path.get(path);
+        if (known != null)
+            return known;
+
+        // Path might not be in the canonical form used for the index,
+        // or be invalid
         final String[] path_elements = AlarmTreePath.splitPath(path);
 
         // Start of path must match the alarm tree root
@@ -251,24 +345,26 @@ class ServerModel
      */
     public AlarmServerPV findPV(final String name) throws Exception
     {
-        return findPV(name, root);
+        return pvs_by_name.find(name);
     }
 
-    private AlarmServerPV findPV(final String name, final AlarmTreeItem<?> node)
+    /** @param item Item to add to indices */
+    private void addToIndex(final AlarmTreeItem<?> item)
     {
-        if (node instanceof AlarmServerPV)
-        {
-            if (node.getName().equalsIgnoreCase(name))
-                return (AlarmServerPV) node;
-        }
+        items_by_path.put(item.getPathName(), item);
+        if (item instanceof AlarmServerPV)
+            pvs_by_name.add((AlarmServerPV) item);
+    }
+
+    /** @param item Item to remove from indices, including all its child items */
+    private void removeFromIndex(final AlarmTreeItem<?> item)
+    {
+        items_by_path.remove(item.getPathName(), item);
+        if (item instanceof AlarmServerPV)
+            pvs_by_name.remove((AlarmServerPV) item);
         else
-            for (AlarmTreeItem<?> child : node.getChildren())
-            {
-                final AlarmServerPV pv = findPV(name, child);
-                if (pv != null)
-                    return pv;
-            }
-        return null;
+            for (AlarmTreeItem<?> child : item.getChildren())
+                removeFromIndex(child);
     }
 
     /** Find an existing alarm tree item or create a new one
@@ -302,9 +398,16 @@ class ServerModel
             {   // Done when creating leaf
                 // Use the known initial state, but only once (remove from map)
                 if (last &&  is_leaf)
-                    return new AlarmServerPV(this, parent, name, initial_states.remove(path));
+                {
+                    final AlarmServerPV pv = new AlarmServerPV(this, parent, name, initial_states.remove(path));
+                    addToIndex(pv);
+                    return pv;
+                }
                 else
+                {
                     node = new AlarmServerNode(this, parent, name);
+                    addToIndex(node);
+                }
             }
             // Reached desired node?
             if (last)
@@ -343,10 +446,11 @@ class ServerModel
         // Detach it
         final AlarmTreeItem<BasicState> parent = node.getParent();
         node.detachFromParent();
+        removeFromIndex(node);
 
         // Removing a node that was in alarm can update the severity of the parent
         if (parent instanceof AlarmServerNode)
-            ((AlarmServerNode)parent).maximizeSeverity();
+            ((AlarmServerNode)parent).recountSeverity();
         return node;
     }
 
@@ -364,22 +468,17 @@ class ServerModel
     }
 
     /** Send alarm update to 'state' topic
+     *
+     *  <p>Updates are collected for a short time,
+     *  see {@link StatePublisher}
+     *
      *  @param path Path of item that has a new state
      *  @param new_state That new state
      */
     public void sendStateUpdate(final String path, final BasicState new_state)
     {
-        try
-        {
-            final String json = new_state == null ? null : new String(JsonModelWriter.toJsonBytes(new_state, AlarmLogic.getMaintenanceMode(), AlarmLogic.getDisableNotify()));
-            final ProducerRecord<String, String> record = new ProducerRecord<>(config_state_topic, AlarmSystem.STATE_PREFIX + path, json);
-            producer.send(record);
-            last_state_update = System.currentTimeMillis();
-        }
-        catch (Throwable ex)
-        {
-            logger.log(Level.WARNING, "Cannot send state update for " + path, ex);
-        }
+        state_publisher.publish(path, new_state);
+        last_state_update = System.currentTimeMillis();
     }
 
     /** Send annunciation message to 'talk' topic
@@ -480,7 +579,13 @@ class ServerModel
 
         // Delete config
         root.getChildren().clear();
-        root.maximizeSeverity();
+        items_by_path.clear();
+        pvs_by_name.clear();
+        addToIndex(root);
+        root.recountSeverity();
         logger.info("Cleared configuration for " + root.getName());
+
+        // Send remaining state updates
+        state_publisher.shutdown();
     }
 }
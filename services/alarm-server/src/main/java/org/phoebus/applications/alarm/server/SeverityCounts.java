@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.phoebus.applications.alarm.server;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.phoebus.applications.alarm.model.AlarmTreeItem;
+import org.phoebus.applications.alarm.model.SeverityLevel;
+
+/** Number of children of an alarm tree node for each severity level
+ *
+ *  <p>Remembers the severity that was counted for each child,
+ *  so an update of one child adjusts the counts
+ *  without checking all the other children.
+ *
+ *  <p>Not thread safe, caller must synchronize.
+ */
+class SeverityCounts
+{
+    private static final SeverityLevel[] SEVERITIES = SeverityLevel.values();
+
+    /** Severity of each child as included in counts */
+    private final Map<AlarmTreeItem<?>, SeverityLevel> child_severities = new IdentityHashMap<>();
+
+    /** Number of children for each severity level, indexed by ordinal */
+    private final int[] counts = new int[SEVERITIES.length];
+
+    /** @param child Child item
+     *  @param severity Current severity of the child, <code>null</code> to no longer count it
+     */
+    public void update(final AlarmTreeItem<?> child, final SeverityLevel severity)
+    {
+        final SeverityLevel previous = severity == null
+                                     ? child_severities.remove(child)
+                                     : child_severities.put(child, severity);
+        if (previous != null)
+            --counts[previous.ordinal()];
+        if (severity != null)
+            ++counts[severity.ordinal()];
+    }
+
+    /** Forget all children */
+    public void clear()
+    {
+        child_severities.clear();
+        Arrays.fill(counts, 0);
+    }
+
+    /** @param severity Severity level
+     *  @return Number of children at that level
+     */
+    public int getCount(final SeverityLevel severity)
+    {
+        return counts[severity.ordinal()];
+    }
+
+    /** @return Highest severity level of any child, OK if there are no children */
+    public SeverityLevel getMaximum()
+    {
+        for (int level = counts.length-1;  level > 0;  --level)
+            if (counts[level] > 0)
+                return SEVERITIES[level];
+        return SeverityLevel.OK;
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.phoebus.applications.alarm.server;
+
+import static org.phoebus.applications.alarm.AlarmSystem.logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.phoebus.applications.alarm.AlarmSystem;
+import org.phoebus.applications.alarm.model.BasicState;
+import org.phoebus.applications.alarm.model.json.JsonModelWriter;
+import org.phoebus.framework.jobs.NamedThreadFactory;
+
+/** Publishes alarm state updates to the 'state' topic
+ *
+ *  <p>A burst of alarms can update the same leaf and its ancestors
+ *  many times within milliseconds.
+ *  Updates are thus held for a short window, keeping only
+ *  the latest state for each path.
+ *  When the window expires, the collected states are serialized
+ *  and handed to the producer as one batch,
+ *  which then sends them based on its linger and batch settings.
+ *
+ *  <p>Each path is pending at most once, and batches are sent
+ *  one after the other, so the order of updates for a path is preserved.
+ *  After shutdown, which sends the remaining updates,
+ *  each update is sent right away.
+ */
+@SuppressWarnings("nls")
+class StatePublisher
+{
+    private final Producer<String, String> producer;
+    private final String state_topic;
+    private final long window_ms;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("StatePublisher"));
+
+    /** Latest state for each path, in order of first update since last flush.
+     *  <code>null</code> state is used to clear the path.
+     *  SYNC on this
+     */
+    private Map<String, BasicState> pending = new LinkedHashMap<>();
+
+    /** Has shutdown() been called? SYNC on this */
+    private boolean stopped = false;
+
+    /** Lock held while sending a batch or,
+     *  after shutdown, an individual update
+     */
+    private final Object send_lock = new Object();
+
+    /** @param producer Producer
+     *  @param state_topic Topic for state updates
+     *  @param window_ms Time window for collecting updates, 0 to send right away
+     */
+    public StatePublisher(final Producer<String, String> producer, final String state_topic, final long window_ms)
+    {
+        this.producer = producer;
+        this.state_topic = state_topic;
+        this.window_ms = window_ms;
+    }
+
+    /** @param path Path of item that has a new state
+     *  @param new_state That new state, may be <code>null</code>
+     */
+    public void publish(final String path, final BasicState new_state)
+    {
+        if (window_ms <= 0)
+        {
+            send(path, new_state);
+            return;
+        }
+
+        final boolean first, after_shutdown;
+        synchronized (this)
+        {
+            after_shutdown = stopped;
+            first = pending.isEmpty();
+            if (! after_shutdown)
+                pending.put(path, new_state);
+        }
+
+        if (after_shutdown)
+        {   // Send after the updates that were pending on shutdown
+            synchronized (send_lock)
+            {
+                send(path, new_state);
+            }
+        }
+        else if (first)
+        {   // First update in this window schedules the flush
+            try
+            {
+                timer.schedule(this::flush, window_ms, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException ex)
+            {   // Timer was shut down after the update was added
+                flush();
+            }
+        }
+    }
+
+    /** Send all pending updates */
+    private void flush()
+    {
+        synchronized (send_lock)
+        {
+            final Map<String, BasicState> batch;
+            synchronized (this)
+            {
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            for (Map.Entry<String, BasicState> entry : batch.entrySet())
+                send(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void send(final String path, final BasicState new_state)
+    {
+        try
+        {
+            final String json = new_state == null ? null : new String(JsonModelWriter.toJsonBytes(new_state, AlarmLogic.getMaintenanceMode(), AlarmLogic.getDisableNotify()));
+            final ProducerRecord<String, String> record = new ProducerRecord<>(state_topic, AlarmSystem.STATE_PREFIX + path, json);
+            producer.send(record);
+        }
+        catch (Throwable ex)
+        {
+            logger.log(Level.WARNING, "Cannot send state update for " + path, ex);
+        }
+    }
+
+    /** Send pending updates and stop collecting updates
+     *
+     *  <p>Returns once the pending updates have been handed to the producer.
+     */
+    public void shutdown()
+    {
+        synchronized (send_lock)
+        {
+            synchronized (this)
+            {
+                stopped = true;
+            }
+            flush();
+        }
+        timer.shutdownNow();
+    }
+}
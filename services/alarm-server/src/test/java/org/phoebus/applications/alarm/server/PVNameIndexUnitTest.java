@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.applications.alarm.server;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.phoebus.applications.alarm.client.AlarmClientLeaf;
+import org.phoebus.applications.alarm.client.AlarmClientNode;
+
+/** JUnit test of PVNameIndex */
+@SuppressWarnings("nls")
+public class PVNameIndexUnitTest
+{
+    @Test
+    public void testSharedName()
+    {
+        final AlarmClientNode root = new AlarmClientNode(null, "Test");
+        final AlarmClientNode area1 = new AlarmClientNode(root, "Area1");
+        final AlarmClientNode area2 = new AlarmClientNode(root, "Area2");
+        final AlarmClientLeaf pv1 = new AlarmClientLeaf(area1, "ramp");
+        final AlarmClientLeaf pv2 = new AlarmClientLeaf(area2, "RAMP");
+        final AlarmClientLeaf other = new AlarmClientLeaf(area2, "other");
+
+        final PVNameIndex<AlarmClientLeaf> index = new PVNameIndex<>();
+        index.add(pv1);
+        index.add(pv2);
+        index.add(other);
+
+        // Lookup ignores case
+        assertSame(pv1, index.find("ramp"));
+        assertSame(pv1, index.find("Ramp"));
+        assertSame(other, index.find("OTHER"));
+        assertNull(index.find("unknown"));
+
+        // Removing one item keeps the other one with the same name
+        index.remove(pv1);
+        assertSame(pv2, index.find("ramp"));
+
+        // Removing an item that's not in the index has no effect
+        index.remove(pv1);
+        assertSame(pv2, index.find("ramp"));
+
+        // Adding an item twice only indexes it once
+        index.add(pv1);
+        index.add(pv1);
+        index.remove(pv2);
+        assertSame(pv1, index.find("ramp"));
+        index.remove(pv1);
+        assertNull(index.find("ramp"));
+
+        assertSame(other, index.find("other"));
+        index.clear();
+        assertNull(index.find("other"));
+    }
+}
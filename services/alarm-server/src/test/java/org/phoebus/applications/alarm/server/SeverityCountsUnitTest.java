@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.applications.alarm.server;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.phoebus.applications.alarm.client.AlarmClientNode;
+import org.phoebus.applications.alarm.model.SeverityLevel;
+
+/** JUnit test of SeverityCounts */
+@SuppressWarnings("nls")
+public class SeverityCountsUnitTest
+{
+    @Test
+    public void testCounts()
+    {
+        final AlarmClientNode a = new AlarmClientNode(null, "a"),
+                              b = new AlarmClientNode(null, "b"),
+                              c = new AlarmClientNode(null, "c");
+        final SeverityCounts counts = new SeverityCounts();
+        assertEquals(SeverityLevel.OK, counts.getMaximum());
+
+        counts.update(a, SeverityLevel.OK);
+        counts.update(b, SeverityLevel.MINOR);
+        counts.update(c, SeverityLevel.MAJOR);
+        assertEquals(1, counts.getCount(SeverityLevel.OK));
+        assertEquals(1, counts.getCount(SeverityLevel.MINOR));
+        assertEquals(1, counts.getCount(SeverityLevel.MAJOR));
+        assertEquals(SeverityLevel.MAJOR, counts.getMaximum());
+
+        // Updating a child moves it to the new level
+        counts.update(c, SeverityLevel.MINOR);
+        assertEquals(2, counts.getCount(SeverityLevel.MINOR));
+        assertEquals(0, counts.getCount(SeverityLevel.MAJOR));
+        assertEquals(SeverityLevel.MINOR, counts.getMaximum());
+
+        // Repeated update of same severity doesn't count twice
+        counts.update(c, SeverityLevel.MINOR);
+        assertEquals(2, counts.getCount(SeverityLevel.MINOR));
+
+        // Acknowledged MAJOR is below MINOR
+        counts.update(b, SeverityLevel.MAJOR_ACK);
+        counts.update(c, SeverityLevel.OK);
+        assertEquals(2, counts.getCount(SeverityLevel.OK));
+        assertEquals(SeverityLevel.MAJOR_ACK, counts.getMaximum());
+
+        // Child that's no longer counted, e.g. disabled
+        counts.update(b, null);
+        assertEquals(0, counts.getCount(SeverityLevel.MAJOR_ACK));
+        assertEquals(SeverityLevel.OK, counts.getMaximum());
+        // Removing it again has no effect
+        counts.update(b, null);
+        assertEquals(2, counts.getCount(SeverityLevel.OK));
+
+        counts.update(b, SeverityLevel.UNDEFINED);
+        assertEquals(SeverityLevel.UNDEFINED, counts.getMaximum());
+
+        counts.clear();
+        assertEquals(0, counts.getCount(SeverityLevel.OK));
+        assertEquals(0, counts.getCount(SeverityLevel.UNDEFINED));
+        assertEquals(SeverityLevel.OK, counts.getMaximum());
+        // After clear, children are counted anew
+        counts.update(a, SeverityLevel.MINOR);
+        assertEquals(1, counts.getCount(SeverityLevel.MINOR));
+        assertEquals(SeverityLevel.MINOR, counts.getMaximum());
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.phoebus.applications.alarm.server;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Test;
+import org.phoebus.applications.alarm.model.BasicState;
+import org.phoebus.applications.alarm.model.SeverityLevel;
+
+/** JUnit test of the StatePublisher */
+@SuppressWarnings("nls")
+public class StatePublisherUnitTest
+{
+    private static final String TOPIC = "TestState";
+
+    private static List<String> getKeys(final MockProducer<String, String> producer)
+    {
+        return producer.history().stream().map(ProducerRecord::key).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testDirect()
+    {
+        final MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        final StatePublisher publisher = new StatePublisher(producer, TOPIC, 0);
+
+        publisher.publish("/a/b", new BasicState(SeverityLevel.MINOR));
+        publisher.publish("/a/b", new BasicState(SeverityLevel.MAJOR));
+        publisher.publish("/a", null);
+
+        // Every update is sent right away
+        assertThat(getKeys(producer), equalTo(List.of("state:/a/b", "state:/a/b", "state:/a")));
+        assertThat(producer.history().get(0).topic(), equalTo(TOPIC));
+        assertThat(producer.history().get(0).value(), containsString("MINOR"));
+        assertThat(producer.history().get(1).value(), containsString("MAJOR"));
+        assertThat(producer.history().get(2).value(), nullValue());
+        publisher.shutdown();
+    }
+
+    @Test
+    public void testWindow() throws Exception
+    {
+        final MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        final StatePublisher publisher = new StatePublisher(producer, TOPIC, 100);
+
+        publisher.publish("/a/b", new BasicState(SeverityLevel.MINOR));
+        publisher.publish("/a", new BasicState(SeverityLevel.MINOR));
+        publisher.publish("/a/b", new BasicState(SeverityLevel.MAJOR));
+        assertThat(producer.history().size(), equalTo(0));
+
+        // Only the latest state of each path is sent, in order of first update
+        for (int i=0; i<50  &&  producer.history().size() < 2; ++i)
+            Thread.sleep(100);
+        assertThat(getKeys(producer), equalTo(List.of("state:/a/b", "state:/a")));
+        assertThat(producer.history().get(0).value(), containsString("MAJOR"));
+        assertThat(producer.history().get(1).value(), containsString("MINOR"));
+
+        // Next window
+        producer.clear();
+        publisher.publish("/a/b", new BasicState(SeverityLevel.OK));
+        for (int i=0; i<50  &&  producer.history().size() < 1; ++i)
+            Thread.sleep(100);
+        assertThat(getKeys(producer), equalTo(List.of("state:/a/b")));
+        assertThat(producer.history().get(0).value(), containsString("OK"));
+        publisher.shutdown();
+    }
+
+    @Test
+    public void testShutdown()
+    {
+        final MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        final StatePublisher publisher = new StatePublisher(producer, TOPIC, 60000);
+
+        publisher.publish("/a/b", new BasicState(SeverityLevel.MINOR));
+        publisher.publish("/a", new BasicState(SeverityLevel.MINOR));
+        assertThat(producer.history().size(), equalTo(0));
+
+        // Pending updates are sent on shutdown, without waiting for the window
+        publisher.shutdown();
+        assertThat(getKeys(producer), equalTo(List.of("state:/a/b", "state:/a")));
+
+        // Later updates are sent right away, after the pending ones
+        publisher.publish("/a/b", new BasicState(SeverityLevel.OK));
+        assertThat(getKeys(producer), equalTo(List.of("state:/a/b", "state:/a", "state:/a/b")));
+        assertThat(producer.history().get(2).value(), containsString("OK"));
+    }
+}
@@ -17,6 +17,7 @@ import org.phoebus.framework.preferences.Preference;
 public class Preferences
 {
     @Preference public static String url;
+    @Preference public static String writer_url;
     @Preference public static String user;
     @Preference public static String password;
     @Preference public static String schema;
@@ -25,13 +26,18 @@ public class Preferences
     @Preference public static String write_sample_table;
     @Preference public static int max_text_sample_length;
     @Preference public static boolean use_postgres_copy;
+    @Preference public static boolean use_postgres_binary_copy;
     @Preference public static int log_trouble_samples;
     @Preference public static int log_overrun;
     @Preference public static int write_period;
     @Preference public static int max_repeats;
     @Preference public static int batch_size;
+    @Preference public static int write_threads;
     @Preference public static double buffer_reserve;
     @Preference public static int ignored_future;
+    @Preference public static String spill_directory;
+    @Preference public static int spill_segment_mb;
+    @Preference public static int spill_max_mb;
 
 
     static
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -9,8 +9,11 @@ package org.csstudio.archive.engine.model;
 
 import static org.csstudio.archive.Engine.logger;
 
+import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,8 +43,10 @@ public class EngineModel
     /** Name of this model */
     private String name = "Archive Engine";  //$NON-NLS-1$
 
-    /** Thread that writes to the <code>archive</code> */
-    final private WriteThread writer;
+    /** Threads that write to the <code>archive</code>,
+     *  each handling a shard of the channels
+     */
+    final private WriteThread[] writers;
 
     /** All the channels.
      *  <p>
@@ -91,7 +96,9 @@ public class EngineModel
     /** Construct model that writes to archive */
     public EngineModel()
     {
-        writer = new WriteThread();
+        writers = new WriteThread[Math.max(1, Preferences.write_threads)];
+        for (int i=0; i<writers.length; ++i)
+            writers[i] = new WriteThread(i);
     }
 
     /** @return Name (description) */
@@ -263,7 +270,7 @@ public class EngineModel
             channels.add(channel);
             channel_by_name.put(channel.getName(), channel);
         }
-        writer.addChannel(channel);
+        writers[Math.floorMod(name.hashCode(), writers.length)].addChannel(channel);
 
         // Connect new or old channel to group
         channel.addGroup(group);
@@ -277,7 +284,20 @@ public class EngineModel
     {
         start_time = Instant.now();
         state = State.RUNNING;
-        writer.start(Preferences.write_period, Preferences.batch_size);
+        if (! Preferences.spill_directory.isEmpty())
+        {
+            // Each write thread uses its own spill log
+            final File directory = new File(Preferences.spill_directory);
+            final long max_size = Preferences.spill_max_mb * 1024L * 1024L / writers.length;
+            for (WriteThread writer : writers)
+                writer.setSpillLog(createSpillLog(directory, writer.getIndex(), max_size));
+            // Logs from a previous run with more write threads
+            for (int i=writers.length;  getSpillDirectory(directory, i).isDirectory();  ++i)
+                writers[0].addPreviousSpillLog(createSpillLog(directory, i, max_size));
+            logger.log(Level.INFO, "Spilling buffer overruns to " + Preferences.spill_directory);
+        }
+        for (WriteThread writer : writers)
+            writer.start(Preferences.write_period, Preferences.batch_size);
         for (ArchiveGroup group : groups)
         {
             group.start();
@@ -290,22 +310,91 @@ public class EngineModel
         scan_thread.start();
     }
 
-    /** @return Timestamp of end of last write run */
+    /** @param directory Spill directory
+     *  @param index Index of write thread
+     *  @return Spill log directory for that write thread
+     */
+    private static File getSpillDirectory(final File directory, final int index)
+    {
+        return new File(directory, "writer_" + index);
+    }
+
+    /** @param directory Spill directory
+     *  @param index Index of write thread
+     *  @param max_size Maximum size of the log in bytes
+     *  @return Spill log for that write thread
+     *  @throws Exception on error
+     */
+    private static SpillLog createSpillLog(final File directory, final int index, final long max_size) throws Exception
+    {
+        return new SpillLog(getSpillDirectory(directory, index),
+                            Preferences.spill_segment_mb * 1024 * 1024,
+                            max_size);
+    }
+
+    /** @return Write threads */
+    public List<WriteThread> getWriteThreads()
+    {
+        return Collections.unmodifiableList(Arrays.asList(writers));
+    }
+
+    /** @return Timestamp of end of last write run of the write thread that's most behind */
     public Instant getLastWriteTime()
     {
-        return writer.getLastWriteTime();
+        Instant oldest = null;
+        for (WriteThread writer : writers)
+        {
+            final Instant time = writer.getLastWriteTime();
+            if (time == null)
+                return null;
+            if (oldest == null  ||  time.isBefore(oldest))
+                oldest = time;
+        }
+        return oldest;
     }
 
-    /** @return Average number of values per write run */
+    /** @return Average number of values per write run, summed over all write threads */
     public double getWriteCount()
     {
-        return writer.getWriteCount();
+        double count = 0;
+        for (WriteThread writer : writers)
+            count += writer.getWriteCount();
+        return count;
     }
 
-    /** @return  Average duration of write run in seconds */
+    /** @return  Average duration of write run in seconds, maximum of all write threads */
     public double getWriteDuration()
     {
-        return writer.getWriteDuration();
+        double duration = 0;
+        for (WriteThread writer : writers)
+            duration = Math.max(duration, writer.getWriteDuration());
+        return duration;
+    }
+
+    /** @return Number of samples in the spill logs of all write threads, -1 if samples are not spilled */
+    public long getSpilledSampleCount()
+    {
+        long count = -1;
+        for (WriteThread writer : writers)
+        {
+            final SpillLog spill = writer.getSpillLog();
+            if (spill != null)
+                count = Math.max(count, 0) + spill.getSampleCount();
+        }
+        return count;
+    }
+
+    /** @return Number of spill log files of all write threads */
+    public int getSpillSegmentCount()
+    {
+        int count = 0;
+        for (WriteThread writer : writers)
+        {
+            final SpillLog spill = writer.getSpillLog();
+            if (spill != null)
+                count += spill.getSegmentCount();
+        }
+        return count;
     }
 
     /** @see Scanner#getIdlePercentage() */
@@ -344,7 +433,8 @@ public class EngineModel
     /** Reset engine statistics */
     public void reset()
     {
-        writer.reset();
+        for (WriteThread writer : writers)
+            writer.reset();
         scanner.reset();
         synchronized (this)
         {
@@ -368,7 +458,24 @@ public class EngineModel
             group.stop();
         // Flush all values out
         logger.info("Stopping writer");
-        writer.shutdown();
+        // Shut all writers down, passing the first error up
+        Exception error = null;
+        for (WriteThread writer : writers)
+        {
+            try
+            {
+                writer.shutdown();
+            }
+            catch (Exception ex)
+            {
+                if (error == null)
+                    error = ex;
+                else
+                    error.addSuppressed(ex);
+            }
+        }
+        if (error != null)
+            throw error;
         // Update state
         state = State.IDLE;
         start_time = null;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,7 +12,6 @@ import java.util.logging.Level;
 import org.csstudio.archive.Preferences;
 import org.csstudio.archive.ThrottledLogger;
 import org.epics.vtype.VType;
-import org.phoebus.framework.util.RingBuffer;
 
 /** Buffer for the samples of one channel.
  *
@@ -35,8 +34,10 @@ public class SampleBuffer
      */
     final private String retention;
 
-    /** The actual samples in a thread-save queue. */
-    final private RingBuffer<VType> samples;
+    /** The actual samples in a queue, synchronized on the queue.
+     *  Scalar samples are kept in primitive arrays.
+     */
+    final private SampleRing samples;
 
     /** Statistics */
     final private BufferStats stats = new BufferStats();
@@ -52,6 +53,11 @@ public class SampleBuffer
      */
     private static volatile boolean error = false;
 
+    /** Log for samples that don't fit into the buffer, or <code>null</code>.
+     *  Shared by all buffers of one write thread.
+     */
+    private volatile SpillLog spill_log = null;
+
     /** Create sample buffer of given capacity
      * @deprecated Use {@link #SampleBuffer(String,String,int)} instead*/
     @Deprecated
@@ -66,7 +72,7 @@ public class SampleBuffer
     {
         this.channel_name = channel_name;
         this.retention = retention;
-        samples = new RingBuffer<>(capacity);
+        samples = new SampleRing(capacity);
     }
 
     /** @return channel name of this buffer */
@@ -111,13 +117,19 @@ public class SampleBuffer
         SampleBuffer.error = error;
     }
 
-    /** Add a sample to the queue, maybe dropping older samples */
+    /** @param spill_log Log for samples that don't fit into the buffer, or <code>null</code> */
+    void setSpillLog(final SpillLog spill_log)
+    {
+        this.spill_log = spill_log;
+    }
+
+    /** Add a sample to the queue, maybe spilling or dropping older samples */
     @SuppressWarnings("nls")
     void add(final VType value)
     {
         synchronized (samples)
         {
-            if (samples.isFull())
+            if (samples.isFull()  &&  ! spillOldest())
             {   // Note start of overruns, then drop older sample
                 if (start_of_overruns == null)
                     start_of_overruns = Integer.valueOf(stats.getOverruns());
@@ -133,6 +145,38 @@ public class SampleBuffer
         }
     }
 
+    /** Move oldest sample into spill log
+     *  @return <code>true</code> if the sample was spilled,
+     *          <code>false</code> if it needs to be dropped
+     */
+    private boolean spillOldest()
+    {
+        final SpillLog spill = spill_log;
+        if (spill == null)
+            return false;
+        // Sample is lost if it cannot be spilled,
+        // same as when it's dropped from full buffer
+        return spill.add(channel_name, retention, samples.remove());
+    }
+
+    /** Move all samples into spill log
+     *  @param spill Spill log
+     *  @return Number of samples that could not be spilled
+     */
+    int spillAll(final SpillLog spill)
+    {
+        int lost = 0;
+        synchronized (samples)
+        {
+            while (samples.size() > 0)
+                if (! spill.add(channel_name, retention, samples.remove()))
+                    ++lost;
+        }
+        if (lost > 0)
+            overrun_msg.log(channel_name + ": " + lost + " samples could not be spilled");
+        return lost;
+    }
+
     /** @return latest sample in queue or <code>null</code> if empty */
     VType remove()
     {
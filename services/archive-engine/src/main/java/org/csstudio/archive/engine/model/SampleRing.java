@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
+import org.epics.vtype.EnumDisplay;
+import org.epics.vtype.Time;
+import org.epics.vtype.VByte;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VEnum;
+import org.epics.vtype.VFloat;
+import org.epics.vtype.VInt;
+import org.epics.vtype.VLong;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VShort;
+import org.epics.vtype.VType;
+
+/** Ring buffer for samples that stores scalars in primitive arrays
+ *
+ *  <p>Scalar numbers and enums are kept as time stamp,
+ *  value and index of their alarm and display
+ *  in parallel arrays, instead of a {@link VType}
+ *  with {@link Alarm}, {@link Time}, {@link Display} and value objects.
+ *  The {@link VType} is re-created when the sample is removed.
+ *
+ *  <p>Alarm and display typically remain the same for many samples
+ *  of a channel, so each distinct alarm and display is only kept once.
+ *
+ *  <p>Other samples like arrays or strings, or scalars with
+ *  time stamps or alarms that cannot be stored that way,
+ *  are kept as {@link VType}.
+ *
+ *  <p>Like {@link org.phoebus.framework.util.RingBuffer},
+ *  adding to a full ring drops the oldest sample.
+ *  Not thread-safe.
+ */
+class SampleRing
+{
+    /** Kind of sample */
+    private static final byte OBJECT = 0, DOUBLE = 1, FLOAT = 2, LONG = 3, INT = 4, SHORT = 5, BYTE = 6, ENUM = 7;
+
+    /** Bits of the kind byte that hold the kind of sample */
+    private static final byte KIND_MASK = 0x0F;
+
+    /** Flag in kind byte for a time stamp with user tag 0 instead of <code>null</code> */
+    private static final byte TAG_ZERO = 0x10;
+
+    /** Limit for the number of distinct alarms and displays */
+    private static final int MAX_META = Short.MAX_VALUE;
+
+    /** Number of recent alarms and displays to check for a match */
+    private static final int SEARCH = 8;
+
+    /** Minimum size of meta at which unused alarms and displays are removed */
+    private static final int MIN_META_LIMIT = 4 * SEARCH;
+
+    /** Limit for seconds that can be represented as epoch nanoseconds */
+    private static final long MAX_SECONDS = Long.MAX_VALUE / 1000000000L - 1;
+
+    //  Indices of valid entries:
+    //  [start], [start+1], ..., [start+size-1]
+    //  with wrap-around at [capacity-1].
+    private final int capacity;
+    private int start = 0, size = 0;
+
+    /** Kind of sample in each slot */
+    private byte[] kinds;
+
+    /** Time stamp as nanoseconds since epoch */
+    private long[] stamps;
+
+    /** Number value, double or float as raw bits, or enum index */
+    private long[] values;
+
+    /** Index of alarm in meta */
+    private short[] alarms;
+
+    /** Index of display or enum display in meta */
+    private short[] displays;
+
+    /** Samples kept as {@link VType}, allocated when needed */
+    private Object[] objects;
+
+    /** Distinct {@link Alarm}, {@link Display} and {@link EnumDisplay} of the samples */
+    private List<Object> meta = new ArrayList<>();
+
+    /** Size of meta at which entries no longer used by any sample are removed */
+    private int meta_limit = MIN_META_LIMIT;
+
+    /** @param capacity Maximum number of samples */
+    SampleRing(final int capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    /** @return <code>true</code> if ring is empty */
+    boolean isEmpty()
+    {
+        return size <= 0;
+    }
+
+    /** @return <code>true</code> if ring is full,
+     *          i.e. the next addition will drop the oldest sample
+     */
+    boolean isFull()
+    {
+        return size >= capacity;
+    }
+
+    /** @return Number of samples in ring */
+    int size()
+    {
+        return size;
+    }
+
+    /** @return Maximum number of samples in ring */
+    int getCapacity()
+    {
+        return capacity;
+    }
+
+    /** @return Number of alarms and displays kept for the samples */
+    int getMetaCount()
+    {
+        return meta.size();
+    }
+
+    /** @param value Sample to add, dropping the oldest sample if the ring is full */
+    void add(final VType value)
+    {
+        if (kinds == null)
+        {   // Allocate on first sample, since some channels never receive any
+            kinds = new byte[capacity];
+            stamps = new long[capacity];
+            values = new long[capacity];
+            alarms = new short[capacity];
+            displays = new short[capacity];
+        }
+        else if (size == 0)
+        {
+            meta.clear();
+            meta_limit = MIN_META_LIMIT;
+        }
+
+        // Obtain index of next element
+        if (size >= capacity)
+        {
+            if (objects != null)
+                objects[start] = null;
+            ++start; // Overwrite oldest element
+            if (start >= capacity)
+                start = 0;
+        }
+        else
+            ++size; // Add to end of buffer
+        final int i = (start + size - 1) % capacity;
+
+        if (! addScalar(i, value))
+        {
+            if (objects == null)
+                objects = new Object[capacity];
+            kinds[i] = OBJECT;
+            objects[i] = value;
+        }
+    }
+
+    /** @param i Slot
+     *  @param value Sample
+     *  @return <code>true</code> if sample was stored as scalar
+     */
+    private boolean addScalar(final int i, final VType value)
+    {
+        final byte kind;
+        final long number;
+        final Object display;
+        if (value instanceof VNumber)
+        {
+            final VNumber vnum = (VNumber) value;
+            if (value instanceof VDouble)
+            {
+                kind = DOUBLE;
+                number = Double.doubleToRawLongBits(((VDouble) value).getValue());
+            }
+            else if (value instanceof VFloat)
+            {
+                kind = FLOAT;
+                number = Float.floatToRawIntBits(((VFloat) value).getValue());
+            }
+            else if (value instanceof VLong)
+            {
+                kind = LONG;
+                number = ((VLong) value).getValue();
+            }
+            else if (value instanceof VInt)
+            {
+                kind = INT;
+                number = ((VInt) value).getValue();
+            }
+            else if (value instanceof VShort)
+            {
+                kind = SHORT;
+                number = ((VShort) value).getValue();
+            }
+            else if (value instanceof VByte)
+            {
+                kind = BYTE;
+                number = ((VByte) value).getValue();
+            }
+            else // Unsigned or other numbers
+                return false;
+            display = vnum.getDisplay();
+        }
+        else if (value instanceof VEnum)
+        {
+            kind = ENUM;
+            number = ((VEnum) value).getIndex();
+            display = ((VEnum) value).getDisplay();
+        }
+        else
+            return false;
+
+        final Time time = Time.timeOf(value);
+        if (time == null  ||  ! time.isValid())
+            return false;
+        final Integer tag = time.getUserTag();
+        if (tag != null  &&  tag.intValue() != 0)
+            return false;
+        final byte tag_flag = tag == null ? 0 : TAG_ZERO;
+        final Instant stamp = time.getTimestamp();
+        if (Math.abs(stamp.getEpochSecond()) > MAX_SECONDS)
+            return false;
+
+        // Slot may still hold the overwritten sample, which no longer uses any meta
+        kinds[i] = OBJECT;
+        if (objects != null)
+            objects[i] = null;
+        if (meta.size() >= meta_limit)
+            compactMeta();
+        final int alarm_index = getMetaIndex(Alarm.alarmOf(value));
+        final int display_index = getMetaIndex(display);
+        if (alarm_index < 0  ||  display_index < 0)
+            return false;
+
+        kinds[i] = (byte) (kind | tag_flag);
+        stamps[i] = stamp.getEpochSecond() * 1000000000L + stamp.getNano();
+        values[i] = number;
+        alarms[i] = (short) alarm_index;
+        displays[i] = (short) display_index;
+        return true;
+    }
+
+    /** Remove alarms and displays that are no longer used by any sample
+     *
+     *  <p>Samples that were overwritten or removed leave their
+     *  alarm and display in meta.
+     *  Rebuilding meta from the remaining samples takes time
+     *  proportional to the ring size, so it is only done when
+     *  meta grew past a limit that then adapts to the ring size.
+     */
+    private void compactMeta()
+    {
+        final List<Object> used = new ArrayList<>();
+        final short[] mapping = new short[meta.size()];
+        Arrays.fill(mapping, (short) -1);
+        for (int n=0; n<size; ++n)
+        {
+            final int i = (start + n) % capacity;
+            if (kinds[i] == OBJECT)
+                continue;
+            alarms[i] = remap(alarms[i], mapping, used);
+            displays[i] = remap(displays[i], mapping, used);
+        }
+        meta = used;
+        meta_limit = Math.max(MIN_META_LIMIT, Math.max(2 * used.size(), size / 4));
+    }
+
+    /** @param index Index into current meta
+     *  @param mapping Indices into new meta, -1 if not yet mapped
+     *  @param used New meta
+     *  @return Index into new meta
+     */
+    private short remap(final short index, final short[] mapping, final List<Object> used)
+    {
+        if (mapping[index] < 0)
+        {
+            mapping[index] = (short) used.size();
+            used.add(meta.get(index));
+        }
+        return mapping[index];
+    }
+
+    /** @param item Alarm or display
+     *  @return Index in meta, -1 if it cannot be added
+     */
+    private int getMetaIndex(final Object item)
+    {
+        if (item == null)
+            return -1;
+        // Most recently added items are most likely to match.
+        // Only check those, adding a duplicate is cheaper than searching all.
+        final int N = meta.size();
+        for (int i=N-1; i>=Math.max(0, N-SEARCH); --i)
+        {
+            final Object known = meta.get(i);
+            if (known == item  ||  known.equals(item))
+                return i;
+        }
+        if (N >= MAX_META)
+            return -1;
+        meta.add(item);
+        return N;
+    }
+
+    /** Remove the oldest sample
+     *  @return Oldest sample or <code>null</code>
+     */
+    VType remove()
+    {
+        if (isEmpty())
+            return null;
+        final int i = start;
+        final VType result = get(i);
+        if (objects != null)
+            objects[i] = null;
+        --size;
+        ++start;
+        if (start >= capacity)
+            start = 0;
+        return result;
+    }
+
+    /** @param i Slot
+     *  @return Sample in slot
+     */
+    private VType get(final int i)
+    {
+        final byte kind = (byte) (kinds[i] & KIND_MASK);
+        if (kind == OBJECT)
+            return (VType) objects[i];
+
+        final Instant stamp = Instant.ofEpochSecond(0, stamps[i]);
+        final Time time = (kinds[i] & TAG_ZERO) != 0 ? Time.of(stamp, 0, true) : Time.of(stamp);
+        final Alarm alarm = (Alarm) meta.get(alarms[i]);
+        final Object display = meta.get(displays[i]);
+        final long number = values[i];
+        switch (kind)
+        {
+        case DOUBLE:
+            return VDouble.of(Double.longBitsToDouble(number), alarm, time, (Display) display);
+        case FLOAT:
+            return VFloat.of(Float.intBitsToFloat((int) number), alarm, time, (Display) display);
+        case LONG:
+            return VLong.of(number, alarm, time, (Display) display);
+        case INT:
+            return VInt.of((int) number, alarm, time, (Display) display);
+        case SHORT:
+            return VShort.of((short) number, alarm, time, (Display) display);
+        case BYTE:
+            return VByte.of((byte) number, alarm, time, (Display) display);
+        default:
+            return VEnum.of((int) number, (EnumDisplay) display, alarm, time);
+        }
+    }
+}
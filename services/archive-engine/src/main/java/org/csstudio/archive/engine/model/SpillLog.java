@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.csstudio.archive.Engine.logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.logging.Level;
+
+import org.epics.vtype.VType;
+import org.phoebus.core.vtypes.SampleCodec;
+
+/** Append-only log for samples that don't fit into their {@link SampleBuffer}
+ *
+ *  <p>While the {@link WriteThread} cannot write to the archive,
+ *  sample buffers fill up.
+ *  Instead of dropping the oldest sample, a full sample buffer
+ *  moves it into this log, and the write thread later
+ *  writes the logged samples before those still in the sample buffers.
+ *  Since the log receives the oldest sample of a buffer,
+ *  the samples of each channel are written in time order.
+ *
+ *  <p>The log is a sequence of memory-mapped segment files in a directory.
+ *  Each segment starts with the offset of the next sample to read,
+ *  followed by samples as [int length, bytes].
+ *  Segments that have been written to the archive are deleted.
+ *  Segments left from a previous run are written
+ *  when the engine starts up again.
+ */
+@SuppressWarnings("nls")
+public class SpillLog
+{
+    /** Sample read from the log */
+    static class Sample
+    {
+        final String channel;
+        final String retention;
+        final VType value;
+
+        Sample(final String channel, final String retention, final VType value)
+        {
+            this.channel = channel;
+            this.retention = retention;
+            this.value = value;
+        }
+    }
+
+    /** Size of segment header, the 'read' offset */
+    private static final int HEADER = Integer.BYTES;
+
+    private final File directory;
+
+    private final int segment_size;
+
+    private final int max_segments;
+
+    /** Segment files, oldest first, with the segment being written last */
+    private final LinkedList<File> segments = new LinkedList<>();
+
+    /** Number used for the next segment file */
+    private int next_segment;
+
+    /** Segment being written, <code>null</code> until first sample is added */
+    private MappedByteBuffer write_buffer = null;
+
+    /** Segment being read (first in {@link #segments}), <code>null</code> when nothing to read */
+    private MappedByteBuffer read_buffer = null;
+
+    /** Position in read_buffer up to which samples have been written to the archive */
+    private int committed;
+
+    /** Buffer for encoding a sample */
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+
+    /** Samples in the log */
+    private long count = 0;
+
+    /** @param directory Directory for segment files
+     *  @param segment_size Size of each segment file in bytes
+     *  @param max_size Maximum total size of all segment files in bytes
+     *  @throws Exception on error
+     */
+    public SpillLog(final File directory, final int segment_size, final long max_size) throws Exception
+    {
+        this.directory = directory;
+        this.segment_size = segment_size;
+        this.max_segments = (int) Math.max(2, max_size / segment_size);
+        if (! directory.isDirectory()  &&  ! directory.mkdirs())
+            throw new Exception("Cannot create spill log directory " + directory);
+
+        // Locate segments from previous run
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith("spill_")  &&  name.endsWith(".log"));
+        Arrays.sort(files);
+        for (File file : files)
+        {
+            segments.add(file);
+            next_segment = Math.max(next_segment, getSegmentNumber(file) + 1);
+            final MappedByteBuffer buffer = map(file, 0);
+            count += countSamples(buffer, Math.max(HEADER, buffer.getInt(0)), buffer.capacity());
+        }
+        if (! segments.isEmpty())
+            logger.log(Level.WARNING, "Spill log " + directory + " has " + count + " samples in " +
+                                      segments.size() + " segments from previous run");
+    }
+
+    private static int getSegmentNumber(final File file)
+    {
+        final String name = file.getName();
+        return Integer.parseInt(name.substring(6, name.length() - 4));
+    }
+
+    private static MappedByteBuffer map(final File file, final int size) throws IOException
+    {
+        try
+        (
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            FileChannel channel = raf.getChannel();
+        )
+        {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size > 0 ? size : raf.length());
+        }
+    }
+
+    /** Start a new segment for writing
+     *  @return <code>true</code> on success, <code>false</code> if log is full
+     *  @throws IOException on error
+     */
+    private boolean startSegment() throws IOException
+    {
+        if (segments.size() >= max_segments)
+            return false;
+        final File file = new File(directory, String.format("spill_%08d.log", next_segment++));
+        write_buffer = map(file, segment_size);
+        write_buffer.putInt(0, HEADER);
+        write_buffer.position(HEADER);
+        segments.add(file);
+        logger.log(Level.FINE, () -> "Spill log segment " + file);
+        return true;
+    }
+
+    /** @return Number of samples in the log */
+    public synchronized long getSampleCount()
+    {
+        return count;
+    }
+
+    /** @return Number of segment files */
+    public synchronized int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    /** Add sample to log
+     *  @param channel Channel name
+     *  @param retention Data retention, may be <code>null</code>
+     *  @param value Sample
+     *  @return <code>true</code> if sample was logged, <code>false</code> if log is full or there was an error
+     */
+    synchronized boolean add(final String channel, final String retention, final VType value)
+    {
+        try
+        {
+            encoded.reset();
+            final DataOutputStream out = new DataOutputStream(encoded);
+            out.writeUTF(channel);
+            out.writeUTF(retention == null ? "" : retention);
+            SampleCodec.encode(out, value);
+            out.flush();
+            final int size = encoded.size();
+            if (Integer.BYTES + size > segment_size - HEADER)
+                throw new Exception("Sample too large for spill log segment: " + size + " bytes");
+
+            if (write_buffer == null  ||  write_buffer.remaining() < Integer.BYTES + size)
+            {
+                if (write_buffer != null)
+                {   // Segment is complete
+                    write_buffer.force();
+                    write_buffer = null;
+                }
+                if (! startSegment())
+                    return false;
+            }
+            write_buffer.putInt(size);
+            write_buffer.put(encoded.toByteArray());
+            ++count;
+            return true;
+        }
+        catch (Exception ex)
+        {
+            logger.log(Level.WARNING, "Cannot spill sample for " + channel, ex);
+            return false;
+        }
+    }
+
+    /** Read next sample
+     *
+     *  <p>Samples are only removed from the log when
+     *  they have been committed.
+     *
+     *  @return Next sample in log or <code>null</code>
+     *  @throws Exception on error
+     *  @see #commit()
+     *  @see #rollback()
+     */
+    synchronized Sample next() throws Exception
+    {
+        while (! segments.isEmpty())
+        {
+            final boolean reading_write_segment = segments.size() == 1  &&  write_buffer != null;
+            if (read_buffer == null)
+            {
+                read_buffer = reading_write_segment ? (MappedByteBuffer) write_buffer.duplicate() : map(segments.getFirst(), 0);
+                committed = read_buffer.getInt(0);
+                read_buffer.position(committed);
+            }
+            // Sample available in current segment?
+            final int limit = reading_write_segment ? write_buffer.position() : read_buffer.capacity();
+            final int start = read_buffer.position();
+            if (start + Integer.BYTES <= limit)
+            {
+                try
+                {
+                    final int size = read_buffer.getInt(read_buffer.position());
+                    if (size > 0)
+                    {
+                        read_buffer.position(read_buffer.position() + Integer.BYTES);
+                        final byte[] data = new byte[size];
+                        read_buffer.get(data);
+                        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+                        final String channel = in.readUTF();
+                        final String retention = in.readUTF();
+                        return new Sample(channel, retention.isEmpty() ? null : retention, SampleCodec.decode(in));
+                    }
+                }
+                catch (Exception ex)
+                {   // Segment from previous run may end in partially written sample
+                    logger.log(Level.WARNING, "Skipping remaining samples in spill log segment " + segments.getFirst(), ex);
+                    read_buffer.position(limit);
+                    // Without pending samples, mark the segment as done
+                    if (start == committed)
+                    {
+                        committed = limit;
+                        read_buffer.putInt(0, committed);
+                    }
+                }
+            }
+            // Wait for more data in the segment that's being written
+            if (reading_write_segment)
+                return null;
+            // Older segment has been read, but samples might still need to be committed
+            if (read_buffer.position() > committed)
+                return null;
+            // Segment is done, delete
+            deleteFirstSegment();
+        }
+        count = 0;
+        return null;
+    }
+
+    /** Mark samples returned by {@link #next()} as written */
+    synchronized void commit()
+    {
+        if (read_buffer == null)
+            return;
+        final int position = read_buffer.position();
+        count = Math.max(0, count - countSamples(read_buffer, committed, position));
+        committed = position;
+        read_buffer.putInt(0, committed);
+    }
+
+    /** Return to the last committed sample,
+     *  because samples could not be written
+     */
+    synchronized void rollback()
+    {
+        if (read_buffer != null)
+            read_buffer.position(committed);
+    }
+
+    /** @param buffer Segment buffer
+     *  @param start Start offset
+     *  @param end End offset
+     *  @return Number of complete samples in the buffer between start and end
+     */
+    private static int countSamples(final ByteBuffer buffer, int start, final int end)
+    {
+        int samples = 0;
+        while (start + Integer.BYTES <= end)
+        {
+            final int size = buffer.getInt(start);
+            if (size <= 0  ||  start + Integer.BYTES + size > end)
+                break;
+            start += Integer.BYTES + size;
+            ++samples;
+        }
+        return samples;
+    }
+
+    private void deleteFirstSegment()
+    {
+        final File file = segments.removeFirst();
+        read_buffer = null;
+        if (! file.delete())
+        {
+            logger.log(Level.FINE, "Cannot delete spill log segment " + file + ", will delete on exit");
+            file.deleteOnExit();
+        }
+        else
+            logger.log(Level.FINE, () -> "Deleted spill log segment " + file);
+    }
+
+    /** Write pending data to disk */
+    public synchronized void close()
+    {
+        if (write_buffer != null)
+            write_buffer.force();
+    }
+}
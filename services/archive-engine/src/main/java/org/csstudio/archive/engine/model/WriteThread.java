@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010-2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2010-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,10 @@ import static org.csstudio.archive.Engine.logger;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.csstudio.archive.writer.ArchiveWriter;
@@ -28,6 +32,13 @@ import org.epics.vtype.VType;
  *  be lost.
  *  The channels that add samples to the sample buffer supposedly notice
  *  the error condition and add a special indicator once we recover.
+ *  <p>
+ *  The engine may use several write threads, each handling
+ *  a shard of the channels with its own <code>ArchiveWriter</code>
+ *  and its own spill log.
+ *  Since spilled samples are older than those in the sample buffers,
+ *  each write thread writes its spill log before the sample buffers,
+ *  without waiting for the other write threads.
  *
  *  @author Kay Kasemir
  */
@@ -36,6 +47,12 @@ public class WriteThread implements Runnable
     /** Minimum write period [seconds] */
     private static final double MIN_WRITE_PERIOD = 5.0;
 
+    /** Write threads that currently experience errors */
+    private static final Set<WriteThread> in_error = ConcurrentHashMap.newKeySet();
+
+    /** Index of this write thread */
+    private final int index;
+
     /** Server to which this thread writes. */
     private ArchiveWriter writer;
 
@@ -43,6 +60,12 @@ public class WriteThread implements Runnable
     final private ArrayList<SampleBuffer> buffers =
         new ArrayList<>();
 
+    /** Log for samples that don't fit into the sample buffers, or <code>null</code> */
+    private volatile SpillLog spill = null;
+
+    /** Logs left from a previous run, written before <code>spill</code> */
+    private final List<SpillLog> previous_spills = new ArrayList<>();
+
     /** Flag that tells the write thread to run or quit. */
     private boolean do_run;
 
@@ -66,9 +89,38 @@ public class WriteThread implements Runnable
     /** Average duration of write run */
     private Average write_time = new Average();
 
+    /** Maximum duration of write run */
+    private volatile double max_write_time = 0.0;
+
+    /** Average number of values per second */
+    private Average write_rate = new Average();
+
+    /** Average number of values per flushed batch */
+    private Average flush_size = new Average();
+
     /** Thread the executes this.run() */
     private Thread thread;
 
+    /** Create write thread */
+    public WriteThread()
+    {
+        this(0);
+    }
+
+    /** Create write thread
+     *  @param index Index of the write thread
+     */
+    public WriteThread(final int index)
+    {
+        this.index = index;
+    }
+
+    /** @return Index of the write thread */
+    public int getIndex()
+    {
+        return index;
+    }
+
     /** Add a channel's buffer that this thread reads */
     public void addChannel(final ArchiveChannel channel)
     {
@@ -78,9 +130,42 @@ public class WriteThread implements Runnable
     /** Add a sample buffer that this thread reads */
     void addSampleBuffer(final SampleBuffer buffer)
     {
+        buffer.setSpillLog(spill);
         buffers.add(buffer);
     }
 
+    /** Set spill log before starting the thread
+     *  @param spill Log for samples that don't fit into the sample buffers of this thread, or <code>null</code>
+     */
+    void setSpillLog(final SpillLog spill)
+    {
+        this.spill = spill;
+        for (SampleBuffer buffer : buffers)
+            buffer.setSpillLog(spill);
+    }
+
+    /** Add spill log before starting the thread
+     *
+     *  <p>Used for logs of write threads from a previous run
+     *  that are no longer present because the number of write threads
+     *  has been reduced.
+     *
+     *  @param previous Spill log to write before the spill log of this thread
+     */
+    void addPreviousSpillLog(final SpillLog previous)
+    {
+        synchronized (previous_spills)
+        {
+            previous_spills.add(previous);
+        }
+    }
+
+    /** @return Log for samples that don't fit into the sample buffers, or <code>null</code> */
+    public SpillLog getSpillLog()
+    {
+        return spill;
+    }
+
     /** Start the write thread.
      *  @param write_period Period between writes in seconds
      *  @param batch_size Number of values to batch
@@ -96,7 +181,7 @@ public class WriteThread implements Runnable
         }
         millisec_delay = (int)(1000.0 * write_period);
         this.batch_size = batch_size;
-        thread = new Thread(this, "WriteThread");
+        thread = new Thread(this, index == 0 ? "WriteThread" : "WriteThread-" + index);
         thread.start();
     }
 
@@ -105,6 +190,9 @@ public class WriteThread implements Runnable
     {
         write_count.reset();
         write_time.reset();
+        max_write_time = 0.0;
+        write_rate.reset();
+        flush_size.reset();
     }
 
     /** Ask the write thread to stop ASAP. */
@@ -135,6 +223,30 @@ public class WriteThread implements Runnable
         return write_time.get();
     }
 
+    /** @return  Maximum duration of write run in seconds */
+    public double getMaxWriteDuration()
+    {
+        return max_write_time;
+    }
+
+    /** @return Average number of values written per second */
+    public double getWriteRate()
+    {
+        return write_rate.get();
+    }
+
+    /** @return Average number of values per flushed batch */
+    public double getBatchSize()
+    {
+        return flush_size.get();
+    }
+
+    /** @return <code>true</code> if this thread currently experiences write errors */
+    public boolean isInErrorState()
+    {
+        return in_error.contains(this);
+    }
+
     /** 'Main loop' of the write thread.
      *  <p>
      *  Writes all values out, then waits.
@@ -152,7 +264,7 @@ public class WriteThread implements Runnable
     @SuppressWarnings("nls")
     public void run()
     {
-        logger.info("WriteThread starts");
+        logger.info(thread.getName() + " starts");
         boolean write_error = false;
         do_run = true;
         while (do_run)
@@ -179,9 +291,17 @@ public class WriteThread implements Runnable
                 // for a long time...
                 final long written = write();
                 final long milli = System.currentTimeMillis() - start;
+                final Instant previous = last_write_stamp;
                 last_write_stamp = Instant.now();
                 write_count.update(written);
                 write_time.update(milli / 1000.0);
+                max_write_time = Math.max(max_write_time, milli / 1000.0);
+                if (previous != null)
+                {
+                    final long period = last_write_stamp.toEpochMilli() - previous.toEpochMilli();
+                    if (period > 0)
+                        write_rate.update(written * 1000.0 / period);
+                }
                 // How much of the scheduled delay is left after write()?
                 delay = millisec_delay - milli;
             }
@@ -192,7 +312,12 @@ public class WriteThread implements Runnable
                 delay = millisec_delay;
                 write_error = true;
             }
-            SampleBuffer.setErrorState(write_error);
+            // Buffers are in error state while any write thread has errors
+            if (write_error)
+                in_error.add(this);
+            else
+                in_error.remove(this);
+            SampleBuffer.setErrorState(! in_error.isEmpty());
             // See if there's any time left to wait,
             // or if we already used all that time in the last 'write'
             if (delay > 0)
@@ -210,7 +335,7 @@ public class WriteThread implements Runnable
                 }
             }
         }
-        logger.info("WriteThread exists");
+        logger.info(thread.getName() + " exits");
     }
 
     /** Stop the write thread, performing a final write. */
@@ -222,17 +347,39 @@ public class WriteThread implements Runnable
         thread.join();
         // Then write once more.
         // Errors in this last write are passed up.
+        final SpillLog spill = this.spill;
         try
         {
             write();
         }
+        catch (Exception ex)
+        {
+            if (spill != null)
+            {   // Add remaining samples to the log to keep them for the next run
+                for (SampleBuffer buffer : buffers)
+                    buffer.spillAll(spill);
+            }
+            throw ex;
+        }
         finally
         {
+            in_error.remove(this);
             if (writer != null)
             {
                 writer.close();
                 writer = null;
             }
+            if (spill != null)
+            {
+                setSpillLog(null);
+                spill.close();
+            }
+            synchronized (previous_spills)
+            {
+                for (SpillLog previous : previous_spills)
+                    previous.close();
+                previous_spills.clear();
+            }
         }
     }
 
@@ -241,7 +388,25 @@ public class WriteThread implements Runnable
      */
     private long write() throws Exception
     {
-        int total_count = 0;
+        // Spilled samples are older than those in the sample buffers
+        long total_count = 0;
+        synchronized (previous_spills)
+        {
+            final Iterator<SpillLog> previous = previous_spills.iterator();
+            while (previous.hasNext())
+            {
+                final SpillLog log = previous.next();
+                total_count += writeSpilled(log);
+                if (log.getSampleCount() <= 0)
+                {
+                    log.close();
+                    previous.remove();
+                }
+            }
+        }
+        final SpillLog spill = this.spill;
+        if (spill != null)
+            total_count += writeSpilled(spill);
         int count = 0;
         for (SampleBuffer buffer : buffers)
         {
@@ -259,17 +424,76 @@ public class WriteThread implements Runnable
                 ++count;
                 if (count > batch_size)
                 {
+                    flush(count);
                     total_count += count;
                     count = 0;
-                    writer.flush();
                 }
                 // next
                 sample = buffer.remove();
             }
         }
         // Flush remaining samples (less than batch_size)
-        writer.flush();
+        flush(count);
         total_count += count;
         return total_count;
     }
+
+    /** Flush samples to the archive
+     *  @param count Number of samples in the batch
+     *  @throws Exception on error
+     */
+    private void flush(final int count) throws Exception
+    {
+        writer.flush();
+        if (count > 0)
+            flush_size.update(count);
+    }
+
+    /** Write samples from spill log until it's empty
+     *
+     *  <p>Samples are removed from the spill log
+     *  once they have been flushed to the archive.
+     *
+     *  @param spill Spill log
+     *  @return number of samples written
+     */
+    private long writeSpilled(final SpillLog spill) throws Exception
+    {
+        long total_count = 0;
+        int count = 0;
+        try
+        {
+            while (true)
+            {
+                final SpillLog.Sample sample = spill.next();
+                if (sample == null)
+                {
+                    if (count == 0)
+                        break;
+                    // Commit what has been read, which allows
+                    // spill log to continue with next segment
+                    flush(count);
+                    spill.commit();
+                    total_count += count;
+                    count = 0;
+                    continue;
+                }
+                writer.addSample(writer.getChannel(sample.channel, sample.retention), sample.value);
+                ++count;
+                if (count > batch_size)
+                {
+                    flush(count);
+                    spill.commit();
+                    total_count += count;
+                    count = 0;
+                }
+            }
+        }
+        catch (Exception ex)
+        {   // Samples since last commit will be read again
+            spill.rollback();
+            throw ex;
+        }
+        return total_count;
+    }
 }
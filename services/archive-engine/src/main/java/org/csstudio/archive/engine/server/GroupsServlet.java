@@ -19,6 +19,7 @@ import org.csstudio.archive.engine.model.ArchiveChannel;
 import org.csstudio.archive.engine.model.ArchiveGroup;
 import org.csstudio.archive.engine.model.BufferStats;
 import org.csstudio.archive.engine.model.EngineModel;
+import org.csstudio.archive.engine.model.WriteThread;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 
@@ -99,6 +100,22 @@ public class GroupsServlet extends HttpServlet
 
             jg.writeEndArray();
 
+            // Per write thread objects
+            jg.writeArrayFieldStart(Messages.HTTP_WriteThreads);
+            for (WriteThread writer : model.getWriteThreads())
+            {
+                jg.writeStartObject();
+                jg.writeNumberField(Messages.HTTP_WriteThread, writer.getIndex());
+                jg.writeBooleanField(Messages.HTTP_WriteError, writer.isInErrorState());
+                jg.writeNumberField(Messages.HTTP_WriteRate, writer.getWriteRate());
+                jg.writeNumberField(Messages.HTTP_WriteCount, writer.getWriteCount());
+                jg.writeNumberField(Messages.HTTP_WriteBatch, writer.getBatchSize());
+                jg.writeNumberField(Messages.HTTP_WriteDuration, writer.getWriteDuration());
+                jg.writeNumberField(Messages.HTTP_WriteMaxDuration, writer.getMaxWriteDuration());
+                jg.writeEndObject();
+            }
+            jg.writeEndArray();
+
             json.close();
         }
         else
@@ -169,8 +186,28 @@ public class GroupsServlet extends HttpServlet
                 Long.toString(total_received_values),
                 "",
                 "");
+            html.closeTable();
 
+            // Per write thread lines
+            html.text("<p>");
+            html.openTable(1, Messages.HTTP_WriteThread,
+                              Messages.HTTP_WriteState,
+                              Messages.HTTP_WriteRate,
+                              Messages.HTTP_WriteCount,
+                              Messages.HTTP_WriteBatch,
+                              Messages.HTTP_WriteDuration,
+                              Messages.HTTP_WriteMaxDuration);
+            for (WriteThread writer : model.getWriteThreads())
+                html.tableLine(
+                    Integer.toString(writer.getIndex()),
+                    writer.isInErrorState() ? HTMLWriter.makeRedText(Messages.HTTP_WriteError) : "OK",
+                    String.format("%.1f samples/sec", writer.getWriteRate()),
+                    String.format("%.1f samples", writer.getWriteCount()),
+                    String.format("%.1f samples", writer.getBatchSize()),
+                    String.format("%.3f sec", writer.getWriteDuration()),
+                    String.format("%.3f sec", writer.getMaxWriteDuration()));
             html.closeTable();
+
             html.close();
         }
     }
@@ -86,6 +86,7 @@ public class MainServlet extends HttpServlet
             jg.writeNumberField(Messages.HTTP_Disconnected, disconnectCount);
             jg.writeNumberField(Messages.HTTP_BatchSize, Preferences.batch_size);
             jg.writeNumberField(Messages.HTTP_WritePeriod, Preferences.write_period);
+            jg.writeNumberField(Messages.HTTP_WriteThreads, model.getWriteThreads().size());
 
             jg.writeStringField(Messages.HTTP_WriteState, (SampleBuffer.isInErrorState()
                     ? Messages.HTTP_WriteError : "OK"));
@@ -93,6 +94,9 @@ public class MainServlet extends HttpServlet
             jg.writeStringField(Messages.HTTP_LastWriteTime, last_write_time == null ? "Never" : TimestampHelper.format(last_write_time));
             jg.writeNumberField(Messages.HTTP_WriteCount, model.getWriteCount());
             jg.writeNumberField(Messages.HTTP_WriteDuration, model.getWriteDuration());
+            final long spilled = model.getSpilledSampleCount();
+            if (spilled >= 0)
+                jg.writeNumberField(Messages.HTTP_Spilled, spilled);
             jg.writeNumberField(Messages.HTTP_Idletime, model.getIdlePercentage());
 
             final Runtime runtime = Runtime.getRuntime();
@@ -131,6 +135,7 @@ public class MainServlet extends HttpServlet
 
             html.tableLine(Messages.HTTP_BatchSize, Preferences.batch_size + " samples");
             html.tableLine(Messages.HTTP_WritePeriod, Preferences.write_period + " sec");
+            html.tableLine(Messages.HTTP_WriteThreads, Integer.toString(model.getWriteThreads().size()));
 
             html.tableLine(Messages.HTTP_WriteState, (SampleBuffer.isInErrorState()
                     ? HTMLWriter.makeRedText(Messages.HTTP_WriteError)
@@ -139,6 +144,9 @@ public class MainServlet extends HttpServlet
             html.tableLine(Messages.HTTP_LastWriteTime, last_write_time == null ? "Never" : TimestampHelper.format(last_write_time));
             html.tableLine(Messages.HTTP_WriteCount, (int) model.getWriteCount() + " samples");
             html.tableLine(Messages.HTTP_WriteDuration, String.format("%.1f sec", model.getWriteDuration()));
+            final long spilled = model.getSpilledSampleCount();
+            if (spilled >= 0)
+                html.tableLine(Messages.HTTP_Spilled, spilled + " samples in " + model.getSpillSegmentCount() + " files");
 
             html.tableLine(Messages.HTTP_Idletime, String.format("%.1f %%", model.getIdlePercentage()));
 
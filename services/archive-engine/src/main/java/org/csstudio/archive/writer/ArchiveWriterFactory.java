@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011-2018 Oak Ridge National Laboratory.
+ * Copyright (c) 2011-2021 Oak Ridge National Laboratory.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -7,21 +7,56 @@
  ******************************************************************************/
 package org.csstudio.archive.writer;
 
+import static org.csstudio.archive.Engine.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+
 import org.csstudio.archive.Preferences;
-import org.csstudio.archive.writer.rdb.RDBArchiveWriter;
+import org.csstudio.archive.writer.spi.ArchiveWriterProvider;
 
 /** Factory for obtaining an {@link ArchiveWriter}
  *  @author Kay Kasemir
  */
+@SuppressWarnings("nls")
 public class ArchiveWriterFactory
 {
-    /** Obtain archive writer interface from plugin registry
+    private static final List<ArchiveWriterProvider> providers = new ArrayList<>();
+
+    static
+    {
+        for (ArchiveWriterProvider provider : ServiceLoader.load(ArchiveWriterProvider.class))
+        {
+            logger.log(Level.CONFIG, "ArchiveWriter for '" + provider.getPrefix() + "'");
+            providers.add(provider);
+        }
+    }
+
+    /** Obtain archive writer for the configured URL
+     *
+     *  <p>Uses the <code>writer_url</code> preference,
+     *  falling back to the RDB <code>url</code>.
+     *
      *  @return {@link ArchiveWriter}
      *  @throws Exception on error: No implementation found, or error initializing it
      */
     public static ArchiveWriter getArchiveWriter() throws Exception
     {
-        // XXX Use SPI when there's more than one implementation.
-        return new RDBArchiveWriter(Preferences.url, Preferences.user, Preferences.password, Preferences.schema, Preferences.use_array_blob);
+        return getArchiveWriter(Preferences.writer_url.isEmpty() ? Preferences.url : Preferences.writer_url);
+    }
+
+    /** Obtain archive writer for a URL
+     *  @param url Archive URL
+     *  @return {@link ArchiveWriter}
+     *  @throws Exception on error: No implementation found, or error initializing it
+     */
+    public static ArchiveWriter getArchiveWriter(final String url) throws Exception
+    {
+        for (ArchiveWriterProvider provider : providers)
+            if (url.startsWith(provider.getPrefix()))
+                return provider.createWriter(url);
+        throw new Exception("No archive writer for '" + url + "'");
     }
 }
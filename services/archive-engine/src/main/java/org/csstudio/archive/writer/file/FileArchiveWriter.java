@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.csstudio.archive.writer.ArchiveWriter;
+import org.csstudio.archive.writer.WriteChannel;
+import org.epics.vtype.Time;
+import org.epics.vtype.VType;
+import org.phoebus.core.vtypes.SampleCodec;
+
+/** ArchiveWriter that appends samples to local files
+ *
+ *  <p>Each channel has a directory below the archive root,
+ *  named after the URL-encoded channel name.
+ *  Samples are partitioned by UTC day into files
+ *  <code>yyyyMMdd.chunks</code>.
+ *  Each flush appends one chunk of samples to the partition file:
+ *
+ *  <pre>
+ *  int    0x43484B31 ("CHK1")
+ *  long   time of first sample, epoch nanoseconds
+ *  long   time of last sample, epoch nanoseconds
+ *  int    number of samples
+ *  int    number of compressed bytes
+ *  byte[] samples encoded by {@link SampleCodec}, deflated
+ *  </pre>
+ *
+ *  <p>A reader can skip chunks outside of a requested
+ *  time range based on the chunk header.
+ *  Samples within a chunk are in the order they were added.
+ *  Chunks of one file are usually in time order, but may overlap
+ *  when several writers add samples for the same channel.
+ */
+@SuppressWarnings("nls")
+public class FileArchiveWriter implements ArchiveWriter
+{
+    /** Start of each chunk */
+    public static final int CHUNK_MAGIC = 0x43484B31;
+
+    /** Suffix of partition files */
+    public static final String SUFFIX = ".chunks";
+
+    /** Format of partition names */
+    public static final DateTimeFormatter PARTITION = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    /** Locks for appending to partition files,
+     *  shared by all writers since several write threads
+     *  may write the same channel
+     */
+    private static final Object[] locks = new Object[64];
+
+    static
+    {
+        for (int i=0; i<locks.length; ++i)
+            locks[i] = new Object();
+    }
+
+    private final File root;
+
+    /** Cache of channels by name */
+    private final Map<String, FileWriteChannel> channels = new HashMap<>();
+
+    /** Channels with samples that need to be flushed */
+    private final Set<FileWriteChannel> pending = new LinkedHashSet<>();
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    /** Buffer for assembling a chunk */
+    private final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+
+    /** @param root Root directory of the archive
+     *  @throws Exception on error
+     */
+    public FileArchiveWriter(final File root) throws Exception
+    {
+        this.root = root;
+        if (! root.isDirectory()  &&  ! root.mkdirs())
+            throw new Exception("Cannot create archive directory " + root);
+    }
+
+    /** @param name Channel name
+     *  @return Name of the channel's directory
+     */
+    public static String encodeName(final String name)
+    {
+        // '*' is not encoded by URLEncoder but not permitted in Windows file names
+        return URLEncoder.encode(name, StandardCharsets.UTF_8).replace("*", "%2A");
+    }
+
+    @Override
+    public WriteChannel getChannel(final String name) throws Exception
+    {
+        return channels.computeIfAbsent(name, n -> new FileWriteChannel(n, new File(root, encodeName(n))));
+    }
+
+    @Override
+    public void addSample(final WriteChannel channel, final VType sample) throws Exception
+    {
+        final FileWriteChannel file_channel = (FileWriteChannel) channel;
+        final Time time = Time.timeOf(sample);
+        final Instant stamp = time == null ? Instant.now() : time.getTimestamp();
+        final String partition = PARTITION.format(stamp);
+        // Start new chunk when sample is in a different partition
+        if (file_channel.count > 0  &&  ! partition.equals(file_channel.partition))
+            writeChunk(file_channel);
+        file_channel.add(partition, stamp.getEpochSecond() * 1000000000L + stamp.getNano(), sample);
+        pending.add(file_channel);
+    }
+
+    @Override
+    public void flush() throws Exception
+    {
+        try
+        {
+            for (FileWriteChannel channel : pending)
+                if (channel.count > 0)
+                    writeChunk(channel);
+        }
+        finally
+        {
+            for (FileWriteChannel channel : pending)
+                channel.clear();
+            pending.clear();
+        }
+    }
+
+    /** Append pending samples of a channel as a chunk to its partition file
+     *  @param channel Channel
+     *  @throws Exception on error
+     */
+    private void writeChunk(final FileWriteChannel channel) throws Exception
+    {
+        chunk.reset();
+        final DataOutputStream out = new DataOutputStream(chunk);
+        out.writeInt(CHUNK_MAGIC);
+        out.writeLong(channel.first);
+        out.writeLong(channel.last);
+        out.writeInt(channel.count);
+        // Placeholder for compressed size
+        out.writeInt(0);
+        final int header = chunk.size();
+        deflater.reset();
+        final DeflaterOutputStream deflated = new DeflaterOutputStream(chunk, deflater, 8192);
+        channel.samples.writeTo(deflated);
+        deflated.finish();
+        final byte[] bytes = chunk.toByteArray();
+        final int size = bytes.length - header;
+        bytes[header-4] = (byte) (size >>> 24);
+        bytes[header-3] = (byte) (size >>> 16);
+        bytes[header-2] = (byte) (size >>> 8);
+        bytes[header-1] = (byte) size;
+
+        if (! channel.directory.isDirectory()  &&  ! channel.directory.mkdirs())
+            throw new Exception("Cannot create directory for " + channel);
+        final File file = new File(channel.directory, channel.partition + SUFFIX);
+        synchronized (locks[Math.floorMod(file.hashCode(), locks.length)])
+        {
+            try (FileOutputStream file_out = new FileOutputStream(file, true))
+            {
+                file_out.write(bytes);
+            }
+        }
+        channel.clear();
+    }
+
+    @Override
+    public void close()
+    {
+        channels.clear();
+        pending.clear();
+        deflater.end();
+    }
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.file;
+
+import java.io.File;
+
+import org.csstudio.archive.writer.ArchiveWriter;
+import org.csstudio.archive.writer.spi.ArchiveWriterProvider;
+
+/** SPI for "filearchive:" archive URLs */
+@SuppressWarnings("nls")
+public class FileArchiveWriterProvider implements ArchiveWriterProvider
+{
+    public final static String PREFIX = "filearchive:";
+
+    @Override
+    public String getPrefix()
+    {
+        return PREFIX;
+    }
+
+    @Override
+    public ArchiveWriter createWriter(final String url) throws Exception
+    {
+        return new FileArchiveWriter(new File(url.substring(PREFIX.length())));
+    }
+}
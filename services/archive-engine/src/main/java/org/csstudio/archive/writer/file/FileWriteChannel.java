@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.csstudio.archive.writer.WriteChannel;
+import org.epics.vtype.VType;
+import org.phoebus.core.vtypes.SampleCodec;
+
+/** Channel in file archive
+ *
+ *  <p>Collects the encoded samples for the next chunk.
+ */
+@SuppressWarnings("nls")
+class FileWriteChannel implements WriteChannel
+{
+    private final String name;
+
+    /** Directory for the channel's partition files */
+    final File directory;
+
+    /** Encoded samples of pending chunk */
+    final ByteArrayOutputStream samples = new ByteArrayOutputStream();
+
+    private final DataOutputStream out = new DataOutputStream(samples);
+
+    /** Partition of pending chunk, <code>null</code> when there are no samples */
+    String partition = null;
+
+    /** Number of samples in pending chunk */
+    int count = 0;
+
+    /** Time stamps of first and last sample in pending chunk as epoch nanoseconds */
+    long first, last;
+
+    /** @param name Channel name
+     *  @param directory Directory for the channel's partition files
+     */
+    FileWriteChannel(final String name, final File directory)
+    {
+        this.name = name;
+        this.directory = directory;
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    /** @param partition Partition of the sample
+     *  @param stamp Time stamp of the sample as epoch nanoseconds
+     *  @param sample Sample to add to pending chunk
+     *  @throws IOException on error
+     */
+    void add(final String partition, final long stamp, final VType sample) throws IOException
+    {
+        SampleCodec.encode(out, sample);
+        if (count == 0)
+        {
+            this.partition = partition;
+            first = last = stamp;
+        }
+        else
+        {
+            first = Math.min(first, stamp);
+            last = Math.max(last, stamp);
+        }
+        ++count;
+    }
+
+    /** Clear pending chunk */
+    void clear()
+    {
+        samples.reset();
+        partition = null;
+        count = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FileWriteChannel '" + name + "' (" + directory + ")";
+    }
+}
@@ -1,5 +1,8 @@
 package org.csstudio.archive.writer.rdb;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackReader;
@@ -7,6 +10,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.Clob;
@@ -24,6 +28,7 @@ import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.time.ZoneOffset;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -34,9 +39,42 @@ import java.util.regex.Pattern;
 import org.postgresql.PGConnection;
 import org.postgresql.copy.CopyManager;
 
+/**
+ * <p>
+ * PreparedStatement that emulates batched inserts via COPY.
+ * </p>
+ * <p>
+ * Rows are either sent as CSV text or, in binary mode, in the PostgreSQL
+ * binary COPY format. Binary mode avoids formatting numbers and time stamps
+ * as text, and parsing them again on the server. It is only used when all
+ * columns of the table have a type that can be written in binary, otherwise
+ * the statement falls back to CSV.
+ * </p>
+ * <p>
+ * See <a href="https://www.postgresql.org/docs/current/sql-copy.html"
+ * >https://www.postgresql.org/docs/current/sql-copy.html</a>
+ * </p>
+ */
 @SuppressWarnings("nls")
 public class PGCopyPreparedStatement implements PreparedStatement {
 
+    /** Header of binary COPY data: Signature, flags, header extension length */
+    private static final byte[] BINARY_HEADER = {
+        'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+        0, 0, 0, 0,
+        0, 0, 0, 0 };
+
+    /** Seconds from 1970-01-01, Java epoch, to 2000-01-01, PostgreSQL epoch */
+    private static final long PG_EPOCH_SECS = 946684800L;
+
+    /** Column types supported in binary mode */
+    private enum ColumnType {
+        INT2, INT4, INT8, FLOAT4, FLOAT8, BOOL, TIMESTAMP, TIMESTAMPTZ, TEXT, BYTEA
+    }
+
+    /** Kinds of values set for a column in binary mode */
+    private static final byte NULL = 0, LONG = 1, DOUBLE = 2, OBJECT = 3;
+
     private Connection connection;
 
     private String[] rowValues;
@@ -47,8 +85,63 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     private String tableName;
 
+    /** Use binary format? */
+    private final boolean binary;
+
+    /** Binary mode: Type of each column in database order */
+    private ColumnType[] columnTypes;
+
+    /** Binary mode: Kind of value set for each column */
+    private byte[] valueKinds;
+
+    /** Binary mode: Integer values */
+    private long[] longValues;
+
+    /** Binary mode: Floating point values */
+    private double[] doubleValues;
+
+    /** Binary mode: Other values */
+    private Object[] objectValues;
+
+    /** Binary mode: Encoded rows */
+    private BinaryBuffer binaryBatch;
+
+    /** Binary mode: Writer for encoded rows */
+    private DataOutputStream binaryOut;
+
+    /** Byte buffer that allows reading its content without a copy */
+    private static class BinaryBuffer extends ByteArrayOutputStream {
+        BinaryBuffer() {
+            super(8192);
+        }
+
+        InputStream asInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+
+        /** @param size Size to which the content is reduced */
+        void truncate(int size) {
+            count = Math.min(count, size);
+        }
+    }
+
     public PGCopyPreparedStatement(Connection connection, String insertSqlQuery)
             throws SQLException {
+        this(connection, insertSqlQuery, false);
+    }
+
+    /**
+     * @param connection
+     *            PostgreSQL connection
+     * @param insertSqlQuery
+     *            "INSERT INTO table (columns...) ..." query to emulate
+     * @param binary
+     *            Use binary COPY format if the table's column types allow it?
+     * @throws SQLException
+     *             on error
+     */
+    public PGCopyPreparedStatement(Connection connection, String insertSqlQuery,
+            boolean binary) throws SQLException {
         this.connection = connection;
         batchBuilder = new StringBuffer();
 
@@ -66,14 +159,39 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
         // Get the column order as it's stored in database
         Map<String, Integer> postgresColumnOrderMap = new HashMap<>();
+        Map<Integer, ColumnType> postgresColumnTypeMap = new HashMap<>();
+        boolean binaryTypes = true;
         ResultSet columnsRs = connection.getMetaData().getColumns(
                 connection.getCatalog(), null, tableName, null);
         while (columnsRs.next()) {
+            final int position = columnsRs.getInt("ORDINAL_POSITION");
             postgresColumnOrderMap.put(columnsRs.getString("COLUMN_NAME"),
-                    columnsRs.getInt("ORDINAL_POSITION"));
+                    position);
+            final ColumnType type = getColumnType(columnsRs.getString("TYPE_NAME"));
+            if (type == null) {
+                binaryTypes = false;
+            } else {
+                postgresColumnTypeMap.put(position, type);
+            }
         }
         rowValues = new String[postgresColumnOrderMap.size()];
 
+        this.binary = binary && binaryTypes;
+        if (this.binary) {
+            final int columnCount = rowValues.length;
+            columnTypes = new ColumnType[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                columnTypes[i] = postgresColumnTypeMap.get(i + 1);
+            }
+            valueKinds = new byte[columnCount];
+            longValues = new long[columnCount];
+            doubleValues = new double[columnCount];
+            objectValues = new Object[columnCount];
+            binaryBatch = new BinaryBuffer();
+            binaryOut = new DataOutputStream(binaryBatch);
+            binaryBatch.write(BINARY_HEADER, 0, BINARY_HEADER.length);
+        }
+
         // Generate a tab containing mapping between order in insert query and
         // database order
         columnOrderMapping = new int[columnsArrays.length + 1];
@@ -90,8 +208,54 @@ public class PGCopyPreparedStatement implements PreparedStatement {
         }
     }
 
+    /**
+     * @param typeName
+     *            PostgreSQL type name
+     * @return {@link ColumnType} or <code>null</code> if type is not
+     *         supported in binary mode
+     */
+    private static ColumnType getColumnType(String typeName) {
+        switch (typeName) {
+        case "int2":
+            return ColumnType.INT2;
+        case "int4":
+        case "serial":
+            return ColumnType.INT4;
+        case "int8":
+        case "bigserial":
+            return ColumnType.INT8;
+        case "float4":
+            return ColumnType.FLOAT4;
+        case "float8":
+            return ColumnType.FLOAT8;
+        case "bool":
+            return ColumnType.BOOL;
+        case "timestamp":
+            return ColumnType.TIMESTAMP;
+        case "timestamptz":
+            return ColumnType.TIMESTAMPTZ;
+        case "text":
+        case "varchar":
+        case "bpchar":
+            return ColumnType.TEXT;
+        case "bytea":
+            return ColumnType.BYTEA;
+        default:
+            return null;
+        }
+    }
+
+    /** @return <code>true</code> if rows are sent in binary format */
+    public boolean isBinary() {
+        return binary;
+    }
+
     @Override
     public void addBatch() throws SQLException {
+        if (binary) {
+            addBinaryRow();
+            return;
+        }
         for (int i = 0; i < rowValues.length; i++) {
             if (rowValues[i] != null) {
                 batchBuilder.append(rowValues[i]);
@@ -102,6 +266,209 @@ public class PGCopyPreparedStatement implements PreparedStatement {
         Arrays.fill(rowValues, null);
     }
 
+    /** Encode current row in binary format */
+    private void addBinaryRow() throws SQLException {
+        final int rowStart = binaryBatch.size();
+        try {
+            binaryOut.writeShort(columnTypes.length);
+            for (int i = 0; i < columnTypes.length; i++) {
+                if (valueKinds[i] == NULL) {
+                    binaryOut.writeInt(-1);
+                } else {
+                    writeBinaryValue(i);
+                }
+            }
+        } catch (SQLException e) {
+            // Remove partially encoded row
+            binaryBatch.truncate(rowStart);
+            throw e;
+        } catch (IOException e) {
+            binaryBatch.truncate(rowStart);
+            throw new SQLException(e);
+        } finally {
+            Arrays.fill(valueKinds, NULL);
+            Arrays.fill(objectValues, null);
+        }
+    }
+
+    /**
+     * Write value of a column as length and binary data
+     *
+     * @param column
+     *            Column index in database order
+     */
+    private void writeBinaryValue(int column) throws SQLException, IOException {
+        final byte kind = valueKinds[column];
+        final Object object = objectValues[column];
+        switch (columnTypes[column]) {
+        case INT2:
+            final short shortValue = (short) getLong(column, Short.MIN_VALUE, Short.MAX_VALUE);
+            binaryOut.writeInt(2);
+            binaryOut.writeShort(shortValue);
+            break;
+        case INT4:
+            final int intValue = (int) getLong(column, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            binaryOut.writeInt(4);
+            binaryOut.writeInt(intValue);
+            break;
+        case INT8:
+            binaryOut.writeInt(8);
+            binaryOut.writeLong(getLong(column));
+            break;
+        case FLOAT4:
+            binaryOut.writeInt(4);
+            binaryOut.writeFloat((float) getDouble(column));
+            break;
+        case FLOAT8:
+            binaryOut.writeInt(8);
+            binaryOut.writeDouble(getDouble(column));
+            break;
+        case BOOL:
+            final boolean boolValue = getBoolean(column);
+            binaryOut.writeInt(1);
+            binaryOut.writeByte(boolValue ? 1 : 0);
+            break;
+        case TIMESTAMP:
+        case TIMESTAMPTZ:
+            if (!(object instanceof Timestamp)) {
+                throw new SQLException("Expected timestamp for column "
+                        + (column + 1) + " in table " + tableName);
+            }
+            binaryOut.writeInt(8);
+            binaryOut.writeLong(toPostgresMicros((Timestamp) object,
+                    columnTypes[column] == ColumnType.TIMESTAMPTZ));
+            break;
+        case TEXT:
+            final String text;
+            if (kind == LONG) {
+                text = Long.toString(longValues[column]);
+            } else if (kind == DOUBLE) {
+                text = Double.toString(doubleValues[column]);
+            } else {
+                text = object.toString();
+            }
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            binaryOut.writeInt(bytes.length);
+            binaryOut.write(bytes);
+            break;
+        case BYTEA:
+            if (!(object instanceof byte[])) {
+                throw new SQLException("Expected bytes for column "
+                        + (column + 1) + " in table " + tableName);
+            }
+            final byte[] data = (byte[]) object;
+            binaryOut.writeInt(data.length);
+            binaryOut.write(data);
+            break;
+        }
+    }
+
+    /** @return Integer value of column */
+    private long getLong(int column) throws SQLException {
+        switch (valueKinds[column]) {
+        case LONG:
+            return longValues[column];
+        case DOUBLE:
+            return (long) doubleValues[column];
+        default:
+            final Object object = objectValues[column];
+            if (object instanceof Number) {
+                return ((Number) object).longValue();
+            }
+            if (object instanceof Boolean) {
+                return ((Boolean) object) ? 1 : 0;
+            }
+            throw new SQLException("Expected number for column "
+                    + (column + 1) + " in table " + tableName);
+        }
+    }
+
+    /**
+     * @param column
+     *            Column index in database order
+     * @param min
+     *            Smallest value that the column can hold
+     * @param max
+     *            Largest value that the column can hold
+     * @return Integer value of column
+     * @throws SQLException
+     *             if value is out of range
+     */
+    private long getLong(int column, long min, long max) throws SQLException {
+        final long value = getLong(column);
+        if (value < min || value > max) {
+            throw new SQLException("Value " + value + " out of range for column "
+                    + (column + 1) + " in table " + tableName);
+        }
+        return value;
+    }
+
+    /** @return Boolean value of column, numbers other than 0 are true */
+    private boolean getBoolean(int column) throws SQLException {
+        switch (valueKinds[column]) {
+        case LONG:
+            return longValues[column] != 0;
+        case DOUBLE:
+            return doubleValues[column] != 0;
+        default:
+            final Object object = objectValues[column];
+            if (object instanceof Boolean) {
+                return (Boolean) object;
+            }
+            return getLong(column) != 0;
+        }
+    }
+
+    /** @return Floating point value of column */
+    private double getDouble(int column) throws SQLException {
+        switch (valueKinds[column]) {
+        case DOUBLE:
+            return doubleValues[column];
+        case LONG:
+            return longValues[column];
+        default:
+            final Object object = objectValues[column];
+            if (object instanceof Number) {
+                return ((Number) object).doubleValue();
+            }
+            throw new SQLException("Expected number for column "
+                    + (column + 1) + " in table " + tableName);
+        }
+    }
+
+    /**
+     * @param stamp
+     *            Time stamp
+     * @param withZone
+     *            Is column a 'timestamp with time zone'?
+     * @return Microseconds since PostgreSQL epoch
+     */
+    private static long toPostgresMicros(Timestamp stamp, boolean withZone) {
+        // A 'timestamp' without time zone holds the local date and time,
+        // same as the text representation used in CSV mode
+        final long seconds = withZone
+                ? Math.floorDiv(stamp.getTime(), 1000L)
+                : stamp.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+        return (seconds - PG_EPOCH_SECS) * 1000000L
+                + (stamp.getNanos() + 500) / 1000;
+    }
+
+    /**
+     * Set value for binary mode
+     *
+     * @param parameterIndex
+     *            Index of parameter in insert query
+     * @param kind
+     *            Kind of value
+     * @param object
+     *            Object value for kind OBJECT
+     */
+    private void setBinary(int parameterIndex, byte kind, Object object) {
+        final int column = columnOrderMapping[parameterIndex];
+        valueKinds[column] = object == null && kind == OBJECT ? NULL : kind;
+        objectValues[column] = object;
+    }
+
     @Override
     public void addBatch(String arg0) throws SQLException {
         throw new SQLException("Not implemented");
@@ -116,6 +483,10 @@ public class PGCopyPreparedStatement implements PreparedStatement {
     @Override
     public void clearBatch() throws SQLException {
         batchBuilder.setLength(0);
+        if (binary) {
+            binaryBatch.reset();
+            binaryBatch.write(BINARY_HEADER, 0, BINARY_HEADER.length);
+        }
     }
 
     @Override
@@ -129,6 +500,8 @@ public class PGCopyPreparedStatement implements PreparedStatement {
         rowValues = null;
         columnOrderMapping = null;
         batchBuilder = null;
+        binaryBatch = null;
+        binaryOut = null;
         connection = null;
     }
 
@@ -164,6 +537,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public int[] executeBatch() throws SQLException {
+        if (binary) {
+            return executeBinaryBatch();
+        }
         long res = 0;
         try {
             CopyManager cpManager = ((PGConnection) connection).getCopyAPI();
@@ -179,6 +555,30 @@ public class PGCopyPreparedStatement implements PreparedStatement {
         return new int[] { (int) res };
     }
 
+    /** Send rows in binary format */
+    private int[] executeBinaryBatch() throws SQLException {
+        long res = 0;
+        try {
+            // File trailer
+            binaryOut.writeShort(-1);
+            CopyManager cpManager = ((PGConnection) connection).getCopyAPI();
+            res = cpManager.copyIn("COPY " + tableName + " FROM STDIN WITH BINARY",
+                    binaryBatch.asInputStream());
+        } catch (IOException e) {
+            throw new SQLException(e);
+        } finally {
+            // Trailer has been added, so batch can't be extended
+            // and must be cleared even if the copy failed
+            clearBatch();
+        }
+        return new int[] { (int) res };
+    }
+
+    /** @return Binary mode: Encoded rows of current batch, without trailer */
+    byte[] getBinaryBatch() {
+        return binaryBatch.toByteArray();
+    }
+
     @Override
     public ResultSet executeQuery(String arg0) throws SQLException {
         throw new SQLException("Not implemented");
@@ -378,6 +778,10 @@ public class PGCopyPreparedStatement implements PreparedStatement {
     @Override
     public void clearParameters() throws SQLException {
         Arrays.fill(rowValues, null);
+        if (binary) {
+            Arrays.fill(valueKinds, NULL);
+            Arrays.fill(objectValues, null);
+        }
     }
 
     @Override
@@ -440,7 +844,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
     @Override
     public void setBigDecimal(int parameterIndex, BigDecimal x)
             throws SQLException {
-        if (x == null) {
+        if (binary) {
+            setBinary(parameterIndex, OBJECT, x);
+        } else if (x == null) {
             rowValues[columnOrderMapping[parameterIndex]] = null;
         } else {
             rowValues[columnOrderMapping[parameterIndex]] = x.toPlainString();
@@ -490,7 +896,11 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = Boolean.toString(x);
+        if (binary) {
+            setBinary(parameterIndex, OBJECT, Boolean.valueOf(x));
+        } else {
+            rowValues[columnOrderMapping[parameterIndex]] = Boolean.toString(x);
+        }
     }
 
     @Override
@@ -501,7 +911,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setBytes(int parameterIndex, byte[] x) throws SQLException {
-        if (x == null) {
+        if (binary) {
+            setBinary(parameterIndex, OBJECT, x);
+        } else if (x == null) {
             rowValues[columnOrderMapping[parameterIndex]] = null;
         } else {
             rowValues[columnOrderMapping[parameterIndex]] = bytesToByteA(x);
@@ -593,22 +1005,42 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setDouble(int parameterIndex, double x) throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = Double.toString(x);
+        if (binary) {
+            doubleValues[columnOrderMapping[parameterIndex]] = x;
+            setBinary(parameterIndex, DOUBLE, null);
+        } else {
+            rowValues[columnOrderMapping[parameterIndex]] = Double.toString(x);
+        }
     }
 
     @Override
     public void setFloat(int parameterIndex, float x) throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = Float.toString(x);
+        if (binary) {
+            doubleValues[columnOrderMapping[parameterIndex]] = x;
+            setBinary(parameterIndex, DOUBLE, null);
+        } else {
+            rowValues[columnOrderMapping[parameterIndex]] = Float.toString(x);
+        }
     }
 
     @Override
     public void setInt(int parameterIndex, int x) throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = Integer.toString(x);
+        if (binary) {
+            longValues[columnOrderMapping[parameterIndex]] = x;
+            setBinary(parameterIndex, LONG, null);
+        } else {
+            rowValues[columnOrderMapping[parameterIndex]] = Integer.toString(x);
+        }
     }
 
     @Override
     public void setLong(int parameterIndex, long x) throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = Long.toString(x);
+        if (binary) {
+            longValues[columnOrderMapping[parameterIndex]] = x;
+            setBinary(parameterIndex, LONG, null);
+        } else {
+            rowValues[columnOrderMapping[parameterIndex]] = Long.toString(x);
+        }
     }
 
     @Override
@@ -647,7 +1079,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
     @Override
     public void setNString(int parameterIndex, String value)
             throws SQLException {
-        if (value == null) {
+        if (binary) {
+            setBinary(parameterIndex, OBJECT, value);
+        } else if (value == null) {
             rowValues[columnOrderMapping[parameterIndex]] = null;
         } else {
             rowValues[columnOrderMapping[parameterIndex]] = value;
@@ -656,13 +1090,17 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = null;
+        if (binary) {
+            setBinary(parameterIndex, NULL, null);
+        } else {
+            rowValues[columnOrderMapping[parameterIndex]] = null;
+        }
     }
 
     @Override
     public void setNull(int parameterIndex, int sqlType, String typeName)
             throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = null;
+        setNull(parameterIndex, sqlType);
     }
 
     @Override
@@ -706,12 +1144,21 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setShort(int parameterIndex, short x) throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = Short.toString(x);
+        if (binary) {
+            longValues[columnOrderMapping[parameterIndex]] = x;
+            setBinary(parameterIndex, LONG, null);
+        } else {
+            rowValues[columnOrderMapping[parameterIndex]] = Short.toString(x);
+        }
     }
 
     @Override
     public void setString(int parameterIndex, String x) throws SQLException {
-        rowValues[columnOrderMapping[parameterIndex]] = x;
+        if (binary) {
+            setBinary(parameterIndex, OBJECT, x);
+        } else {
+            rowValues[columnOrderMapping[parameterIndex]] = x;
+        }
     }
 
     @Override
@@ -730,7 +1177,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x)
             throws SQLException {
-        if (x == null) {
+        if (binary) {
+            setBinary(parameterIndex, OBJECT, x);
+        } else if (x == null) {
             rowValues[columnOrderMapping[parameterIndex]] = null;
         } else {
             rowValues[columnOrderMapping[parameterIndex]] = x.toString();
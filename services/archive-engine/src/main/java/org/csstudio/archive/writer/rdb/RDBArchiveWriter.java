@@ -143,7 +143,7 @@ public class RDBArchiveWriter implements ArchiveWriter
     {
         final PreparedStatement statement;
         if (dialect == Dialect.PostgreSQL  &&  Preferences.use_postgres_copy)
-            statement = new PGCopyPreparedStatement(connection, sqlQuery);
+            statement = new PGCopyPreparedStatement(connection, sqlQuery, Preferences.use_postgres_binary_copy);
         else
             statement = connection.prepareStatement(sqlQuery);
         if (Preferences.timeout_secs > 0)
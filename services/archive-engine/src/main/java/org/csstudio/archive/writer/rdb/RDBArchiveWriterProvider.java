@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import org.csstudio.archive.Preferences;
+import org.csstudio.archive.writer.ArchiveWriter;
+import org.csstudio.archive.writer.spi.ArchiveWriterProvider;
+
+/** SPI for "jdbc:" archive URLs */
+@SuppressWarnings("nls")
+public class RDBArchiveWriterProvider implements ArchiveWriterProvider
+{
+    @Override
+    public String getPrefix()
+    {
+        return "jdbc:";
+    }
+
+    @Override
+    public ArchiveWriter createWriter(final String url) throws Exception
+    {
+        return new RDBArchiveWriter(url, Preferences.user, Preferences.password, Preferences.schema, Preferences.use_array_blob);
+    }
+}
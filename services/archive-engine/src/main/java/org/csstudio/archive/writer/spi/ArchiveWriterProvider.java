@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.spi;
+
+import org.csstudio.archive.writer.ArchiveWriter;
+import org.csstudio.archive.writer.ArchiveWriterFactory;
+
+/** SPI for contributing an archive writer
+ *
+ *  <p>Like the archive reader SPI, contributions describe
+ *  which type of URL they handle by providing the prefix,
+ *  the start of the URL, which is checked against
+ *  the actual URL.
+ */
+public interface ArchiveWriterProvider
+{
+    /** Describe which type of URL this implementation handles.
+     *
+     *  <p>When creating an {@link ArchiveWriter},
+     *  the {@link ArchiveWriterFactory}
+     *  checks if a URL starts with this prefix.
+     *
+     *  @return Prefix that this type of writer handles
+     */
+    public String getPrefix();
+
+    /** Create writer
+     *
+     *  @param url URL that starts with prefix
+     *  @return {@link ArchiveWriter}
+     *  @throws Exception on error
+     */
+    public ArchiveWriter createWriter(String url) throws Exception;
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+
+import org.epics.vtype.Alarm;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.AlarmStatus;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VString;
+import org.epics.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test of the {@link SampleRing} */
+@SuppressWarnings("nls")
+public class SampleRingTest
+{
+    private static Time createTime(final int i)
+    {
+        return Time.of(Instant.ofEpochSecond(1000 + i, i));
+    }
+
+    private static Alarm createAlarm(final int i)
+    {
+        return Alarm.of(AlarmSeverity.MINOR, AlarmStatus.DEVICE, "Alarm " + i);
+    }
+
+    @Test
+    public void testWrapAround()
+    {
+        final SampleRing ring = new SampleRing(5);
+        assertTrue(ring.isEmpty());
+        assertThat(ring.remove(), nullValue());
+
+        // Mix of scalars and samples kept as objects
+        for (int i=0; i<12; ++i)
+        {
+            if (i % 3 == 0)
+                ring.add(VString.of("Text " + i, Alarm.none(), createTime(i)));
+            else
+                ring.add(VDouble.of(i, Alarm.none(), createTime(i), Display.none()));
+            assertThat(ring.size(), equalTo(Math.min(i+1, 5)));
+        }
+        assertTrue(ring.isFull());
+
+        // Oldest samples were dropped
+        for (int i=7; i<12; ++i)
+        {
+            final VType value = ring.remove();
+            assertThat(Time.timeOf(value).getTimestamp(), equalTo(Instant.ofEpochSecond(1000 + i, i)));
+            if (i % 3 == 0)
+                assertThat(((VString) value).getValue(), equalTo("Text " + i));
+            else
+                assertThat(((VDouble) value).getValue(), equalTo((double) i));
+        }
+        assertTrue(ring.isEmpty());
+
+        // Ring can be re-used after it ran empty
+        ring.add(VDouble.of(3.14, Alarm.none(), createTime(0), Display.none()));
+        assertThat(((VDouble) ring.remove()).getValue(), equalTo(3.14));
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void testOverwrittenMeta()
+    {
+        final SampleRing ring = new SampleRing(10);
+        // Each sample has a different alarm,
+        // and ring never runs empty
+        for (int i=0; i<10000; ++i)
+        {
+            ring.add(VDouble.of(i, createAlarm(i), createTime(i), Display.none()));
+            assertTrue("Meta count " + ring.getMetaCount(), ring.getMetaCount() <= 100);
+        }
+        for (int i=9990; i<10000; ++i)
+        {
+            final VType value = ring.remove();
+            assertThat(((VDouble) value).getValue(), equalTo((double) i));
+            assertThat(Alarm.alarmOf(value), equalTo(createAlarm(i)));
+            assertThat(((VDouble) value).getDisplay(), equalTo(Display.none()));
+        }
+    }
+
+    @Test
+    public void testUserTag()
+    {
+        final SampleRing ring = new SampleRing(10);
+        final Instant stamp = Instant.ofEpochSecond(1000, 42);
+        ring.add(VDouble.of(1, Alarm.none(), Time.of(stamp), Display.none()));
+        ring.add(VDouble.of(2, Alarm.none(), Time.of(stamp, 0, true), Display.none()));
+        ring.add(VDouble.of(3, Alarm.none(), Time.of(stamp, 7, true), Display.none()));
+
+        Time time = Time.timeOf(ring.remove());
+        assertThat(time.getTimestamp(), equalTo(stamp));
+        assertThat(time.getUserTag(), nullValue());
+
+        time = Time.timeOf(ring.remove());
+        assertThat(time.getTimestamp(), equalTo(stamp));
+        assertThat(time.getUserTag(), equalTo(0));
+
+        final VType value = ring.remove();
+        assertThat(value, instanceOf(VDouble.class));
+        assertThat(Time.timeOf(value).getUserTag(), equalTo(7));
+    }
+}
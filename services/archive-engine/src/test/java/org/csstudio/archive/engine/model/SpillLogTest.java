@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** JUnit test of the {@link SpillLog} */
+@SuppressWarnings("nls")
+public class SpillLogTest
+{
+    private File directory;
+
+    @Before
+    public void createDirectory() throws Exception
+    {
+        directory = Files.createTempDirectory("spill").toFile();
+    }
+
+    @After
+    public void deleteDirectory()
+    {
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    private static VType createSample(final double value)
+    {
+        return VDouble.of(value, Alarm.none(), Time.of(Instant.ofEpochSecond(1000 + (long) value, 42)), Display.none());
+    }
+
+    private static void checkSample(final SpillLog.Sample sample, final String channel, final double value)
+    {
+        assertThat(sample, not(nullValue()));
+        assertThat(sample.channel, equalTo(channel));
+        assertThat(((VDouble) sample.value).getValue(), equalTo(value));
+        assertThat(Time.timeOf(sample.value).getTimestamp(), equalTo(Instant.ofEpochSecond(1000 + (long) value, 42)));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final SpillLog log = new SpillLog(directory, 1000, 100000);
+        for (int i=0; i<100; ++i)
+            assertTrue(log.add(i % 2 == 0 ? "even" : "odd", i % 2 == 0 ? null : "keep", createSample(i)));
+        assertThat(log.getSampleCount(), equalTo(100L));
+        assertTrue(log.getSegmentCount() > 1);
+
+        // Samples are returned in the order they were added, across segments
+        for (int i=0; i<100; ++i)
+        {
+            final SpillLog.Sample sample = log.next();
+            checkSample(sample, i % 2 == 0 ? "even" : "odd", i);
+            assertThat(sample.retention, equalTo(i % 2 == 0 ? null : "keep"));
+            log.commit();
+        }
+        assertThat(log.next(), nullValue());
+        assertThat(log.getSampleCount(), equalTo(0L));
+        log.close();
+    }
+
+    @Test
+    public void testCommit() throws Exception
+    {
+        // Reading continues into the next segment only after a commit,
+        // so use one large segment
+        SpillLog log = new SpillLog(directory, 100000, 1000000);
+        for (int i=0; i<50; ++i)
+            log.add("pv", null, createSample(i));
+
+        for (int i=0; i<20; ++i)
+            checkSample(log.next(), "pv", i);
+        log.commit();
+        assertThat(log.getSampleCount(), equalTo(30L));
+
+        // Read but uncommitted samples remain in the log
+        for (int i=20; i<25; ++i)
+            checkSample(log.next(), "pv", i);
+        log.close();
+
+        // Re-opened log counts and returns the uncommitted samples
+        log = new SpillLog(directory, 100000, 1000000);
+        assertThat(log.getSampleCount(), equalTo(30L));
+        for (int i=20; i<50; ++i)
+        {
+            checkSample(log.next(), "pv", i);
+            log.commit();
+        }
+        assertThat(log.next(), nullValue());
+        assertThat(log.getSampleCount(), equalTo(0L));
+        log.close();
+    }
+
+    @Test
+    public void testRollback() throws Exception
+    {
+        final SpillLog log = new SpillLog(directory, 100000, 1000000);
+        for (int i=0; i<10; ++i)
+            log.add("pv", null, createSample(i));
+
+        checkSample(log.next(), "pv", 0);
+        checkSample(log.next(), "pv", 1);
+        log.commit();
+
+        checkSample(log.next(), "pv", 2);
+        checkSample(log.next(), "pv", 3);
+        // Samples that could not be written are read again
+        log.rollback();
+        assertThat(log.getSampleCount(), equalTo(8L));
+        for (int i=2; i<10; ++i)
+            checkSample(log.next(), "pv", i);
+        log.commit();
+        assertThat(log.next(), nullValue());
+        log.close();
+    }
+
+    @Test
+    public void testSegmentRollover() throws Exception
+    {
+        // Small segments, at most 3 of them
+        final SpillLog log = new SpillLog(directory, 1000, 3000);
+        int added = 0;
+        while (log.add("pv", null, createSample(added)))
+            ++added;
+        assertTrue(added > 3);
+        assertThat(log.getSampleCount(), equalTo((long) added));
+        assertThat(log.getSegmentCount(), equalTo(3));
+        assertThat(directory.listFiles().length, equalTo(3));
+
+        // Read the samples of the first segment.
+        // Reading stops at the end of the segment until its samples are committed
+        int read = 0;
+        SpillLog.Sample sample;
+        while ((sample = log.next()) != null)
+            checkSample(sample, "pv", read++);
+        assertTrue(read > 0  &&  read < added);
+        assertThat(log.getSegmentCount(), equalTo(3));
+
+        // Once committed, the segment file is deleted, making room for more samples
+        log.commit();
+        sample = log.next();
+        checkSample(sample, "pv", read++);
+        assertThat(log.getSegmentCount(), equalTo(2));
+        assertThat(directory.listFiles().length, equalTo(2));
+        assertTrue(log.add("pv", null, createSample(added++)));
+
+        // Remaining samples are returned in order, across segments
+        log.commit();
+        while ((sample = log.next()) != null)
+        {
+            checkSample(sample, "pv", read++);
+            log.commit();
+        }
+        assertThat(read, equalTo(added));
+        assertThat(log.getSampleCount(), equalTo(0L));
+        // Only the segment that's being written remains
+        assertThat(log.getSegmentCount(), equalTo(1));
+        log.close();
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.file;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+import org.csstudio.archive.writer.WriteChannel;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.AlarmSeverity;
+import org.epics.vtype.AlarmStatus;
+import org.epics.vtype.Display;
+import org.epics.vtype.Time;
+import org.epics.vtype.VDouble;
+import org.epics.vtype.VString;
+import org.epics.vtype.VType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.phoebus.core.vtypes.SampleCodec;
+
+/** JUnit test of the {@link FileArchiveWriter}
+ *
+ *  <p>Writes samples and reads them back from the chunk files
+ *  as described in the {@link FileArchiveWriter}.
+ */
+@SuppressWarnings("nls")
+public class FileArchiveWriterTest
+{
+    private File root;
+
+    @Before
+    public void createDirectory() throws Exception
+    {
+        root = Files.createTempDirectory("filearchive").toFile();
+    }
+
+    @After
+    public void deleteDirectory() throws Exception
+    {
+        Files.walk(root.toPath())
+             .sorted(Comparator.reverseOrder())
+             .map(path -> path.toFile())
+             .forEach(File::delete);
+    }
+
+    /** @param file Partition file
+     *  @return Samples in all chunks of the file, in file order
+     *  @throws Exception on error
+     */
+    private static List<VType> readChunks(final File file) throws Exception
+    {
+        final List<VType> values = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath())))
+        {
+            while (in.available() > 0)
+            {
+                assertThat(in.readInt(), equalTo(FileArchiveWriter.CHUNK_MAGIC));
+                final long first = in.readLong();
+                final long last = in.readLong();
+                final int count = in.readInt();
+                final byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                try (DataInputStream samples = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data))))
+                {
+                    for (int i=0; i<count; ++i)
+                    {
+                        final VType value = SampleCodec.decode(samples);
+                        final Instant stamp = Time.timeOf(value).getTimestamp();
+                        final long nanos = stamp.getEpochSecond() * 1000000000L + stamp.getNano();
+                        assertTrue(first <= nanos  &&  nanos <= last);
+                        values.add(value);
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        final Instant day1 = Instant.parse("2021-03-01T23:59:58Z");
+        final Alarm alarm = Alarm.of(AlarmSeverity.MINOR, AlarmStatus.DEVICE, "Low");
+        final FileArchiveWriter writer = new FileArchiveWriter(root);
+        final WriteChannel channel = writer.getChannel("Test:PV*1");
+        writer.addSample(channel, VDouble.of(1.0, alarm, Time.of(day1), Display.none()));
+        writer.addSample(channel, VString.of("Text", Alarm.none(), Time.of(day1.plusSeconds(1))));
+        // Next day starts a new partition
+        writer.addSample(channel, VDouble.of(3.0, Alarm.none(), Time.of(day1.plusSeconds(2)), Display.none()));
+        writer.flush();
+        // Another flush appends a second chunk
+        writer.addSample(channel, VDouble.of(4.0, Alarm.none(), Time.of(day1.plusSeconds(3)), Display.none()));
+        writer.flush();
+        writer.close();
+
+        final File dir = new File(root, FileArchiveWriter.encodeName("Test:PV*1"));
+        assertThat(dir.getName(), equalTo("Test%3APV%2A1"));
+
+        List<VType> values = readChunks(new File(dir, "20210301" + FileArchiveWriter.SUFFIX));
+        assertThat(values.size(), equalTo(2));
+        assertThat(((VDouble) values.get(0)).getValue(), equalTo(1.0));
+        assertThat(Alarm.alarmOf(values.get(0)), equalTo(alarm));
+        assertThat(Time.timeOf(values.get(0)).getTimestamp(), equalTo(day1));
+        assertThat(((VString) values.get(1)).getValue(), equalTo("Text"));
+
+        values = readChunks(new File(dir, "20210302" + FileArchiveWriter.SUFFIX));
+        assertThat(values.size(), equalTo(2));
+        assertThat(((VDouble) values.get(0)).getValue(), equalTo(3.0));
+        assertThat(((VDouble) values.get(1)).getValue(), equalTo(4.0));
+    }
+}
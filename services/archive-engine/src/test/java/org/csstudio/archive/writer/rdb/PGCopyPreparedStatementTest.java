@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+import org.postgresql.PGConnection;
+
+/** JUnit test of the binary encoding in {@link PGCopyPreparedStatement}
+ *
+ *  <p>Uses a fake connection that only provides the table's columns.
+ */
+@SuppressWarnings("nls")
+public class PGCopyPreparedStatementTest
+{
+    /** Columns of test table: Name and type, in database order */
+    private static final String[][] COLUMNS =
+    {
+        { "c_int2",   "int2" },
+        { "c_int4",   "int4" },
+        { "c_int8",   "int8" },
+        { "c_float4", "float4" },
+        { "c_float8", "float8" },
+        { "c_bool",   "bool" },
+        { "c_ts",     "timestamp" },
+        { "c_tstz",   "timestamptz" },
+        { "c_text",   "varchar" },
+        { "c_bytea",  "bytea" },
+        { "c_null",   "int4" },
+    };
+
+    /** @return Result set for DatabaseMetaData.getColumns() */
+    private static ResultSet createColumns()
+    {
+        final int[] row = { -1 };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+            case "next":
+                return ++row[0] < COLUMNS.length;
+            case "getInt":
+                return row[0] + 1;
+            case "getString":
+                return "COLUMN_NAME".equals(args[0]) ? COLUMNS[row[0]][0] : COLUMNS[row[0]][1];
+            default:
+                return null;
+            }
+        });
+    }
+
+    /** @return Connection that describes the test table, but fails to copy */
+    private static Connection createConnection()
+    {
+        final DatabaseMetaData meta = (DatabaseMetaData) Proxy.newProxyInstance(DatabaseMetaData.class.getClassLoader(), new Class<?>[] { DatabaseMetaData.class }, (proxy, method, args) ->
+        {
+            if (method.getName().equals("getColumns"))
+                return createColumns();
+            return null;
+        });
+        return (Connection) Proxy.newProxyInstance(PGCopyPreparedStatementTest.class.getClassLoader(), new Class<?>[] { Connection.class, PGConnection.class }, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+            case "getMetaData":
+                return meta;
+            case "getCopyAPI":
+                throw new SQLException("Test connection cannot copy");
+            default:
+                return null;
+            }
+        });
+    }
+
+    private static void writeHeader(final DataOutputStream out) throws Exception
+    {
+        out.writeBytes("PGCOPY\n");
+        out.write(new byte[] { (byte) 0xFF, '\r', '\n', 0 });
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    @Test
+    public void testBinaryEncoding() throws Exception
+    {
+        // Query lists columns in a different order than the table
+        final PGCopyPreparedStatement statement = new PGCopyPreparedStatement(createConnection(),
+            "INSERT INTO test (c_text, c_int8, c_int4, c_int2, c_float8, c_float4, c_bool, c_ts, c_tstz, c_bytea, c_null) VALUES (?,?,?,?,?,?,?,?,?,?,?)",
+            true);
+        assertTrue(statement.isBinary());
+
+        statement.setString(1, "Hello \u00B0C");
+        statement.setLong(2, 0x123456789ABCDEFL);
+        statement.setInt(3, -42);
+        statement.setShort(4, (short) 7);
+        statement.setDouble(5, 3.14);
+        statement.setFloat(6, 2.5f);
+        statement.setBoolean(7, true);
+        // 'timestamp' keeps local date and time, 1.123456 seconds into the PostgreSQL epoch
+        statement.setTimestamp(8, Timestamp.valueOf(LocalDateTime.of(2000, 1, 1, 0, 0, 1, 123456000)));
+        // 'timestamptz' is based on UTC
+        statement.setTimestamp(9, Timestamp.from(Instant.parse("2000-01-01T00:00:02.5Z")));
+        statement.setBytes(10, new byte[] { 1, 2, 3 });
+        statement.setNull(11, Types.INTEGER);
+        statement.addBatch();
+
+        // Second row: Numbers for text and floating point columns
+        statement.setLong(1, 123);
+        statement.setInt(2, 1);
+        statement.setLong(3, 2);
+        statement.setInt(4, 3);
+        statement.setLong(5, 4);
+        statement.setDouble(6, 5.0);
+        statement.setBoolean(7, false);
+        statement.setTimestamp(8, Timestamp.valueOf(LocalDateTime.of(1999, 12, 31, 23, 59, 59)));
+        statement.setTimestamp(9, Timestamp.from(Instant.parse("1970-01-01T00:00:00Z")));
+        statement.setBytes(10, new byte[0]);
+        statement.setInt(11, 11);
+        statement.addBatch();
+
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final DataOutputStream expected = new DataOutputStream(buf);
+        writeHeader(expected);
+
+        expected.writeShort(COLUMNS.length);
+        expected.writeInt(2);
+        expected.writeShort(7);
+        expected.writeInt(4);
+        expected.writeInt(-42);
+        expected.writeInt(8);
+        expected.writeLong(0x123456789ABCDEFL);
+        expected.writeInt(4);
+        expected.writeFloat(2.5f);
+        expected.writeInt(8);
+        expected.writeDouble(3.14);
+        expected.writeInt(1);
+        expected.writeByte(1);
+        expected.writeInt(8);
+        expected.writeLong(1123456L);
+        expected.writeInt(8);
+        expected.writeLong(2500000L);
+        final byte[] text = "Hello \u00B0C".getBytes(StandardCharsets.UTF_8);
+        expected.writeInt(text.length);
+        expected.write(text);
+        expected.writeInt(3);
+        expected.write(new byte[] { 1, 2, 3 });
+        expected.writeInt(-1);
+
+        expected.writeShort(COLUMNS.length);
+        expected.writeInt(2);
+        expected.writeShort(3);
+        expected.writeInt(4);
+        expected.writeInt(2);
+        expected.writeInt(8);
+        expected.writeLong(1);
+        expected.writeInt(4);
+        expected.writeFloat(5.0f);
+        expected.writeInt(8);
+        expected.writeDouble(4.0);
+        expected.writeInt(1);
+        expected.writeByte(0);
+        expected.writeInt(8);
+        expected.writeLong(-1000000L);
+        expected.writeInt(8);
+        expected.writeLong(-946684800L * 1000000L);
+        expected.writeInt(3);
+        expected.writeBytes("123");
+        expected.writeInt(0);
+        expected.writeInt(4);
+        expected.writeInt(11);
+        expected.flush();
+
+        assertThat(statement.getBinaryBatch(), equalTo(buf.toByteArray()));
+        statement.close();
+    }
+
+    @Test
+    public void testClearOnError() throws Exception
+    {
+        final PGCopyPreparedStatement statement = new PGCopyPreparedStatement(createConnection(),
+            "INSERT INTO test (c_int4) VALUES (?)", true);
+        statement.setInt(1, 1);
+        statement.addBatch();
+        try
+        {
+            statement.executeBatch();
+            fail("Copy should fail");
+        }
+        catch (SQLException ex)
+        {
+            // Expected
+        }
+
+        // Failed batch, including its trailer, has been cleared
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final DataOutputStream expected = new DataOutputStream(buf);
+        writeHeader(expected);
+        expected.flush();
+        assertThat(statement.getBinaryBatch(), equalTo(buf.toByteArray()));
+        statement.close();
+    }
+
+    @Test
+    public void testNumberConversions() throws Exception
+    {
+        final PGCopyPreparedStatement statement = new PGCopyPreparedStatement(createConnection(),
+            "INSERT INTO test (c_bool, c_int2, c_int4) VALUES (?,?,?)", true);
+
+        // Numbers other than 0 are 'true'
+        statement.setLong(1, 2);
+        statement.setLong(2, Short.MIN_VALUE);
+        statement.setLong(3, Integer.MAX_VALUE);
+        statement.addBatch();
+        statement.setDouble(1, 0.5);
+        statement.addBatch();
+        statement.setInt(1, 0);
+        statement.addBatch();
+
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final DataOutputStream expected = new DataOutputStream(buf);
+        writeHeader(expected);
+        for (int row=0; row<3; ++row)
+        {
+            expected.writeShort(COLUMNS.length);
+            for (int col=0; col<COLUMNS.length; ++col)
+            {
+                if (col == 5)
+                {
+                    expected.writeInt(1);
+                    expected.writeByte(row < 2 ? 1 : 0);
+                }
+                else if (row == 0  &&  col == 0)
+                {
+                    expected.writeInt(2);
+                    expected.writeShort(Short.MIN_VALUE);
+                }
+                else if (row == 0  &&  col == 1)
+                {
+                    expected.writeInt(4);
+                    expected.writeInt(Integer.MAX_VALUE);
+                }
+                else
+                    expected.writeInt(-1);
+            }
+        }
+        expected.flush();
+        final byte[] rows = buf.toByteArray();
+        assertThat(statement.getBinaryBatch(), equalTo(rows));
+
+        // Values that don't fit into the column are rejected
+        // without adding part of the row to the batch
+        statement.setBoolean(1, true);
+        statement.setLong(2, Short.MAX_VALUE + 1);
+        try
+        {
+            statement.addBatch();
+            fail("Value should be out of range");
+        }
+        catch (SQLException ex)
+        {
+            assertThat(ex.getMessage(), containsString("out of range"));
+        }
+        statement.setBoolean(1, true);
+        statement.setLong(3, Integer.MIN_VALUE - 1L);
+        try
+        {
+            statement.addBatch();
+            fail("Value should be out of range");
+        }
+        catch (SQLException ex)
+        {
+            assertThat(ex.getMessage(), containsString("out of range"));
+        }
+        assertThat(statement.getBinaryBatch(), equalTo(rows));
+        statement.close();
+    }
+}